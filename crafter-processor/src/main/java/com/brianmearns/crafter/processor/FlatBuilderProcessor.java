@@ -0,0 +1,423 @@
+package com.brianmearns.crafter.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The annotation processor which generates a flat builder for each class or constructor annotated with
+ * {@code com.brianmearns.crafter.FlatBuilder}. See that annotation for a description of the generated builders.
+ *
+ * <p>
+ * The processor refers to the annotation and to the crafter classes only by name, so it has no dependencies of its
+ * own.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class FlatBuilderProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "com.brianmearns.crafter.FlatBuilder";
+
+    /**
+     * The names of the generated builder's own methods, which can't also be used for setters. The builder's own
+     * fields and private methods start with a {@code $}, so they don't clash with the fields named after parameters.
+     */
+    private static final Set<String> RESERVED = new HashSet<>(Arrays.asList(
+            "get", "create", "maybe", "endMaybe", "always", "reset"));
+
+    private static final String BUILDER_INTERFACE = "com.brianmearns.crafter.BuilderInterface";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for(TypeElement annotation : annotations) {
+            for(Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                ExecutableElement constructor = constructorFor(element);
+                if(constructor != null) {
+                    generate(constructor, builderName(element, (TypeElement) constructor.getEnclosingElement()));
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the constructor that the given annotated element stands for, or {@code null} after reporting an error
+     * if there isn't a suitable one.
+     */
+    private ExecutableElement constructorFor(Element element) {
+        ExecutableElement constructor;
+        if(element.getKind() == ElementKind.CONSTRUCTOR) {
+            constructor = (ExecutableElement) element;
+        } else if(element.getKind() == ElementKind.CLASS) {
+            List<ExecutableElement> candidates = new ArrayList<>();
+            for(ExecutableElement candidate : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+                if(!candidate.getModifiers().contains(Modifier.PRIVATE)) {
+                    candidates.add(candidate);
+                }
+            }
+            if(candidates.size() != 1) {
+                return error(element, "A class with a flat builder must have exactly one non-private constructor, or annotate the one to use.");
+            }
+            constructor = candidates.get(0);
+        } else {
+            return error(element, "Only classes and constructors can have flat builders.");
+        }
+
+        TypeElement type = (TypeElement) constructor.getEnclosingElement();
+        if(constructor.getModifiers().contains(Modifier.PRIVATE)) {
+            return error(element, "The constructor used by a flat builder can't be private.");
+        }
+        if(type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return error(element, "An abstract class can't have a flat builder.");
+        }
+        if(!type.getTypeParameters().isEmpty()) {
+            return error(element, "A generic class can't have a flat builder.");
+        }
+        if(type.getNestingKind() != NestingKind.TOP_LEVEL
+                && (type.getNestingKind() != NestingKind.MEMBER || !type.getModifiers().contains(Modifier.STATIC))) {
+            return error(element, "An inner class can't have a flat builder, only a top level or static nested class.");
+        }
+        for(VariableElement parameter : constructor.getParameters()) {
+            if(RESERVED.contains(parameter.getSimpleName().toString())) {
+                return error(parameter, "The name of this parameter is used by a method of the flat builder.");
+            }
+        }
+        return constructor;
+    }
+
+    private <T> T error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+        return null;
+    }
+
+    /**
+     * Returns the simple name of the builder for the given class, as given by the annotation on the given element, or
+     * otherwise derived from the class's name.
+     */
+    private String builderName(Element annotated, TypeElement type) {
+        for(AnnotationMirror mirror : annotated.getAnnotationMirrors()) {
+            if(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION)) {
+                for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                    if(entry.getKey().getSimpleName().contentEquals("name") && !entry.getValue().getValue().toString().isEmpty()) {
+                        return entry.getValue().getValue().toString();
+                    }
+                }
+            }
+        }
+        String name = type.getSimpleName().toString();
+        for(Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            name = enclosing.getSimpleName() + "_" + name;
+        }
+        return name + "Builder";
+    }
+
+    private static boolean isNullable(VariableElement parameter) {
+        for(AnnotationMirror mirror : parameter.getAnnotationMirrors()) {
+            if(mirror.getAnnotationType().asElement().getSimpleName().contentEquals("Nullable")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void generate(ExecutableElement constructor, String builderName) {
+        TypeElement type = (TypeElement) constructor.getEnclosingElement();
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        List<? extends VariableElement> parameters = constructor.getParameters();
+        int words = Math.max(1, (parameters.size() + 63) / 64);
+
+        String qualifiedName = packageName.isEmpty() ? builderName : packageName + "." + builderName;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+            try(Writer writer = file.openWriter()) {
+                PrintWriter out = new PrintWriter(writer);
+                if(!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("/**");
+                out.println(" * A flat builder of {@link " + typeName + "}, generated from its constructor by");
+                out.println(" * {@code " + getClass().getName() + "}.");
+                out.println(" */");
+                out.println("public class " + builderName + " implements " + BUILDER_INTERFACE + "<" + typeName + "> {");
+                out.println();
+
+                for(int word = 0; word < words; word++) {
+                    long required = 0;
+                    for(int i = 64 * word; i < Math.min(parameters.size(), 64 * (word + 1)); i++) {
+                        if(!isNullable(parameters.get(i))) {
+                            required |= 1L << (i % 64);
+                        }
+                    }
+                    out.println("    private static final long $REQUIRED" + word + " = 0x" + Long.toHexString(required) + "L;");
+                    out.println();
+                }
+                for(VariableElement parameter : parameters) {
+                    String name = parameter.getSimpleName().toString();
+                    out.println("    private " + parameter.asType() + " " + name + ";");
+                    out.println();
+                    if(hasBuilderSetter(parameter)) {
+                        out.println("    private " + builderType(parameter) + " $" + name + "Builder;");
+                        out.println();
+                    }
+                }
+                for(int word = 0; word < words; word++) {
+                    out.println("    /**");
+                    out.println("     * A bit for each of the fields " + (64 * word) + " to " + (64 * word + 63) + ", which is set once the field has been set.");
+                    out.println("     */");
+                    out.println("    private long $isSet" + word + ";");
+                    out.println();
+                }
+
+                out.println("    public static " + builderName + " create() {");
+                out.println("        return new " + builderName + "();");
+                out.println("    }");
+                out.println();
+
+                for(int i = 0; i < parameters.size(); i++) {
+                    VariableElement parameter = parameters.get(i);
+                    String name = parameter.getSimpleName().toString();
+                    String isSet = "$isSet" + (i / 64) + " |= 0x" + Long.toHexString(1L << (i % 64)) + "L;";
+                    out.println("    public " + builderName + " " + name + "(" + parameter.asType() + " " + name + ") {");
+                    out.println("        this." + name + " = " + name + ";");
+                    if(hasBuilderSetter(parameter)) {
+                        out.println("        this.$" + name + "Builder = null;");
+                    }
+                    out.println("        " + isSet);
+                    out.println("        return this;");
+                    out.println("    }");
+                    out.println();
+                    if(!hasBuilderSetter(parameter)) {
+                        continue;
+                    }
+                    out.println("    /**");
+                    out.println("     * Set the field to the value built by the given builder, which is invoked each time {@link #get()} is invoked.");
+                    out.println("     */");
+                    out.println("    public " + builderName + " " + name + "(" + builderType(parameter) + " " + name + ") {");
+                    out.println("        if(" + name + " == null) {");
+                    out.println("            throw new NullPointerException(\"" + name + "\");");
+                    out.println("        }");
+                    out.println("        this.$" + name + "Builder = " + name + ";");
+                    out.println("        " + isSet);
+                    out.println("        return this;");
+                    out.println("    }");
+                    out.println();
+                }
+
+                out.println("    /**");
+                out.println("     * Returns {@code this} builder itself if the given condition is true, or otherwise a builder on which setters have");
+                out.println("     * no effect, until {@link #endMaybe()} or {@link #always()} returns to this one.");
+                out.println("     */");
+                out.println("    public " + builderName + " maybe(boolean yes) {");
+                out.println("        return yes ? this : new Never(this, this);");
+                out.println("    }");
+                out.println();
+                out.println("    /**");
+                out.println("     * Returns {@code this} builder itself, since it isn't in a {@link #maybe(boolean)} scope.");
+                out.println("     */");
+                out.println("    public " + builderName + " endMaybe() {");
+                out.println("        return this;");
+                out.println("    }");
+                out.println();
+                out.println("    /**");
+                out.println("     * Returns {@code this} builder itself, since it isn't in a {@link #maybe(boolean)} scope.");
+                out.println("     */");
+                out.println("    public " + builderName + " always() {");
+                out.println("        return this;");
+                out.println("    }");
+                out.println();
+                out.println("    /**");
+                out.println("     * Unset all the fields, so that the builder can be reused.");
+                out.println("     */");
+                out.println("    public " + builderName + " reset() {");
+                for(VariableElement parameter : parameters) {
+                    String name = parameter.getSimpleName().toString();
+                    out.println("        " + name + " = " + defaultValue(parameter) + ";");
+                    if(hasBuilderSetter(parameter)) {
+                        out.println("        $" + name + "Builder = null;");
+                    }
+                }
+                for(int word = 0; word < words; word++) {
+                    out.println("        $isSet" + word + " = 0L;");
+                }
+                out.println("        return this;");
+                out.println("    }");
+                out.println();
+
+                out.println("    @Override");
+                out.println("    public " + typeName + " get() throws com.brianmearns.crafter.IncompleteBuilderException {");
+                StringBuilder complete = new StringBuilder();
+                for(int word = 0; word < words; word++) {
+                    if(word > 0) {
+                        complete.append(" || ");
+                    }
+                    complete.append("($isSet").append(word).append(" & $REQUIRED").append(word).append(") != $REQUIRED").append(word);
+                }
+                out.println("        if(" + complete + ") {");
+                out.println("            throw new com.brianmearns.crafter.IncompleteBuilderException(\"Required fields have not been set: \" + $missing());");
+                out.println("        }");
+                StringBuilder arguments = new StringBuilder();
+                for(VariableElement parameter : parameters) {
+                    String name = parameter.getSimpleName().toString();
+                    if(arguments.length() > 0) {
+                        arguments.append(",");
+                    }
+                    arguments.append("\n                ");
+                    if(hasBuilderSetter(parameter)) {
+                        arguments.append("$").append(name).append("Builder == null ? ").append(name)
+                                .append(" : $").append(name).append("Builder.get()");
+                    } else {
+                        arguments.append(name);
+                    }
+                }
+                out.println("        return new " + typeName + "(" + arguments + ");");
+                out.println("    }");
+                out.println();
+
+                out.println("    private String $missing() {");
+                out.println("        StringBuilder $missing = new StringBuilder();");
+                for(int i = 0; i < parameters.size(); i++) {
+                    if(!isNullable(parameters.get(i))) {
+                        out.println("        if(($isSet" + (i / 64) + " & 0x" + Long.toHexString(1L << (i % 64)) + "L) == 0) {");
+                        out.println("            $missing.append($missing.length() == 0 ? \"\" : \", \").append(\"" + parameters.get(i).getSimpleName() + "\");");
+                        out.println("        }");
+                    }
+                }
+                out.println("        return $missing.toString();");
+                out.println("    }");
+                out.println();
+
+                out.println("    /**");
+                out.println("     * The builder returned by {@link #maybe(boolean)} for a false condition, on which setters have no effect, as");
+                out.println("     * with the never builders of the other builders.");
+                out.println("     */");
+                out.println("    private static final class Never extends " + builderName + " {");
+                out.println();
+                out.println("        private final " + builderName + " $always;");
+                out.println();
+                out.println("        private final " + builderName + " $parent;");
+                out.println();
+                out.println("        private Never(" + builderName + " $always, " + builderName + " $parent) {");
+                out.println("            this.$always = $always;");
+                out.println("            this.$parent = $parent;");
+                out.println("        }");
+                out.println();
+                for(VariableElement parameter : parameters) {
+                    String name = parameter.getSimpleName().toString();
+                    List<String> parameterTypes = hasBuilderSetter(parameter)
+                            ? Arrays.asList(parameter.asType().toString(), builderType(parameter))
+                            : Collections.singletonList(parameter.asType().toString());
+                    for(String parameterType : parameterTypes) {
+                        out.println("        @Override");
+                        out.println("        public " + builderName + " " + name + "(" + parameterType + " " + name + ") {");
+                        out.println("            return this;");
+                        out.println("        }");
+                        out.println();
+                    }
+                }
+                out.println("        @Override");
+                out.println("        public " + builderName + " maybe(boolean yes) {");
+                out.println("            return new Never($always, this);");
+                out.println("        }");
+                out.println();
+                out.println("        @Override");
+                out.println("        public " + builderName + " endMaybe() {");
+                out.println("            return $parent;");
+                out.println("        }");
+                out.println();
+                out.println("        @Override");
+                out.println("        public " + builderName + " always() {");
+                out.println("            return $always;");
+                out.println("        }");
+                out.println();
+                out.println("        @Override");
+                out.println("        public " + builderName + " reset() {");
+                out.println("            return this;");
+                out.println("        }");
+                out.println();
+                out.println("        @Override");
+                out.println("        public " + typeName + " get() throws com.brianmearns.crafter.IncompleteBuilderException {");
+                out.println("            return $always.get();");
+                out.println("        }");
+                out.println("    }");
+                out.println("}");
+                out.flush();
+            }
+        } catch(IOException e) {
+            error(constructor, "Could not write flat builder " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns whether the setter of the given parameter has an overload which takes a builder of the value. A
+     * parameter which is itself a builder doesn't, since the two setters would have the same erasure.
+     */
+    private boolean hasBuilderSetter(VariableElement parameter) {
+        return !processingEnv.getTypeUtils().erasure(parameter.asType()).toString().equals(BUILDER_INTERFACE);
+    }
+
+    /**
+     * Returns the type of the builder that can be given for the given parameter instead of a value.
+     */
+    private String builderType(VariableElement parameter) {
+        TypeMirror type = parameter.asType();
+        if(type.getKind().isPrimitive()) {
+            type = processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).asType();
+        }
+        return BUILDER_INTERFACE + "<? extends " + type + ">";
+    }
+
+    private static String defaultValue(VariableElement parameter) {
+        switch(parameter.asType().getKind()) {
+            case BOOLEAN:
+                return "false";
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case CHAR:
+            case FLOAT:
+            case DOUBLE:
+                return "(" + parameter.asType() + ") 0";
+            default:
+                return "null";
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.brianmearns.crafter.processor;
+
+import com.brianmearns.crafter.BuilderInterface;
+import com.brianmearns.crafter.IncompleteBuilderException;
+import com.brianmearns.crafter.ValueBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FlatBuilderProcessorTest {
+
+    private static final String POINT = "package demo;\n"
+            + "import com.brianmearns.crafter.FlatBuilder;\n"
+            + "import javax.annotation.Nullable;\n"
+            + "@FlatBuilder\n"
+            + "public class Point {\n"
+            + "    public final int x;\n"
+            + "    public final long y;\n"
+            + "    public final String label;\n"
+            + "    Point(int x, long y, @Nullable String label) {\n"
+            + "        this.x = x;\n"
+            + "        this.y = y;\n"
+            + "        this.label = label;\n"
+            + "    }\n"
+            + "    public String toString() {\n"
+            + "        return x + \",\" + y + \",\" + label;\n"
+            + "    }\n"
+            + "}\n";
+
+    private File output;
+
+    @Before
+    public void setUp() throws Exception {
+        output = Files.createTempDirectory("flat-builder").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(output);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if(children != null) {
+            for(File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Compile the given source with the processor, and returns whether it compiled.
+     */
+    private boolean compile(String className, final String source, DiagnosticCollector<JavaFileObject> diagnostics) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try(StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+            JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics,
+                    Arrays.asList("-d", output.getPath(), "-classpath", System.getProperty("java.class.path")),
+                    null, Collections.singletonList(file));
+            task.setProcessors(Collections.singletonList(new FlatBuilderProcessor()));
+            return task.call();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private BuilderInterface<Object> createBuilder() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        assertTrue(diagnostics.getDiagnostics().toString(), compile("demo.Point", POINT, diagnostics));
+        ClassLoader loader = new URLClassLoader(new URL[]{output.toURI().toURL()}, getClass().getClassLoader());
+        return (BuilderInterface<Object>) loader.loadClass("demo.PointBuilder").getMethod("create").invoke(null);
+    }
+
+    /**
+     * Returns the generated builder class of the given builder, whose methods can be invoked by reflection, unlike
+     * those of its private never builder.
+     */
+    private static Class<?> builderClass(Object target) {
+        Class<?> cls = target.getClass();
+        while(!Modifier.isPublic(cls.getModifiers())) {
+            cls = cls.getSuperclass();
+        }
+        return cls;
+    }
+
+    private static Object invoke(Object target, String name, Class<?> type, Object argument) throws Exception {
+        Method method = builderClass(target).getMethod(name, type);
+        return method.invoke(target, argument);
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        BuilderInterface<Object> uut = createBuilder();
+        invoke(uut, "x", int.class, 3);
+        invoke(uut, "y", long.class, 4L);
+        invoke(uut, "label", String.class, "origin");
+
+        assertEquals("3,4,origin", uut.get().toString());
+    }
+
+    @Test
+    public void testGet_optional() throws Exception {
+        BuilderInterface<Object> uut = createBuilder();
+        invoke(invoke(uut, "x", int.class, 3), "y", long.class, 4L);
+
+        assertEquals("3,4,null", uut.get().toString());
+    }
+
+    @Test
+    public void testGet_incomplete() throws Exception {
+        BuilderInterface<Object> uut = createBuilder();
+        invoke(uut, "x", int.class, 3);
+        try {
+            uut.get();
+            fail("Expected an IncompleteBuilderException.");
+        } catch(IncompleteBuilderException e) {
+            assertEquals("Required fields have not been set: y", e.getMessage());
+        }
+    }
+
+    private static Object invoke(Object target, String name) throws Exception {
+        return builderClass(target).getMethod(name).invoke(target);
+    }
+
+    @Test
+    public void testMaybe() throws Exception {
+        BuilderInterface<Object> uut = createBuilder();
+        invoke(uut, "x", int.class, 1);
+        invoke(uut, "y", long.class, 2L);
+        Object never = invoke(uut, "maybe", boolean.class, false);
+        invoke(never, "x", int.class, 10);
+        Object stillNever = invoke(never, "maybe", boolean.class, true);
+        invoke(stillNever, "y", long.class, 20L);
+        Object top = invoke(invoke(stillNever, "endMaybe"), "endMaybe");
+        invoke(top, "label", String.class, "set");
+
+        assertSame(uut, top);
+        assertSame(uut, invoke(uut, "maybe", boolean.class, true));
+        assertEquals("1,2,set", uut.get().toString());
+        assertEquals("Expected a never builder to build with the original builder.", "1,2,set", ((BuilderInterface<?>) never).get().toString());
+    }
+
+    @Test
+    public void testMaybe_originalUnaffected() throws Exception {
+        BuilderInterface<Object> uut = createBuilder();
+        Object never = invoke(invoke(uut, "maybe", boolean.class, false), "maybe", boolean.class, false);
+        invoke(uut, "x", int.class, 1);
+        invoke(uut, "y", long.class, 2L);
+        invoke(never, "reset");
+
+        assertSame("Expected always() to return the top level builder.", uut, invoke(never, "always"));
+        assertEquals("Expected the original builder to stay unconditional.", "1,2,null", uut.get().toString());
+    }
+
+    @Test
+    public void testBuilderSetter() throws Exception {
+        BuilderInterface<Object> uut = createBuilder();
+        invoke(uut, "x", BuilderInterface.class, ValueBuilder.create(5));
+        invoke(uut, "y", BuilderInterface.class, ValueBuilder.create(6L));
+        invoke(uut, "label", BuilderInterface.class, ValueBuilder.create("built"));
+        assertEquals("5,6,built", uut.get().toString());
+
+        invoke(uut, "label", String.class, "plain");
+        assertEquals("Expected a value to replace a builder.", "5,6,plain", uut.get().toString());
+    }
+
+    @Test
+    public void testInternalNames() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        String source = "package demo;\n"
+                + "@com.brianmearns.crafter.FlatBuilder\n"
+                + "public class Names {\n"
+                + "    Names(int maybeDepth, int maybeConditions, int falseConditions, long isSet0, long REQUIRED0, String missing, String Never) {}\n"
+                + "}\n";
+
+        assertTrue(diagnostics.getDiagnostics().toString(), compile("demo.Names", source, diagnostics));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        BuilderInterface<Object> uut = createBuilder();
+        invoke(invoke(uut, "x", int.class, 3), "y", long.class, 4L);
+        uut.getClass().getMethod("reset").invoke(uut);
+        try {
+            uut.get();
+            fail("Expected an IncompleteBuilderException after a reset.");
+        } catch(IncompleteBuilderException e) {
+            assertEquals("Required fields have not been set: x, y", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testGenericClass() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        String source = "package demo;\n"
+                + "@com.brianmearns.crafter.FlatBuilder\n"
+                + "public class Box<T> {\n"
+                + "    Box(T value) {}\n"
+                + "}\n";
+
+        assertFalse(compile("demo.Box", source, diagnostics));
+        assertEquals("A generic class can't have a flat builder.", diagnostics.getDiagnostics().get(0).getMessage(null));
+    }
+}
@@ -0,0 +1,354 @@
+package com.brianmearns.crafter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.primitives.Primitives;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.beans.ConstructorProperties;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A generic {@link BuilderInterface} for instances of a class that has no builder of its own, which invokes one of
+ * its public constructors or static factory methods.
+ *
+ * <p>
+ * The builder has a slot for each parameter of the constructor or factory, which is set with {@link #set(int, Object)}
+ * or, to have the argument built by another builder when the instance is built, {@link #set(int, BuilderInterface)}.
+ * Like the value of a {@link ValueBuilder}, every slot must be set before an instance can be built. Slots are
+ * identified by their index, or by their name if the constructor is annotated with {@link ConstructorProperties},
+ * since parameter names are not otherwise available at runtime.
+ *
+ * <p>
+ * The class is inspected with reflection only once, the first time a builder is created for it, and the constructor
+ * or factory is cached as a {@link MethodHandle} which takes the arguments as an array. So {@link #get()} doesn't use
+ * reflection at all, but it isn't as cheap as invoking the constructor directly, either: the slots hold their values
+ * boxed, and the handle is shared by every builder for the class rather than being a constant the JVM can inline, so
+ * each instance costs a copy of the array of arguments, and the unboxing of any primitive ones, besides the call.
+ *
+ * @param <T> The type of the built instances.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class BeanBuilder<T> implements BuilderInterface<T> {
+
+    /**
+     * The plan for the single public constructor of each class.
+     */
+    private static final ClassValue<Plan> CONSTRUCTORS = new ClassValue<Plan>() {
+        @Override
+        protected Plan computeValue(Class<?> type) {
+            return Plan.forConstructor(type);
+        }
+    };
+
+    /**
+     * The plans for the public static factory methods of each class, by name.
+     */
+    private static final ClassValue<ConcurrentMap<String, Plan>> FACTORIES = new ClassValue<ConcurrentMap<String, Plan>>() {
+        @Override
+        protected ConcurrentMap<String, Plan> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    @Nonnull
+    private final Plan plan;
+
+    /**
+     * The value of each slot, or a {@link Deferred} if it is given by a builder.
+     */
+    @Nonnull
+    private final Object[] values;
+
+    /**
+     * A bit for each slot, which is set once the slot has been set.
+     */
+    @Nonnull
+    private final long[] setBits;
+
+    private int deferredCount;
+
+    protected BeanBuilder(@Nonnull Plan plan) {
+        this.plan = plan;
+        this.values = new Object[plan.types.length];
+        this.setBits = new long[(plan.types.length + 63) >>> 6];
+    }
+
+    /**
+     * Create a builder which invokes the single public constructor of the given class.
+     *
+     * @throws IllegalArgumentException If the class doesn't have exactly one public constructor, or is abstract.
+     */
+    @Nonnull
+    public static <T> BeanBuilder<T> create(@Nonnull Class<T> cls) {
+        return new BeanBuilder<>(CONSTRUCTORS.get(cls));
+    }
+
+    /**
+     * Create a builder which invokes the public static factory method of the given class with the given name.
+     *
+     * @throws IllegalArgumentException If the class doesn't have exactly one public static method with the given
+     *                                  name, or if it doesn't return an instance of the class.
+     */
+    @Nonnull
+    public static <T> BeanBuilder<T> create(@Nonnull Class<T> cls, @Nonnull String factoryName) {
+        ConcurrentMap<String, Plan> factories = FACTORIES.get(cls);
+        Plan plan = factories.get(factoryName);
+        if(plan == null) {
+            plan = Plan.forFactory(cls, factoryName);
+            Plan existing = factories.putIfAbsent(factoryName, plan);
+            if(existing != null) {
+                plan = existing;
+            }
+        }
+        return new BeanBuilder<>(plan);
+    }
+
+    /**
+     * Returns the number of slots.
+     */
+    public int slotCount() {
+        return values.length;
+    }
+
+    /**
+     * Returns the names of the slots, in order, or an empty list if they are not known.
+     */
+    @Nonnull
+    public List<String> slotNames() {
+        return plan.names;
+    }
+
+    /**
+     * Returns the index of the slot with the given name.
+     *
+     * @throws IllegalArgumentException If there is no slot with the given name.
+     */
+    public int slotIndex(@Nonnull String name) {
+        Integer index = plan.indices.get(name);
+        Preconditions.checkArgument(index != null, "No such slot: %s", name);
+        return index;
+    }
+
+    /**
+     * Set the slot at the given index to the given value.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     *
+     * @throws IllegalArgumentException If the value is not of the type of the parameter, or is {@code null} for a
+     *                                  primitive parameter.
+     */
+    @Nonnull
+    public BeanBuilder<T> set(int index, @Nullable Object value) {
+        Preconditions.checkElementIndex(index, values.length, "slot");
+        Class<?> type = plan.types[index];
+        Preconditions.checkArgument(value == null ? !plan.primitive[index] : type.isInstance(value),
+                "Slot %s is of type %s, not %s.", index, type.getName(), value == null ? null : value.getClass().getName());
+        store(index, value);
+        return this;
+    }
+
+    /**
+     * Set the slot with the given name to the given value.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public BeanBuilder<T> set(@Nonnull String name, @Nullable Object value) {
+        return set(slotIndex(name), value);
+    }
+
+    /**
+     * Set the slot at the given index to be built by the given builder, which is invoked each time an instance is
+     * built. The type of the built value is only checked when it is passed to the constructor or factory.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public BeanBuilder<T> set(int index, @Nonnull BuilderInterface<?> builder) {
+        Preconditions.checkElementIndex(index, values.length, "slot");
+        store(index, new Deferred(builder));
+        return this;
+    }
+
+    /**
+     * Set the slot with the given name to be built by the given builder.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public BeanBuilder<T> set(@Nonnull String name, @Nonnull BuilderInterface<?> builder) {
+        return set(slotIndex(name), builder);
+    }
+
+    private void store(int index, @Nullable Object value) {
+        if(values[index] instanceof Deferred) {
+            deferredCount--;
+        }
+        if(value instanceof Deferred) {
+            deferredCount++;
+        }
+        values[index] = value;
+        setBits[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Unset all the slots, so that the builder can be reused.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public BeanBuilder<T> reset() {
+        Arrays.fill(values, null);
+        Arrays.fill(setBits, 0L);
+        deferredCount = 0;
+        return this;
+    }
+
+    /**
+     * Build an instance by invoking the constructor or factory with the values of the slots, building any that are
+     * given by builders.
+     *
+     * @throws IncompleteBuilderException If any slot hasn't been set.
+     */
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get() throws IncompleteBuilderException {
+        for(int word = 0; word < setBits.length; word++) {
+            long expected = word < setBits.length - 1 || (values.length & 63) == 0 ? -1L : (1L << values.length) - 1;
+            if(setBits[word] != expected) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(~setBits[word]);
+                throw new IncompleteBuilderException("Slot " + (plan.names.isEmpty() ? index : plan.names.get(index))
+                        + " has not been set.");
+            }
+        }
+        Object[] arguments = values.clone();
+        if(deferredCount > 0) {
+            for(int i = 0; i < arguments.length; i++) {
+                if(arguments[i] instanceof Deferred) {
+                    arguments[i] = ((Deferred) arguments[i]).supplier.get();
+                }
+            }
+        }
+        try {
+            return (T) (Object) plan.handle.invokeExact(arguments);
+        } catch(Throwable t) {
+            throw Throwables.propagate(t);
+        }
+    }
+
+    /**
+     * A slot value given by a builder.
+     */
+    private static final class Deferred {
+
+        @Nonnull
+        private final Supplier<?> supplier;
+
+        private Deferred(@Nonnull Supplier<?> supplier) {
+            this.supplier = supplier;
+        }
+    }
+
+    /**
+     * What is found by inspecting a class once: a handle for invoking its constructor or factory with an array of
+     * arguments, and the types and names of the parameters.
+     */
+    protected static final class Plan {
+
+        /**
+         * A handle of type {@code (Object[])Object}.
+         */
+        @Nonnull
+        private final MethodHandle handle;
+
+        /**
+         * The type of each parameter, boxed.
+         */
+        @Nonnull
+        private final Class<?>[] types;
+
+        @Nonnull
+        private final boolean[] primitive;
+
+        @Nonnull
+        private final List<String> names;
+
+        @Nonnull
+        private final Map<String, Integer> indices;
+
+        private Plan(@Nonnull MethodHandle handle, @Nonnull Class<?>[] parameterTypes, @Nullable String[] names) {
+            this.handle = handle.asSpreader(Object[].class, parameterTypes.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+            this.types = new Class<?>[parameterTypes.length];
+            this.primitive = new boolean[parameterTypes.length];
+            for(int i = 0; i < parameterTypes.length; i++) {
+                types[i] = Primitives.wrap(parameterTypes[i]);
+                primitive[i] = parameterTypes[i].isPrimitive();
+            }
+            this.indices = new HashMap<>();
+            if(names == null) {
+                this.names = Collections.emptyList();
+            } else {
+                Preconditions.checkArgument(names.length == parameterTypes.length,
+                        "Expected %s names of constructor properties, but got %s.", parameterTypes.length, names.length);
+                this.names = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(names)));
+                for(int i = 0; i < names.length; i++) {
+                    indices.put(names[i], i);
+                }
+            }
+        }
+
+        @Nonnull
+        private static Plan forConstructor(@Nonnull Class<?> cls) {
+            Preconditions.checkArgument(!Modifier.isAbstract(cls.getModifiers()), "Class is abstract: %s", cls.getName());
+            Constructor<?>[] constructors = cls.getConstructors();
+            Preconditions.checkArgument(constructors.length == 1, "Expected exactly one public constructor in %s, but found %s.",
+                    cls.getName(), constructors.length);
+            Constructor<?> constructor = constructors[0];
+            ConstructorProperties properties = constructor.getAnnotation(ConstructorProperties.class);
+            try {
+                return new Plan(MethodHandles.publicLookup().unreflectConstructor(constructor), constructor.getParameterTypes(),
+                        properties == null ? null : properties.value());
+            } catch(IllegalAccessException e) {
+                throw new IllegalArgumentException("Constructor is not accessible: " + constructor, e);
+            }
+        }
+
+        @Nonnull
+        private static Plan forFactory(@Nonnull Class<?> cls, @Nonnull String name) {
+            Method factory = null;
+            for(Method method : cls.getMethods()) {
+                if(method.getName().equals(name) && Modifier.isStatic(method.getModifiers())) {
+                    Preconditions.checkArgument(factory == null, "More than one static method named %s in %s.", name, cls.getName());
+                    factory = method;
+                }
+            }
+            Preconditions.checkArgument(factory != null, "No public static method named %s in %s.", name, cls.getName());
+            Preconditions.checkArgument(cls.isAssignableFrom(factory.getReturnType()), "Method %s doesn't return a %s.",
+                    factory, cls.getName());
+            try {
+                return new Plan(MethodHandles.publicLookup().unreflect(factory), factory.getParameterTypes(), null);
+            } catch(IllegalAccessException e) {
+                throw new IllegalArgumentException("Factory is not accessible: " + factory, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.collect.CompactLists;
+import com.brianmearns.crafter.collect.CompactMaps;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of built results, keyed by the constant contents of the builders that built them, so that builders created
+ * separately with identical contents share a single built instance.
+ *
+ * <p>
+ * Building through the cache, as with {@link #get(ListBuilder)}, looks up the builder's constant contents (its
+ * elements, entries, or value) in the cache, and returns the result cached for them if there is one. Otherwise the
+ * builder is invoked, and its result is cached as an unmodifiable, {@linkplain CompactLists compact} copy. Results
+ * are therefore always unmodifiable, and only safe to share if the elements themselves are immutable. A builder with
+ * any dynamic contents, such as element builders or deferred segments, can't be cached: it is simply invoked, and
+ * doesn't count as a hit or a miss.
+ *
+ * <p>
+ * The cache holds up to a fixed number of results, evicting the least recently used ones beyond that. It is thread
+ * safe, and counts its hits, misses, and evictions.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class BuildCache {
+
+    /**
+     * The default maximum number of cached results.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static final int LIST = 0;
+
+    private static final int MAP = 1;
+
+    private static final int VALUE = 2;
+
+    private final int maxSize;
+
+    @Nonnull
+    private final LinkedHashMap<Key, Object> results;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * Create a cache of up to {@link #DEFAULT_MAX_SIZE} results.
+     */
+    public BuildCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a cache of up to the given number of results.
+     */
+    public BuildCache(int maxSize) {
+        Preconditions.checkArgument(maxSize > 0, "Maximum size must be positive: %s", maxSize);
+        this.maxSize = maxSize;
+        //Access order makes this an LRU cache.
+        this.results = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                if(size() > BuildCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached list built from the same constant elements as the given builder, or builds and caches one.
+     * If the builder has dynamic elements, it is simply invoked.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(@Nonnull ListBuilder<T> builder) throws IncompleteBuilderException {
+        Object[] contents = builder.constantContents();
+        if(contents == null) {
+            return builder.get();
+        }
+        Key key = new Key(LIST, contents);
+        Object result = lookup(key);
+        if(result == null) {
+            result = store(key, CompactLists.copyOf(builder.get()));
+        }
+        return (List<T>) result;
+    }
+
+    /**
+     * Returns the cached map built from the same constant entries as the given builder, or builds and caches one. If
+     * the builder has any dynamic values, it is simply invoked.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> get(@Nonnull MapBuilder<K, V> builder) throws IncompleteBuilderException {
+        Object[] contents = builder.constantContents();
+        if(contents == null) {
+            return builder.get();
+        }
+        Key key = new Key(MAP, contents);
+        Object result = lookup(key);
+        if(result == null) {
+            result = store(key, CompactMaps.copyOf(builder.get()));
+        }
+        return (Map<K, V>) result;
+    }
+
+    /**
+     * Returns the cached value equal to the constant value of the given builder, or caches the builder's value. If the
+     * builder's value is given by another builder, it is simply invoked. Note that a {@code null} value is never
+     * cached.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(@Nonnull ValueBuilder<T> builder) throws IncompleteBuilderException {
+        Object[] contents = builder.constantContents();
+        if(contents == null || contents[0] == null) {
+            return builder.get();
+        }
+        Key key = new Key(VALUE, contents);
+        Object result = lookup(key);
+        if(result == null) {
+            result = store(key, contents[0]);
+        }
+        return (T) result;
+    }
+
+    @Nullable
+    private synchronized Object lookup(@Nonnull Key key) {
+        Object result = results.get(key);
+        if(result != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return result;
+    }
+
+    /**
+     * Cache the given result, unless another thread cached one for the same key in the meantime, and return whichever
+     * one is cached.
+     */
+    @Nonnull
+    private synchronized Object store(@Nonnull Key key, @Nonnull Object result) {
+        Object existing = results.get(key);
+        if(existing != null) {
+            return existing;
+        }
+        results.put(key, result);
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of cached results.
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of cached results.
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * Returns the number of builds for which a cached result was found.
+     */
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of builds for which no cached result was found, so the builder was invoked.
+     */
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of results evicted to keep the cache within its maximum size.
+     */
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the fraction of cacheable builds for which a cached result was found, or {@code 0} if there weren't any.
+     */
+    public synchronized double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Remove all cached results. The counts are kept.
+     */
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    /**
+     * The structural key of a builder: the kind of builder and its constant contents, in order.
+     */
+    private static final class Key {
+
+        private final int kind;
+
+        @Nonnull
+        private final Object[] contents;
+
+        private final int hashCode;
+
+        private Key(int kind, @Nonnull Object[] contents) {
+            this.kind = kind;
+            this.contents = contents;
+            this.hashCode = 31 * kind + Arrays.hashCode(contents);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return hashCode == that.hashCode && kind == that.kind && Arrays.equals(contents, that.contents);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.brianmearns.crafter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A {@link BuilderInterface} for a list of composite records, which stores the fields of the records column by column
+ * (i.e., as a structure of arrays), rather than as a builder object per record.
+ *
+ * <p>
+ * The columns are declared first, each with a name and a type: {@code int}, {@code long} and {@code double} columns
+ * are stored in primitive arrays, and object columns in reference arrays. Then each row is started with
+ * {@link #appendRow()}, and its fields are set with the {@code set} methods, much like the value of a
+ * {@link ValueBuilder}: every field of every row must be set before a list can be built, and an object field can be
+ * set to a builder, which is only invoked when the list is built. Appending a row allocates nothing, except when the
+ * columns have to grow.
+ *
+ * <p>
+ * The built list is a {@link ColumnarList}: an unmodifiable list whose elements are created on demand from the
+ * columns by a {@link RowFactory}, each time they are accessed. Its columns can also be read directly, by row and
+ * column, without creating any elements, which is the cache-friendly way to scan a single field of every record.
+ *
+ * @param <R> The type of the records.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class ColumnarListBuilder<R> implements BuilderInterface<List<R>> {
+
+    /**
+     * The types of columns.
+     */
+    public enum ColumnType {
+        INT, LONG, DOUBLE, OBJECT
+    }
+
+    /**
+     * Creates the record for a row of a {@link ColumnarList}, from its columns.
+     *
+     * @param <R> The type of records.
+     */
+    public interface RowFactory<R> {
+
+        /**
+         * Returns the record for the given row of the given columns.
+         */
+        R create(@Nonnull ColumnarList<R> columns, int row);
+    }
+
+    @Nonnull
+    private final RowFactory<? extends R> rowFactory;
+
+    @Nonnull
+    private final List<String> names = new ArrayList<>();
+
+    @Nonnull
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    @Nonnull
+    private ColumnType[] types = new ColumnType[0];
+
+    /**
+     * The array of values of each column: an {@code int[]}, {@code long[]}, {@code double[]} or {@code Object[]},
+     * according to its type. In an object column, a value given by a builder is stored as a {@link Deferred}.
+     */
+    @Nonnull
+    private Object[] columns = new Object[0];
+
+    /**
+     * A bit for each row of each column, which is set once the field has been set.
+     */
+    @Nonnull
+    private long[][] setBits = new long[0][];
+
+    /**
+     * The number of rows that the column arrays have room for.
+     */
+    private int capacity;
+
+    private int size;
+
+    /**
+     * The number of deferred values in the object columns.
+     */
+    private int deferredCount;
+
+    protected ColumnarListBuilder(@Nonnull RowFactory<? extends R> rowFactory, int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "Expected size cannot be negative: %s", expectedSize);
+        this.rowFactory = rowFactory;
+        this.capacity = expectedSize;
+    }
+
+    /**
+     * Create a new builder with no columns, which creates records with the given factory.
+     */
+    @Nonnull
+    public static <R> ColumnarListBuilder<R> create(@Nonnull RowFactory<? extends R> rowFactory) {
+        return new ColumnarListBuilder<>(rowFactory, 16);
+    }
+
+    /**
+     * Create a new builder with no columns, which creates records with the given factory, and has room for the
+     * given number of rows before its columns have to grow.
+     */
+    @Nonnull
+    public static <R> ColumnarListBuilder<R> create(@Nonnull RowFactory<? extends R> rowFactory, int expectedSize) {
+        return new ColumnarListBuilder<>(rowFactory, expectedSize);
+    }
+
+    /**
+     * Declare a column of the given name and type, after the columns already declared. Columns can only be declared
+     * before any rows are appended.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public ColumnarListBuilder<R> column(@Nonnull String name, @Nonnull ColumnType type) {
+        Preconditions.checkState(size == 0, "Columns must be declared before any rows are appended.");
+        Preconditions.checkArgument(!indices.containsKey(name), "Duplicate column name: %s", name);
+        int column = types.length;
+        indices.put(name, column);
+        names.add(name);
+        types = Arrays.copyOf(types, column + 1);
+        types[column] = type;
+        columns = Arrays.copyOf(columns, column + 1);
+        columns[column] = newColumn(type, capacity);
+        setBits = Arrays.copyOf(setBits, column + 1);
+        setBits[column] = new long[words(capacity)];
+        return this;
+    }
+
+    @Nonnull
+    public ColumnarListBuilder<R> intColumn(@Nonnull String name) {
+        return column(name, ColumnType.INT);
+    }
+
+    @Nonnull
+    public ColumnarListBuilder<R> longColumn(@Nonnull String name) {
+        return column(name, ColumnType.LONG);
+    }
+
+    @Nonnull
+    public ColumnarListBuilder<R> doubleColumn(@Nonnull String name) {
+        return column(name, ColumnType.DOUBLE);
+    }
+
+    @Nonnull
+    public ColumnarListBuilder<R> objectColumn(@Nonnull String name) {
+        return column(name, ColumnType.OBJECT);
+    }
+
+    /**
+     * Returns the index of the column with the given name.
+     *
+     * @throws IllegalArgumentException If there is no such column.
+     */
+    public int columnIndex(@Nonnull String name) {
+        Integer index = indices.get(name);
+        Preconditions.checkArgument(index != null, "No such column: %s", name);
+        return index;
+    }
+
+    /**
+     * Returns the number of rows appended.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Start a new row at the end of the list, with none of its fields set. The {@code set} methods set the fields of
+     * this row until the next one is appended.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public ColumnarListBuilder<R> appendRow() {
+        if(size == capacity) {
+            grow(Math.max(size + 1, size + (size >> 1)));
+        }
+        size++;
+        return this;
+    }
+
+    private void grow(int newCapacity) {
+        for(int column = 0; column < columns.length; column++) {
+            Object values = newColumn(types[column], newCapacity);
+            System.arraycopy(columns[column], 0, values, 0, size);
+            columns[column] = values;
+            setBits[column] = Arrays.copyOf(setBits[column], words(newCapacity));
+        }
+        capacity = newCapacity;
+    }
+
+    @Nonnull
+    private static Object newColumn(@Nonnull ColumnType type, int capacity) {
+        switch(type) {
+            case INT:
+                return new int[capacity];
+            case LONG:
+                return new long[capacity];
+            case DOUBLE:
+                return new double[capacity];
+            default:
+                return new Object[capacity];
+        }
+    }
+
+    private static int words(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    /**
+     * Check that the given column is of the given type, and mark its field in the current row as set.
+     *
+     * @return The current row.
+     */
+    private int mark(int column, @Nonnull ColumnType type) {
+        Preconditions.checkState(size > 0, "No row has been appended.");
+        Preconditions.checkElementIndex(column, types.length, "column");
+        Preconditions.checkArgument(types[column] == type, "Column %s is of type %s, not %s.", names.get(column), types[column], type);
+        int row = size - 1;
+        setBits[column][row >>> 6] |= 1L << row;
+        return row;
+    }
+
+    @Nonnull
+    public ColumnarListBuilder<R> setInt(int column, int value) {
+        int row = mark(column, ColumnType.INT);
+        ((int[]) columns[column])[row] = value;
+        return this;
+    }
+
+    @Nonnull
+    public ColumnarListBuilder<R> setLong(int column, long value) {
+        int row = mark(column, ColumnType.LONG);
+        ((long[]) columns[column])[row] = value;
+        return this;
+    }
+
+    @Nonnull
+    public ColumnarListBuilder<R> setDouble(int column, double value) {
+        int row = mark(column, ColumnType.DOUBLE);
+        ((double[]) columns[column])[row] = value;
+        return this;
+    }
+
+    /**
+     * Set the given object field of the current row to the given value.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public ColumnarListBuilder<R> set(int column, @Nullable Object value) {
+        int row = mark(column, ColumnType.OBJECT);
+        replace((Object[]) columns[column], row, value);
+        return this;
+    }
+
+    /**
+     * Set the given object field of the current row to be built by the given builder, which is invoked each time a
+     * list is built.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public ColumnarListBuilder<R> set(int column, @Nonnull BuilderInterface<?> builder) {
+        int row = mark(column, ColumnType.OBJECT);
+        replace((Object[]) columns[column], row, new Deferred(builder));
+        return this;
+    }
+
+    /**
+     * Store the given value at the given row of an object column, keeping count of the deferred values.
+     */
+    private void replace(@Nonnull Object[] values, int row, @Nullable Object value) {
+        if(values[row] instanceof Deferred) {
+            deferredCount--;
+        }
+        if(value instanceof Deferred) {
+            deferredCount++;
+        }
+        values[row] = value;
+    }
+
+    /**
+     * Remove all the rows, so that the builder can be reused. The columns, and the storage allocated for them, are
+     * kept.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public ColumnarListBuilder<R> reset() {
+        for(int column = 0; column < columns.length; column++) {
+            Arrays.fill(setBits[column], 0, words(size), 0L);
+            if(types[column] == ColumnType.OBJECT) {
+                Arrays.fill((Object[]) columns[column], 0, size, null);
+            }
+        }
+        size = 0;
+        deferredCount = 0;
+        return this;
+    }
+
+    /**
+     * Build a list of the rows appended so far. The columns are copied, and deferred fields are built, so the list is
+     * not affected by any later changes to this builder.
+     *
+     * @throws IncompleteBuilderException If any field of any row hasn't been set.
+     */
+    @Nonnull
+    @Override
+    public ColumnarList<R> get() throws IncompleteBuilderException {
+        checkComplete();
+        Object[] copies = new Object[columns.length];
+        for(int column = 0; column < columns.length; column++) {
+            Object values = newColumn(types[column], size);
+            System.arraycopy(columns[column], 0, values, 0, size);
+            if(types[column] == ColumnType.OBJECT && deferredCount > 0) {
+                Object[] objects = (Object[]) values;
+                for(int row = 0; row < size; row++) {
+                    if(objects[row] instanceof Deferred) {
+                        objects[row] = ((Deferred) objects[row]).supplier.get();
+                    }
+                }
+            }
+            copies[column] = values;
+        }
+        return new ColumnarList<>(this.<R>factory(), names.toArray(new String[names.size()]), types.clone(), copies, size);
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private <T> RowFactory<T> factory() {
+        //The factory only ever sees lists it creates records for.
+        return (RowFactory<T>) rowFactory;
+    }
+
+    private void checkComplete() throws IncompleteBuilderException {
+        for(int column = 0; column < columns.length; column++) {
+            long[] bits = setBits[column];
+            int fullWords = size >>> 6;
+            for(int word = 0; word < fullWords; word++) {
+                if(bits[word] != -1L) {
+                    throw incomplete(column, (word << 6) + Long.numberOfTrailingZeros(~bits[word]));
+                }
+            }
+            int remainder = size & 63;
+            if(remainder > 0) {
+                long mask = (1L << remainder) - 1;
+                if((bits[fullWords] & mask) != mask) {
+                    throw incomplete(column, (fullWords << 6) + Long.numberOfTrailingZeros(~bits[fullWords]));
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    private IncompleteBuilderException incomplete(int column, int row) {
+        return new IncompleteBuilderException("Column " + names.get(column) + " has not been set for row " + row + ".");
+    }
+
+    /**
+     * A field value given by a builder.
+     */
+    private static final class Deferred {
+
+        @Nonnull
+        private final Supplier<?> supplier;
+
+        private Deferred(@Nonnull Supplier<?> supplier) {
+            this.supplier = supplier;
+        }
+    }
+
+    /**
+     * An unmodifiable list of records stored as columns, whose elements are created on demand by a
+     * {@link RowFactory} each time they are accessed. The columns can also be read directly.
+     *
+     * @param <R> The type of the records.
+     */
+    public static final class ColumnarList<R> extends AbstractList<R> implements RandomAccess {
+
+        @Nonnull
+        private final RowFactory<R> rowFactory;
+
+        @Nonnull
+        private final String[] names;
+
+        @Nonnull
+        private final ColumnType[] types;
+
+        @Nonnull
+        private final Object[] columns;
+
+        private final int size;
+
+        private ColumnarList(@Nonnull RowFactory<R> rowFactory, @Nonnull String[] names, @Nonnull ColumnType[] types,
+                             @Nonnull Object[] columns, int size) {
+            this.rowFactory = rowFactory;
+            this.names = names;
+            this.types = types;
+            this.columns = columns;
+            this.size = size;
+        }
+
+        /**
+         * Returns the record for the given row, newly created by the row factory.
+         */
+        @Override
+        public R get(int row) {
+            Preconditions.checkElementIndex(row, size);
+            return rowFactory.create(this, row);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the number of columns.
+         */
+        public int columnCount() {
+            return columns.length;
+        }
+
+        /**
+         * Returns the index of the column with the given name.
+         *
+         * @throws IllegalArgumentException If there is no such column.
+         */
+        public int columnIndex(@Nonnull String name) {
+            for(int column = 0; column < names.length; column++) {
+                if(names[column].equals(name)) {
+                    return column;
+                }
+            }
+            throw new IllegalArgumentException("No such column: " + name);
+        }
+
+        @Nonnull
+        public ColumnType columnType(int column) {
+            return types[column];
+        }
+
+        public int getInt(int row, int column) {
+            Preconditions.checkElementIndex(row, size);
+            return ((int[]) columns[column])[row];
+        }
+
+        public long getLong(int row, int column) {
+            Preconditions.checkElementIndex(row, size);
+            return ((long[]) columns[column])[row];
+        }
+
+        public double getDouble(int row, int column) {
+            Preconditions.checkElementIndex(row, size);
+            return ((double[]) columns[column])[row];
+        }
+
+        @Nullable
+        public Object getObject(int row, int column) {
+            Preconditions.checkElementIndex(row, size);
+            return ((Object[]) columns[column])[row];
+        }
+    }
+}
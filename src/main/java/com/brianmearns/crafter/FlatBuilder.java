@@ -0,0 +1,41 @@
+package com.brianmearns.crafter;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class, or one of its constructors, for which the {@code crafter-processor} annotation processor generates
+ * a flat builder at compile time.
+ *
+ * <p>
+ * The generated builder is a {@link BuilderInterface} with a field and a fluent setter for each parameter of the
+ * constructor, and it records which fields have been set in bitmasks, so building an instance only allocates the
+ * builder itself and the result: there is no {@link ValueBuilder} per field. Each setter also has an overload which
+ * takes a {@link BuilderInterface} of the value instead, such as a nested builder, which is invoked each time the
+ * instance is built. Like the other builders, {@code maybe(false)} returns a separate builder on which setters have
+ * no effect, and from which {@code endMaybe()} and {@code always()} return to the enclosing and the original builder,
+ * while the original builder itself stays unconditional. Its {@code get()} method throws an
+ * {@link IncompleteBuilderException} if any required field hasn't been set. Parameters annotated with an annotation
+ * named {@code Nullable} are optional, and default to {@code null}.
+ *
+ * <p>
+ * The builder is generated in the same package as the class, and named after it with a {@code Builder} suffix
+ * (with the names of any enclosing classes prefixed, separated by underscores), unless a {@link #name()} is given.
+ * When a class is annotated, it must have exactly one non-private constructor, which is the one used. The class can't
+ * be generic, or a non-static inner class.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE, ElementType.CONSTRUCTOR})
+public @interface FlatBuilder {
+
+    /**
+     * The simple name of the generated builder class, or an empty string for the default name.
+     */
+    String name() default "";
+}
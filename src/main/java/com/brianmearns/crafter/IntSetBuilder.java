@@ -0,0 +1,291 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.collect.CompressedIntSet;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * A {@link BuilderInterface} for a set of {@code int} values, such as IDs, which builds a {@link CompressedIntSet}.
+ *
+ * <p>
+ * The values are held in the same containers as the built set, so the builder takes about as little memory as the set
+ * does, and values are never boxed. A chunk of 65536 values starts as a sorted array, and switches to a bitmap once it
+ * has more than {@link CompressedIntSet#ARRAY_MAX} values. A {@linkplain #addRange(int, int) range} of values is added
+ * a container at a time, by filling whole words of a bitmap, so adding a range of a million values costs about as much
+ * as adding a few hundred individual values.
+ *
+ * <p>
+ * Each built set is a copy of the containers, in which any bitmap that has become sparse enough is stored as an array,
+ * so the builder can go on being used afterwards. Like the other builders, this class is not thread safe, but the sets
+ * it builds are.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class IntSetBuilder implements BuilderInterface<CompressedIntSet> {
+
+    @Nonnull
+    private char[] keys = new char[4];
+
+    /**
+     * Each container, either a {@code char[]} of which only the first {@link #cardinalities cardinality} values are
+     * used, or a {@code long[]} bitmap.
+     */
+    @Nonnull
+    private Object[] containers = new Object[4];
+
+    @Nonnull
+    private int[] cardinalities = new int[4];
+
+    private int count;
+
+    protected IntSetBuilder() {
+    }
+
+    /**
+     * Create a new, empty builder.
+     */
+    @Nonnull
+    public static IntSetBuilder create() {
+        return new IntSetBuilder();
+    }
+
+    /**
+     * Returns the number of distinct values added so far.
+     */
+    public long cardinality() {
+        long cardinality = 0;
+        for(int i = 0; i < count; i++) {
+            cardinality += cardinalities[i];
+        }
+        return cardinality;
+    }
+
+    /**
+     * Add the given value to the set.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public IntSetBuilder add(int value) {
+        int index = container(CompressedIntSet.key(value));
+        char low = (char) value;
+        if(containers[index] instanceof char[]) {
+            char[] array = (char[]) containers[index];
+            int position = Arrays.binarySearch(array, 0, cardinalities[index], low);
+            if(position >= 0) {
+                return this;
+            }
+            if(cardinalities[index] < CompressedIntSet.ARRAY_MAX) {
+                position = -position - 1;
+                if(cardinalities[index] == array.length) {
+                    array = Arrays.copyOf(array, Math.min(2 * array.length, CompressedIntSet.ARRAY_MAX));
+                    containers[index] = array;
+                }
+                System.arraycopy(array, position, array, position + 1, cardinalities[index] - position);
+                array[position] = low;
+                cardinalities[index]++;
+                return this;
+            }
+            toBitmap(index);
+        }
+        long[] bitmap = (long[]) containers[index];
+        long bit = 1L << low;
+        if((bitmap[low >>> 6] & bit) == 0) {
+            bitmap[low >>> 6] |= bit;
+            cardinalities[index]++;
+        }
+        return this;
+    }
+
+    /**
+     * Add all of the given values to the set.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public IntSetBuilder addAll(@Nonnull int[] values) {
+        for(int value : values) {
+            add(value);
+        }
+        return this;
+    }
+
+    /**
+     * Add all of the given values to the set.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public IntSetBuilder addAll(@Nonnull Iterable<Integer> values) {
+        for(Integer value : values) {
+            add(value);
+        }
+        return this;
+    }
+
+    /**
+     * Add all of the values from {@code from}, inclusive, to {@code to}, exclusive.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public IntSetBuilder addRange(int from, int to) {
+        Preconditions.checkArgument(from <= to, "Range is backwards: %s to %s", from, to);
+        long start = from;
+        while(start < to) {
+            //The end of this chunk of the range, exclusive.
+            long end = Math.min(to, ((start >> 16) + 1) << 16);
+            addChunkRange((int) start, (int) (end - start));
+            start = end;
+        }
+        return this;
+    }
+
+    /**
+     * Add the given number of values starting with the given value, all of which are in the same chunk.
+     */
+    private void addChunkRange(int start, int length) {
+        int index = container(CompressedIntSet.key(start));
+        int low = (char) start;
+        if(containers[index] instanceof char[]) {
+            if(cardinalities[index] + length <= CompressedIntSet.ARRAY_MAX) {
+                mergeRange(index, low, length);
+                return;
+            }
+            toBitmap(index);
+        }
+        long[] bitmap = (long[]) containers[index];
+        int first = low >>> 6;
+        int last = (low + length - 1) >>> 6;
+        int before = 0;
+        for(int word = first; word <= last; word++) {
+            before += Long.bitCount(bitmap[word]);
+        }
+        if(first == last) {
+            bitmap[first] |= (-1L >>> (64 - length)) << low;
+        } else {
+            bitmap[first] |= -1L << low;
+            Arrays.fill(bitmap, first + 1, last, -1L);
+            bitmap[last] |= -1L >>> (63 - ((low + length - 1) & 63));
+        }
+        int after = 0;
+        for(int word = first; word <= last; word++) {
+            after += Long.bitCount(bitmap[word]);
+        }
+        cardinalities[index] += after - before;
+    }
+
+    /**
+     * Merge the given range of lower bits into the array container at the given index, which has room for all of them.
+     */
+    private void mergeRange(int index, int low, int length) {
+        char[] array = (char[]) containers[index];
+        int size = cardinalities[index];
+        char[] merged = new char[Math.min(CompressedIntSet.ARRAY_MAX, Math.max(array.length, size + length))];
+        int from = Arrays.binarySearch(array, 0, size, (char) low);
+        from = from < 0 ? -from - 1 : from;
+        System.arraycopy(array, 0, merged, 0, from);
+        int position = from;
+        for(int i = 0; i < length; i++) {
+            merged[position++] = (char) (low + i);
+        }
+        //Skip the existing values inside the range.
+        int rest = from;
+        while(rest < size && array[rest] < low + length) {
+            rest++;
+        }
+        System.arraycopy(array, rest, merged, position, size - rest);
+        containers[index] = merged;
+        cardinalities[index] = position + size - rest;
+    }
+
+    /**
+     * Returns the index of the container with the given key, after inserting an empty array container if there isn't
+     * one.
+     */
+    private int container(char key) {
+        int index = Arrays.binarySearch(keys, 0, count, key);
+        if(index >= 0) {
+            return index;
+        }
+        index = -index - 1;
+        if(count == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * count);
+            containers = Arrays.copyOf(containers, 2 * count);
+            cardinalities = Arrays.copyOf(cardinalities, 2 * count);
+        }
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, count - index);
+        keys[index] = key;
+        containers[index] = new char[4];
+        cardinalities[index] = 0;
+        count++;
+        return index;
+    }
+
+    private void toBitmap(int index) {
+        char[] array = (char[]) containers[index];
+        long[] bitmap = new long[CompressedIntSet.BITMAP_WORDS];
+        for(int i = 0; i < cardinalities[index]; i++) {
+            bitmap[array[i] >>> 6] |= 1L << array[i];
+        }
+        containers[index] = bitmap;
+    }
+
+    /**
+     * Remove all of the values from this builder, so that it can be reused to build a different set.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public IntSetBuilder reset() {
+        Arrays.fill(containers, 0, count, null);
+        count = 0;
+        return this;
+    }
+
+    /**
+     * Build a new set of the values added so far.
+     */
+    @Nonnull
+    @Override
+    public CompressedIntSet get() {
+        if(count == 0) {
+            return CompressedIntSet.of();
+        }
+        char[] builtKeys = new char[count];
+        Object[] built = new Object[count];
+        int builtCount = 0;
+        for(int i = 0; i < count; i++) {
+            if(cardinalities[i] == 0) {
+                continue;
+            }
+            builtKeys[builtCount] = keys[i];
+            Object container = containers[i];
+            if(container instanceof char[]) {
+                built[builtCount] = Arrays.copyOf((char[]) container, cardinalities[i]);
+            } else if(cardinalities[i] <= CompressedIntSet.ARRAY_MAX) {
+                built[builtCount] = toArray((long[]) container, cardinalities[i]);
+            } else {
+                built[builtCount] = ((long[]) container).clone();
+            }
+            builtCount++;
+        }
+        return CompressedIntSet.wrap(builtKeys, built, builtCount);
+    }
+
+    @Nonnull
+    private static char[] toArray(@Nonnull long[] bitmap, int cardinality) {
+        char[] array = new char[cardinality];
+        int position = 0;
+        for(int word = 0; word < bitmap.length; word++) {
+            for(long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+                array[position++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+            }
+        }
+        return array;
+    }
+}
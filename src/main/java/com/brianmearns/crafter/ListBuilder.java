@@ -1,16 +1,28 @@
 package com.brianmearns.crafter;
 
+import com.brianmearns.crafter.collect.CompactLists;
+import com.brianmearns.crafter.collect.ImmutableArrayList;
+import com.brianmearns.crafter.collect.PersistentVector;
+import com.brianmearns.crafter.io.RecordFile;
+import com.brianmearns.crafter.io.ResultCodec;
+import com.brianmearns.crafter.io.SpillFile;
+import com.brianmearns.crafter.util.BoundedInterner;
+import com.brianmearns.crafter.util.BuilderPool;
+import com.brianmearns.crafter.util.IndexedSupplier;
+import com.brianmearns.crafter.util.ParallelSort;
+import com.brianmearns.crafter.util.SizeEstimator;
 import com.brianmearns.crafter.util.SupplierFunctions;
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -21,6 +33,11 @@ import java.util.*;
 @SuppressWarnings("unused")
 public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
 
+    /**
+     * The interner shared by all list builders in {@linkplain #interned() interned mode}.
+     */
+    private static final BoundedInterner<List<?>> INTERNER = new BoundedInterner<>();
+
     /**
      * Static factory method to create an instance.
      */
@@ -38,6 +55,75 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
         return new DefaultListBuilder<>();
     }
 
+    /**
+     * Static factory method to create an instance which presizes the lists it builds for the given number of elements.
+     * The builder keeps adapting its estimate to the sizes of the lists it actually builds.
+     *
+     * @param expectedSize The number of elements the built lists are expected to hold.
+     */
+    @Nonnull
+    public static <T> ListBuilder<T> create(int expectedSize) {
+        return new DefaultListBuilder<>(new SizeEstimator(expectedSize));
+    }
+
+    /**
+     * Static factory method to create an instance which presizes the lists it builds using the given estimator. Pass
+     * the same estimator to every builder created at a particular call site, so that they learn from each other how
+     * large their lists are.
+     *
+     * @param sizeEstimator The estimator shared by the builders.
+     */
+    @Nonnull
+    public static <T> ListBuilder<T> create(@Nonnull SizeEstimator sizeEstimator) {
+        return new DefaultListBuilder<>(sizeEstimator);
+    }
+
+    /**
+     * Create a new {@link BuilderPool} of list builders, which are {@linkplain #reset() reset} when they are released,
+     * and restored to the default output mode, so that a builder acquired from the pool is just like a new one. A
+     * builder which has been {@linkplain #consume() consumed} is dropped rather than pooled. The pool is meant to be
+     * created once and kept, e.g., in a static field. The builders in the pool share a {@link SizeEstimator}.
+     */
+    @Nonnull
+    public static <T> BuilderPool<ListBuilder<T>> pool() {
+        final SizeEstimator sizeEstimator = new SizeEstimator();
+        return new BuilderPool<ListBuilder<T>>() {
+            @Nonnull
+            @Override
+            protected ListBuilder<T> create() {
+                return ListBuilder.create(sizeEstimator);
+            }
+
+            @Override
+            protected boolean isReusable(@Nonnull ListBuilder<T> builder) {
+                return builder.getClass() == DefaultListBuilder.class && !((DefaultListBuilder<T>) builder).consumed;
+            }
+
+            @Override
+            protected void reset(@Nonnull ListBuilder<T> builder) {
+                ((DefaultListBuilder<T>) builder).restoreDefaults();
+            }
+        };
+    }
+
+    /**
+     * Returns the interner shared by all list builders in {@linkplain #interned() interned mode}, e.g., to check its
+     * hit rate.
+     */
+    @Nonnull
+    public static BoundedInterner<List<?>> interner() {
+        return INTERNER;
+    }
+
+    /**
+     * Returns the instance in the shared {@link #interner()} which is equal to the given list, or the list itself.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    protected static <T> List<T> intern(@Nonnull List<T> list) {
+        return (List<T>) INTERNER.intern(list);
+    }
+
     /**
      * Helper method for adding an element as a supplier of that element.
      * @param element Supplier of the element to add.
@@ -89,6 +175,29 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
     @Nonnull
     protected abstract ListBuilder<T> maybeAdd(@Nonnull Supplier<? extends T> element, boolean add);
 
+    /**
+     * Helper method for adding a constant element. By default, this adds a {@linkplain Suppliers#ofInstance(Object)
+     * supplier} of the element, but implementations may store constants more efficiently.
+     *
+     * @param element The element to add.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    protected ListBuilder<T> addConstant(@Nullable T element) {
+        return add(Suppliers.ofInstance(element));
+    }
+
+    /**
+     * Helper method for adding a {@link Segment} of elements, which is not read until the list is built.
+     *
+     * @param segment The segment to append to the list.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    protected abstract ListBuilder<T> addSegment(@Nonnull Segment<? extends T> segment);
+
     /**
      * Add all of the given elements, in order, to the list of values.
      *
@@ -102,7 +211,7 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
      */
     @Nonnull
     public ListBuilder<T> addAll(@Nonnull Iterable<? extends T> elements) {
-        return addSuppliers(Iterables.transform(elements, SupplierFunctions.<T>supplierOfInstanceFunction()));
+        return addAll(elements.iterator());
     }
 
     /**
@@ -138,7 +247,10 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
      */
     @Nonnull
     public ListBuilder<T> addAll(@Nonnull Iterator<? extends T> elements) {
-        return addSuppliers(Iterators.transform(elements, SupplierFunctions.<T>supplierOfInstanceFunction()));
+        while(elements.hasNext()) {
+            addConstant(elements.next());
+        }
+        return this;
     }
 
     /**
@@ -174,7 +286,10 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
      */
     @Nonnull
     public ListBuilder<T> addAll(@Nonnull T[] elements) {
-        return addSuppliers(Iterables.transform(Arrays.asList(elements), SupplierFunctions.<T>supplierOfInstanceFunction()));
+        for(T element : elements) {
+            addConstant(element);
+        }
+        return this;
     }
 
     /**
@@ -197,6 +312,86 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
         return addSuppliers(elements);
     }
 
+    /**
+     * Add all of the elements of the given {@link Iterable}, in order, as a single deferred segment of the list.
+     *
+     * <p>
+     * Unlike {@link #addAll(Iterable)}, the elements are not copied out of the source when this method is invoked.
+     * Instead, the source is recorded as is, and it is read each time {@link #get()} is invoked to build a list, so any
+     * changes made to it in the meantime are reflected in the built list. If the source is a {@link Collection}, its
+     * size is used to presize the built list and its elements are copied in bulk.
+     *
+     * @param elements An {@link Iterable} of the elements to add.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     *
+     * @see #addAllDeferred(Iterator)
+     * @see #addAllDeferred(Object[])
+     * @see #addAllDeferred(RecordFile)
+     */
+    @Nonnull
+    public ListBuilder<T> addAllDeferred(@Nonnull Iterable<? extends T> elements) {
+        return addSegment(new IterableSegment<>(elements));
+    }
+
+    /**
+     * Add all of the records of the given file, in order, as a single deferred segment of the list.
+     *
+     * <p>
+     * Nothing is read from the file when this method is invoked. Each time {@link #get()} is invoked to build a list,
+     * the records are decoded from the file in a single sequential pass. The built list is presized for the records if
+     * their number is already {@linkplain RecordFile#knownSize() known}.
+     *
+     * @param records The records to add.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     *
+     * @see #addAllDeferred(Iterable)
+     */
+    @Nonnull
+    public ListBuilder<T> addAllDeferred(@Nonnull RecordFile<? extends T> records) {
+        return addSegment(new RecordSegment<>(records));
+    }
+
+    /**
+     * Add all of the elements of the given {@link Iterator}, in order, as a single deferred segment of the list.
+     *
+     * <p>
+     * The iterator is not advanced until the first time {@link #get()} is invoked to build a list. At that point it is
+     * drained, and the elements it gave are retained for any subsequent calls to {@link #get()}, since an iterator can
+     * only be read once.
+     *
+     * @param elements An {@link Iterator} over the elements to add.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     *
+     * @see #addAllDeferred(Iterable)
+     * @see #addAllDeferred(Object[])
+     */
+    @Nonnull
+    public ListBuilder<T> addAllDeferred(@Nonnull Iterator<? extends T> elements) {
+        return addSegment(new IteratorSegment<>(elements));
+    }
+
+    /**
+     * Add all of the elements of the given array, in order, as a single deferred segment of the list.
+     *
+     * <p>
+     * The array is not copied when this method is invoked, it is copied in bulk into the built list each time
+     * {@link #get()} is invoked. Any changes made to the array in the meantime are reflected in the built list.
+     *
+     * @param elements An array of the elements to add.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     *
+     * @see #addAllDeferred(Iterable)
+     * @see #addAllDeferred(Iterator)
+     */
+    @Nonnull
+    public ListBuilder<T> addAllDeferred(@Nonnull T[] elements) {
+        return addSegment(new ArraySegment<>(elements));
+    }
+
     /**
      * Add the given item as the next element in the list.
      *
@@ -206,7 +401,7 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
      */
     @Nonnull
     public ListBuilder<T> add(@Nullable T element) {
-        return add(Suppliers.ofInstance(element));
+        return addConstant(element);
     }
 
     /**
@@ -223,6 +418,20 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
         return add((Supplier<? extends T>) elementBuilder);
     }
 
+    /**
+     * Add the given {@link IndexedSupplier} as a supplier for the next item in the list, whose value varies with the
+     * index of the list being built by {@link #buildMany(int)}. When a single list is built by {@link #get()}, the
+     * supplier is invoked with index {@code 0}.
+     *
+     * @param element Supplier for the element to put at the end of the current list of elements.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public ListBuilder<T> addIndexed(@Nonnull IndexedSupplier<? extends T> element) {
+        return add(SupplierFunctions.ofIndexed(element));
+    }
+
     /**
      * Adds the given element, if and only if the given boolean is {@code true}. Otherwise
      * has no effect on the state of the builder.
@@ -234,7 +443,7 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
      */
     @Nonnull
     public ListBuilder<T> maybeAdd(@Nullable T element, boolean add) {
-        return maybeAdd(Suppliers.ofInstance(element), add);
+        return add ? addConstant(element) : this;
     }
 
     /**
@@ -246,6 +455,184 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
     @Override
     public abstract List<T> get() throws IncompleteBuilderException;
 
+    /**
+     * Compile the current state of this builder into an immutable builder which builds the same lists as {@code this}
+     * builder currently does.
+     *
+     * <p>
+     * Runs of consecutive constant elements (i.e., those added as values rather than as builders) are evaluated once, into
+     * prefilled arrays which are copied in bulk into each list built by the returned builder. Each call to the returned
+     * builder's {@link BuilderInterface#get()} method therefore only has to invoke the element builders and read the
+     * deferred segments. Changes made to {@code this} builder after it is frozen do not affect the returned builder.
+     *
+     * @return An immutable builder of lists.
+     */
+    @Nonnull
+    public abstract BuilderInterface<List<T>> freeze();
+
+    /**
+     * Build a batch of lists at once, using the elements specified for this builder.
+     *
+     * <p>
+     * This is equivalent to invoking {@link #get()} {@code n} times, except that elements added with
+     * {@link #addIndexed(IndexedSupplier)} are supplied with the index of each list, and that the work which is the same
+     * for every list is only done once: the builder is {@linkplain #freeze() compiled} once, so constant elements are
+     * evaluated once and copied in bulk into each list, and only the element builders and deferred segments are
+     * evaluated for each list.
+     *
+     * @param n The number of lists to build.
+     *
+     * @return A list of the {@code n} built lists, in index order.
+     */
+    @Nonnull
+    public abstract List<List<T>> buildMany(int n) throws IncompleteBuilderException;
+
+    /**
+     * Switch this builder to immutable output, so that the lists built by {@link #get()} are unmodifiable.
+     *
+     * <p>
+     * Because an unmodifiable list can safely be shared, in this mode a builder whose elements are all constant (i.e.,
+     * added as values rather than as builders or deferred segments) only builds a list the first time {@link #get()}
+     * is invoked. The same instance is returned from subsequent calls, until the state of the builder is modified.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract ListBuilder<T> immutable();
+
+    /**
+     * Switch this builder to compact immutable output, in which each list is built with an unmodifiable implementation
+     * specialized for its size, to minimize its memory footprint: all empty lists are the same shared instance, lists
+     * of up to four elements hold them in fields, and larger lists are backed by an array of exactly their size. See
+     * {@link CompactLists}.
+     *
+     * <p>
+     * This implies {@linkplain #immutable() immutable mode}, so a list built from only constant elements is also
+     * reused until the builder is modified. {@link #getInto(List)} is not affected.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract ListBuilder<T> compact();
+
+    /**
+     * Switch this builder to interned immutable output, in which each built list is canonicalized through the
+     * {@linkplain #interner() interner} shared by all list builders, so that equal lists built at different times, or
+     * by different builders, are the same shared instance wherever possible. This is worthwhile when many equal lists
+     * are built and kept, and it is only safe if the elements are immutable themselves.
+     *
+     * <p>
+     * The interner is bounded and only holds its lists weakly, so it never keeps a list from being garbage collected.
+     * This implies {@linkplain #immutable() immutable mode}, and can be combined with {@linkplain #compact() compact
+     * mode}. {@link #getInto(List)} is not affected.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract ListBuilder<T> interned();
+
+    /**
+     * Switch this builder to spill constant elements off the heap once it holds more than the given number of them,
+     * for building very large lists without running out of heap.
+     *
+     * <p>
+     * Once the threshold is reached, each further constant element which can be {@linkplain ResultCodec encoded} (a
+     * string, a boxed primitive, or a list or map of them) is appended to a {@linkplain SpillFile memory-mapped
+     * temporary file} instead of being held by the builder, and runs of spilled elements are read back like
+     * {@linkplain #addAllDeferred(Iterable) deferred segments} when the list is built. Spilled lists and maps are
+     * read back as unmodifiable views of the file. Other elements, and element builders, are held as usual. If the
+     * file can't be created, elements are held as usual too.
+     *
+     * <p>
+     * Spilled elements are not constant in the sense of {@linkplain #immutable() immutable mode}, so a list with
+     * spilled elements is built anew each time.
+     *
+     * @param threshold The number of constant elements to hold on the heap before spilling.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract ListBuilder<T> spill(int threshold);
+
+    /**
+     * Switch this builder to build lists sorted by the given comparator, instead of in the order the elements were
+     * added. Equal elements keep the order in which they were added.
+     *
+     * <p>
+     * The elements are collected into an array, which is sorted in place, with a {@linkplain ParallelSort parallel
+     * sort} for large lists, and then becomes the list, as in {@link #consume()}. So a sorted list takes no more passes
+     * than an unsorted one, and unlike sorting the built list with {@link Collections#sort(List, Comparator)}, doesn't
+     * copy it to and from another array. {@link #getInto(List)} adds the elements to the given list in sorted order.
+     * This can be combined with any of the other output modes.
+     *
+     * @param comparator The order of the elements. Use {@link com.google.common.collect.Ordering#natural()} to sort
+     *                   them by their natural order.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract ListBuilder<T> sorted(@Nonnull Comparator<? super T> comparator);
+
+    /**
+     * Remove all of the elements from this builder, so that it can be reused to build a different list. The builder's
+     * configuration, such as {@linkplain #immutable() immutable mode}, is kept, and so is the storage it has allocated
+     * for elements, so refilling it with up to as many elements as before does not allocate any more storage.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     *
+     * @see #getInto(List)
+     */
+    @Nonnull
+    public abstract ListBuilder<T> reset();
+
+    /**
+     * Build a list using the elements specified for this builder, into the given list instead of a new one.
+     *
+     * <p>
+     * The given list is cleared, and then the elements are added to it, in order. This lets you recycle a list that
+     * was previously built and is no longer needed, which together with {@link #reset()} allows a builder to be used
+     * over and over without allocating new storage. Note that this never returns a shared list, even in
+     * {@linkplain #immutable() immutable mode}.
+     *
+     * @param target The list to fill. It must support {@link List#clear()}, {@link List#add(Object)} and
+     *               {@link List#addAll(Collection)}.
+     *
+     * @return The given list, for convenience.
+     */
+    @Nonnull
+    public abstract List<T> getInto(@Nonnull List<T> target) throws IncompleteBuilderException;
+
+    /**
+     * Build an unmodifiable list using the elements specified for this builder, and release the builder, for when
+     * it is only used once.
+     *
+     * <p>
+     * The elements are evaluated straight into an array which is handed over to the returned list, without being
+     * copied. The builder then drops its elements, including the builders of elements, so they can be garbage
+     * collected, and it can't be used anymore: invoking any method that reads or modifies its state, including
+     * {@link #get()}, throws an {@link IllegalStateException}.
+     *
+     * @return The built list of elements, which cannot be modified.
+     *
+     * @throws IllegalStateException If this builder was already consumed.
+     */
+    @Nonnull
+    public abstract List<T> consume() throws IncompleteBuilderException;
+
+    /**
+     * Create a new builder with the same state as {@code this} builder, in constant time.
+     *
+     * <p>
+     * This is useful for keeping a template builder, from which you fork a copy each time you want to add some
+     * elements for a particular list. The fork shares its storage with {@code this} builder, but elements added to
+     * either builder afterwards do not affect the other one. The fork also shares the {@link SizeEstimator} of
+     * {@code this} builder, so that all the lists built from the template are presized alike.
+     *
+     * @return A new, independent builder.
+     */
+    @Nonnull
+    public abstract ListBuilder<T> fork();
+
     /**
      * Adds the given element builder for the next item in the list, if and only if the
      * given boolean is {@code true}. Otherwise has no effect on the state of the builder.
@@ -260,6 +647,16 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
         return maybeAdd((Supplier<? extends T>) element, add);
     }
 
+    /**
+     * Returns the elements of this builder, in order, if they are all constant, for use as the key of a
+     * {@link BuildCache}. Returns {@code null} if there are any dynamic elements, or if the builder doesn't support this.
+     * The returned array must not be modified.
+     */
+    @Nullable
+    Object[] constantContents() {
+        return null;
+    }
+
     /**
      * Apply the given function to {@code this} object, and return {@code this} object again.
      *
@@ -301,77 +698,266 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
     @SuppressWarnings("unused")
     protected static class DefaultListBuilder<T> extends ListBuilder<T> {
 
+        /**
+         * The items that make up the list, in order. Each item is either a {@link Supplier} of a single element, a
+         * {@link Segment} of any number of elements, or a constant element value itself. A constant value which is
+         * itself a {@link Supplier} or a {@link Segment} is stored as a {@linkplain Suppliers#ofInstance(Object) supplier}
+         * of the value, so that it is not mistaken for one of the others.
+         */
         @Nonnull
-        private final List<Supplier<? extends T>> elements;
+        private PersistentVector<Object> elements;
 
-        {
-            //Linked list is good because we're mostly just appending to it, and then iterating through it.
-            // Linked lists are pretty good at both.
-            elements = new LinkedList<>();
-        }
+        /**
+         * The number of items in {@link #elements} which are segments.
+         */
+        private int segmentCount;
 
-        public DefaultListBuilder() {
+        /**
+         * The number of items in {@link #elements} which are not constant: segments, and suppliers other than
+         * those returned by {@link Suppliers#ofInstance(Object)}.
+         */
+        private int dynamicCount;
 
-        }
+        /**
+         * Incremented every time the state of this builder is modified.
+         */
+        private int modCount;
+
+        private boolean immutableOutput;
 
         /**
-         * Helper method to actually build the list returned by {@link #get()}.
-         *
-         * <p>
-         * This can be overridden if you need to create a different type of {@link List}. The
-         * default implementation produces an {@link ArrayList}.
-         *
-         * <p>
-         * Be careful how you implement this. The given {@link Supplier suppliers} should
-         * be {@linkplain Supplier#get() invoked} exactly once per call to this method, and
-         * they should be invoked from within this method. For instance, things like
-         * {@link Lists#transform(List, Function)} do "lazy" evaluation which invokes the
-         * supplier everytime the element is accessed in the returned list. This is <em>not</em>
-         * suitable for use with this method.
-         *
-         * @param suppliers An immutable list of the suppliers for the element values.
-         *
-         * @return A list that will be returned by this object's {@link #get()} method.
+         * Whether lists are built with {@link CompactLists}. This implies {@link #immutableOutput}.
          */
-        @Nonnull
-        protected List<T> get(@Nonnull ImmutableList<Supplier<? extends T>> suppliers) {
-            ArrayList<T> list = new ArrayList<>(suppliers.size());
-            for (Supplier<? extends T> supplier : suppliers) {
-                list.add(supplier.get());
-            }
-            return list;
-        }
+        private boolean compactOutput;
 
-        @Override
-        @Nonnull
-        protected ListBuilder<T> add(@Nonnull Supplier<? extends T> element) {
-            elements.add(element);
-            return this;
-        }
+        /**
+         * Whether lists are canonicalized through the {@linkplain #interner() interner}. This implies
+         * {@link #immutableOutput}.
+         */
+        private boolean internedOutput;
 
-        @Override
-        @Nonnull
-        protected ListBuilder<T> addSuppliers(@Nonnull Iterable<? extends Supplier<? extends T>> elements) {
-            Iterables.addAll(this.elements, elements);
-            return this;
-        }
+        /**
+         * Whether this builder has been {@linkplain #consume() consumed}, and so can't be used anymore.
+         */
+        private boolean consumed;
 
-        @Override
-        @Nonnull
-        protected ListBuilder<T> addSuppliers(@Nonnull Iterator<? extends Supplier<? extends T>> elements) {
-            while(elements.hasNext()) {
-                this.elements.add(elements.next());
-            }
-            return this;
-        }
+        /**
+         * The number of constant elements to hold before {@linkplain #spill(int) spilling}, or {@code -1} if spilling
+         * is off.
+         */
+        private int spillThreshold = -1;
 
-        @Override
-        @Nonnull
-        protected ListBuilder<T> addSuppliers(@Nonnull Supplier<? extends T>[] elements) {
-            return addSuppliers(Arrays.asList(elements));
-        }
+        /**
+         * The order the lists are {@linkplain #sorted(Comparator) sorted} in, or {@code null} if they aren't sorted.
+         */
+        @Nullable
+        private Comparator<? super T> sortOrder;
 
-        @Override
+        /**
+         * The number of constant elements held in {@link #elements}, as opposed to spilled.
+         */
+        private int heldConstants;
+
+        /**
+         * The file that elements are spilled to, which is created when the first one is spilled. Each builder has a
+         * file of its own, so that spilled elements can be appended to the last spilled segment.
+         */
+        @Nullable
+        private SpillFile spillFile;
+
+        /**
+         * Estimates the size of the lists that will be built, for presizing them when their size is not known up front.
+         */
+        @Nonnull
+        private final SizeEstimator sizeEstimator;
+
+        /**
+         * The last list built in immutable mode, if it can be reused. This is only valid if {@link #builtModCount}
+         * matches {@link #modCount}.
+         */
+        @Nullable
+        private List<T> builtList;
+
+        /**
+         * The value of {@link #modCount} when {@link #builtList} was built.
+         */
+        private int builtModCount;
+
+        /**
+         * The constant elements, once they have been collected for {@link #constantContents()}. This is only valid
+         * if {@link #contentsModCount} matches {@link #modCount}.
+         */
+        @Nullable
+        private Object[] contents;
+
+        /**
+         * The value of {@link #modCount} when {@link #contents} was collected.
+         */
+        private int contentsModCount;
+
+        public DefaultListBuilder() {
+            this(new SizeEstimator());
+        }
+
+        /**
+         * Create a new instance which presizes the lists it builds with the given estimator.
+         */
+        public DefaultListBuilder(@Nonnull SizeEstimator sizeEstimator) {
+            //A persistent vector is good because we're mostly just appending to it, and then iterating through it,
+            // and it lets us fork the builder without copying it. It grows a fixed-size node at a time and never
+            // copies its elements as it grows, so unlike the built list, it doesn't need to be presized.
+            elements = new PersistentVector<>();
+            this.sizeEstimator = sizeEstimator;
+        }
+
+        /**
+         * Create a new instance with the same state as the given builder, sharing its structure.
+         *
+         * @see #fork()
+         */
+        protected DefaultListBuilder(@Nonnull DefaultListBuilder<T> original) {
+            elements = original.elements.fork();
+            segmentCount = original.segmentCount;
+            dynamicCount = original.dynamicCount;
+            modCount = original.modCount;
+            immutableOutput = original.immutableOutput;
+            compactOutput = original.compactOutput;
+            internedOutput = original.internedOutput;
+            spillThreshold = original.spillThreshold;
+            sortOrder = original.sortOrder;
+            heldConstants = original.heldConstants;
+            sizeEstimator = original.sizeEstimator;
+            builtList = original.builtList;
+            builtModCount = original.builtModCount;
+        }
+
+        /**
+         * Helper method to create the list that {@link #get()} populates and returns.
+         *
+         * <p>
+         * This can be overridden if you need to create a different type of {@link List}. The
+         * default implementation produces an {@link ArrayList}. The returned list must support
+         * {@link List#add(Object)} and {@link List#addAll(Collection)}.
+         *
+         * @param size The number of elements that the list is expected to hold, as exactly as it is known.
+         *
+         * @return A new, empty list that will be populated and returned by this object's {@link #get()} method.
+         */
+        @Nonnull
+        protected List<T> createList(int size) {
+            return new ArrayList<>(size);
+        }
+
+        /**
+         * Append an item (either a supplier or a segment) to the end of the list, and keep track of the modification.
+         */
+        private void append(@Nullable Object item) {
+            checkNotConsumed();
+            elements.add(item);
+            if(item instanceof Segment) {
+                segmentCount++;
+                dynamicCount++;
+            } else if(item instanceof Supplier && !SupplierFunctions.isSupplierOfInstance((Supplier<?>) item)) {
+                dynamicCount++;
+            }
+            modCount++;
+        }
+
+        /**
+         * Constants are stored directly, without a supplier, unless they could be mistaken for a supplier or segment.
+         */
+        @Override
+        @Nonnull
+        protected ListBuilder<T> addConstant(@Nullable T element) {
+            if(spillThreshold >= 0 && heldConstants >= spillThreshold && spill(element)) {
+                return this;
+            }
+            if(element instanceof Supplier || element instanceof Segment) {
+                append(Suppliers.ofInstance(element));
+            } else {
+                append(element);
+            }
+            heldConstants++;
+            return this;
+        }
+
+        /**
+         * Append the given constant element to the {@link #spillFile}, and to the last item if it is the segment that
+         * ends there, or otherwise to a new segment.
+         *
+         * @return Whether the element was spilled, which it isn't if it can't be encoded or the file can't be created.
+         */
+        @SuppressWarnings("unchecked")
+        private boolean spill(@Nullable T element) {
+            checkNotConsumed();
+            if(!ResultCodec.isSupported(element)) {
+                return false;
+            }
+            if(spillFile == null) {
+                spillFile = new SpillFile();
+            }
+            int last = elements.size() - 1;
+            Object item = last < 0 ? null : elements.get(last);
+            boolean contiguous = item instanceof SpillSegment && ((SpillSegment<?>) item).endsAt(spillFile);
+            long address;
+            try {
+                address = spillFile.append(element);
+            } catch(IOException e) {
+                return false;
+            }
+            if(contiguous) {
+                //Replace the segment rather than modifying it, since it may be shared with a fork.
+                elements.set(last, ((SpillSegment<T>) item).extend());
+                modCount++;
+            } else {
+                append(new SpillSegment<T>(spillFile, address, 1));
+            }
+            return true;
+        }
+
+        /**
+         * Suppliers of constants are unwrapped and {@linkplain #addConstant(Object) added as constants}, so that they
+         * are stored directly and can be spilled.
+         */
+        @Override
+        @Nonnull
+        protected ListBuilder<T> add(@Nonnull Supplier<? extends T> element) {
+            if(SupplierFunctions.isSupplierOfInstance(element)) {
+                return addConstant(element.get());
+            }
+            append(element);
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected ListBuilder<T> addSuppliers(@Nonnull Iterable<? extends Supplier<? extends T>> elements) {
+            return addSuppliers(elements.iterator());
+        }
+
+        @Override
+        @Nonnull
+        protected ListBuilder<T> addSegment(@Nonnull Segment<? extends T> segment) {
+            append(segment);
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected ListBuilder<T> addSuppliers(@Nonnull Iterator<? extends Supplier<? extends T>> elements) {
+            while(elements.hasNext()) {
+                add(elements.next());
+            }
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected ListBuilder<T> addSuppliers(@Nonnull Supplier<? extends T>[] elements) {
+            return addSuppliers(Arrays.asList(elements));
+        }
+
+        @Override
         @Nonnull
         protected ListBuilder<T> maybeAdd(@Nonnull Supplier<? extends T> element, boolean add) {
             if(add) {
@@ -391,15 +977,306 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
          * Build a new list using the elements specified for this builder.
          *
          * <p>
-         * Note that this delegates to {@link #get(ImmutableList)}.
+         * Note that this delegates to {@link #createList(int)} to create the list, presized for all
+         * of the elements if the size of every deferred segment is known, and otherwise according to the
+         * sizes of the lists built previously. Each supplier is invoked exactly once, and each segment is
+         * read exactly once.
+         * </p>
+         *
+         * <p>
+         * In {@linkplain #immutable() immutable mode}, the list is wrapped as an unmodifiable list, and if all
+         * the elements are constant, it is retained and returned again by subsequent calls until this builder
+         * is modified. In {@linkplain #compact() compact mode}, the elements are collected into an array instead,
+         * and {@link #createList(int)} is not used. In {@linkplain #sorted(Comparator) sorted mode}, the elements are
+         * always collected into an array, to be sorted.
          * </p>
          *
          * @return The built list of elements.
          */
         @Nonnull
         @Override
+        @SuppressWarnings("unchecked")
         public List<T> get() throws IncompleteBuilderException {
-            return get(ImmutableList.copyOf(elements));
+            checkNotConsumed();
+            if(builtList != null && builtModCount == modCount) {
+                return builtList;
+            }
+            List<T> list;
+            if(compactOutput || sortOrder != null) {
+                ArrayCollector<T> collector = new ArrayCollector<>(sizeHint());
+                fill(collector);
+                list = wrap(collector);
+            } else {
+                list = createList(sizeHint());
+                fill(list);
+                if(immutableOutput) {
+                    list = Collections.unmodifiableList(list);
+                }
+            }
+            sizeEstimator.record(list.size());
+            if(internedOutput) {
+                list = intern(list);
+            }
+            if(immutableOutput) {
+                if(dynamicCount == 0) {
+                    builtList = list;
+                    builtModCount = modCount;
+                }
+            }
+            return list;
+        }
+
+        @Nonnull
+        @Override
+        public List<T> getInto(@Nonnull List<T> target) throws IncompleteBuilderException {
+            checkNotConsumed();
+            target.clear();
+            if(sortOrder != null) {
+                ArrayCollector<T> collector = new ArrayCollector<>(sizeHint());
+                fill(collector);
+                collector.sort(sortOrder);
+                target.addAll(collector);
+            } else {
+                if(target instanceof ArrayList) {
+                    ((ArrayList<T>) target).ensureCapacity(sizeHint());
+                }
+                fill(target);
+            }
+            sizeEstimator.record(target.size());
+            return target;
+        }
+
+        @Nonnull
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<T> consume() throws IncompleteBuilderException {
+            checkNotConsumed();
+            List<T> list;
+            if(builtList != null && builtModCount == modCount) {
+                list = builtList;
+            } else {
+                ArrayCollector<T> collector = new ArrayCollector<>(sizeHint());
+                fill(collector);
+                sizeEstimator.record(collector.size);
+                if(sortOrder != null) {
+                    collector.sort(sortOrder);
+                }
+                if(compactOutput) {
+                    list = CompactLists.wrap(collector.array, collector.size);
+                } else {
+                    list = ImmutableArrayList.wrap(collector.trimmedArray(), collector.size);
+                }
+                if(internedOutput) {
+                    list = intern(list);
+                }
+            }
+            //Let go of the items, rather than clearing them from the vector, which would keep its nodes.
+            consumed = true;
+            elements = new PersistentVector<>();
+            spillFile = null;
+            builtList = null;
+            modCount++;
+            return list;
+        }
+
+        /**
+         * Sorted builders have no constant contents, since the cache key would be the same as that of an unsorted
+         * builder with the same elements.
+         */
+        @Nullable
+        @Override
+        Object[] constantContents() {
+            checkNotConsumed();
+            if(dynamicCount > 0 || sortOrder != null) {
+                return null;
+            }
+            if(contents == null || contentsModCount != modCount) {
+                Object[] contents = new Object[elements.size()];
+                for(int i = 0; i < contents.length; i++) {
+                    Object item = elements.get(i);
+                    contents[i] = (item instanceof Supplier) ? ((Supplier<?>) item).get() : item;
+                }
+                this.contents = contents;
+                contentsModCount = modCount;
+            }
+            return contents;
+        }
+
+        private void checkNotConsumed() {
+            Preconditions.checkState(!consumed, "The builder has been consumed, and can't be used anymore.");
+        }
+
+        /**
+         * Evaluate each of the items, in order, and add the elements to the given collection.
+         */
+        @SuppressWarnings("unchecked")
+        private void fill(@Nonnull Collection<T> list) {
+            //Iterate by index to avoid allocating an iterator.
+            for(int i = 0, size = elements.size(); i < size; i++) {
+                Object item = elements.get(i);
+                if(item instanceof Segment) {
+                    ((Segment<? extends T>) item).appendTo(list);
+                } else if(item instanceof Supplier) {
+                    list.add(((Supplier<? extends T>) item).get());
+                } else {
+                    list.add((T) item);
+                }
+            }
+        }
+
+        /**
+         * Returns the number of elements the built list will hold, or if the size of any segment is not known, the
+         * larger of the number known and the {@linkplain SizeEstimator estimated} size.
+         */
+        private int sizeHint() {
+            int size = elements.size() - segmentCount;
+            boolean known = true;
+            if(segmentCount > 0) {
+                for(Object item : elements) {
+                    if(item instanceof Segment) {
+                        int segmentSize = ((Segment<?>) item).size();
+                        if(segmentSize < 0) {
+                            known = false;
+                        } else {
+                            size += segmentSize;
+                        }
+                    }
+                }
+            }
+            return known ? size : Math.max(size, sizeEstimator.estimate());
+        }
+
+        @Nonnull
+        @Override
+        public BuilderInterface<List<T>> freeze() {
+            checkNotConsumed();
+            return new FrozenListBuilder<>(this, elements);
+        }
+
+        @Nonnull
+        @Override
+        public List<List<T>> buildMany(int n) throws IncompleteBuilderException {
+            checkNotConsumed();
+            Preconditions.checkArgument(n >= 0, "Number of lists to build cannot be negative: %s", n);
+            FrozenListBuilder<T> plan = new FrozenListBuilder<>(this, elements);
+            List<List<T>> lists = new ArrayList<>(n);
+            for(int i = 0; i < n; i++) {
+                lists.add(plan.build(i));
+            }
+            return lists;
+        }
+
+        /**
+         * Returns a new {@link DefaultListBuilder}, created with the {@linkplain #DefaultListBuilder(DefaultListBuilder)
+         * copy constructor}. Subclasses should override this to return an instance of their own type.
+         */
+        @Nonnull
+        @Override
+        public ListBuilder<T> fork() {
+            checkNotConsumed();
+            return new DefaultListBuilder<>(this);
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> immutable() {
+            checkNotConsumed();
+            if(!immutableOutput) {
+                immutableOutput = true;
+                modCount++;
+            }
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> compact() {
+            checkNotConsumed();
+            if(!compactOutput) {
+                compactOutput = true;
+                immutableOutput = true;
+                modCount++;
+            }
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> interned() {
+            checkNotConsumed();
+            if(!internedOutput) {
+                internedOutput = true;
+                immutableOutput = true;
+                modCount++;
+            }
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> spill(int threshold) {
+            checkNotConsumed();
+            Preconditions.checkArgument(threshold >= 0, "Spill threshold cannot be negative: %s", threshold);
+            spillThreshold = threshold;
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> sorted(@Nonnull Comparator<? super T> comparator) {
+            checkNotConsumed();
+            Preconditions.checkNotNull(comparator, "comparator");
+            sortOrder = comparator;
+            modCount++;
+            return this;
+        }
+
+        /**
+         * Returns a list of the elements collected into the given array, sorted in sorted mode, for {@link #get()}: a
+         * {@linkplain CompactLists compact} list in compact mode, a list wrapping the array in immutable mode, and
+         * otherwise a list {@linkplain #createList(int) created} for the elements.
+         */
+        @Nonnull
+        private List<T> wrap(@Nonnull ArrayCollector<T> collector) {
+            if(sortOrder != null) {
+                collector.sort(sortOrder);
+            }
+            if(compactOutput) {
+                return CompactLists.wrap(collector.array, collector.size);
+            }
+            if(immutableOutput) {
+                return ImmutableArrayList.wrap(collector.trimmedArray(), collector.size);
+            }
+            List<T> list = createList(collector.size);
+            list.addAll(collector);
+            return list;
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> reset() {
+            checkNotConsumed();
+            elements.clear();
+            segmentCount = 0;
+            dynamicCount = 0;
+            heldConstants = 0;
+            //Spilled segments may still be read by forks or frozen builders, so leave the file to them.
+            spillFile = null;
+            builtList = null;
+            modCount++;
+            return this;
+        }
+
+        /**
+         * {@linkplain #reset() Reset} the builder, and also turn off all of the output modes, and spilling.
+         */
+        private void restoreDefaults() {
+            reset();
+            immutableOutput = false;
+            compactOutput = false;
+            internedOutput = false;
+            sortOrder = null;
+            spillThreshold = -1;
         }
 
         /**
@@ -430,6 +1307,88 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
             return this;
         }
 
+        /**
+         * A collection which adds elements to the end of an array, growing it as needed, for {@link #consume()}.
+         */
+        private static class ArrayCollector<T> extends AbstractCollection<T> {
+
+            @Nonnull
+            private Object[] array;
+
+            private int size;
+
+            private ArrayCollector(int capacity) {
+                array = new Object[capacity];
+            }
+
+            private void ensureCapacity(int capacity) {
+                if(capacity > array.length) {
+                    array = Arrays.copyOf(array, Math.max(capacity, array.length + (array.length >> 1) + 1));
+                }
+            }
+
+            @Override
+            public boolean add(@Nullable T element) {
+                ensureCapacity(size + 1);
+                array[size++] = element;
+                return true;
+            }
+
+            @Override
+            public boolean addAll(@Nonnull Collection<? extends T> elements) {
+                Object[] source = elements.toArray();
+                addArray(source);
+                return source.length > 0;
+            }
+
+            /**
+             * Append all of the elements of the given array, which is not retained.
+             */
+            private void addArray(@Nonnull Object[] elements) {
+                ensureCapacity(size + elements.length);
+                System.arraycopy(elements, 0, array, size, elements.length);
+                size += elements.length;
+            }
+
+            /**
+             * Sort the elements collected so far.
+             */
+            @SuppressWarnings("unchecked")
+            private void sort(@Nonnull Comparator<? super T> comparator) {
+                ParallelSort.sort((T[]) array, 0, size, comparator);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Nonnull
+            @Override
+            public Object[] toArray() {
+                return Arrays.copyOf(array, size);
+            }
+
+            /**
+             * Returns an array of exactly the elements collected so far: the collector's own array if it is full, or
+             * else a trimmed copy, so that a list wrapping it doesn't hold on to the spare capacity.
+             */
+            @Nonnull
+            private Object[] trimmedArray() {
+                return array.length == size ? array : Arrays.copyOf(array, size);
+            }
+
+            /**
+             * Returns a read-only iterator over the elements collected so far.
+             */
+            @Nonnull
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<T> iterator() {
+                return Iterators.limit(Iterators.forArray((T[]) array), size);
+            }
+        }
+
     }
 
     /**
@@ -478,6 +1437,18 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
             return this;
         }
 
+        @Override
+        @Nonnull
+        protected ListBuilder<T> addConstant(@Nullable T element) {
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected ListBuilder<T> addSegment(@Nonnull Segment<? extends T> segment) {
+            return this;
+        }
+
         /**
          * Note that the never build <em>does not</em> invoke the given function at all, it simply returns itself, as usual.
          */
@@ -520,6 +1491,461 @@ public abstract class ListBuilder<T> implements BuilderInterface<List<T>> {
         public List<T> get() throws IncompleteBuilderException {
             return alwaysBuilder.get();
         }
+
+        /**
+         * Delegates to the originating (non-conditional) list builder.
+         */
+        @Nonnull
+        @Override
+        public BuilderInterface<List<T>> freeze() {
+            return alwaysBuilder.freeze();
+        }
+
+        /**
+         * Delegates to the originating (non-conditional) list builder.
+         */
+        @Nonnull
+        @Override
+        public List<List<T>> buildMany(int n) throws IncompleteBuilderException {
+            return alwaysBuilder.buildMany(n);
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> immutable() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> compact() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> interned() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> spill(int threshold) {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> sorted(@Nonnull Comparator<? super T> comparator) {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public ListBuilder<T> reset() {
+            return this;
+        }
+
+        /**
+         * Delegates to the originating (non-conditional) list builder.
+         */
+        @Nonnull
+        @Override
+        public List<T> getInto(@Nonnull List<T> target) throws IncompleteBuilderException {
+            return alwaysBuilder.getInto(target);
+        }
+
+        /**
+         * Delegates to the originating (non-conditional) list builder.
+         */
+        @Nonnull
+        @Override
+        public List<T> consume() throws IncompleteBuilderException {
+            return alwaysBuilder.consume();
+        }
+
+        @Nullable
+        @Override
+        Object[] constantContents() {
+            return alwaysBuilder.constantContents();
+        }
+
+        /**
+         * Forks the originating (non-conditional) list builder.
+         */
+        @Nonnull
+        @Override
+        public ListBuilder<T> fork() {
+            return alwaysBuilder.fork();
+        }
+    }
+
+    /**
+     * The immutable builder returned by {@link #freeze()}.
+     *
+     * <p>
+     * The builder's items are compiled into a plan of parts, each of which is either an array of constant element
+     * values, a {@link Supplier} of a single dynamic element (which may also be an {@link IndexedSupplier}), or a
+     * {@link Segment}.
+     */
+    protected static class FrozenListBuilder<T> implements BuilderInterface<List<T>> {
+
+        /**
+         * The builder that was frozen, used only to {@linkplain DefaultListBuilder#createList(int) create} the lists
+         * if it is a subclass, which may override that. A plain {@link DefaultListBuilder} isn't kept, since it would
+         * only create {@link ArrayList ArrayLists}.
+         */
+        @Nullable
+        private final DefaultListBuilder<T> listFactory;
+
+        @Nonnull
+        private final Object[] parts;
+
+        /**
+         * The total number of elements in constant runs and dynamic suppliers, i.e., not counting segments.
+         */
+        private final int fixedSize;
+
+        private final boolean hasSegments;
+
+        private final boolean immutableOutput;
+
+        private final boolean compactOutput;
+
+        private final boolean internedOutput;
+
+        @Nullable
+        private final Comparator<? super T> sortOrder;
+
+        @Nonnull
+        private final SizeEstimator sizeEstimator;
+
+        /**
+         * In immutable mode, the list built from a plan with only constant parts, which is built when the builder is
+         * frozen and shared by every build.
+         */
+        @Nullable
+        private final List<T> constantList;
+
+        protected FrozenListBuilder(@Nonnull DefaultListBuilder<T> source, @Nonnull Collection<?> items) {
+            this.listFactory = source.getClass() == DefaultListBuilder.class ? null : source;
+            this.immutableOutput = source.immutableOutput;
+            this.compactOutput = source.compactOutput;
+            this.internedOutput = source.internedOutput;
+            this.sortOrder = source.sortOrder;
+            this.sizeEstimator = source.sizeEstimator;
+            List<Object> parts = new ArrayList<>();
+            List<Object> run = new ArrayList<>();
+            int fixedSize = 0;
+            boolean hasSegments = false;
+            boolean constant = true;
+            for(Object item : items) {
+                if(item instanceof Segment) {
+                    hasSegments = true;
+                } else {
+                    fixedSize++;
+                    if(!(item instanceof Supplier)) {
+                        run.add(item);
+                        continue;
+                    } else if(SupplierFunctions.isSupplierOfInstance((Supplier<?>) item)) {
+                        run.add(((Supplier<?>) item).get());
+                        continue;
+                    }
+                }
+                if(!run.isEmpty()) {
+                    parts.add(run.toArray());
+                    run.clear();
+                }
+                parts.add(item);
+                constant = false;
+            }
+            if(!run.isEmpty()) {
+                parts.add(run.toArray());
+            }
+            this.parts = parts.toArray();
+            this.fixedSize = fixedSize;
+            this.hasSegments = hasSegments;
+            this.constantList = immutableOutput && constant ? assemble(0) : null;
+        }
+
+        @Nonnull
+        @Override
+        public List<T> get() throws IncompleteBuilderException {
+            return build(0);
+        }
+
+        /**
+         * Build the list at the given index of a batch, supplying that index to each {@link IndexedSupplier}.
+         */
+        @Nonnull
+        protected List<T> build(int index) throws IncompleteBuilderException {
+            if(constantList != null) {
+                return constantList;
+            }
+            return assemble(index);
+        }
+
+        /**
+         * Build a new list from the parts, without regard to the {@link #constantList}.
+         */
+        @Nonnull
+        @SuppressWarnings("unchecked")
+        private List<T> assemble(int index) throws IncompleteBuilderException {
+            DefaultListBuilder.ArrayCollector<T> collector = null;
+            Collection<T> target;
+            if(compactOutput || sortOrder != null) {
+                target = collector = new DefaultListBuilder.ArrayCollector<>(sizeHint());
+            } else {
+                target = createList(sizeHint());
+            }
+            for(Object part : parts) {
+                if(part instanceof Object[]) {
+                    if(collector != null) {
+                        collector.addArray((Object[]) part);
+                    } else {
+                        for(Object element : (Object[]) part) {
+                            target.add((T) element);
+                        }
+                    }
+                } else if(part instanceof Segment) {
+                    ((Segment<? extends T>) part).appendTo(target);
+                } else if(part instanceof IndexedSupplier) {
+                    target.add(((IndexedSupplier<? extends T>) part).get(index));
+                } else {
+                    target.add(((Supplier<? extends T>) part).get());
+                }
+            }
+            if(hasSegments) {
+                sizeEstimator.record(target.size());
+            }
+            List<T> list;
+            if(collector != null) {
+                if(sortOrder != null) {
+                    collector.sort(sortOrder);
+                }
+                if(compactOutput) {
+                    list = CompactLists.wrap(collector.array, collector.size);
+                } else if(immutableOutput) {
+                    list = ImmutableArrayList.wrap(collector.trimmedArray(), collector.size);
+                } else {
+                    list = createList(collector.size);
+                    list.addAll(collector);
+                }
+            } else if(immutableOutput) {
+                list = Collections.unmodifiableList((List<T>) target);
+            } else {
+                list = (List<T>) target;
+            }
+            if(internedOutput) {
+                list = intern(list);
+            }
+            return list;
+        }
+
+        @Nonnull
+        private List<T> createList(int size) {
+            return listFactory != null ? listFactory.createList(size) : new ArrayList<T>(size);
+        }
+
+        private int sizeHint() {
+            if(!hasSegments) {
+                return fixedSize;
+            }
+            int size = fixedSize;
+            boolean known = true;
+            for(Object part : parts) {
+                if(part instanceof Segment) {
+                    int segmentSize = ((Segment<?>) part).size();
+                    if(segmentSize < 0) {
+                        known = false;
+                    } else {
+                        size += segmentSize;
+                    }
+                }
+            }
+            return known ? size : Math.max(size, sizeEstimator.estimate());
+        }
+    }
+
+    /**
+     * A run of elements in a list builder which is read from its source only when the list is built.
+     *
+     * @see #addAllDeferred(Iterable)
+     */
+    protected static abstract class Segment<T> {
+
+        /**
+         * Returns the number of elements that will be read from this segment, or {@code -1} if it is not known
+         * until the segment is read.
+         */
+        protected abstract int size();
+
+        /**
+         * Read the elements of this segment, in order, and add them to the end of the given list.
+         */
+        protected abstract void appendTo(@Nonnull Collection<? super T> target);
+    }
+
+    /**
+     * A {@link Segment} backed by an {@link Iterable}, which is iterated each time it is read. {@link Collection Collections}
+     * are added in bulk.
+     */
+    protected static class IterableSegment<T> extends Segment<T> {
+
+        @Nonnull
+        private final Iterable<? extends T> source;
+
+        protected IterableSegment(@Nonnull Iterable<? extends T> source) {
+            this.source = source;
+        }
+
+        @Override
+        protected int size() {
+            if(source instanceof Collection) {
+                return ((Collection<?>) source).size();
+            }
+            return -1;
+        }
+
+        @Override
+        protected void appendTo(@Nonnull Collection<? super T> target) {
+            if(source instanceof Collection) {
+                target.addAll((Collection<? extends T>) source);
+            } else {
+                Iterables.addAll(target, source);
+            }
+        }
+    }
+
+    /**
+     * A {@link Segment} backed by an array, which is copied in bulk each time it is read.
+     */
+    protected static class ArraySegment<T> extends Segment<T> {
+
+        @Nonnull
+        private final T[] source;
+
+        protected ArraySegment(@Nonnull T[] source) {
+            this.source = source;
+        }
+
+        @Override
+        protected int size() {
+            return source.length;
+        }
+
+        @Override
+        protected void appendTo(@Nonnull Collection<? super T> target) {
+            target.addAll(Arrays.asList(source));
+        }
+    }
+
+    /**
+     * A {@link Segment} backed by a {@link RecordFile}, which is decoded sequentially each time it is read.
+     */
+    protected static class RecordSegment<T> extends Segment<T> {
+
+        @Nonnull
+        private final RecordFile<? extends T> source;
+
+        protected RecordSegment(@Nonnull RecordFile<? extends T> source) {
+            this.source = source;
+        }
+
+        @Override
+        protected int size() {
+            return source.knownSize();
+        }
+
+        @Override
+        protected void appendTo(@Nonnull Collection<? super T> target) {
+            //Iterate rather than adding in bulk, which would index the whole file first.
+            for(T element : source) {
+                target.add(element);
+            }
+        }
+    }
+
+    /**
+     * A {@link Segment} of consecutive elements {@linkplain #spill(int) spilled} to a {@link SpillFile}, which are
+     * decoded from the file each time it is read.
+     */
+    protected static class SpillSegment<T> extends Segment<T> {
+
+        @Nonnull
+        private final SpillFile file;
+
+        private final long address;
+
+        private final int count;
+
+        /**
+         * The address just past the last element, at the time it was spilled.
+         */
+        private final long end;
+
+        protected SpillSegment(@Nonnull SpillFile file, long address, int count) {
+            this.file = file;
+            this.address = address;
+            this.count = count;
+            this.end = file.end();
+        }
+
+        /**
+         * Returns whether the next element appended to the given file will immediately follow this segment.
+         */
+        protected boolean endsAt(@Nonnull SpillFile file) {
+            return file == this.file && file.end() == end;
+        }
+
+        /**
+         * Returns a new segment which also includes the element appended to the file just after this one.
+         */
+        @Nonnull
+        protected SpillSegment<T> extend() {
+            return new SpillSegment<>(file, address, count + 1);
+        }
+
+        @Override
+        protected int size() {
+            return count;
+        }
+
+        @Override
+        protected void appendTo(@Nonnull Collection<? super T> target) {
+            file.<T>read(address, count, target);
+        }
+    }
+
+    /**
+     * A {@link Segment} backed by an {@link Iterator}, which is drained the first time it is read. The drained
+     * elements are retained for subsequent reads.
+     */
+    protected static class IteratorSegment<T> extends Segment<T> {
+
+        @Nullable
+        private Iterator<? extends T> source;
+
+        @Nullable
+        private List<T> drained;
+
+        protected IteratorSegment(@Nonnull Iterator<? extends T> source) {
+            this.source = source;
+        }
+
+        @Override
+        protected int size() {
+            return drained == null ? -1 : drained.size();
+        }
+
+        @Override
+        protected void appendTo(@Nonnull Collection<? super T> target) {
+            if(drained == null) {
+                drained = Lists.newArrayList(source);
+                source = null;
+            }
+            target.addAll(drained);
+        }
     }
 
 }
@@ -1,13 +1,25 @@
 package com.brianmearns.crafter;
 
+import com.brianmearns.crafter.collect.CompactMaps;
+import com.brianmearns.crafter.collect.MapShape;
+import com.brianmearns.crafter.collect.PersistentHashMap;
+import com.brianmearns.crafter.collect.PersistentVector;
+import com.brianmearns.crafter.util.BoundedInterner;
+import com.brianmearns.crafter.util.BuilderPool;
+import com.brianmearns.crafter.util.IndexedSupplier;
+import com.brianmearns.crafter.util.SizeEstimator;
+import com.brianmearns.crafter.util.SupplierFunctions;
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -16,7 +28,8 @@ import java.util.Map;
  *
  * <p>
  * Map elements are {@linkplain #put(Object, Object) put} into the builder as a key and its value. Putting the same
- * key again will effectively replace previous value associated with that key.
+ * key again will effectively replace previous value associated with that key. If the replaced value was given as a
+ * builder, that builder will not be invoked.
  * </p>
  *
  * @author Brian Mearns <bmearns@ieee.org>
@@ -24,6 +37,11 @@ import java.util.Map;
 @SuppressWarnings("unused")
 public abstract class MapBuilder<K, V> implements BuilderInterface<Map<K,V>> {
 
+    /**
+     * The interner shared by all map builders in {@linkplain #interned() interned mode}.
+     */
+    private static final BoundedInterner<Map<?, ?>> INTERNER = new BoundedInterner<>();
+
     /**
      * Create a new builder instance which will build {@link Map Map<K,V>} instances.
      *
@@ -59,6 +77,89 @@ public abstract class MapBuilder<K, V> implements BuilderInterface<Map<K,V>> {
         return new DefaultMapBuilder<>();
     }
 
+    /**
+     * Create a new builder instance which presizes the maps it builds for the given number of entries. The builder
+     * keeps adapting its estimate to the sizes of the maps it actually builds.
+     *
+     * <p>
+     * The number of entries put in the builder is always known when a map is built, so this only makes a difference
+     * for mutable maps that are expected to have more entries put in them after they are built.
+     *
+     * @param expectedSize The number of entries the built maps are expected to hold.
+     *
+     * @param <K> The type for the keys that will be put into the built maps.
+     * @param <V> The type for the value that will be put into the built maps.
+     *
+     * @return The newly constructed {@link MapBuilder}.
+     */
+    @Nonnull
+    public static <K,V> MapBuilder<K,V> create(int expectedSize) {
+        return new DefaultMapBuilder<>(new SizeEstimator(expectedSize));
+    }
+
+    /**
+     * Create a new builder instance which presizes the maps it builds using the given estimator. Pass the same
+     * estimator to every builder created at a particular call site, so that they learn from each other how large
+     * their maps are.
+     *
+     * @param sizeEstimator The estimator shared by the builders.
+     *
+     * @param <K> The type for the keys that will be put into the built maps.
+     * @param <V> The type for the value that will be put into the built maps.
+     *
+     * @return The newly constructed {@link MapBuilder}.
+     */
+    @Nonnull
+    public static <K,V> MapBuilder<K,V> create(@Nonnull SizeEstimator sizeEstimator) {
+        return new DefaultMapBuilder<>(sizeEstimator);
+    }
+
+    /**
+     * Create a new {@link BuilderPool} of map builders, which are {@linkplain #reset() reset} when they are released,
+     * and restored to the default output mode, so that a builder acquired from the pool is just like a new one. The
+     * pool is meant to be created once and kept, e.g., in a static field. The builders in the pool share a
+     * {@link SizeEstimator}.
+     */
+    @Nonnull
+    public static <K,V> BuilderPool<MapBuilder<K,V>> pool() {
+        final SizeEstimator sizeEstimator = new SizeEstimator();
+        return new BuilderPool<MapBuilder<K,V>>() {
+            @Nonnull
+            @Override
+            protected MapBuilder<K,V> create() {
+                return MapBuilder.create(sizeEstimator);
+            }
+
+            @Override
+            protected boolean isReusable(@Nonnull MapBuilder<K,V> builder) {
+                return builder.getClass() == DefaultMapBuilder.class;
+            }
+
+            @Override
+            protected void reset(@Nonnull MapBuilder<K,V> builder) {
+                ((DefaultMapBuilder<K,V>) builder).restoreDefaults();
+            }
+        };
+    }
+
+    /**
+     * Returns the interner shared by all map builders in {@linkplain #interned() interned mode}, e.g., to check its
+     * hit rate.
+     */
+    @Nonnull
+    public static BoundedInterner<Map<?, ?>> interner() {
+        return INTERNER;
+    }
+
+    /**
+     * Returns the instance in the shared {@link #interner()} which is equal to the given map, or the map itself.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    protected static <K, V> Map<K, V> intern(@Nonnull Map<K, V> map) {
+        return (Map<K, V>) INTERNER.intern(map);
+    }
+
     /**
      * This is the implementation specific method for putting a value in the map.
      *
@@ -97,6 +198,21 @@ public abstract class MapBuilder<K, V> implements BuilderInterface<Map<K,V>> {
         return this;
     }
 
+    /**
+     * Put a value in the builder's map, represented by an {@link IndexedSupplier} whose value varies with the index
+     * of the map being built by {@link #buildMany(int)}. When a single map is built by {@link #get()}, the supplier
+     * is invoked with index {@code 0}.
+     *
+     * @param key The key at which to put the {@code value}.
+     * @param value Supplier of the value to put at the given {@code key}.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     */
+    public MapBuilder<K,V> putIndexed(@Nullable K key, @Nonnull IndexedSupplier<? extends V> value) {
+        putSupplier(key, SupplierFunctions.ofIndexed(value));
+        return this;
+    }
+
     /**
      * Place the given key-value pair in the builder, if and only if the
      * given boolean is {@code true}. Otherwise has no effect on the state of the builder.
@@ -151,6 +267,155 @@ public abstract class MapBuilder<K, V> implements BuilderInterface<Map<K,V>> {
     @Nonnull
     public abstract Map<K, V> get() throws IncompleteBuilderException;
 
+    /**
+     * Compile the current state of this builder into an immutable builder which builds the same maps as {@code this}
+     * builder currently does.
+     *
+     * <p>
+     * Constant values (i.e., those put as values rather than as builders) are evaluated once, into a prefilled array of
+     * values that is copied for each map built by the returned builder, so each call to the returned builder's
+     * {@link BuilderInterface#get()} method only has to invoke the value builders. Keys that were put more than once are
+     * folded into a single entry with the last value put, so the value builders that were replaced are never invoked.
+     * Changes made to {@code this} builder after it is frozen do not affect the returned builder.
+     *
+     * @return An immutable builder of maps.
+     */
+    @Nonnull
+    public abstract BuilderInterface<Map<K, V>> freeze();
+
+    /**
+     * Build a batch of maps at once, using the entries specified for this builder.
+     *
+     * <p>
+     * This is equivalent to invoking {@link #get()} {@code n} times, except that values put with
+     * {@link #putIndexed(Object, IndexedSupplier)} are supplied with the index of each map, and that the work which is
+     * the same for every map is only done once: the builder is {@linkplain #freeze() compiled} once, so constant values
+     * are evaluated once and the keys are collected and sized once, and only the value builders are evaluated for
+     * each map.
+     *
+     * @param n The number of maps to build.
+     *
+     * @return A list of the {@code n} built maps, in index order.
+     */
+    @Nonnull
+    public abstract List<Map<K, V>> buildMany(int n) throws IncompleteBuilderException;
+
+    /**
+     * Switch this builder to immutable output, so that the maps built by {@link #get()} are unmodifiable.
+     *
+     * <p>
+     * Because an unmodifiable map can safely be shared, in this mode a builder whose values are all constant (i.e.,
+     * put as values rather than as builders) only builds a map the first time {@link #get()} is invoked. The same
+     * instance is returned from subsequent calls, until the state of the builder is modified.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract MapBuilder<K, V> immutable();
+
+    /**
+     * Switch this builder to compact immutable output, in which each map is built with an unmodifiable implementation
+     * specialized for its size, to minimize its memory footprint: all empty maps are the same shared instance, maps of
+     * up to four entries hold them in fields, and larger maps hold their keys and values in a single linear-probe
+     * array. See {@link CompactMaps}.
+     *
+     * <p>
+     * This implies {@linkplain #immutable() immutable mode}, so a map built from only constant values is also reused
+     * until the builder is modified. It replaces {@linkplain #shaped() shaped mode}. {@link #getInto(Map)} is not
+     * affected.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract MapBuilder<K, V> compact();
+
+    /**
+     * Switch this builder to shaped immutable output, for building many maps with the same keys.
+     *
+     * <p>
+     * In this mode, the keys of the builder, in the order they were first put, are interned as a {@link MapShape},
+     * which is shared by every map built with the same sequence of keys, by this builder or any other. The shape
+     * holds the only copy of the keys and their hash table, and each built map only holds an array of its values.
+     * Lookups use a perfect hash of the keys, wherever one can be found, and the maps iterate in key order.
+     *
+     * <p>
+     * The shape is kept by the builder until a new key is put, so it is shared by builders {@linkplain #fork() forked}
+     * from a template without being interned again. This implies {@linkplain #immutable() immutable mode}, and it
+     * replaces {@linkplain #compact() compact mode}. {@link #getInto(Map)} is not affected.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract MapBuilder<K, V> shaped();
+
+    /**
+     * Switch this builder to interned immutable output, in which each built map is canonicalized through the
+     * {@linkplain #interner() interner} shared by all map builders, so that equal maps built at different times, or
+     * by different builders, are the same shared instance wherever possible. This is worthwhile when many equal maps
+     * are built and kept, and it is only safe if the keys and values are immutable themselves.
+     *
+     * <p>
+     * The interner is bounded and only holds its maps weakly, so it never keeps a map from being garbage collected.
+     * This implies {@linkplain #immutable() immutable mode}, and can be combined with {@linkplain #compact() compact}
+     * or {@linkplain #shaped() shaped} mode. {@link #getInto(Map)} is not affected.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract MapBuilder<K, V> interned();
+
+    /**
+     * Remove all of the entries from this builder, so that it can be reused to build a different map. The builder's
+     * configuration, such as {@linkplain #immutable() immutable mode}, is kept, and so is the storage it has allocated
+     * for entries, as far as possible.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     *
+     * @see #getInto(Map)
+     */
+    @Nonnull
+    public abstract MapBuilder<K, V> reset();
+
+    /**
+     * Build a map using the entries specified for this builder, into the given map instead of a new one.
+     *
+     * <p>
+     * The given map is cleared, and then the entries are put in it. This lets you recycle a map that was previously
+     * built and is no longer needed, which together with {@link #reset()} allows a builder to be used over and over
+     * without allocating new maps. Note that this never returns a shared map, even in {@linkplain #immutable() immutable
+     * mode}.
+     *
+     * @param target The map to fill. It must support {@link Map#clear()} and {@link Map#put(Object, Object)}.
+     *
+     * @return The given map, for convenience.
+     */
+    @Nonnull
+    public abstract Map<K, V> getInto(@Nonnull Map<K, V> target) throws IncompleteBuilderException;
+
+    /**
+     * Create a new builder with the same state as {@code this} builder, in constant time.
+     *
+     * <p>
+     * This is useful for keeping a template builder, from which you fork a copy each time you want to put or override
+     * some entries for a particular map. The fork shares its storage with {@code this} builder, but entries put in
+     * either builder afterwards do not affect the other one. The fork also shares the {@link SizeEstimator} of
+     * {@code this} builder.
+     *
+     * @return A new, independent builder.
+     */
+    @Nonnull
+    public abstract MapBuilder<K, V> fork();
+
+
+    /**
+     * Returns the keys and values of this builder, alternating, in the order the keys were first put, if the values
+     * are all constant, for use as the key of a {@link BuildCache}. Returns {@code null} if there are any dynamic
+     * values, or if the builder doesn't support this. The returned array must not be modified.
+     */
+    @Nullable
+    Object[] constantContents() {
+        return null;
+    }
 
     @Nonnull
     public abstract MapBuilder<K, V> maybe(boolean yes);
@@ -162,17 +427,300 @@ public abstract class MapBuilder<K, V> implements BuilderInterface<Map<K,V>> {
     public abstract MapBuilder<K, V> always();
 
     protected static class DefaultMapBuilder<K, V> extends MapBuilder<K, V> {
+
+        /**
+         * The entries of the map, one per key, in the order in which the keys were first put.
+         */
+        @Nonnull
+        private final PersistentVector<Entry<K,V>> entries;
+
+        /**
+         * The position of each key's entry in {@link #entries}.
+         */
         @Nonnull
-        private List<Entry<K,V>> entries;
+        private final PersistentHashMap<K, Integer> positions;
+
+        /**
+         * The number of entries whose value supplier is not one returned by {@link Suppliers#ofInstance(Object)}.
+         */
+        private int dynamicCount;
+
+        /**
+         * Incremented every time the state of this builder is modified.
+         */
+        private int modCount;
+
+        private boolean immutableOutput;
+
+        /**
+         * Whether maps are built with {@link CompactMaps}. This implies {@link #immutableOutput}.
+         */
+        private boolean compactOutput;
+
+        /**
+         * Whether maps are built with a {@link MapShape}. This implies {@link #immutableOutput}.
+         */
+        private boolean shapedOutput;
+
+        /**
+         * Whether maps are canonicalized through the {@linkplain #interner() interner}. This implies
+         * {@link #immutableOutput}.
+         */
+        private boolean internedOutput;
+
+        /**
+         * The shape of the current keys, in shaped mode, once it has been interned. It is discarded when a new key is put.
+         */
+        @Nullable
+        private MapShape shape;
+
+        /**
+         * Estimates the size of the maps that will be built, for presizing mutable maps.
+         */
+        @Nonnull
+        private final SizeEstimator sizeEstimator;
+
+        /**
+         * The last map built in immutable mode, if it can be reused. This is only valid if {@link #builtModCount}
+         * matches {@link #modCount}.
+         */
+        @Nullable
+        private Map<K, V> builtMap;
+
+        /**
+         * The value of {@link #modCount} when {@link #builtMap} was built.
+         */
+        private int builtModCount;
+
+        /**
+         * The constant keys and values, once they have been collected for {@link #constantContents()}. This is only
+         * valid if {@link #contentsModCount} matches {@link #modCount}.
+         */
+        @Nullable
+        private Object[] contents;
+
+        /**
+         * The value of {@link #modCount} when {@link #contents} was collected.
+         */
+        private int contentsModCount;
 
         public DefaultMapBuilder() {
-            entries = new LinkedList<>();
+            this(new SizeEstimator());
+        }
+
+        /**
+         * Create a new instance which presizes the maps it builds with the given estimator.
+         */
+        public DefaultMapBuilder(@Nonnull SizeEstimator sizeEstimator) {
+            //Persistent structures let us fork the builder without copying it. They grow a node at a time rather
+            // than rehashing or copying, so they don't need to be presized.
+            entries = new PersistentVector<>();
+            positions = new PersistentHashMap<>();
+            this.sizeEstimator = sizeEstimator;
+        }
+
+        /**
+         * Create a new instance with the same state as the given builder, sharing its structure.
+         *
+         * @see #fork()
+         */
+        protected DefaultMapBuilder(@Nonnull DefaultMapBuilder<K, V> original) {
+            entries = original.entries.fork();
+            positions = original.positions.fork();
+            dynamicCount = original.dynamicCount;
+            modCount = original.modCount;
+            immutableOutput = original.immutableOutput;
+            compactOutput = original.compactOutput;
+            shapedOutput = original.shapedOutput;
+            internedOutput = original.internedOutput;
+            shape = original.shape;
+            sizeEstimator = original.sizeEstimator;
+            builtMap = original.builtMap;
+            builtModCount = original.builtModCount;
         }
 
+        /**
+         * Build a new map using the entries specified for this builder, by delegating to {@link #buildMap(List)}.
+         *
+         * <p>
+         * In {@linkplain #immutable() immutable mode}, the map is built by {@link #buildImmutableMap(List)} instead,
+         * which wraps it as an unmodifiable map, and if all the values are constant, it is retained and returned
+         * again by subsequent calls until this builder is modified. In {@linkplain #compact() compact mode}, the map is built with {@link CompactMaps} instead,
+         * and in {@linkplain #shaped() shaped mode}, with a {@link MapShape}.
+         */
         @Override
         @Nonnull
         public Map<K, V> get() throws IncompleteBuilderException {
-            return buildMap(entries);
+            if(builtMap != null && builtModCount == modCount) {
+                return builtMap;
+            }
+            Map<K, V> map;
+            if(shapedOutput) {
+                int size = entries.size();
+                if(shape == null) {
+                    Object[] keys = new Object[size];
+                    for(int i = 0; i < size; i++) {
+                        keys[i] = entries.get(i).getKey();
+                    }
+                    shape = MapShape.of(keys, size);
+                }
+                Object[] values = new Object[size];
+                for(int i = 0; i < size; i++) {
+                    values[i] = entries.get(i).getValue();
+                }
+                map = shape.wrap(values);
+            } else if(compactOutput) {
+                int size = entries.size();
+                Object[] keys = new Object[size];
+                Object[] values = new Object[size];
+                for(int i = 0; i < size; i++) {
+                    Entry<K, V> entry = entries.get(i);
+                    keys[i] = entry.getKey();
+                    values[i] = entry.getValue();
+                }
+                map = CompactMaps.copyOf(keys, values, size);
+            } else if(immutableOutput) {
+                map = buildImmutableMap(entries);
+            } else {
+                map = buildMap(entries);
+            }
+            if(internedOutput) {
+                map = intern(map);
+            }
+            if(immutableOutput) {
+                if(dynamicCount == 0) {
+                    builtMap = map;
+                    builtModCount = modCount;
+                }
+            }
+            return map;
+        }
+
+        @Nonnull
+        @Override
+        public BuilderInterface<Map<K, V>> freeze() {
+            return new FrozenMapBuilder<>(this, entries);
+        }
+
+        @Nonnull
+        @Override
+        public List<Map<K, V>> buildMany(int n) throws IncompleteBuilderException {
+            Preconditions.checkArgument(n >= 0, "Number of maps to build cannot be negative: %s", n);
+            FrozenMapBuilder<K, V> plan = new FrozenMapBuilder<>(this, entries);
+            List<Map<K, V>> maps = new ArrayList<>(n);
+            for(int i = 0; i < n; i++) {
+                maps.add(plan.build(i));
+            }
+            return maps;
+        }
+
+        /**
+         * Returns a new {@link DefaultMapBuilder}, created with the {@linkplain #DefaultMapBuilder(DefaultMapBuilder)
+         * copy constructor}. Subclasses should override this to return an instance of their own type.
+         */
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> fork() {
+            return new DefaultMapBuilder<>(this);
+        }
+
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> immutable() {
+            if(!immutableOutput) {
+                immutableOutput = true;
+                modCount++;
+            }
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> compact() {
+            if(!compactOutput) {
+                compactOutput = true;
+                shapedOutput = false;
+                immutableOutput = true;
+                modCount++;
+            }
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> shaped() {
+            if(!shapedOutput) {
+                shapedOutput = true;
+                compactOutput = false;
+                immutableOutput = true;
+                modCount++;
+            }
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> interned() {
+            if(!internedOutput) {
+                internedOutput = true;
+                immutableOutput = true;
+                modCount++;
+            }
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> reset() {
+            entries.clear();
+            positions.clear();
+            shape = null;
+            dynamicCount = 0;
+            builtMap = null;
+            modCount++;
+            return this;
+        }
+
+        /**
+         * {@linkplain #reset() Reset} the builder, and also turn off all of the output modes.
+         */
+        private void restoreDefaults() {
+            reset();
+            immutableOutput = false;
+            compactOutput = false;
+            shapedOutput = false;
+            internedOutput = false;
+        }
+
+        @Nonnull
+        @Override
+        public Map<K, V> getInto(@Nonnull Map<K, V> target) throws IncompleteBuilderException {
+            target.clear();
+            //Iterate by index to avoid allocating an iterator.
+            for(int i = 0, size = entries.size(); i < size; i++) {
+                Entry<K, V> entry = entries.get(i);
+                target.put(entry.getKey(), entry.getValue());
+            }
+            return target;
+        }
+
+        @Nullable
+        @Override
+        Object[] constantContents() {
+            if(dynamicCount > 0) {
+                return null;
+            }
+            if(contents == null || contentsModCount != modCount) {
+                Object[] contents = new Object[2 * entries.size()];
+                for(int i = 0, size = entries.size(); i < size; i++) {
+                    Entry<K, V> entry = entries.get(i);
+                    contents[2 * i] = entry.getKey();
+                    contents[2 * i + 1] = entry.getValue();
+                }
+                this.contents = contents;
+                contentsModCount = modCount;
+            }
+            return contents;
         }
 
         @Nonnull
@@ -198,34 +746,72 @@ public abstract class MapBuilder<K, V> implements BuilderInterface<Map<K,V>> {
 
         /**
          * Helper function called from {@link #get()} to actually build and populate
-         * the map with the given entries. This makes it easier to override if you want to
-         * create a different type of map.
+         * the map with the given entries, of which there is one per key. This makes it easier
+         * to override if you want to create a different type of map.
          *
          * This will typically delegate to {@link #createMap(int)}.
          */
         @Nonnull
         protected Map<K, V> buildMap(@Nonnull List<Entry<K,V>> entries) {
-            Map<K,V> map = createMap(entries.size());
+            Map<K,V> map = createMap(sizeHint(entries.size(), immutableOutput, sizeEstimator));
             for(Entry<K,V> entry : entries) {
                 map.put(entry.getKey(), entry.getValue());
             }
             return map;
         }
 
+        /**
+         * Helper function called from {@link #get()} in immutable mode, unless the map is built with
+         * {@link CompactMaps} or a {@link MapShape}, to build an unmodifiable map with the given entries, of which
+         * there is one per key.
+         *
+         * The default implementation wraps the map built by {@link #buildMap(List)} as an unmodifiable map.
+         */
+        @Nonnull
+        protected Map<K, V> buildImmutableMap(@Nonnull List<Entry<K,V>> entries) {
+            return Collections.unmodifiableMap(buildMap(entries));
+        }
+
         /**
          * Helper methods called by {@link #buildMap(List)} to create the initial map. This is the easiest
          * way to override the implementation of the Map interface you want to use.
          *
-         * @param size The approximate number of entries that the map will need to hold initially.
+         * <p>
+         * The default implementation creates a {@link java.util.HashMap} with enough capacity to hold the given
+         * number of entries without rehashing.
+         *
+         * @param size The number of entries that the map is expected to hold.
          */
         @Nonnull
         protected Map<K, V> createMap(int size) {
-            return new HashMap<>(size);
+            return Maps.newHashMapWithExpectedSize(size);
+        }
+
+        /**
+         * Returns the number of entries to presize a map for: the number it will be built with, or for a mutable map,
+         * the {@linkplain SizeEstimator estimated} size if that's larger. The actual size is recorded in the estimator.
+         */
+        private static int sizeHint(int size, boolean immutableOutput, @Nonnull SizeEstimator sizeEstimator) {
+            int hint = immutableOutput ? size : Math.max(size, sizeEstimator.estimate());
+            sizeEstimator.record(size);
+            return hint;
         }
 
         @Override
         protected void putSupplier(@Nullable K key, @Nonnull Supplier<? extends V> valueSupplier) {
-            entries.add(new Entry<>(key, valueSupplier));
+            Entry<K, V> entry = new Entry<>(key, valueSupplier);
+            Integer position = positions.get(key);
+            if(position == null) {
+                positions.put(key, entries.size());
+                entries.add(entry);
+                shape = null;
+            } else if(!SupplierFunctions.isSupplierOfInstance(entries.set(position, entry).value)) {
+                dynamicCount--;
+            }
+            if(!SupplierFunctions.isSupplierOfInstance(valueSupplier)) {
+                dynamicCount++;
+            }
+            modCount++;
         }
 
         @Override
@@ -234,7 +820,7 @@ public abstract class MapBuilder<K, V> implements BuilderInterface<Map<K,V>> {
             return this;
         }
 
-        private static class Entry<K,V> {
+        protected static class Entry<K,V> {
             @Nullable
             private final K key;
 
@@ -287,6 +873,69 @@ public abstract class MapBuilder<K, V> implements BuilderInterface<Map<K,V>> {
             return alwaysBuilder.get();
         }
 
+        @Nonnull
+        @Override
+        public BuilderInterface<Map<K, V>> freeze() {
+            return alwaysBuilder.freeze();
+        }
+
+        @Nonnull
+        @Override
+        public List<Map<K, V>> buildMany(int n) throws IncompleteBuilderException {
+            return alwaysBuilder.buildMany(n);
+        }
+
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> immutable() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> compact() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> shaped() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> interned() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> reset() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public Map<K, V> getInto(@Nonnull Map<K, V> target) throws IncompleteBuilderException {
+            return alwaysBuilder.getInto(target);
+        }
+
+        /**
+         * Forks the originating (non-conditional) map builder.
+         */
+        @Nonnull
+        @Override
+        public MapBuilder<K, V> fork() {
+            return alwaysBuilder.fork();
+        }
+
+        @Nullable
+        @Override
+        Object[] constantContents() {
+            return alwaysBuilder.constantContents();
+        }
+
         @Nonnull
         @Override
         public MapBuilder<K, V> maybe(boolean yes) {
@@ -305,4 +954,147 @@ public abstract class MapBuilder<K, V> implements BuilderInterface<Map<K,V>> {
             return alwaysBuilder;
         }
     }
+
+    /**
+     * The immutable builder returned by {@link #freeze()}.
+     */
+    protected static class FrozenMapBuilder<K, V> implements BuilderInterface<Map<K, V>> {
+
+        /**
+         * The builder that was frozen, used only to {@linkplain DefaultMapBuilder#createMap(int) create} the maps, or
+         * in immutable mode to {@linkplain DefaultMapBuilder#buildImmutableMap(List) build} them, if it is a subclass,
+         * which may override those. A plain {@link DefaultMapBuilder} isn't kept, since it would only create
+         * {@link java.util.HashMap HashMaps}.
+         */
+        @Nullable
+        private final DefaultMapBuilder<K, V> mapFactory;
+
+        @Nonnull
+        private final Object[] keys;
+
+        /**
+         * The values for each of the {@link #keys}, with constant values prefilled, and {@code null} in the slots
+         * of the dynamic values.
+         */
+        @Nonnull
+        private final Object[] values;
+
+        @Nonnull
+        private final int[] dynamicSlots;
+
+        @Nonnull
+        private final Supplier<?>[] dynamicSuppliers;
+
+        private final boolean immutableOutput;
+
+        private final boolean compactOutput;
+
+        private final boolean internedOutput;
+
+        /**
+         * The shape of the keys, in shaped mode.
+         */
+        @Nullable
+        private final MapShape shape;
+
+        @Nonnull
+        private final SizeEstimator sizeEstimator;
+
+        /**
+         * In immutable mode, the map built when there are no dynamic values, which is built when the builder is
+         * frozen and shared by every build.
+         */
+        @Nullable
+        private final Map<K, V> constantMap;
+
+        /**
+         * @param entries The builder's entries, of which there is already one per key.
+         */
+        protected FrozenMapBuilder(@Nonnull DefaultMapBuilder<K, V> source, @Nonnull List<DefaultMapBuilder.Entry<K, V>> entries) {
+            this.mapFactory = source.getClass() == DefaultMapBuilder.class ? null : source;
+            this.immutableOutput = source.immutableOutput;
+            this.compactOutput = source.compactOutput;
+            this.internedOutput = source.internedOutput;
+            this.sizeEstimator = source.sizeEstimator;
+
+            keys = new Object[entries.size()];
+            values = new Object[entries.size()];
+            List<Integer> slots = new ArrayList<>();
+            List<Supplier<?>> suppliers = new ArrayList<>();
+            for(int i = 0; i < keys.length; i++) {
+                DefaultMapBuilder.Entry<K, V> entry = entries.get(i);
+                keys[i] = entry.key;
+                if(SupplierFunctions.isSupplierOfInstance(entry.value)) {
+                    values[i] = entry.value.get();
+                } else {
+                    slots.add(i);
+                    suppliers.add(entry.value);
+                }
+            }
+            dynamicSlots = Ints.toArray(slots);
+            dynamicSuppliers = suppliers.toArray(new Supplier<?>[suppliers.size()]);
+            shape = source.shapedOutput ? MapShape.of(keys, keys.length) : null;
+            constantMap = immutableOutput && dynamicSlots.length == 0 ? assemble(values) : null;
+        }
+
+        @Nonnull
+        @Override
+        public Map<K, V> get() throws IncompleteBuilderException {
+            return build(0);
+        }
+
+        /**
+         * Build the map at the given index of a batch, supplying that index to each {@link IndexedSupplier}.
+         */
+        @Nonnull
+        @SuppressWarnings("unchecked")
+        protected Map<K, V> build(int index) throws IncompleteBuilderException {
+            if(constantMap != null) {
+                return constantMap;
+            }
+            Object[] values = this.values.clone();
+            for(int i = 0; i < dynamicSlots.length; i++) {
+                Supplier<?> supplier = dynamicSuppliers[i];
+                if(supplier instanceof IndexedSupplier) {
+                    values[dynamicSlots[i]] = ((IndexedSupplier<?>) supplier).get(index);
+                } else {
+                    values[dynamicSlots[i]] = supplier.get();
+                }
+            }
+            return assemble(values);
+        }
+
+        /**
+         * Build a new map from the keys and the given values, without regard to the {@link #constantMap}.
+         */
+        @Nonnull
+        @SuppressWarnings("unchecked")
+        private Map<K, V> assemble(@Nonnull Object[] values) {
+            Map<K, V> map;
+            if(shape != null) {
+                map = shape.wrap(values);
+            } else if(compactOutput) {
+                map = CompactMaps.copyOf(keys, values, keys.length);
+            } else if(immutableOutput && mapFactory != null) {
+                List<DefaultMapBuilder.Entry<K, V>> entries = new ArrayList<>(keys.length);
+                for(int i = 0; i < keys.length; i++) {
+                    entries.add(new DefaultMapBuilder.Entry<>((K) keys[i], Suppliers.ofInstance((V) values[i])));
+                }
+                map = mapFactory.buildImmutableMap(entries);
+            } else {
+                int size = DefaultMapBuilder.sizeHint(keys.length, immutableOutput, sizeEstimator);
+                map = mapFactory != null ? mapFactory.createMap(size) : Maps.<K, V>newHashMapWithExpectedSize(size);
+                for(int i = 0; i < keys.length; i++) {
+                    map.put((K) keys[i], (V) values[i]);
+                }
+                if(immutableOutput) {
+                    map = Collections.unmodifiableMap(map);
+                }
+            }
+            if(internedOutput) {
+                map = intern(map);
+            }
+            return map;
+        }
+    }
 }
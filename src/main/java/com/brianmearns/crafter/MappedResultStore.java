@@ -0,0 +1,339 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.io.ResultCodec;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A store of built results in a memory-mapped file, so that results built once can be shared off the heap by every
+ * JVM on the host which opens the same file, without being built or copied again.
+ *
+ * <p>
+ * Each result is stored under a key: either a template key given explicitly, as with
+ * {@link #getList(String, BuilderInterface)}, or a hash of a builder's constant contents, as with
+ * {@link #get(ListBuilder)}. Getting a result that isn't stored yet invokes the builder, and appends the result to the
+ * file in the {@linkplain ResultCodec encoded form}, after which it is available to every process that has the file
+ * open. Results are returned as unmodifiable views which decode their elements from the mapped file as they are
+ * accessed, so the results themselves take up (almost) no heap. Only strings, boxed primitives, and lists and maps of
+ * them can be stored: results with other elements are simply built and returned, as are results built by builders
+ * with dynamic contents when keyed by their contents.
+ *
+ * <p>
+ * The file has a fixed capacity, given when it is created, and results are never removed from it. Once a result
+ * doesn't fit anymore, it is built and returned without being stored. Appends from different processes are
+ * serialized with an exclusive {@linkplain FileLock file lock} on the header, and a store looking for records appended
+ * by other processes reads the header under a shared lock, so that it sees each record completely. A process which only
+ * reads can open the file {@linkplain #openReadOnly(File) read-only}. Since file locks are held on behalf of the whole
+ * JVM, each JVM should open a given file with at most one store; the store itself is thread safe.
+ *
+ * <p>
+ * The file starts with a header of a magic number, a format version, and the offset of the end of the last record.
+ * Each record is its length, the length of its key, the key as UTF-8, and the encoded result, which starts with a tag
+ * giving its type. A key is only used for one type of result: getting a list under a key that holds a map, or the other
+ * way around, just builds the result without storing it.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class MappedResultStore implements Closeable {
+
+    private static final int MAGIC = 0x43524654;
+
+    private static final int VERSION = 1;
+
+    private static final int END_OFFSET = 8;
+
+    private static final int HEADER_SIZE = 12;
+
+    @Nonnull
+    private final RandomAccessFile file;
+
+    @Nonnull
+    private final FileChannel channel;
+
+    /**
+     * The read-only view of the whole file which stored results are decoded from.
+     */
+    @Nonnull
+    private final MappedByteBuffer buffer;
+
+    private final boolean readOnly;
+
+    /**
+     * The offset of the encoded result of each record that has been scanned, by key.
+     */
+    @Nonnull
+    private final Map<String, Integer> index = new HashMap<>();
+
+    /**
+     * The offset up to which the records have been scanned into the {@link #index}.
+     */
+    private int scanned = HEADER_SIZE;
+
+    private MappedResultStore(@Nonnull RandomAccessFile file, @Nonnull MappedByteBuffer buffer, boolean readOnly) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.buffer = buffer;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Open the store in the given file for reading and writing, creating the file with the given capacity in bytes if
+     * it doesn't exist yet. The capacity of an existing file is not changed.
+     */
+    @Nonnull
+    public static MappedResultStore open(@Nonnull File path, int capacity) throws IOException {
+        Preconditions.checkArgument(capacity > HEADER_SIZE, "Capacity too small: %s", capacity);
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            FileLock lock = channel.lock(0, HEADER_SIZE, false);
+            try {
+                if(channel.size() < HEADER_SIZE) {
+                    file.setLength(capacity);
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    header.putInt(MAGIC).putInt(VERSION).putInt(HEADER_SIZE).flip();
+                    channel.write(header, 0);
+                }
+            } finally {
+                lock.release();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            return new MappedResultStore(file, checkHeader(buffer, path), false);
+        } catch(IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the existing store in the given file for reading only. Results that aren't stored are simply built.
+     */
+    @Nonnull
+    public static MappedResultStore openReadOnly(@Nonnull File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedResultStore(file, checkHeader(buffer, path), true);
+        } catch(IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Nonnull
+    private static MappedByteBuffer checkHeader(@Nonnull MappedByteBuffer buffer, @Nonnull File path) throws IOException {
+        if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a result store: " + path);
+        }
+        if(buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported result store version " + buffer.getInt(4) + ": " + path);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the list stored under the given template key, or builds it with the given builder and stores it.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getList(@Nonnull String key, @Nonnull BuilderInterface<? extends List<T>> builder)
+            throws IncompleteBuilderException {
+        Object stored = lookup(key);
+        if(stored == null) {
+            return store(key, builder.get(), List.class);
+        }
+        return stored instanceof List ? (List<T>) stored : builder.get();
+    }
+
+    /**
+     * Returns the map stored under the given template key, or builds it with the given builder and stores it.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getMap(@Nonnull String key, @Nonnull BuilderInterface<? extends Map<K, V>> builder)
+            throws IncompleteBuilderException {
+        Object stored = lookup(key);
+        if(stored == null) {
+            return store(key, builder.get(), Map.class);
+        }
+        return stored instanceof Map ? (Map<K, V>) stored : builder.get();
+    }
+
+    /**
+     * Returns the list stored for the constant elements of the given builder, or builds and stores it. If the builder
+     * has dynamic elements, or elements which can't be stored, it is simply invoked.
+     */
+    @Nonnull
+    public <T> List<T> get(@Nonnull ListBuilder<T> builder) throws IncompleteBuilderException {
+        String key = contentsKey("list:", builder.constantContents());
+        return key == null ? builder.get() : getList(key, builder);
+    }
+
+    /**
+     * Returns the map stored for the constant entries of the given builder, or builds and stores it. If the builder
+     * has dynamic values, or entries which can't be stored, it is simply invoked.
+     */
+    @Nonnull
+    public <K, V> Map<K, V> get(@Nonnull MapBuilder<K, V> builder) throws IncompleteBuilderException {
+        String key = contentsKey("map:", builder.constantContents());
+        return key == null ? builder.get() : getMap(key, builder);
+    }
+
+    /**
+     * Returns a key for the given constant contents: the given prefix followed by a hash of their encoded form.
+     */
+    @Nullable
+    private static String contentsKey(@Nonnull String prefix, @Nullable Object[] contents) {
+        if(contents == null) {
+            return null;
+        }
+        List<Object> list = Arrays.asList(contents);
+        if(!ResultCodec.isSupported(list)) {
+            return null;
+        }
+        return prefix + Hashing.murmur3_128().hashBytes(ResultCodec.encode(list));
+    }
+
+    /**
+     * Returns a view of the result stored under the given key, or {@code null} if there isn't one.
+     */
+    @Nullable
+    private synchronized Object lookup(@Nonnull String key) {
+        Integer offset = index.get(key);
+        if(offset == null) {
+            scanShared();
+            offset = index.get(key);
+        }
+        return offset == null ? null : ResultCodec.decode(buffer, offset);
+    }
+
+    /**
+     * Append the given result to the file under the given key, if it can be stored and fits, and return a view of the
+     * stored result. If another process stored a result of the same type under the same key in the meantime, a view of
+     * that one is returned instead. Otherwise, the given result itself is returned.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private synchronized <R> R store(@Nonnull String key, @Nonnull R result, @Nonnull Class<?> type) {
+        if(readOnly || !ResultCodec.isSupported(result)) {
+            return result;
+        }
+        byte[] keyBytes = key.getBytes(Charsets.UTF_8);
+        byte[] payload = ResultCodec.encode(result);
+        long length = 8L + keyBytes.length + payload.length;
+        try {
+            FileLock lock = channel.lock(0, HEADER_SIZE, false);
+            try {
+                scan();
+                Integer offset = index.get(key);
+                if(offset != null) {
+                    Object stored = ResultCodec.decode(buffer, offset);
+                    return type.isInstance(stored) ? (R) stored : result;
+                }
+                int end = buffer.getInt(END_OFFSET);
+                if(end + length > buffer.capacity()) {
+                    return result;
+                }
+                ByteBuffer record = buffer.duplicate();
+                record.position(end);
+                record.putInt((int) length).putInt(keyBytes.length).put(keyBytes).put(payload);
+                //Publish the record only once it is complete.
+                buffer.putInt(END_OFFSET, (int) (end + length));
+                scan();
+                return (R) ResultCodec.decode(buffer, index.get(key));
+            } finally {
+                lock.release();
+            }
+        } catch(IOException e) {
+            //The result can still be used, it just isn't shared.
+            return result;
+        }
+    }
+
+    /**
+     * {@linkplain #scan() Scan} the file while holding a shared lock on the header. The writer of each record holds an
+     * exclusive lock until it has published the record, so this reads the end offset, and the records before it, only
+     * once they are complete.
+     */
+    private void scanShared() {
+        try {
+            FileLock lock = channel.lock(0, HEADER_SIZE, true);
+            try {
+                scan();
+            } finally {
+                lock.release();
+            }
+        } catch(IOException e) {
+            //The records appended since the last scan just aren't seen yet.
+        }
+    }
+
+    /**
+     * Add the records appended since the last scan, by this or any other process, to the {@link #index}. The header
+     * must be locked.
+     */
+    private void scan() {
+        int end = buffer.getInt(END_OFFSET);
+        while(scanned < end) {
+            int length = buffer.getInt(scanned);
+            byte[] keyBytes = new byte[buffer.getInt(scanned + 4)];
+            ByteBuffer source = buffer.duplicate();
+            source.position(scanned + 8);
+            source.get(keyBytes);
+            String key = new String(keyBytes, Charsets.UTF_8);
+            if(!index.containsKey(key)) {
+                index.put(key, scanned + 8 + keyBytes.length);
+            }
+            scanned += length;
+        }
+    }
+
+    /**
+     * Returns the number of results stored in the file.
+     */
+    public synchronized int size() {
+        scanShared();
+        return index.size();
+    }
+
+    /**
+     * Returns the number of bytes of the file in use, including the header.
+     */
+    public synchronized int usedBytes() {
+        scanShared();
+        return scanned;
+    }
+
+    /**
+     * Returns the size of the file in bytes.
+     */
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Close the file. The mapping, and so the results already returned, remain valid until they are garbage
+     * collected.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
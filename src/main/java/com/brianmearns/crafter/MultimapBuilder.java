@@ -0,0 +1,414 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.collect.FlatListMultimap;
+import com.brianmearns.crafter.collect.MapShape;
+import com.brianmearns.crafter.util.SupplierFunctions;
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link BuilderInterface} of multimaps, in which each key can be {@linkplain #put(Object, Object) put} any number
+ * of times, each time with another value.
+ *
+ * <p>
+ * Instead of a {@link MapBuilder} of {@link ListBuilder ListBuilders}, with a builder and a list per key, this holds
+ * every value that is put in a single array, in the order they were put, along with the position of its key. When the
+ * multimap is built, a counting pass over the keys gives the range of each key's values in a single array of all the
+ * values, into which they are then placed, so the built {@link FlatListMultimap} has no collection per key either.
+ * The keys are in the order in which they were first put, and the values of each key in the order in which they were
+ * put.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+@SuppressWarnings("unused")
+public abstract class MultimapBuilder<K, V> implements BuilderInterface<FlatListMultimap<K, V>> {
+
+    /**
+     * Create a new builder instance which will build {@link FlatListMultimap FlatListMultimap<K,V>} instances.
+     */
+    @Nonnull
+    public static <K, V> MultimapBuilder<K, V> create() {
+        return new DefaultMultimapBuilder<>();
+    }
+
+    /**
+     * Create a new builder instance which will build {@link FlatListMultimap FlatListMultimap<K,V>} instances.
+     *
+     * @param keyCls The class of keys that will be put into the built multimaps.
+     * @param valueCls The class of values that will be put into the built multimaps.
+     */
+    @Nonnull
+    public static <K, V> MultimapBuilder<K, V> create(@Nonnull Class<K> keyCls, @Nonnull Class<V> valueCls) {
+        return new DefaultMultimapBuilder<>();
+    }
+
+    /**
+     * Put the given key with another value, supplied by the given supplier.
+     */
+    protected abstract void putSupplier(@Nullable K key, @Nonnull Supplier<? extends V> valueSupplier);
+
+    /**
+     * Put the given key with another, constant, value. By default, this puts a
+     * {@linkplain Suppliers#ofInstance(Object) supplier} of the value, but implementations may store constants more
+     * efficiently.
+     */
+    protected void putConstant(@Nullable K key, @Nullable V value) {
+        putSupplier(key, Suppliers.ofInstance(value));
+    }
+
+    /**
+     * Add the given value to the values of the given key.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     */
+    @Nonnull
+    public MultimapBuilder<K, V> put(@Nullable K key, @Nullable V value) {
+        putConstant(key, value);
+        return this;
+    }
+
+    /**
+     * Add a value to the values of the given key, represented by a BuilderInterface of that value, which is invoked
+     * once for each call to {@link #get()}.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     */
+    @Nonnull
+    public MultimapBuilder<K, V> put(@Nullable K key, @Nonnull BuilderInterface<? extends V> value) {
+        putSupplier(key, value);
+        return this;
+    }
+
+    /**
+     * Add all of the given values to the values of the given key, in order.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     */
+    @Nonnull
+    public MultimapBuilder<K, V> putAll(@Nullable K key, @Nonnull Iterable<? extends V> values) {
+        for(V value : values) {
+            putConstant(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Add the given value to the values of the given key, if and only if the given boolean is {@code true}.
+     * Otherwise has no effect on the state of the builder.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     */
+    @Nonnull
+    public MultimapBuilder<K, V> maybePut(@Nullable K key, @Nullable V value, boolean put) {
+        if(put) {
+            putConstant(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Add a value to the values of the given key, represented by a BuilderInterface of that value, if and only if the
+     * given boolean is {@code true}. Otherwise has no effect on the state of the builder.
+     *
+     * @return This builder instance itself, for chaining convenience.
+     */
+    @Nonnull
+    public MultimapBuilder<K, V> maybePut(@Nullable K key, @Nonnull BuilderInterface<? extends V> value, boolean put) {
+        if(put) {
+            putSupplier(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Apply the given function to {@code this} object, and return {@code this} object again.
+     *
+     * @return This {@code MultimapBuilder} itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract MultimapBuilder<K, V> apply(@Nonnull Function<MultimapBuilder<K, V>, Void> function);
+
+    /**
+     * Build a new multimap using the keys and values specified for this builder.
+     */
+    @Override
+    @Nonnull
+    public abstract FlatListMultimap<K, V> get() throws IncompleteBuilderException;
+
+    /**
+     * Remove all of the keys and values from this builder, so that it can be reused to build a different multimap.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract MultimapBuilder<K, V> reset();
+
+    /**
+     * Returns a builder which either does or doesn't delegate to this builder based on the given boolean.
+     * @param yes If {@code true}, then methods invoked on the returned builder will modify the state of {@code this}
+     *            builder. Otherwise, methods invoked on the returned builder will not modify state.
+     */
+    @Nonnull
+    public abstract MultimapBuilder<K, V> maybe(boolean yes);
+
+    /**
+     * Returns the parent multimap builder of a conditional multimap builder.
+     */
+    @Nonnull
+    public abstract MultimapBuilder<K, V> endMaybe();
+
+    /**
+     * Returns the top-level non-conditional builder.
+     */
+    @Nonnull
+    public abstract MultimapBuilder<K, V> always();
+
+    protected static class DefaultMultimapBuilder<K, V> extends MultimapBuilder<K, V> {
+
+        /**
+         * The largest number of keys for which the shape is {@linkplain MapShape#of(Object[], int) interned}, with a
+         * perfect hash. Shapes of more keys are {@linkplain MapShape#unshared(Object[], int) unshared}.
+         */
+        private static final int MAX_INTERNED_KEYS = 32;
+
+        /**
+         * The position of each distinct key in {@link #keys}.
+         */
+        @Nonnull
+        private final Map<K, Integer> keyPositions = new HashMap<>();
+
+        /**
+         * The distinct keys, in the order in which they were first put.
+         */
+        @Nonnull
+        private Object[] keys = new Object[8];
+
+        private int keyCount;
+
+        /**
+         * The position of the key of each value that was put.
+         */
+        @Nonnull
+        private int[] valueKeys = new int[8];
+
+        /**
+         * Each value that was put, in order. Each is either a {@link Supplier} of the value, or the constant value
+         * itself. A constant value which is itself a {@link Supplier} is stored as a
+         * {@linkplain Suppliers#ofInstance(Object) supplier} of the value, so that it is not mistaken for one.
+         */
+        @Nonnull
+        private Object[] values = new Object[8];
+
+        private int valueCount;
+
+        /**
+         * The number of values which are not constant.
+         */
+        private int dynamicCount;
+
+        /**
+         * The shape of the current keys, once it has been created. It is discarded when a new key is put.
+         */
+        @Nullable
+        private MapShape shape;
+
+        /**
+         * The last multimap built, if all of its values are constant and the builder hasn't been modified since.
+         */
+        @Nullable
+        private FlatListMultimap<K, V> builtMultimap;
+
+        public DefaultMultimapBuilder() {
+        }
+
+        @Override
+        protected void putConstant(@Nullable K key, @Nullable V value) {
+            append(key, value instanceof Supplier ? Suppliers.ofInstance(value) : value);
+        }
+
+        @Override
+        protected void putSupplier(@Nullable K key, @Nonnull Supplier<? extends V> valueSupplier) {
+            if(!SupplierFunctions.isSupplierOfInstance(valueSupplier)) {
+                dynamicCount++;
+            }
+            append(key, valueSupplier);
+        }
+
+        private void append(@Nullable K key, @Nullable Object value) {
+            Integer position = keyPositions.get(key);
+            if(position == null) {
+                if(keyCount == keys.length) {
+                    keys = Arrays.copyOf(keys, 2 * keyCount);
+                }
+                position = keyCount;
+                keys[keyCount++] = key;
+                keyPositions.put(key, position);
+                shape = null;
+            }
+            if(valueCount == values.length) {
+                values = Arrays.copyOf(values, 2 * valueCount);
+                valueKeys = Arrays.copyOf(valueKeys, 2 * valueCount);
+            }
+            valueKeys[valueCount] = position;
+            values[valueCount++] = value;
+            builtMultimap = null;
+        }
+
+        @Nonnull
+        @Override
+        public MultimapBuilder<K, V> apply(@Nonnull Function<MultimapBuilder<K, V>, Void> function) {
+            function.apply(this);
+            return this;
+        }
+
+        /**
+         * Build a new multimap, by counting the values of each key to find where its values start in the array of all
+         * values, and then placing each value after those of its key placed so far. Each supplier is invoked exactly
+         * once. If all the values are constant, the same multimap is returned again until this builder is modified.
+         */
+        @Nonnull
+        @Override
+        @SuppressWarnings("unchecked")
+        public FlatListMultimap<K, V> get() throws IncompleteBuilderException {
+            if(builtMultimap != null) {
+                return builtMultimap;
+            }
+            if(shape == null) {
+                shape = keyCount <= MAX_INTERNED_KEYS ? MapShape.of(keys, keyCount) : MapShape.unshared(keys, keyCount);
+            }
+            int[] offsets = new int[keyCount + 1];
+            for(int i = 0; i < valueCount; i++) {
+                offsets[valueKeys[i] + 1]++;
+            }
+            for(int i = 0; i < keyCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] next = Arrays.copyOf(offsets, keyCount);
+            Object[] built = new Object[valueCount];
+            for(int i = 0; i < valueCount; i++) {
+                Object value = values[i];
+                built[next[valueKeys[i]]++] = value instanceof Supplier ? ((Supplier<?>) value).get() : value;
+            }
+            FlatListMultimap<K, V> multimap = FlatListMultimap.wrap(shape, offsets, built);
+            if(dynamicCount == 0) {
+                builtMultimap = multimap;
+            }
+            return multimap;
+        }
+
+        @Nonnull
+        @Override
+        public MultimapBuilder<K, V> reset() {
+            keyPositions.clear();
+            Arrays.fill(keys, 0, keyCount, null);
+            Arrays.fill(values, 0, valueCount, null);
+            keyCount = 0;
+            valueCount = 0;
+            dynamicCount = 0;
+            shape = null;
+            builtMultimap = null;
+            return this;
+        }
+
+        /**
+         * Returns either {@code this} object itself, or a new {@link NeverMultimapBuilder} if {@code yes} is
+         * {@code false}.
+         */
+        @Nonnull
+        @Override
+        public MultimapBuilder<K, V> maybe(boolean yes) {
+            if(yes) {
+                return this;
+            }
+            return new NeverMultimapBuilder<>(this, this);
+        }
+
+        @Nonnull
+        @Override
+        public MultimapBuilder<K, V> endMaybe() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public MultimapBuilder<K, V> always() {
+            return this;
+        }
+    }
+
+    /**
+     * A {@link MultimapBuilder} which doesn't actually do anything.
+     */
+    protected static class NeverMultimapBuilder<K, V> extends MultimapBuilder<K, V> {
+
+        @Nonnull
+        private final MultimapBuilder<K, V> alwaysBuilder;
+
+        @Nonnull
+        private final MultimapBuilder<K, V> parent;
+
+        protected NeverMultimapBuilder(@Nonnull MultimapBuilder<K, V> alwaysBuilder, @Nonnull MultimapBuilder<K, V> parent) {
+            this.alwaysBuilder = alwaysBuilder;
+            this.parent = parent;
+        }
+
+        @Override
+        protected void putSupplier(@Nullable K key, @Nonnull Supplier<? extends V> valueSupplier) {
+            //Do nothing;
+        }
+
+        @Override
+        protected void putConstant(@Nullable K key, @Nullable V value) {
+            //Do nothing;
+        }
+
+        /**
+         * Note that the never builder <em>does not</em> invoke the given function at all, it simply returns itself.
+         */
+        @Nonnull
+        @Override
+        public MultimapBuilder<K, V> apply(@Nonnull Function<MultimapBuilder<K, V>, Void> function) {
+            return this;
+        }
+
+        /**
+         * Delegates to the originating (non-conditional) multimap builder.
+         */
+        @Nonnull
+        @Override
+        public FlatListMultimap<K, V> get() throws IncompleteBuilderException {
+            return alwaysBuilder.get();
+        }
+
+        @Nonnull
+        @Override
+        public MultimapBuilder<K, V> reset() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public MultimapBuilder<K, V> maybe(boolean yes) {
+            return new NeverMultimapBuilder<>(alwaysBuilder, this);
+        }
+
+        @Nonnull
+        @Override
+        public MultimapBuilder<K, V> endMaybe() {
+            return parent;
+        }
+
+        @Nonnull
+        @Override
+        public MultimapBuilder<K, V> always() {
+            return alwaysBuilder;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.io.Record;
+import com.brianmearns.crafter.io.RecordLayout;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A {@link BuilderInterface} for a list of fixed-width records, which are stored off the heap in a direct
+ * {@link ByteBuffer}, as described by a {@link RecordLayout}.
+ *
+ * <p>
+ * Each record is started with {@link #append()}, and its fields are then written straight into the buffer with the
+ * {@code put} methods, so there is no object per record, or per field. The buffer grows by doubling as records are
+ * appended. Fields which are not written are zero.
+ *
+ * <p>
+ * The built list is a read-only view of the buffer, which returns a {@linkplain Record flyweight} view of each record
+ * as it is accessed. Building the list doesn't copy the records, and records appended or written afterwards don't
+ * affect it: if the builder is {@linkplain #reset() reset}, or a field of the last record is written, after building
+ * a list, it starts a new buffer rather than overwriting the records the list is still using. The records can also be written straight from the buffer to a channel with
+ * {@link #writeTo(WritableByteChannel)}.
+ *
+ * <p>
+ * Like the other builders, this class is not thread safe, but the lists it builds are.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class RecordListBuilder implements BuilderInterface<List<Record>> {
+
+    @Nonnull
+    private final RecordLayout layout;
+
+    private final int recordSize;
+
+    @Nonnull
+    private ByteBuffer buffer;
+
+    private int size;
+
+    /**
+     * Whether a built list is using {@link #buffer}, so that the records already in it must not be overwritten.
+     */
+    private boolean shared;
+
+    protected RecordListBuilder(@Nonnull RecordLayout layout, int expectedSize) {
+        Preconditions.checkArgument(layout.recordSize() > 0, "Layout has no fields: %s", layout);
+        Preconditions.checkArgument(expectedSize >= 0, "Expected size cannot be negative: %s", expectedSize);
+        this.layout = layout;
+        this.recordSize = layout.recordSize();
+        this.buffer = ByteBuffer.allocateDirect(Math.max(expectedSize, 1) * recordSize);
+    }
+
+    /**
+     * Create a new builder of records with the given layout.
+     */
+    @Nonnull
+    public static RecordListBuilder create(@Nonnull RecordLayout layout) {
+        return new RecordListBuilder(layout, 16);
+    }
+
+    /**
+     * Create a new builder of records with the given layout, with room for the given number of records before its
+     * buffer has to grow.
+     */
+    @Nonnull
+    public static RecordListBuilder create(@Nonnull RecordLayout layout, int expectedSize) {
+        return new RecordListBuilder(layout, expectedSize);
+    }
+
+    /**
+     * Returns the layout of the records.
+     */
+    @Nonnull
+    public RecordLayout layout() {
+        return layout;
+    }
+
+    /**
+     * Returns the number of records appended.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Start a new record at the end of the list, with all its fields zero. The {@code put} methods write the fields of
+     * this record until the next one is appended.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public RecordListBuilder append() {
+        int end = (size + 1) * recordSize;
+        if(end > buffer.capacity()) {
+            Preconditions.checkState(buffer.capacity() <= Integer.MAX_VALUE / 2, "Too many records: %s", size);
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(end, 2 * buffer.capacity()));
+            ByteBuffer records = buffer.duplicate();
+            records.position(0).limit(size * recordSize);
+            grown.put(records);
+            //A built list keeps the old buffer, so the new one isn't shared.
+            buffer = grown;
+            shared = false;
+        }
+        for(int i = size * recordSize; i < end; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        size++;
+        return this;
+    }
+
+    /**
+     * Returns the position of the given field of the current record, after checking its type. If a built list is
+     * using the buffer, the current record is part of that list, so the buffer is copied first, which is why this
+     * must be invoked before {@link #buffer} is read.
+     */
+    private int position(int field, @Nonnull RecordLayout.Type type) {
+        Preconditions.checkState(size > 0, "No record has been appended.");
+        Preconditions.checkElementIndex(field, layout.fieldCount(), "field");
+        Preconditions.checkArgument(layout.type(field) == type, "Field %s is of type %s, not %s.",
+                layout.name(field), layout.type(field), type);
+        if(shared) {
+            ByteBuffer copy = ByteBuffer.allocateDirect(buffer.capacity());
+            ByteBuffer records = buffer.duplicate();
+            records.position(0).limit(size * recordSize);
+            copy.put(records);
+            buffer = copy;
+            shared = false;
+        }
+        return (size - 1) * recordSize + layout.offset(field);
+    }
+
+    @Nonnull
+    public RecordListBuilder putByte(int field, byte value) {
+        int position = position(field, RecordLayout.Type.BYTE);
+        buffer.put(position, value);
+        return this;
+    }
+
+    @Nonnull
+    public RecordListBuilder putShort(int field, short value) {
+        int position = position(field, RecordLayout.Type.SHORT);
+        buffer.putShort(position, value);
+        return this;
+    }
+
+    @Nonnull
+    public RecordListBuilder putInt(int field, int value) {
+        int position = position(field, RecordLayout.Type.INT);
+        buffer.putInt(position, value);
+        return this;
+    }
+
+    @Nonnull
+    public RecordListBuilder putLong(int field, long value) {
+        int position = position(field, RecordLayout.Type.LONG);
+        buffer.putLong(position, value);
+        return this;
+    }
+
+    @Nonnull
+    public RecordListBuilder putFloat(int field, float value) {
+        int position = position(field, RecordLayout.Type.FLOAT);
+        buffer.putFloat(position, value);
+        return this;
+    }
+
+    @Nonnull
+    public RecordListBuilder putDouble(int field, double value) {
+        int position = position(field, RecordLayout.Type.DOUBLE);
+        buffer.putDouble(position, value);
+        return this;
+    }
+
+    /**
+     * Write the field of the current record with the given name, converting the given value to the field's type.
+     * This is a convenience which looks the field up by name each time; the other {@code put} methods are faster.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public RecordListBuilder put(@Nonnull String name, @Nonnull Number value) {
+        int field = layout.indexOf(name);
+        switch(layout.type(field)) {
+            case BYTE:
+                return putByte(field, value.byteValue());
+            case SHORT:
+                return putShort(field, value.shortValue());
+            case INT:
+                return putInt(field, value.intValue());
+            case LONG:
+                return putLong(field, value.longValue());
+            case FLOAT:
+                return putFloat(field, value.floatValue());
+            default:
+                return putDouble(field, value.doubleValue());
+        }
+    }
+
+    /**
+     * Remove all the records, so that the builder can be reused. The buffer is kept, unless a built list is using it.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public RecordListBuilder reset() {
+        if(shared) {
+            buffer = ByteBuffer.allocateDirect(buffer.capacity());
+            shared = false;
+        }
+        size = 0;
+        return this;
+    }
+
+    /**
+     * Returns a read-only view of the records appended so far. The records are not copied.
+     */
+    @Nonnull
+    @Override
+    public List<Record> get() {
+        ByteBuffer records = buffer.asReadOnlyBuffer();
+        records.limit(size * recordSize);
+        shared = true;
+        return new RecordList(layout, records, size);
+    }
+
+    /**
+     * Write the records appended so far, in big-endian byte order, to the given channel, straight from the buffer.
+     * For a {@link java.nio.channels.FileChannel}, this persists the records without copying them onto the heap.
+     *
+     * @return The number of bytes written.
+     */
+    public long writeTo(@Nonnull WritableByteChannel channel) throws IOException {
+        ByteBuffer records = buffer.duplicate();
+        records.position(0).limit(size * recordSize);
+        long written = 0;
+        while(records.hasRemaining()) {
+            written += channel.write(records);
+        }
+        return written;
+    }
+
+    /**
+     * A read-only list of flyweight views of the records in a buffer.
+     */
+    private static final class RecordList extends AbstractList<Record> implements RandomAccess {
+
+        @Nonnull
+        private final RecordLayout layout;
+
+        @Nonnull
+        private final ByteBuffer records;
+
+        private final int size;
+
+        private RecordList(@Nonnull RecordLayout layout, @Nonnull ByteBuffer records, int size) {
+            this.layout = layout;
+            this.records = records;
+            this.size = size;
+        }
+
+        @Override
+        public Record get(int index) {
+            Preconditions.checkElementIndex(index, size);
+            return new Record(layout, records, index * layout.recordSize());
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,649 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.util.SupplierFunctions;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Sets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link BuilderInterface} for a set of values, with the same API as {@link ListBuilder} for adding elements.
+ *
+ * <p>
+ * Constant elements are deduplicated as they are added, so adding an element that is already in the builder costs a
+ * single hash lookup, and doesn't grow the builder. That includes elements added with {@link #addAll(Iterable)} and
+ * the other bulk methods. Elements given by builders can't be known until the set is built, so each of them is kept,
+ * and invoked once each time the set is built.
+ *
+ * <p>
+ * The set is built straight into the configured implementation, presized for the elements: a {@link HashSet} by
+ * default, or a {@link LinkedHashSet}, an {@link ImmutableSet} or an {@link EnumSet}. The order of the elements in
+ * the latter three is the order in which they were first added.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+@SuppressWarnings("unused")
+public abstract class SetBuilder<T> implements BuilderInterface<Set<T>> {
+
+    /**
+     * Static factory method to create an instance which builds {@link HashSet HashSets}.
+     */
+    @Nonnull
+    public static <T> SetBuilder<T> create() {
+        return new DefaultSetBuilder<>();
+    }
+
+    /**
+     * Static factory method to create an instance which builds {@link HashSet HashSets}.
+     * @param cls Specifies the type {@code T} of the builder returned.
+     */
+    @Nonnull
+    public static <T> SetBuilder<T> create(Class<T> cls) {
+        return new DefaultSetBuilder<>();
+    }
+
+    /**
+     * Static factory method to create an instance which builds {@link EnumSet EnumSets} of the given enum type.
+     */
+    @Nonnull
+    public static <E extends Enum<E>> SetBuilder<E> createEnumSet(@Nonnull Class<E> cls) {
+        return new DefaultSetBuilder<E>().enumSet(cls);
+    }
+
+    /**
+     * Helper method for adding an element as a supplier of that element.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    protected abstract SetBuilder<T> add(@Nonnull Supplier<? extends T> element);
+
+    /**
+     * Helper method for adding an iterator of suppliers of elements.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    protected abstract SetBuilder<T> addSuppliers(@Nonnull Iterator<? extends Supplier<? extends T>> elements);
+
+    /**
+     * Helper method for adding an iterable of suppliers of elements.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    protected SetBuilder<T> addSuppliers(@Nonnull Iterable<? extends Supplier<? extends T>> elements) {
+        return addSuppliers(elements.iterator());
+    }
+
+    /**
+     * Helper method for adding an array of suppliers of elements.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    protected SetBuilder<T> addSuppliers(@Nonnull Supplier<? extends T>[] elements) {
+        return addSuppliers(Arrays.asList(elements));
+    }
+
+    /**
+     * Helper method to add the given element, if and only if the given boolean is {@code true}.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    protected abstract SetBuilder<T> maybeAdd(@Nonnull Supplier<? extends T> element, boolean add);
+
+    /**
+     * Helper method for adding a constant element. By default, this adds a {@linkplain Suppliers#ofInstance(Object)
+     * supplier} of the element, but implementations may store constants more efficiently.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    protected SetBuilder<T> addConstant(@Nullable T element) {
+        return add(Suppliers.ofInstance(element));
+    }
+
+    /**
+     * Add all of the given elements to the set.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public SetBuilder<T> addAll(@Nonnull Iterable<? extends T> elements) {
+        return addSuppliers(Iterables.transform(elements, SupplierFunctions.<T>supplierOfInstanceFunction()));
+    }
+
+    /**
+     * Add all of the given elements to the set.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public SetBuilder<T> addAll(@Nonnull Iterator<? extends T> elements) {
+        return addSuppliers(Iterators.transform(elements, SupplierFunctions.<T>supplierOfInstanceFunction()));
+    }
+
+    /**
+     * Add all of the given elements to the set.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public SetBuilder<T> addAll(@Nonnull T[] elements) {
+        return addAll(Arrays.asList(elements));
+    }
+
+    /**
+     * Add all of the given {@link BuilderInterface Builders} as builders of elements, each of which is invoked once
+     * each time the set is built.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public SetBuilder<T> addBuilders(@Nonnull Iterable<? extends BuilderInterface<? extends T>> elements) {
+        return addSuppliers(elements);
+    }
+
+    /**
+     * Add all of the given {@link BuilderInterface Builders} as builders of elements.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public SetBuilder<T> addBuilders(@Nonnull Iterator<? extends BuilderInterface<? extends T>> elements) {
+        return addSuppliers(elements);
+    }
+
+    /**
+     * Add all of the given {@link BuilderInterface Builders} as builders of elements.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public SetBuilder<T> addBuilders(@Nonnull BuilderInterface<? extends T>[] elements) {
+        return addSuppliers(elements);
+    }
+
+    /**
+     * Add the given element to the set, unless it is already there.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public SetBuilder<T> add(@Nullable T element) {
+        return addConstant(element);
+    }
+
+    /**
+     * Add the given {@link BuilderInterface} as a builder of an element, which is invoked only when {@link #get()} is
+     * invoked to build a set.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public SetBuilder<T> add(@Nonnull BuilderInterface<? extends T> elementBuilder) {
+        return add((Supplier<? extends T>) elementBuilder);
+    }
+
+    /**
+     * Adds the given element, if and only if the given boolean is {@code true}.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public SetBuilder<T> maybeAdd(@Nullable T element, boolean add) {
+        return maybeAdd(Suppliers.ofInstance(element), add);
+    }
+
+    /**
+     * Adds the given element builder, if and only if the given boolean is {@code true}.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public SetBuilder<T> maybeAdd(@Nonnull BuilderInterface<? extends T> element, boolean add) {
+        return maybeAdd((Supplier<? extends T>) element, add);
+    }
+
+    /**
+     * Build a new set using the elements specified for this builder.
+     *
+     * @return The built set of elements.
+     */
+    @Nonnull
+    @Override
+    public abstract Set<T> get() throws IncompleteBuilderException;
+
+    /**
+     * Switch this builder to build {@link HashSet HashSets}, which is the default.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract SetBuilder<T> hashSet();
+
+    /**
+     * Switch this builder to build {@link LinkedHashSet LinkedHashSets}, whose elements are in the order in which they
+     * were first added.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract SetBuilder<T> linkedHashSet();
+
+    /**
+     * Switch this builder to build {@link ImmutableSet ImmutableSets}, whose elements are in the order in which they
+     * were first added. Since an immutable set can safely be shared, a builder whose elements are all constant builds
+     * a set only the first time {@link #get()} is invoked, and returns the same instance until it is modified. Note
+     * that an immutable set can't contain {@code null}.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract SetBuilder<T> immutable();
+
+    /**
+     * Switch this builder to build {@link EnumSet EnumSets} of the given type, which must be the type of the elements.
+     * See {@link #createEnumSet(Class)}.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract SetBuilder<T> enumSet(@Nonnull Class<? extends Enum<?>> cls);
+
+    /**
+     * Remove all of the elements from this builder, so that it can be reused to build a different set. The builder's
+     * configuration is kept.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract SetBuilder<T> reset();
+
+    /**
+     * Apply the given function to {@code this} object, and return {@code this} object again.
+     *
+     * @return This {@code SetBuilder} itself, for chaining convenience.
+     */
+    @Nonnull
+    public abstract SetBuilder<T> apply(@Nonnull Function<SetBuilder<T>, Void> function);
+
+    /**
+     * Returns the top-level non-conditional builder.
+     */
+    @Nonnull
+    public abstract SetBuilder<T> always();
+
+    /**
+     * Returns a builder which either does or doesn't delegate to this builder based on the given boolean.
+     * @param yes If {@code true}, then methods invoked on the returned builder will modify the state of {@code this}
+     *            builder. Otherwise, methods invoked on the returned builder will not modify state.
+     */
+    @Nonnull
+    public abstract SetBuilder<T> maybe(boolean yes);
+
+    /**
+     * Returns the parent set builder of a conditional set builder.
+     */
+    @Nonnull
+    public abstract SetBuilder<T> endMaybe();
+
+    protected static class DefaultSetBuilder<T> extends SetBuilder<T> {
+
+        private enum Output {
+            HASH, LINKED, IMMUTABLE, ENUM
+        }
+
+        /**
+         * The distinct constant elements, in the order in which they were first added.
+         */
+        @Nonnull
+        private final LinkedHashSet<T> constants = new LinkedHashSet<>();
+
+        /**
+         * The suppliers of the dynamic elements, in the order in which they were added.
+         */
+        @Nonnull
+        private final List<Supplier<? extends T>> dynamics = new ArrayList<>();
+
+        /**
+         * The position of each dynamic element among all the elements: the number of constants added before it. This
+         * keeps the order of the elements for the ordered outputs.
+         */
+        @Nonnull
+        private final List<Integer> dynamicPositions = new ArrayList<>();
+
+        @Nonnull
+        private Output output = Output.HASH;
+
+        @Nullable
+        private Class<? extends Enum<?>> enumClass;
+
+        /**
+         * The last set built in immutable mode, if it can be reused.
+         */
+        @Nullable
+        private Set<T> builtSet;
+
+        public DefaultSetBuilder() {
+        }
+
+        @Override
+        @Nonnull
+        protected SetBuilder<T> addConstant(@Nullable T element) {
+            if(constants.add(element)) {
+                builtSet = null;
+            }
+            return this;
+        }
+
+        /**
+         * Suppliers of constants are unwrapped, so that their values are deduplicated straight away.
+         */
+        @Override
+        @Nonnull
+        protected SetBuilder<T> add(@Nonnull Supplier<? extends T> element) {
+            if(SupplierFunctions.isSupplierOfInstance(element)) {
+                return addConstant(element.get());
+            }
+            dynamicPositions.add(constants.size());
+            dynamics.add(element);
+            builtSet = null;
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected SetBuilder<T> addSuppliers(@Nonnull Iterator<? extends Supplier<? extends T>> elements) {
+            while(elements.hasNext()) {
+                add(elements.next());
+            }
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected SetBuilder<T> maybeAdd(@Nonnull Supplier<? extends T> element, boolean add) {
+            if(add) {
+                add(element);
+            }
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        public SetBuilder<T> apply(@Nonnull Function<SetBuilder<T>, Void> function) {
+            function.apply(this);
+            return this;
+        }
+
+        /**
+         * Build a new set of the configured type, presized for all the elements. Each supplier is invoked exactly once.
+         */
+        @Nonnull
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<T> get() throws IncompleteBuilderException {
+            if(builtSet != null) {
+                return builtSet;
+            }
+            int size = constants.size() + dynamics.size();
+            switch(output) {
+                case LINKED:
+                    return fill(Sets.<T>newLinkedHashSetWithExpectedSize(size));
+                case IMMUTABLE:
+                    Set<T> set;
+                    if(dynamics.isEmpty()) {
+                        set = ImmutableSet.copyOf(constants);
+                        builtSet = set;
+                    } else {
+                        set = ImmutableSet.copyOf(fill(Sets.<T>newLinkedHashSetWithExpectedSize(size)));
+                    }
+                    return set;
+                case ENUM:
+                    return fill((Set<T>) EnumSet.noneOf((Class) enumClass));
+                default:
+                    if(dynamics.isEmpty()) {
+                        return new HashSet<>(constants);
+                    }
+                    return fill(Sets.<T>newHashSetWithExpectedSize(size));
+            }
+        }
+
+        /**
+         * Add the constant and dynamic elements to the given set, in order.
+         */
+        @Nonnull
+        private Set<T> fill(@Nonnull Set<T> set) {
+            if(dynamics.isEmpty()) {
+                set.addAll(constants);
+                return set;
+            }
+            Iterator<T> constantIterator = constants.iterator();
+            int added = 0;
+            for(int i = 0; i < dynamics.size(); i++) {
+                for(int position = dynamicPositions.get(i); added < position; added++) {
+                    set.add(constantIterator.next());
+                }
+                set.add(dynamics.get(i).get());
+            }
+            while(constantIterator.hasNext()) {
+                set.add(constantIterator.next());
+            }
+            return set;
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> hashSet() {
+            return setOutput(Output.HASH);
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> linkedHashSet() {
+            return setOutput(Output.LINKED);
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> immutable() {
+            return setOutput(Output.IMMUTABLE);
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> enumSet(@Nonnull Class<? extends Enum<?>> cls) {
+            Preconditions.checkArgument(cls.isEnum(), "Not an enum type: %s", cls.getName());
+            enumClass = cls;
+            return setOutput(Output.ENUM);
+        }
+
+        @Nonnull
+        private SetBuilder<T> setOutput(@Nonnull Output output) {
+            this.output = output;
+            builtSet = null;
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> reset() {
+            constants.clear();
+            dynamics.clear();
+            dynamicPositions.clear();
+            builtSet = null;
+            return this;
+        }
+
+        /**
+         * Returns itself.
+         */
+        @Override
+        @Nonnull
+        public SetBuilder<T> always() {
+            return this;
+        }
+
+        /**
+         * Returns either {@code this} object itself, or a new {@link NeverSetBuilder} if {@code yes} is {@code false}.
+         */
+        @Override
+        @Nonnull
+        public SetBuilder<T> maybe(boolean yes) {
+            if(yes) {
+                return this;
+            } else {
+                return new NeverSetBuilder<>(this, this);
+            }
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> endMaybe() {
+            return this;
+        }
+    }
+
+    /**
+     * A {@link SetBuilder} which doesn't actually do anything.
+     */
+    protected static class NeverSetBuilder<T> extends SetBuilder<T> {
+
+        @Nonnull
+        private final SetBuilder<T> alwaysBuilder;
+
+        @Nonnull
+        private final SetBuilder<T> parent;
+
+        protected NeverSetBuilder(@Nonnull SetBuilder<T> alwaysBuilder, @Nonnull SetBuilder<T> parent) {
+            this.alwaysBuilder = alwaysBuilder;
+            this.parent = parent;
+        }
+
+        @Override
+        @Nonnull
+        protected SetBuilder<T> add(@Nonnull Supplier<? extends T> element) {
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected SetBuilder<T> addSuppliers(@Nonnull Iterator<? extends Supplier<? extends T>> elements) {
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected SetBuilder<T> addSuppliers(@Nonnull Iterable<? extends Supplier<? extends T>> elements) {
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected SetBuilder<T> addSuppliers(@Nonnull Supplier<? extends T>[] elements) {
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected SetBuilder<T> maybeAdd(@Nonnull Supplier<? extends T> element, boolean add) {
+            return this;
+        }
+
+        @Override
+        @Nonnull
+        protected SetBuilder<T> addConstant(@Nullable T element) {
+            return this;
+        }
+
+        /**
+         * Note that the never builder <em>does not</em> invoke the given function at all, it simply returns itself.
+         */
+        @Nonnull
+        @Override
+        public SetBuilder<T> apply(@Nonnull Function<SetBuilder<T>, Void> function) {
+            return this;
+        }
+
+        /**
+         * Delegates to the originating (non-conditional) set builder.
+         */
+        @Nonnull
+        @Override
+        public Set<T> get() throws IncompleteBuilderException {
+            return alwaysBuilder.get();
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> hashSet() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> linkedHashSet() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> immutable() {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> enumSet(@Nonnull Class<? extends Enum<?>> cls) {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> reset() {
+            return this;
+        }
+
+        /**
+         * Returns the originating (non-conditional) set builder.
+         */
+        @Override
+        @Nonnull
+        public SetBuilder<T> always() {
+            return alwaysBuilder;
+        }
+
+        /**
+         * Returns a new {@link NeverSetBuilder}: if this scope is already false, so is any scope nested in it.
+         */
+        @Override
+        @Nonnull
+        public SetBuilder<T> maybe(boolean yes) {
+            return new NeverSetBuilder<>(alwaysBuilder, this);
+        }
+
+        @Nonnull
+        @Override
+        public SetBuilder<T> endMaybe() {
+            return parent;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.util.BuilderPool;
+import com.brianmearns.crafter.util.ParallelSort;
+import com.brianmearns.crafter.util.SizeEstimator;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A {@link MapBuilder} which builds maps sorted by their keys, as immutable {@link ImmutableSortedMap
+ * ImmutableSortedMaps}.
+ *
+ * <p>
+ * The entries are sorted once, when the map is built, with a {@linkplain ParallelSort parallel sort} for large maps,
+ * and copied in that order into the arrays of keys and values that back the map, which looks up keys by binary
+ * search. Unlike copying a built map into a {@link TreeMap}, this doesn't create a tree node per entry, and sorts
+ * large maps on all cores. As in {@linkplain #immutable() immutable mode}, which is always on, a map whose values are
+ * all constant is only built once, until the builder is modified. Keys and values cannot be {@code null}. Sorted maps
+ * aren't shared by a {@link BuildCache}, which simply invokes the builder.
+ *
+ * <p>
+ * The {@linkplain #compact() compact}, {@linkplain #shaped() shaped} and {@linkplain #interned() interned} modes
+ * don't apply to sorted maps, so those methods have no effect. Maps built by a {@linkplain #freeze() frozen} builder,
+ * or with {@link #buildMany(int)}, are built the same way. Create builders with {@link #naturalOrder()} or
+ * {@link #orderedBy(Comparator)}: the static factory methods inherited from {@link MapBuilder} would create unsorted
+ * builders, so they are hidden by methods which throw.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class SortedMapBuilder<K, V> extends MapBuilder.DefaultMapBuilder<K, V> {
+
+    @Nonnull
+    private final Comparator<? super K> comparator;
+
+    protected SortedMapBuilder(@Nonnull Comparator<? super K> comparator) {
+        this.comparator = Preconditions.checkNotNull(comparator, "comparator");
+        immutable();
+    }
+
+    /**
+     * Create a new instance with the same state as the given builder, sharing its structure.
+     *
+     * @see #fork()
+     */
+    protected SortedMapBuilder(@Nonnull SortedMapBuilder<K, V> original) {
+        super(original);
+        this.comparator = original.comparator;
+    }
+
+    /**
+     * Create a new builder of maps sorted by the natural order of their keys.
+     */
+    @Nonnull
+    public static <K extends Comparable<? super K>, V> SortedMapBuilder<K, V> naturalOrder() {
+        return new SortedMapBuilder<>(Ordering.<K>natural());
+    }
+
+    /**
+     * Create a new builder of maps sorted by the given order of their keys.
+     */
+    @Nonnull
+    public static <K, V> SortedMapBuilder<K, V> orderedBy(@Nonnull Comparator<? super K> comparator) {
+        return new SortedMapBuilder<>(comparator);
+    }
+
+    /**
+     * Not supported: a sorted map builder needs the order of its keys.
+     *
+     * @throws UnsupportedOperationException Always.
+     * @deprecated Use {@link #naturalOrder()} or {@link #orderedBy(Comparator)}.
+     */
+    @Deprecated
+    @Nonnull
+    public static <K, V> MapBuilder<K, V> create() {
+        throw new UnsupportedOperationException("Use SortedMapBuilder.naturalOrder() or SortedMapBuilder.orderedBy().");
+    }
+
+    /**
+     * Not supported: a sorted map builder needs the order of its keys.
+     *
+     * @throws UnsupportedOperationException Always.
+     * @deprecated Use {@link #naturalOrder()} or {@link #orderedBy(Comparator)}.
+     */
+    @Deprecated
+    @Nonnull
+    public static <K, V> MapBuilder<K, V> create(@Nonnull Class<K> keyCls, @Nonnull Class<V> valueCls) {
+        throw new UnsupportedOperationException("Use SortedMapBuilder.naturalOrder() or SortedMapBuilder.orderedBy().");
+    }
+
+    /**
+     * Not supported: a sorted map builder needs the order of its keys, and doesn't presize its maps.
+     *
+     * @throws UnsupportedOperationException Always.
+     * @deprecated Use {@link #naturalOrder()} or {@link #orderedBy(Comparator)}.
+     */
+    @Deprecated
+    @Nonnull
+    public static <K, V> MapBuilder<K, V> create(int expectedSize) {
+        throw new UnsupportedOperationException("Use SortedMapBuilder.naturalOrder() or SortedMapBuilder.orderedBy().");
+    }
+
+    /**
+     * Not supported: a sorted map builder needs the order of its keys, and doesn't presize its maps.
+     *
+     * @throws UnsupportedOperationException Always.
+     * @deprecated Use {@link #naturalOrder()} or {@link #orderedBy(Comparator)}.
+     */
+    @Deprecated
+    @Nonnull
+    public static <K, V> MapBuilder<K, V> create(@Nonnull SizeEstimator sizeEstimator) {
+        throw new UnsupportedOperationException("Use SortedMapBuilder.naturalOrder() or SortedMapBuilder.orderedBy().");
+    }
+
+    /**
+     * Not supported: the pool would hold unsorted builders.
+     *
+     * @throws UnsupportedOperationException Always.
+     * @deprecated Pool the builders created by {@link #naturalOrder()} or {@link #orderedBy(Comparator)} yourself.
+     */
+    @Deprecated
+    @Nonnull
+    public static <K, V> BuilderPool<MapBuilder<K, V>> pool() {
+        throw new UnsupportedOperationException("A pool of sorted map builders needs the order of the keys.");
+    }
+
+    /**
+     * Returns the order of the keys.
+     */
+    @Nonnull
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Build a new map using the entries specified for this builder, sorted by their keys.
+     */
+    @Nonnull
+    @Override
+    public ImmutableSortedMap<K, V> get() throws IncompleteBuilderException {
+        return (ImmutableSortedMap<K, V>) super.get();
+    }
+
+    /**
+     * Evaluate the entries, sort them by key, and build the sorted map from them. Keys which the comparator considers
+     * equal are the same key of a sorted map, so as with a {@link TreeMap}, the first of them is kept, with the value
+     * of the last.
+     */
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Map<K, V> buildImmutableMap(@Nonnull List<Entry<K, V>> entries) {
+        Map.Entry<K, V>[] sorted = (Map.Entry<K, V>[]) new Map.Entry<?, ?>[entries.size()];
+        for(int i = 0; i < sorted.length; i++) {
+            Entry<K, V> entry = entries.get(i);
+            sorted[i] = Maps.immutableEntry(entry.getKey(), entry.getValue());
+        }
+        ParallelSort.sort(sorted, new Comparator<Map.Entry<K, V>>() {
+            @Override
+            public int compare(Map.Entry<K, V> left, Map.Entry<K, V> right) {
+                return comparator.compare(left.getKey(), right.getKey());
+            }
+        });
+        int size = 0;
+        for(Map.Entry<K, V> entry : sorted) {
+            if(size > 0 && comparator.compare(sorted[size - 1].getKey(), entry.getKey()) == 0) {
+                sorted[size - 1] = Maps.immutableEntry(sorted[size - 1].getKey(), entry.getValue());
+            } else {
+                sorted[size++] = entry;
+            }
+        }
+        //Given a sorted map with the same comparator, the copy takes the entries as they are, without sorting them again.
+        return ImmutableSortedMap.copyOfSorted(new SortedEntries<>(comparator, Arrays.asList(sorted).subList(0, size)));
+    }
+
+    /**
+     * Sorted maps aren't {@linkplain BuildCache cached} by their contents, since the cache would build them as
+     * ordinary maps, and would mistake them for unsorted maps with the same entries.
+     */
+    @Nullable
+    @Override
+    Object[] constantContents() {
+        return null;
+    }
+
+    /**
+     * Returns a new {@link SortedMapBuilder}, created with the {@linkplain #SortedMapBuilder(SortedMapBuilder) copy
+     * constructor}.
+     */
+    @Nonnull
+    @Override
+    public SortedMapBuilder<K, V> fork() {
+        return new SortedMapBuilder<>(this);
+    }
+
+    @Nonnull
+    @Override
+    public SortedMapBuilder<K, V> compact() {
+        return this;
+    }
+
+    @Nonnull
+    @Override
+    public SortedMapBuilder<K, V> shaped() {
+        return this;
+    }
+
+    @Nonnull
+    @Override
+    public SortedMapBuilder<K, V> interned() {
+        return this;
+    }
+
+    /**
+     * A read-only view of entries which are already sorted by key, just for {@link ImmutableSortedMap#copyOfSorted}
+     * to copy, so it doesn't support the views of ranges of keys.
+     */
+    private static final class SortedEntries<K, V> extends AbstractMap<K, V> implements SortedMap<K, V> {
+
+        @Nonnull
+        private final Comparator<? super K> comparator;
+
+        @Nonnull
+        private final List<Map.Entry<K, V>> entries;
+
+        private SortedEntries(@Nonnull Comparator<? super K> comparator, @Nonnull List<Map.Entry<K, V>> entries) {
+            this.comparator = comparator;
+            this.entries = entries;
+        }
+
+        @Nonnull
+        @Override
+        public Comparator<? super K> comparator() {
+            return comparator;
+        }
+
+        @Nonnull
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<Map.Entry<K, V>>() {
+                @Nonnull
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return Iterators.unmodifiableIterator(entries.iterator());
+                }
+
+                @Override
+                public int size() {
+                    return entries.size();
+                }
+            };
+        }
+
+        @Override
+        public K firstKey() {
+            if(entries.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            return entries.get(0).getKey();
+        }
+
+        @Override
+        public K lastKey() {
+            if(entries.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            return entries.get(entries.size() - 1).getKey();
+        }
+
+        @Nonnull
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Nonnull
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Nonnull
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
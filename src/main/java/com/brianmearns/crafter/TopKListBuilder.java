@@ -0,0 +1,331 @@
+package com.brianmearns.crafter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link BuilderInterface} for a list of the first {@code k} of the elements added to it, in the order of a
+ * comparator, such as the best {@code k} candidates by score.
+ *
+ * <p>
+ * The built list is the same as that built by a {@link ListBuilder} {@linkplain ListBuilder#sorted(Comparator)
+ * sorted} by the comparator, truncated to {@code k} elements: equal elements keep the order in which they were added.
+ * But instead of holding every element, the builder holds at most {@code k} constant elements, in a heap whose root is
+ * the last of them in order, which is replaced whenever an element that comes before it is added. So the builder takes
+ * {@code O(k)} memory for constant elements however many are added, and adding {@code n} elements takes
+ * {@code O(n log k)} time rather than the {@code O(n log n)} of sorting them all. Elements given by builders are only
+ * known when the list is built, so each builder is held, and its element is offered to a copy of the heap each time the
+ * list is built.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class TopKListBuilder<T> implements BuilderInterface<List<T>> {
+
+    @Nonnull
+    private final Heap<T> constants;
+
+    /**
+     * The builders of the dynamic elements, in the order in which they were added.
+     */
+    @Nonnull
+    private final List<Supplier<? extends T>> dynamics = new ArrayList<>();
+
+    /**
+     * The sequence number of each dynamic element.
+     */
+    @Nonnull
+    private long[] dynamicSequences = new long[4];
+
+    /**
+     * The sequence number of the next element to be added, which is the number of elements added so far.
+     */
+    private long nextSequence;
+
+    protected TopKListBuilder(int k, @Nonnull Comparator<? super T> comparator) {
+        Preconditions.checkArgument(k >= 0, "Number of elements to keep cannot be negative: %s", k);
+        this.constants = new Heap<>(k, Preconditions.checkNotNull(comparator, "comparator"));
+    }
+
+    /**
+     * Create a new builder which keeps the first {@code k} elements in the order of the given comparator. To keep the
+     * {@code k} greatest elements, use a {@linkplain com.google.common.collect.Ordering#reverse() reversed}
+     * comparator.
+     */
+    @Nonnull
+    public static <T> TopKListBuilder<T> create(int k, @Nonnull Comparator<? super T> comparator) {
+        return new TopKListBuilder<>(k, comparator);
+    }
+
+    /**
+     * Returns the number of elements kept.
+     */
+    public int k() {
+        return constants.elements.length;
+    }
+
+    /**
+     * Returns the number of elements added so far, including those which weren't kept.
+     */
+    public long addedCount() {
+        return nextSequence;
+    }
+
+    /**
+     * Add the given element, which is kept if it is among the first {@code k} of the constant elements so far.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public TopKListBuilder<T> add(@Nullable T element) {
+        constants.offer(element, nextSequence++);
+        return this;
+    }
+
+    /**
+     * Add the given {@link BuilderInterface} as a builder of an element, which is invoked each time {@link #get()} is
+     * invoked to build a list.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public TopKListBuilder<T> add(@Nonnull BuilderInterface<? extends T> elementBuilder) {
+        Preconditions.checkNotNull(elementBuilder, "elementBuilder");
+        if(dynamics.size() == dynamicSequences.length) {
+            dynamicSequences = Arrays.copyOf(dynamicSequences, 2 * dynamicSequences.length);
+        }
+        dynamicSequences[dynamics.size()] = nextSequence++;
+        dynamics.add(elementBuilder);
+        return this;
+    }
+
+    /**
+     * Add all of the given elements.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public TopKListBuilder<T> addAll(@Nonnull Iterator<? extends T> elements) {
+        while(elements.hasNext()) {
+            add(elements.next());
+        }
+        return this;
+    }
+
+    /**
+     * Add all of the given elements.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public TopKListBuilder<T> addAll(@Nonnull Iterable<? extends T> elements) {
+        return addAll(elements.iterator());
+    }
+
+    /**
+     * Add all of the given elements.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public TopKListBuilder<T> addAll(@Nonnull T[] elements) {
+        for(T element : elements) {
+            add(element);
+        }
+        return this;
+    }
+
+    /**
+     * Add all of the given {@link BuilderInterface Builders} as builders of elements.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public TopKListBuilder<T> addBuilders(@Nonnull Iterable<? extends BuilderInterface<? extends T>> elements) {
+        for(BuilderInterface<? extends T> element : elements) {
+            add(element);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the given element, if and only if the given boolean is {@code true}.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public TopKListBuilder<T> maybeAdd(@Nullable T element, boolean add) {
+        if(add) {
+            add(element);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the given element builder, if and only if the given boolean is {@code true}.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public TopKListBuilder<T> maybeAdd(@Nonnull BuilderInterface<? extends T> element, boolean add) {
+        if(add) {
+            add(element);
+        }
+        return this;
+    }
+
+    /**
+     * Remove all of the elements from this builder, so that it can be reused to build a different list.
+     *
+     * @return {@code this} object itself, for chaining convenience.
+     */
+    @Nonnull
+    public TopKListBuilder<T> reset() {
+        constants.clear();
+        dynamics.clear();
+        nextSequence = 0;
+        return this;
+    }
+
+    /**
+     * Build a new list of the first {@code k} elements in order, or of all of them if fewer were added. Each element
+     * builder is invoked exactly once.
+     */
+    @Nonnull
+    @Override
+    public List<T> get() throws IncompleteBuilderException {
+        Heap<T> heap = constants.copy();
+        for(int i = 0; i < dynamics.size(); i++) {
+            heap.offer(dynamics.get(i).get(), dynamicSequences[i]);
+        }
+        return heap.drain();
+    }
+
+    /**
+     * A bounded max-heap of elements, ordered by the comparator and then by their sequence numbers, whose root is the
+     * last of them.
+     */
+    private static final class Heap<T> {
+
+        @Nonnull
+        private final Object[] elements;
+
+        @Nonnull
+        private final long[] sequences;
+
+        @Nonnull
+        private final Comparator<? super T> comparator;
+
+        private int size;
+
+        private Heap(int k, @Nonnull Comparator<? super T> comparator) {
+            this(new Object[k], new long[k], comparator, 0);
+        }
+
+        private Heap(@Nonnull Object[] elements, @Nonnull long[] sequences, @Nonnull Comparator<? super T> comparator, int size) {
+            this.elements = elements;
+            this.sequences = sequences;
+            this.comparator = comparator;
+            this.size = size;
+        }
+
+        @Nonnull
+        private Heap<T> copy() {
+            return new Heap<>(elements.clone(), sequences.clone(), comparator, size);
+        }
+
+        private void clear() {
+            Arrays.fill(elements, 0, size, null);
+            size = 0;
+        }
+
+        /**
+         * Add the given element, if there is room for it or it comes before the root, which it then replaces.
+         */
+        @SuppressWarnings("unchecked")
+        private void offer(@Nullable T element, long sequence) {
+            if(size < elements.length) {
+                elements[size] = element;
+                sequences[size] = sequence;
+                siftUp(size++);
+            } else if(size > 0) {
+                //An element equal to the root comes after it if it was added later, as constants always are.
+                int result = comparator.compare(element, (T) elements[0]);
+                if(result > 0 || (result == 0 && sequence > sequences[0])) {
+                    return;
+                }
+                elements[0] = element;
+                sequences[0] = sequence;
+                siftDown(0, size);
+            }
+        }
+
+        /**
+         * Sort the elements in place, by repeatedly moving the root to the end, and return them as a list.
+         */
+        @Nonnull
+        @SuppressWarnings("unchecked")
+        private List<T> drain() {
+            for(int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            List<T> list = new ArrayList<>(size);
+            for(int i = 0; i < size; i++) {
+                list.add((T) elements[i]);
+            }
+            return list;
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compare(int left, int right) {
+            int result = comparator.compare((T) elements[left], (T) elements[right]);
+            return result != 0 ? result : Long.compare(sequences[left], sequences[right]);
+        }
+
+        private void siftUp(int index) {
+            while(index > 0) {
+                int parent = (index - 1) >>> 1;
+                if(compare(index, parent) <= 0) {
+                    return;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index, int end) {
+            while(true) {
+                int largest = index;
+                int left = 2 * index + 1;
+                if(left < end && compare(left, largest) > 0) {
+                    largest = left;
+                }
+                if(left + 1 < end && compare(left + 1, largest) > 0) {
+                    largest = left + 1;
+                }
+                if(largest == index) {
+                    return;
+                }
+                swap(index, largest);
+                index = largest;
+            }
+        }
+
+        private void swap(int left, int right) {
+            Object element = elements[left];
+            elements[left] = elements[right];
+            elements[right] = element;
+            long sequence = sequences[left];
+            sequences[left] = sequences[right];
+            sequences[right] = sequence;
+        }
+    }
+}
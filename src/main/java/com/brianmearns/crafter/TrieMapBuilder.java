@@ -0,0 +1,175 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.collect.RadixTrieMap;
+import com.brianmearns.crafter.util.BuilderPool;
+import com.brianmearns.crafter.util.SizeEstimator;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link MapBuilder} for maps with {@link String} keys, which builds them as immutable {@link RadixTrieMap
+ * RadixTrieMaps}. This suits hierarchical keys, such as the dotted names of configuration settings: keys that share a
+ * prefix share the storage for it, rather than each being held in full, and all of the entries under a prefix can be
+ * found with {@link RadixTrieMap#subMap(String)} without scanning the whole map.
+ *
+ * <p>
+ * As in {@linkplain #immutable() immutable mode}, which is always on, a map whose values are all constant is only
+ * built once, until the builder is modified. Keys cannot be {@code null}. Tries aren't shared by a
+ * {@link BuildCache}, which simply invokes the builder. The {@linkplain #compact() compact},
+ * {@linkplain #shaped() shaped} and {@linkplain #interned() interned} modes don't apply to tries, so those methods have
+ * no effect. Maps built by a {@linkplain #freeze() frozen} builder, or with {@link #buildMany(int)}, are tries too.
+ * Create builders with {@link #create(Class)}: the static factory methods inherited from {@link MapBuilder} would
+ * create builders of ordinary maps, so they are hidden by methods which throw.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class TrieMapBuilder<V> extends MapBuilder.DefaultMapBuilder<String, V> {
+
+    protected TrieMapBuilder() {
+        immutable();
+    }
+
+    /**
+     * Create a new instance with the same state as the given builder, sharing its structure.
+     *
+     * @see #fork()
+     */
+    protected TrieMapBuilder(@Nonnull TrieMapBuilder<V> original) {
+        super(original);
+    }
+
+    /**
+     * Create a new builder of maps with values of the given class. The class is only used for type inference.
+     */
+    @Nonnull
+    public static <V> TrieMapBuilder<V> create(@Nonnull Class<V> valueCls) {
+        return new TrieMapBuilder<>();
+    }
+
+    /**
+     * Not supported: use {@link #create(Class)}.
+     *
+     * @throws UnsupportedOperationException Always.
+     * @deprecated Use {@link #create(Class)}.
+     */
+    @Deprecated
+    @Nonnull
+    public static <K, V> MapBuilder<K, V> create() {
+        throw new UnsupportedOperationException("Use TrieMapBuilder.create(Class).");
+    }
+
+    /**
+     * Not supported: the keys of a trie are strings, so use {@link #create(Class)}.
+     *
+     * @throws UnsupportedOperationException Always.
+     * @deprecated Use {@link #create(Class)}.
+     */
+    @Deprecated
+    @Nonnull
+    public static <K, V> MapBuilder<K, V> create(@Nonnull Class<K> keyCls, @Nonnull Class<V> valueCls) {
+        throw new UnsupportedOperationException("Use TrieMapBuilder.create(Class).");
+    }
+
+    /**
+     * Not supported: a trie builder doesn't presize its maps, so use {@link #create(Class)}.
+     *
+     * @throws UnsupportedOperationException Always.
+     * @deprecated Use {@link #create(Class)}.
+     */
+    @Deprecated
+    @Nonnull
+    public static <K, V> MapBuilder<K, V> create(int expectedSize) {
+        throw new UnsupportedOperationException("Use TrieMapBuilder.create(Class).");
+    }
+
+    /**
+     * Not supported: a trie builder doesn't presize its maps, so use {@link #create(Class)}.
+     *
+     * @throws UnsupportedOperationException Always.
+     * @deprecated Use {@link #create(Class)}.
+     */
+    @Deprecated
+    @Nonnull
+    public static <K, V> MapBuilder<K, V> create(@Nonnull SizeEstimator sizeEstimator) {
+        throw new UnsupportedOperationException("Use TrieMapBuilder.create(Class).");
+    }
+
+    /**
+     * Not supported: the pool would hold builders of ordinary maps.
+     *
+     * @throws UnsupportedOperationException Always.
+     * @deprecated Pool the builders created by {@link #create(Class)} yourself.
+     */
+    @Deprecated
+    @Nonnull
+    public static <K, V> BuilderPool<MapBuilder<K, V>> pool() {
+        throw new UnsupportedOperationException("A pool of trie map builders isn't supported.");
+    }
+
+    /**
+     * Build a new map using the entries specified for this builder, as a radix trie.
+     */
+    @Nonnull
+    @Override
+    public RadixTrieMap<V> get() throws IncompleteBuilderException {
+        return (RadixTrieMap<V>) super.get();
+    }
+
+    /**
+     * Evaluate the entries and build the trie from them.
+     */
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Map<String, V> buildImmutableMap(@Nonnull List<Entry<String, V>> entries) {
+        Map.Entry<String, V>[] evaluated = (Map.Entry<String, V>[]) new Map.Entry<?, ?>[entries.size()];
+        for(int i = 0; i < evaluated.length; i++) {
+            Entry<String, V> entry = entries.get(i);
+            evaluated[i] = Maps.immutableEntry(entry.getKey(), entry.getValue());
+        }
+        return RadixTrieMap.copyOf(evaluated, evaluated.length);
+    }
+
+    /**
+     * Tries aren't {@linkplain BuildCache cached} by their contents, since the cache would build them as ordinary maps,
+     * without {@link RadixTrieMap#subMap(String) prefix views}, and would mistake them for other maps with the same
+     * entries.
+     */
+    @Nullable
+    @Override
+    Object[] constantContents() {
+        return null;
+    }
+
+    /**
+     * Returns a new {@link TrieMapBuilder}, created with the {@linkplain #TrieMapBuilder(TrieMapBuilder) copy
+     * constructor}.
+     */
+    @Nonnull
+    @Override
+    public TrieMapBuilder<V> fork() {
+        return new TrieMapBuilder<>(this);
+    }
+
+    @Nonnull
+    @Override
+    public TrieMapBuilder<V> compact() {
+        return this;
+    }
+
+    @Nonnull
+    @Override
+    public TrieMapBuilder<V> shaped() {
+        return this;
+    }
+
+    @Nonnull
+    @Override
+    public TrieMapBuilder<V> interned() {
+        return this;
+    }
+}
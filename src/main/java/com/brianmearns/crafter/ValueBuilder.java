@@ -1,12 +1,17 @@
 package com.brianmearns.crafter;
 
+import com.brianmearns.crafter.util.IndexedSupplier;
+import com.brianmearns.crafter.util.SupplierFunctions;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -93,6 +98,18 @@ public abstract class ValueBuilder<T> implements BuilderInterface<T> {
         return set((Supplier<T>)valueBuilder);
     }
 
+    /**
+     * Use the given {@link IndexedSupplier} to get the value of the instance, which varies with the index of the instance
+     * being built by {@link #buildMany(int)}. When a single instance is built by {@link #get()}, the supplier is invoked
+     * with index {@code 0}.
+     *
+     * @return This {@code ValueBuilder} itself, for chaining convenience.
+     */
+    @Nonnull
+    public ValueBuilder<T> setIndexed(@Nonnull IndexedSupplier<? extends T> valueSupplier) {
+        return set(SupplierFunctions.<T>ofIndexed(valueSupplier));
+    }
+
     /**
      * Helper method to set the value that will be used by {@link #get()} to return a new instance.
      *
@@ -142,6 +159,29 @@ public abstract class ValueBuilder<T> implements BuilderInterface<T> {
     @Override
     public abstract T get() throws IncompleteBuilderException ;
 
+    /**
+     * Build a batch of values at once. This is equivalent to invoking {@link #get()} {@code n} times, except that a value
+     * set with {@link #setIndexed(IndexedSupplier)} is supplied with the index of each instance, and a constant value
+     * (as set with {@link #set(Object)}) is only looked up once.
+     *
+     * @param n The number of values to build.
+     *
+     * @return A list of the {@code n} built values, in index order.
+     * @throws IncompleteBuilderException if a value has not yet been set for the builder.
+     */
+    @Nonnull
+    public abstract List<T> buildMany(int n) throws IncompleteBuilderException;
+
+    /**
+     * Returns a single element array of the value of this builder, if it is a constant value, for use as the key of a
+     * {@link BuildCache}. Returns {@code null} if the value is not set or not constant, or if the builder doesn't
+     * support this.
+     */
+    @Nullable
+    Object[] constantContents() {
+        return null;
+    }
+
     /**
      * Returns the top-level non-conditional builder.
      */
@@ -218,6 +258,33 @@ public abstract class ValueBuilder<T> implements BuilderInterface<T> {
             throw new IncompleteBuilderException("Builder value has not yet been set.");
         }
 
+        @Nonnull
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<T> buildMany(int n) throws IncompleteBuilderException {
+            Preconditions.checkArgument(n >= 0, "Number of values to build cannot be negative: %s", n);
+            if(!value.isPresent()) {
+                throw new IncompleteBuilderException("Builder value has not yet been set.");
+            }
+            Supplier<T> supplier = value.get();
+            List<T> values = new ArrayList<>(n);
+            if(SupplierFunctions.isSupplierOfInstance(supplier)) {
+                T constant = supplier.get();
+                for(int i = 0; i < n; i++) {
+                    values.add(constant);
+                }
+            } else if(supplier instanceof IndexedSupplier) {
+                for(int i = 0; i < n; i++) {
+                    values.add(((IndexedSupplier<T>) supplier).get(i));
+                }
+            } else {
+                for(int i = 0; i < n; i++) {
+                    values.add(supplier.get());
+                }
+            }
+            return values;
+        }
+
         @Override
         @Nonnull
         protected ValueBuilder<T> apply(@Nonnull Function<ValueBuilder<T>, Void> function) {
@@ -226,6 +293,15 @@ public abstract class ValueBuilder<T> implements BuilderInterface<T> {
         }
 
 
+        @Nullable
+        @Override
+        Object[] constantContents() {
+            if(value.isPresent() && SupplierFunctions.isSupplierOfInstance(value.get())) {
+                return new Object[]{value.get().get()};
+            }
+            return null;
+        }
+
         /**
          * Returns itself.
          */
@@ -295,6 +371,18 @@ public abstract class ValueBuilder<T> implements BuilderInterface<T> {
             return alwaysBuilder.get();
         }
 
+        @Nonnull
+        @Override
+        public List<T> buildMany(int n) throws IncompleteBuilderException {
+            return alwaysBuilder.buildMany(n);
+        }
+
+        @Nullable
+        @Override
+        Object[] constantContents() {
+            return alwaysBuilder.constantContents();
+        }
+
         @Nonnull
         @Override
         public ValueBuilder<T> always() {
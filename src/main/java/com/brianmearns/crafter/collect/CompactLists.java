@@ -0,0 +1,189 @@
+package com.brianmearns.crafter.collect;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Static factory methods for unmodifiable lists whose implementation is specialized for their size, to minimize
+ * their memory footprint.
+ *
+ * <p>
+ * Empty lists are all the same shared instance. Lists of up to four elements hold them in fields, without any array.
+ * Larger lists are backed by an array of exactly their size. Elements may be {@code null}.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class CompactLists {
+
+    private CompactLists() {
+    }
+
+    /**
+     * Returns a compact, unmodifiable list of the first {@code size} elements of the given array. The array may be
+     * taken over by the returned list, so it must not be modified afterwards.
+     *
+     * @param array The array of elements.
+     * @param size The number of elements at the start of the array to include in the list.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public static <E> List<E> wrap(@Nonnull Object[] array, int size) {
+        Preconditions.checkPositionIndex(size, array.length, "size");
+        switch(size) {
+            case 0:
+                return Collections.emptyList();
+            case 1:
+                return new List1<>((E) array[0]);
+            case 2:
+                return new List2<>((E) array[0], (E) array[1]);
+            case 3:
+                return new List3<>((E) array[0], (E) array[1], (E) array[2]);
+            case 4:
+                return new List4<>((E) array[0], (E) array[1], (E) array[2], (E) array[3]);
+            default:
+                return ImmutableArrayList.wrap(size == array.length ? array : Arrays.copyOf(array, size), size);
+        }
+    }
+
+    /**
+     * Returns a compact, unmodifiable copy of the given list.
+     */
+    @Nonnull
+    public static <E> List<E> copyOf(@Nonnull List<? extends E> list) {
+        Object[] array = list.toArray();
+        return wrap(array, array.length);
+    }
+
+    /**
+     * Base class for the lists which hold their elements in fields.
+     */
+    private static abstract class FieldList<E> extends AbstractList<E> implements RandomAccess {
+
+        @Override
+        public E get(int index) {
+            Preconditions.checkElementIndex(index, size());
+            return element(index);
+        }
+
+        /**
+         * Returns the element at the given index, which has already been checked.
+         */
+        abstract E element(int index);
+    }
+
+    private static final class List1<E> extends FieldList<E> {
+
+        private final E e0;
+
+        private List1(E e0) {
+            this.e0 = e0;
+        }
+
+        @Override
+        E element(int index) {
+            return e0;
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+    }
+
+    private static final class List2<E> extends FieldList<E> {
+
+        private final E e0;
+
+        private final E e1;
+
+        private List2(E e0, E e1) {
+            this.e0 = e0;
+            this.e1 = e1;
+        }
+
+        @Override
+        E element(int index) {
+            return index == 0 ? e0 : e1;
+        }
+
+        @Override
+        public int size() {
+            return 2;
+        }
+    }
+
+    private static final class List3<E> extends FieldList<E> {
+
+        private final E e0;
+
+        private final E e1;
+
+        private final E e2;
+
+        private List3(E e0, E e1, E e2) {
+            this.e0 = e0;
+            this.e1 = e1;
+            this.e2 = e2;
+        }
+
+        @Override
+        E element(int index) {
+            switch(index) {
+                case 0:
+                    return e0;
+                case 1:
+                    return e1;
+                default:
+                    return e2;
+            }
+        }
+
+        @Override
+        public int size() {
+            return 3;
+        }
+    }
+
+    private static final class List4<E> extends FieldList<E> {
+
+        private final E e0;
+
+        private final E e1;
+
+        private final E e2;
+
+        private final E e3;
+
+        private List4(E e0, E e1, E e2, E e3) {
+            this.e0 = e0;
+            this.e1 = e1;
+            this.e2 = e2;
+            this.e3 = e3;
+        }
+
+        @Override
+        E element(int index) {
+            switch(index) {
+                case 0:
+                    return e0;
+                case 1:
+                    return e1;
+                case 2:
+                    return e2;
+                default:
+                    return e3;
+            }
+        }
+
+        @Override
+        public int size() {
+            return 4;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.brianmearns.crafter.collect;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Static factory methods for unmodifiable maps whose implementation is specialized for their size, to minimize their
+ * memory footprint.
+ *
+ * <p>
+ * Empty maps are all the same shared instance. Maps of up to four entries hold their keys and values in fields, and
+ * are searched linearly. Larger maps hold their keys and values side by side in a single open-addressed array, which
+ * is searched by linear probing, so no entry objects are allocated. A {@code null} key and {@code null} values are
+ * supported.
+ *
+ * <p>
+ * Maps of up to four entries iterate in the order the entries were given; larger maps iterate in hash order.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class CompactMaps {
+
+    private CompactMaps() {
+    }
+
+    /**
+     * Returns a compact, unmodifiable map of the first {@code size} keys in the given array, each mapped to the value at
+     * the same index in the other array. The arrays are not retained by the returned map.
+     *
+     * @param keys The keys, which must all be distinct.
+     * @param values The values for each of the keys.
+     * @param size The number of keys to include in the map.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public static <K, V> Map<K, V> copyOf(@Nonnull Object[] keys, @Nonnull Object[] values, int size) {
+        Preconditions.checkPositionIndex(size, Math.min(keys.length, values.length), "size");
+        switch(size) {
+            case 0:
+                return Collections.emptyMap();
+            case 1:
+                return new Map1<>((K) keys[0], (V) values[0]);
+            case 2:
+                return new Map2<>((K) keys[0], (V) values[0], (K) keys[1], (V) values[1]);
+            case 3:
+                return new Map3<>((K) keys[0], (V) values[0], (K) keys[1], (V) values[1], (K) keys[2], (V) values[2]);
+            case 4:
+                return new Map4<>((K) keys[0], (V) values[0], (K) keys[1], (V) values[1], (K) keys[2], (V) values[2],
+                        (K) keys[3], (V) values[3]);
+            default:
+                return new ProbeMap<>(keys, values, size);
+        }
+    }
+
+    /**
+     * Returns a compact, unmodifiable copy of the given map.
+     */
+    @Nonnull
+    public static <K, V> Map<K, V> copyOf(@Nonnull Map<? extends K, ? extends V> map) {
+        Object[] keys = new Object[map.size()];
+        Object[] values = new Object[map.size()];
+        int i = 0;
+        for(Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+        return copyOf(keys, values, i);
+    }
+
+    /**
+     * Base class for the compact maps, which have their entries in slots numbered from zero. Some slots may be empty.
+     */
+    private static abstract class SlotMap<K, V> extends AbstractMap<K, V> {
+
+        /**
+         * Returns the number of slots.
+         */
+        abstract int slots();
+
+        /**
+         * Returns whether the given slot holds an entry.
+         */
+        abstract boolean occupied(int slot);
+
+        @Nullable
+        abstract K keyAt(int slot);
+
+        @Nullable
+        abstract V valueAt(int slot);
+
+        /**
+         * Returns the slot which holds the given key, or {@code -1} if there isn't one.
+         */
+        abstract int slotOf(@Nullable Object key);
+
+        @Override
+        public boolean containsKey(@Nullable Object key) {
+            return slotOf(key) >= 0;
+        }
+
+        @Override
+        @Nullable
+        public V get(@Nullable Object key) {
+            int slot = slotOf(key);
+            return slot < 0 ? null : valueAt(slot);
+        }
+
+        @Nonnull
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+                @Nonnull
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new Iterator<Entry<K, V>>() {
+                        private int slot = nextOccupied(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return slot < slots();
+                        }
+
+                        @Override
+                        public Entry<K, V> next() {
+                            if(!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<K, V> entry = Maps.immutableEntry(keyAt(slot), valueAt(slot));
+                            slot = nextOccupied(slot + 1);
+                            return entry;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return SlotMap.this.size();
+                }
+            };
+        }
+
+        private int nextOccupied(int slot) {
+            while(slot < slots() && !occupied(slot)) {
+                slot++;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * A map of one entry, held in fields. Maps of two to four entries extend this one with fields for each additional
+     * entry, and are searched linearly.
+     */
+    private static class Map1<K, V> extends SlotMap<K, V> {
+
+        private final K k0;
+
+        private final V v0;
+
+        private Map1(@Nullable K k0, @Nullable V v0) {
+            this.k0 = k0;
+            this.v0 = v0;
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        final int slots() {
+            return size();
+        }
+
+        @Override
+        final boolean occupied(int slot) {
+            return true;
+        }
+
+        @Override
+        @Nullable
+        K keyAt(int slot) {
+            return k0;
+        }
+
+        @Override
+        @Nullable
+        V valueAt(int slot) {
+            return v0;
+        }
+
+        @Override
+        final int slotOf(@Nullable Object key) {
+            for(int slot = 0, size = size(); slot < size; slot++) {
+                if(Objects.equal(key, keyAt(slot))) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static class Map2<K, V> extends Map1<K, V> {
+
+        private final K k1;
+
+        private final V v1;
+
+        private Map2(@Nullable K k0, @Nullable V v0, @Nullable K k1, @Nullable V v1) {
+            super(k0, v0);
+            this.k1 = k1;
+            this.v1 = v1;
+        }
+
+        @Override
+        public int size() {
+            return 2;
+        }
+
+        @Override
+        @Nullable
+        K keyAt(int slot) {
+            return slot == 1 ? k1 : super.keyAt(slot);
+        }
+
+        @Override
+        @Nullable
+        V valueAt(int slot) {
+            return slot == 1 ? v1 : super.valueAt(slot);
+        }
+    }
+
+    private static class Map3<K, V> extends Map2<K, V> {
+
+        private final K k2;
+
+        private final V v2;
+
+        private Map3(@Nullable K k0, @Nullable V v0, @Nullable K k1, @Nullable V v1, @Nullable K k2, @Nullable V v2) {
+            super(k0, v0, k1, v1);
+            this.k2 = k2;
+            this.v2 = v2;
+        }
+
+        @Override
+        public int size() {
+            return 3;
+        }
+
+        @Override
+        @Nullable
+        K keyAt(int slot) {
+            return slot == 2 ? k2 : super.keyAt(slot);
+        }
+
+        @Override
+        @Nullable
+        V valueAt(int slot) {
+            return slot == 2 ? v2 : super.valueAt(slot);
+        }
+    }
+
+    private static final class Map4<K, V> extends Map3<K, V> {
+
+        private final K k3;
+
+        private final V v3;
+
+        private Map4(@Nullable K k0, @Nullable V v0, @Nullable K k1, @Nullable V v1, @Nullable K k2, @Nullable V v2,
+                     @Nullable K k3, @Nullable V v3) {
+            super(k0, v0, k1, v1, k2, v2);
+            this.k3 = k3;
+            this.v3 = v3;
+        }
+
+        @Override
+        public int size() {
+            return 4;
+        }
+
+        @Override
+        @Nullable
+        K keyAt(int slot) {
+            return slot == 3 ? k3 : super.keyAt(slot);
+        }
+
+        @Override
+        @Nullable
+        V valueAt(int slot) {
+            return slot == 3 ? v3 : super.valueAt(slot);
+        }
+    }
+
+    /**
+     * A map whose keys and values are held side by side in an open-addressed table, no more than half full, which is
+     * searched by linear probing.
+     */
+    private static final class ProbeMap<K, V> extends SlotMap<K, V> {
+
+        /**
+         * Stands in for a {@code null} key in the table, where {@code null} marks an empty slot.
+         */
+        private static final Object NULL_KEY = new Object();
+
+        /**
+         * The key of each slot at an even index, followed by its value.
+         */
+        @Nonnull
+        private final Object[] table;
+
+        private final int mask;
+
+        private final int size;
+
+        private ProbeMap(@Nonnull Object[] keys, @Nonnull Object[] values, int size) {
+            int slots = Integer.highestOneBit(2 * size - 1) << 1;
+            this.table = new Object[2 * slots];
+            this.mask = slots - 1;
+            this.size = size;
+            for(int i = 0; i < size; i++) {
+                Object key = keys[i] == null ? NULL_KEY : keys[i];
+                int slot = hash(key) & mask;
+                while(table[2 * slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                table[2 * slot] = key;
+                table[2 * slot + 1] = values[i];
+            }
+        }
+
+        private static int hash(@Nonnull Object key) {
+            int h = key.hashCode();
+            return h ^ (h >>> 16);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        int slots() {
+            return mask + 1;
+        }
+
+        @Override
+        boolean occupied(int slot) {
+            return table[2 * slot] != null;
+        }
+
+        @Override
+        @Nullable
+        @SuppressWarnings("unchecked")
+        K keyAt(int slot) {
+            Object key = table[2 * slot];
+            return key == NULL_KEY ? null : (K) key;
+        }
+
+        @Override
+        @Nullable
+        @SuppressWarnings("unchecked")
+        V valueAt(int slot) {
+            return (V) table[2 * slot + 1];
+        }
+
+        @Override
+        int slotOf(@Nullable Object key) {
+            Object target = key == null ? NULL_KEY : key;
+            int slot = hash(target) & mask;
+            Object current;
+            while((current = table[2 * slot]) != null) {
+                if(current.equals(target)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.brianmearns.crafter.collect;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of {@code int} values, stored as a compressed bitmap in the manner of a Roaring bitmap.
+ *
+ * <p>
+ * The values are split into chunks of 65536 by their upper 16 bits, and the lower 16 bits of the values in each
+ * non-empty chunk are stored in a container of their own: either a sorted {@code char[]} of them, for a chunk of at
+ * most {@link #ARRAY_MAX} values, or a bitmap of 1024 {@code long} words otherwise. So a dense set of values takes
+ * about one bit per value, and a sparse one about two bytes per value, instead of the fifty or so bytes per value of a
+ * {@code HashSet<Integer>}. Finding the container of a value is a binary search over the chunks, after which
+ * {@link #contains(int)} is a binary search or a single bit test.
+ *
+ * <p>
+ * The values are iterated in ascending order, without boxing, by an {@link IntIterator}. The set is also a
+ * {@code Set<Integer>}, for code that needs one, in which case each value is boxed as it is accessed. Sets are built
+ * with {@link com.brianmearns.crafter.IntSetBuilder}.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class CompressedIntSet extends AbstractSet<Integer> {
+
+    /**
+     * The largest number of values held in an array container. A bitmap container takes 8KB, which is as much as an
+     * array of this many {@code char} values.
+     */
+    public static final int ARRAY_MAX = 4096;
+
+    /**
+     * The number of {@code long} words in a bitmap container.
+     */
+    public static final int BITMAP_WORDS = 1024;
+
+    private static final CompressedIntSet EMPTY = new CompressedIntSet(new char[0], new Object[0], new int[0], 0);
+
+    /**
+     * The key of each container, in ascending order. See {@link #key(int)}.
+     */
+    @Nonnull
+    private final char[] keys;
+
+    /**
+     * Each container, either a {@code char[]} or a {@code long[]}.
+     */
+    @Nonnull
+    private final Object[] containers;
+
+    /**
+     * The number of values in each container.
+     */
+    @Nonnull
+    private final int[] cardinalities;
+
+    private final long cardinality;
+
+    private CompressedIntSet(@Nonnull char[] keys, @Nonnull Object[] containers, @Nonnull int[] cardinalities, long cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinalities = cardinalities;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Returns the empty set.
+     */
+    @Nonnull
+    public static CompressedIntSet of() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a set of the given containers, without copying them. The containers are owned by the set from then on,
+     * so whoever wraps them must not keep any other reference to them.
+     *
+     * @param keys The {@linkplain #key(int) key} of each container, in strictly ascending order.
+     * @param containers Each container: a sorted {@code char[]} of the lower 16 bits of its values, with no
+     *                   duplicates, or a {@code long[]} bitmap of {@link #BITMAP_WORDS} words. None may be empty.
+     * @param count The number of containers at the start of the arrays to include in the set.
+     */
+    @Nonnull
+    public static CompressedIntSet wrap(@Nonnull char[] keys, @Nonnull Object[] containers, int count) {
+        Preconditions.checkPositionIndex(count, Math.min(keys.length, containers.length), "count");
+        int[] cardinalities = new int[count];
+        long cardinality = 0;
+        for(int i = 0; i < count; i++) {
+            Preconditions.checkArgument(i == 0 || keys[i - 1] < keys[i], "Keys are not in ascending order at %s.", i);
+            Object container = containers[i];
+            if(container instanceof char[]) {
+                cardinalities[i] = ((char[]) container).length;
+            } else {
+                Preconditions.checkArgument(container instanceof long[] && ((long[]) container).length == BITMAP_WORDS,
+                        "Not a container: %s", container);
+                for(long word : (long[]) container) {
+                    cardinalities[i] += Long.bitCount(word);
+                }
+            }
+            Preconditions.checkArgument(cardinalities[i] > 0, "Container %s is empty.", i);
+            cardinality += cardinalities[i];
+        }
+        return new CompressedIntSet(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count), cardinalities,
+                cardinality);
+    }
+
+    /**
+     * Returns the key of the container for the given value: its upper 16 bits, with the sign bit flipped so that the
+     * keys of negative values come before those of positive values.
+     */
+    public static char key(int value) {
+        return (char) ((value >>> 16) ^ 0x8000);
+    }
+
+    /**
+     * Returns the value with the given key and lower 16 bits.
+     */
+    public static int value(char key, char low) {
+        return ((key ^ 0x8000) << 16) | low;
+    }
+
+    /**
+     * Returns whether the given value is in the set.
+     */
+    public boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, key(value));
+        if(index < 0) {
+            return false;
+        }
+        Object container = containers[index];
+        char low = (char) value;
+        if(container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, low) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+    /**
+     * Returns the number of values in the set, which may be more than {@link Integer#MAX_VALUE}.
+     */
+    public long cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Returns the number of values in the set, or {@link Integer#MAX_VALUE} if there are more than that.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(cardinality, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Returns the number of containers, which is the number of chunks of 65536 values that the set has values in.
+     */
+    public int containerCount() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the approximate number of bytes used by the containers.
+     */
+    public long containerBytes() {
+        long bytes = 0;
+        for(Object container : containers) {
+            bytes += container instanceof long[] ? 8 * BITMAP_WORDS : 2 * ((char[]) container).length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns an iterator over the values in ascending order, which doesn't box them.
+     */
+    @Nonnull
+    public IntIterator intIterator() {
+        return new IntIterator(this);
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<Integer> iterator() {
+        final IntIterator values = intIterator();
+        return new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return values.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                return values.nextInt();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * An iterator over the values of a {@link CompressedIntSet}, in ascending order.
+     */
+    public static final class IntIterator {
+
+        @Nonnull
+        private final CompressedIntSet set;
+
+        /**
+         * The index of the current container.
+         */
+        private int container = -1;
+
+        /**
+         * In an array container, the index of the next value; in a bitmap container, the index of the current word.
+         */
+        private int position;
+
+        /**
+         * In a bitmap container, the bits of the current word that haven't been returned yet.
+         */
+        private long word;
+
+        /**
+         * The number of values of the current container that haven't been returned yet.
+         */
+        private int remaining;
+
+        private IntIterator(@Nonnull CompressedIntSet set) {
+            this.set = set;
+        }
+
+        public boolean hasNext() {
+            return remaining > 0 || container + 1 < set.containers.length;
+        }
+
+        public int nextInt() {
+            if(remaining == 0) {
+                if(container + 1 >= set.containers.length) {
+                    throw new NoSuchElementException();
+                }
+                container++;
+                remaining = set.cardinalities[container];
+                position = 0;
+                if(set.containers[container] instanceof long[]) {
+                    word = ((long[]) set.containers[container])[0];
+                }
+            }
+            remaining--;
+            Object values = set.containers[container];
+            char key = set.keys[container];
+            if(values instanceof char[]) {
+                return value(key, ((char[]) values)[position++]);
+            }
+            long[] bitmap = (long[]) values;
+            while(word == 0) {
+                word = bitmap[++position];
+            }
+            int bit = Long.numberOfTrailingZeros(word);
+            word &= word - 1;
+            return value(key, (char) ((position << 6) + bit));
+        }
+    }
+}
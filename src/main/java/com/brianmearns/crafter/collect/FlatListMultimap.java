@@ -0,0 +1,258 @@
+package com.brianmearns.crafter.collect;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableListMultimap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * An immutable multimap, in the manner of a {@link com.google.common.collect.ListMultimap}, which holds all of its
+ * values in a single flat array, grouped by key.
+ *
+ * <p>
+ * The keys are held in a {@link MapShape}, which gives the position of each key, and the values of the key at
+ * position {@code i} are those from {@code offsets[i]}, inclusive, to {@code offsets[i + 1]}, exclusive. So unlike a
+ * map of lists, there is no collection per key: the list returned by {@link #get(Object)} is a view of a range of the
+ * array, which is created when it is asked for. The keys are in the order of the shape, and the values of each key in
+ * the order of the array.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class FlatListMultimap<K, V> {
+
+    @Nonnull
+    private final MapShape keys;
+
+    /**
+     * The offset in {@link #values} of the values of each key, followed by the number of values.
+     */
+    @Nonnull
+    private final int[] offsets;
+
+    @Nonnull
+    private final Object[] values;
+
+    private FlatListMultimap(@Nonnull MapShape keys, @Nonnull int[] offsets, @Nonnull Object[] values) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.values = values;
+    }
+
+    /**
+     * Returns a multimap of the given keys and values, without copying them. The arrays are owned by the multimap from
+     * then on, so whoever wraps them must not keep any other reference to them.
+     *
+     * @param keys The keys, in order.
+     * @param offsets The offset of the first value of each key, in ascending order, followed by the number of values.
+     * @param values The values of all the keys, grouped by key.
+     */
+    @Nonnull
+    public static <K, V> FlatListMultimap<K, V> wrap(@Nonnull MapShape keys, @Nonnull int[] offsets, @Nonnull Object[] values) {
+        Preconditions.checkArgument(offsets.length == keys.size() + 1, "Expected %s offsets, but got %s.",
+                keys.size() + 1, offsets.length);
+        Preconditions.checkArgument(offsets[0] == 0 && offsets[keys.size()] == values.length,
+                "Offsets don't span the %s values.", values.length);
+        return new FlatListMultimap<>(keys, offsets, values);
+    }
+
+    /**
+     * Returns the number of values, i.e., of key-value pairs.
+     */
+    public int size() {
+        return values.length;
+    }
+
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    /**
+     * Returns the number of distinct keys.
+     */
+    public int keyCount() {
+        return keys.size();
+    }
+
+    public boolean containsKey(@Nullable Object key) {
+        return keys.indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the number of values of the given key.
+     */
+    public int count(@Nullable Object key) {
+        int index = keys.indexOf(key);
+        return index < 0 ? 0 : offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Returns an unmodifiable list of the values of the given key, in order, which is empty if it isn't one of the
+     * keys.
+     */
+    @Nonnull
+    public List<V> get(@Nullable Object key) {
+        int index = keys.indexOf(key);
+        if(index < 0) {
+            return Collections.emptyList();
+        }
+        return new ValueList<>(values, offsets[index], offsets[index + 1]);
+    }
+
+    /**
+     * Returns an unmodifiable set of the distinct keys, in order.
+     */
+    @Nonnull
+    public Set<K> keySet() {
+        return asMap().keySet();
+    }
+
+    /**
+     * Returns an unmodifiable list of all the values, grouped by key.
+     */
+    @Nonnull
+    public List<V> values() {
+        return new ValueList<>(values, 0, values.length);
+    }
+
+    /**
+     * Returns an unmodifiable view of this multimap as a map from each key to the list of its values.
+     */
+    @Nonnull
+    public Map<K, List<V>> asMap() {
+        return new AsMap();
+    }
+
+    /**
+     * Returns a copy of this multimap as an {@link ImmutableListMultimap}, for code that needs a
+     * {@link com.google.common.collect.ListMultimap}. Neither keys nor values can be {@code null} for that.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public ImmutableListMultimap<K, V> toListMultimap() {
+        ImmutableListMultimap.Builder<K, V> builder = ImmutableListMultimap.builder();
+        for(int i = 0; i < keys.size(); i++) {
+            builder.putAll((K) keys.keyAt(i), new ValueList<V>(values, offsets[i], offsets[i + 1]));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Two multimaps are equal if they have the same keys, each with the same values in the same order.
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof FlatListMultimap && asMap().equals(((FlatListMultimap<?, ?>) other).asMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return asMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    /**
+     * A range of the array of values.
+     */
+    private static final class ValueList<V> extends AbstractList<V> implements RandomAccess {
+
+        @Nonnull
+        private final Object[] values;
+
+        private final int from;
+
+        private final int to;
+
+        private ValueList(@Nonnull Object[] values, int from, int to) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(int index) {
+            Preconditions.checkElementIndex(index, to - from);
+            return (V) values[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    private final class AsMap extends AbstractMap<K, List<V>> {
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+
+        @Override
+        public boolean containsKey(@Nullable Object key) {
+            return keys.indexOf(key) >= 0;
+        }
+
+        @Nullable
+        @Override
+        public List<V> get(@Nullable Object key) {
+            return containsKey(key) ? FlatListMultimap.this.get(key) : null;
+        }
+
+        @Nonnull
+        @Override
+        public Set<Entry<K, List<V>>> entrySet() {
+            return new AbstractSet<Entry<K, List<V>>>() {
+                @Nonnull
+                @Override
+                public Iterator<Entry<K, List<V>>> iterator() {
+                    return new Iterator<Entry<K, List<V>>>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < keys.size();
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Entry<K, List<V>> next() {
+                            if(!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            List<V> list = new ValueList<>(values, offsets[index], offsets[index + 1]);
+                            Entry<K, List<V>> entry = new SimpleImmutableEntry<>((K) keys.keyAt(index), list);
+                            index++;
+                            return entry;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.size();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.brianmearns.crafter.collect;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable {@link java.util.List} view of the first elements of an array, which takes ownership of the array
+ * instead of copying it.
+ *
+ * <p>
+ * Whoever {@linkplain #wrap(Object[], int) wraps} an array must not keep any other reference to it, since any change
+ * made to the array afterwards would show through the list. Elements may be {@code null}.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class ImmutableArrayList<E> extends AbstractList<E> implements RandomAccess {
+
+    @Nonnull
+    private final Object[] array;
+
+    private final int size;
+
+    private ImmutableArrayList(@Nonnull Object[] array, int size) {
+        this.array = array;
+        this.size = size;
+    }
+
+    /**
+     * Returns a list of the first {@code size} elements of the given array, without copying it. The array is owned by
+     * the list from then on.
+     *
+     * @param array The array of elements, which must not be modified afterwards.
+     * @param size The number of elements at the start of the array to include in the list.
+     */
+    @Nonnull
+    public static <E> ImmutableArrayList<E> wrap(@Nonnull Object[] array, int size) {
+        Preconditions.checkPositionIndex(size, array.length, "size");
+        return new ImmutableArrayList<>(array, size);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Preconditions.checkElementIndex(index, size);
+        return (E) array[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Nonnull
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOf(array, size);
+    }
+}
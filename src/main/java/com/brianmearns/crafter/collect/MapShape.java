@@ -0,0 +1,288 @@
+package com.brianmearns.crafter.collect;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An ordered sequence of distinct keys, with an index for finding the position of each key, which is shared by all
+ * the maps that have exactly those keys. Each such map only has to store an array of its values.
+ *
+ * <p>
+ * Shapes are interned, so all the shapes created for the same sequence of keys are the same instance, for as long as
+ * it is in use. The index is a hash table of key positions, for which a perfect hash (i.e., one under which no two
+ * keys collide) is searched for when the shape is created, so that a lookup takes a single probe. Keys whose hash
+ * codes can't be separated that way fall back to linear probing. A {@code null} key is supported.
+ *
+ * <p>
+ * For large sets of keys which are unlikely to be shared, such as the keys of a big multimap, an
+ * {@linkplain #unshared(Object[], int) unshared} shape skips both the interning and the search, and just uses linear
+ * probing.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class MapShape {
+
+    private static final Interner<MapShape> INTERNER = Interners.newWeakInterner();
+
+    /**
+     * Multiplier for the first attempt at a perfect hash: the golden ratio, as a 32-bit fraction. Further attempts use
+     * odd multiples of it.
+     */
+    private static final int SEED = 0x9E3779B9;
+
+    /**
+     * The number of multipliers to try for each table size before moving on to a larger one.
+     */
+    private static final int ATTEMPTS = 8;
+
+    /**
+     * The number of table sizes, doubling from the smallest which holds all the keys, to try before giving up on a
+     * perfect hash.
+     */
+    private static final int GROWTHS = 3;
+
+    @Nonnull
+    private final Object[] keys;
+
+    private final int hashCode;
+
+    /**
+     * The position of a key plus one in each slot of the table, or zero for an empty slot.
+     */
+    @Nonnull
+    private final int[] table;
+
+    private final int multiplier;
+
+    private final int shift;
+
+    /**
+     * Whether no two keys share a slot of the table, so that a key can only be in the slot its hash gives.
+     */
+    private final boolean perfect;
+
+    /**
+     * Create a shape of the given keys, and build its table, with a perfect hash if one is searched for and found.
+     */
+    private MapShape(@Nonnull Object[] keys, boolean searchPerfect) {
+        this.keys = keys;
+        this.hashCode = Arrays.hashCode(keys);
+
+        int minBits = keys.length <= 2 ? 1 : 32 - Integer.numberOfLeadingZeros(keys.length - 1);
+        for(int bits = minBits; searchPerfect && bits < minBits + GROWTHS; bits++) {
+            for(int attempt = 0; attempt < ATTEMPTS; attempt++) {
+                int[] table = fill(keys, bits, SEED * (2 * attempt + 1), false);
+                if(table != null) {
+                    this.table = table;
+                    this.multiplier = SEED * (2 * attempt + 1);
+                    this.shift = 32 - bits;
+                    this.perfect = true;
+                    return;
+                }
+            }
+        }
+        //Keep the table at most half full for probing.
+        this.table = fill(keys, minBits + 1, SEED, true);
+        this.multiplier = SEED;
+        this.shift = 32 - (minBits + 1);
+        this.perfect = false;
+    }
+
+    /**
+     * Returns the shape of the first {@code size} keys of the given array, in order. The array is copied if needed.
+     *
+     * @param keys The keys, which must all be distinct.
+     * @param size The number of keys to include in the shape.
+     */
+    @Nonnull
+    public static MapShape of(@Nonnull Object[] keys, int size) {
+        Preconditions.checkPositionIndex(size, keys.length, "size");
+        return INTERNER.intern(new MapShape(Arrays.copyOf(keys, size), true));
+    }
+
+    /**
+     * Returns a new shape of the first {@code size} keys of the given array, in order, which is not interned, and
+     * whose table is built in a single pass, with linear probing. The array is copied.
+     *
+     * @param keys The keys, which must all be distinct.
+     * @param size The number of keys to include in the shape.
+     */
+    @Nonnull
+    public static MapShape unshared(@Nonnull Object[] keys, int size) {
+        Preconditions.checkPositionIndex(size, keys.length, "size");
+        return new MapShape(Arrays.copyOf(keys, size), false);
+    }
+
+    /**
+     * Returns the number of keys in this shape.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key at the given position.
+     */
+    @Nullable
+    public Object keyAt(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the position of the given key in this shape, or {@code -1} if it isn't one of the keys.
+     */
+    public int indexOf(@Nullable Object key) {
+        int slot = slot(hash(key), multiplier, shift);
+        if(perfect) {
+            int position = table[slot];
+            return position != 0 && Objects.equal(key, keys[position - 1]) ? position - 1 : -1;
+        }
+        //The table is at most half full, so there is always an empty slot to end the probe.
+        int mask = table.length - 1;
+        int position;
+        while((position = table[slot]) != 0) {
+            if(Objects.equal(key, keys[position - 1])) {
+                return position - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns an unmodifiable map with the keys of this shape, each mapped to the value at the same position in the
+     * given array. The array is owned by the map from then on, so it must not be modified afterwards.
+     */
+    @Nonnull
+    public <K, V> Map<K, V> wrap(@Nonnull Object[] values) {
+        Preconditions.checkArgument(values.length == keys.length, "Expected %s values, but got %s.", keys.length, values.length);
+        return new ShapedMap<>(this, values);
+    }
+
+    private static int hash(@Nullable Object key) {
+        return key == null ? 0 : key.hashCode();
+    }
+
+    private static int slot(int hash, int multiplier, int shift) {
+        return (hash * multiplier) >>> shift;
+    }
+
+    /**
+     * Returns a table of {@code 2^bits} slots holding the given keys with the given hash multiplier, or {@code null}
+     * if two keys collide, unless {@code probe} is {@code true}, in which case collisions are resolved by linear probing.
+     */
+    @Nullable
+    private static int[] fill(@Nonnull Object[] keys, int bits, int multiplier, boolean probe) {
+        int[] table = new int[1 << bits];
+        int shift = 32 - bits;
+        for(int i = 0; i < keys.length; i++) {
+            int slot = slot(hash(keys[i]), multiplier, shift);
+            while(table[slot] != 0) {
+                if(!probe) {
+                    return null;
+                }
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = i + 1;
+        }
+        return table;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MapShape && hashCode == other.hashCode() && Arrays.equals(keys, ((MapShape) other).keys);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * A map which stores only its values, and gets its keys from its shape.
+     */
+    private static final class ShapedMap<K, V> extends AbstractMap<K, V> {
+
+        @Nonnull
+        private final MapShape shape;
+
+        @Nonnull
+        private final Object[] values;
+
+        private ShapedMap(@Nonnull MapShape shape, @Nonnull Object[] values) {
+            this.shape = shape;
+            this.values = values;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public boolean containsKey(@Nullable Object key) {
+            return shape.indexOf(key) >= 0;
+        }
+
+        @Override
+        @Nullable
+        @SuppressWarnings("unchecked")
+        public V get(@Nullable Object key) {
+            int index = shape.indexOf(key);
+            return index < 0 ? null : (V) values[index];
+        }
+
+        @Nonnull
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+                @Nonnull
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new Iterator<Entry<K, V>>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < values.length;
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Entry<K, V> next() {
+                            if(!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<K, V> entry = Maps.immutableEntry((K) shape.keys[index], (V) values[index]);
+                            index++;
+                            return entry;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return values.length;
+                }
+            };
+        }
+    }
+}
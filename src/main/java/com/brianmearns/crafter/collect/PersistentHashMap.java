@@ -0,0 +1,387 @@
+package com.brianmearns.crafter.collect;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link java.util.Map} implemented as a hash array mapped trie (HAMT), which can be {@linkplain #fork() forked} in
+ * constant time.
+ *
+ * <p>
+ * Entries are stored in a tree of nodes, each of which uses a 32-bit bitmap to index the 5-bit chunks of the key
+ * hashes that it holds. As with {@link PersistentVector}, each node records the map that owns it, and a map only
+ * modifies nodes that it owns in place. Forking gives the original map and the fork new ownership, so the nodes they
+ * share are copied (just along the path being modified) rather than modified, and the two maps never affect each
+ * other.
+ *
+ * <p>
+ * The map supports {@link #put(Object, Object)} and {@link #clear()}, but not removal of individual entries. A
+ * {@code null} key is supported. Like the other standard collections, it is not thread safe.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * An empty node which is not owned by any map, and so is never modified.
+     */
+    private static final BitmapNode EMPTY_NODE = new BitmapNode(null, 0, new Object[0]);
+
+    /**
+     * The token that identifies the nodes owned by this map.
+     */
+    @Nonnull
+    private Object owner;
+
+    private int size;
+
+    @Nonnull
+    private Node root;
+
+    private boolean hasNullKey;
+
+    @Nullable
+    private V nullValue;
+
+    /**
+     * Reused by each {@link #put(Object, Object)} to collect the outcome from the nodes, so that a put neither
+     * allocates nor searches for the key's previous value separately.
+     */
+    @Nonnull
+    private final PutResult putResult = new PutResult();
+
+    /**
+     * Create a new, empty map.
+     */
+    public PersistentHashMap() {
+        this.owner = new Object();
+        this.root = EMPTY_NODE;
+    }
+
+    private PersistentHashMap(@Nonnull PersistentHashMap<K, V> original) {
+        this.owner = new Object();
+        this.size = original.size;
+        this.root = original.root;
+        this.hasNullKey = original.hasNullKey;
+        this.nullValue = original.nullValue;
+    }
+
+    /**
+     * Returns a new map with the same entries as {@code this} one, in constant time. The new map shares its structure
+     * with {@code this} one, but changes made to either one do not affect the other.
+     */
+    @Nonnull
+    public PersistentHashMap<K, V> fork() {
+        //Neither map can own the nodes that are now shared.
+        this.owner = new Object();
+        return new PersistentHashMap<>(this);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+        if(key == null) {
+            return hasNullKey;
+        }
+        return root.find(0, hash(key), key, NOT_FOUND) != NOT_FOUND;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(@Nullable Object key) {
+        if(key == null) {
+            return nullValue;
+        }
+        Object value = root.find(0, hash(key), key, NOT_FOUND);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V put(@Nullable K key, @Nullable V value) {
+        if(key == null) {
+            V previous = nullValue;
+            if(!hasNullKey) {
+                hasNullKey = true;
+                size++;
+            }
+            nullValue = value;
+            return previous;
+        }
+        PutResult result = putResult;
+        root = root.put(owner, 0, hash(key), key, value, result);
+        V previous = (V) result.previous;
+        if(result.added) {
+            size++;
+        }
+        result.added = false;
+        result.previous = null;
+        return previous;
+    }
+
+    /**
+     * Removes all entries. The nodes that held them are released, not reused.
+     */
+    @Override
+    public void clear() {
+        size = 0;
+        root = EMPTY_NODE;
+        hasNullKey = false;
+        nullValue = null;
+    }
+
+    /**
+     * Not supported: individual entries cannot be removed.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public V remove(@Nullable Object key) {
+        throw new UnsupportedOperationException("Entries cannot be removed from a PersistentHashMap.");
+    }
+
+    /**
+     * Returns a read-only view of the entries in this map. Iterating over it first collects all the entries, in hash
+     * order.
+     */
+    @Nonnull
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<Entry<K, V>> iterator() {
+                List<Entry<K, V>> entries = new ArrayList<>(size);
+                if(hasNullKey) {
+                    entries.add(Maps.immutableEntry((K) null, nullValue));
+                }
+                root.collect((List) entries);
+                return Iterators.unmodifiableIterator(entries.iterator());
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Marks a key that is not in a node.
+     */
+    private static final Object NOT_FOUND = new Object();
+
+    /**
+     * The outcome of putting an entry in a node: whether the key was added, and otherwise the value it replaced.
+     */
+    private static final class PutResult {
+
+        private boolean added;
+
+        @Nullable
+        private Object previous;
+    }
+
+    private static int hash(@Nonnull Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static abstract class Node {
+
+        /**
+         * The token of the map that is allowed to modify this node in place, if any.
+         */
+        @Nullable
+        protected final Object owner;
+
+        protected Node(@Nullable Object owner) {
+            this.owner = owner;
+        }
+
+        @Nullable
+        abstract Object find(int shift, int hash, @Nonnull Object key, @Nullable Object notFound);
+
+        /**
+         * Puts the given entry in this node or one of its descendants, and returns the node that should replace
+         * this one in its parent (which is this node itself if it is owned by {@code owner}). Whether the key was added,
+         * or else the value it had, is recorded in {@code result}.
+         */
+        @Nonnull
+        abstract Node put(@Nonnull Object owner, int shift, int hash, @Nonnull Object key, @Nullable Object value, @Nonnull PutResult result);
+
+        abstract void collect(@Nonnull List<Entry<Object, Object>> entries);
+    }
+
+    /**
+     * A node which holds a mix of entries and child nodes, indexed by a bitmap of hash chunks. The array holds a pair
+     * of slots for each bit set in the bitmap: either a key and its value, or {@code null} and a child node.
+     */
+    private static final class BitmapNode extends Node {
+
+        private final int bitmap;
+
+        @Nonnull
+        private final Object[] array;
+
+        private BitmapNode(@Nullable Object owner, int bitmap, @Nonnull Object[] array) {
+            super(owner);
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        @Nullable
+        Object find(int shift, int hash, @Nonnull Object key, @Nullable Object notFound) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if((bitmap & bit) == 0) {
+                return notFound;
+            }
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            if(keyOrNull == null) {
+                return ((Node) valueOrNode).find(shift + BITS, hash, key, notFound);
+            }
+            return key.equals(keyOrNull) ? valueOrNode : notFound;
+        }
+
+        @Override
+        @Nonnull
+        Node put(@Nonnull Object owner, int shift, int hash, @Nonnull Object key, @Nullable Object value, @Nonnull PutResult result) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            if((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * index);
+                newArray[2 * index] = key;
+                newArray[2 * index + 1] = value;
+                System.arraycopy(array, 2 * index, newArray, 2 * (index + 1), array.length - 2 * index);
+                result.added = true;
+                return new BitmapNode(owner, bitmap | bit, newArray);
+            }
+
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            Object replacement;
+            if(keyOrNull == null) {
+                replacement = ((Node) valueOrNode).put(owner, shift + BITS, hash, key, value, result);
+            } else if(key.equals(keyOrNull)) {
+                result.previous = valueOrNode;
+                replacement = value;
+            } else {
+                replacement = createNode(owner, shift + BITS, keyOrNull, valueOrNode, hash, key, value, result);
+                keyOrNull = null;
+            }
+
+            BitmapNode node = (this.owner == owner) ? this : new BitmapNode(owner, bitmap, array.clone());
+            node.array[2 * index] = keyOrNull;
+            node.array[2 * index + 1] = replacement;
+            return node;
+        }
+
+        @Override
+        void collect(@Nonnull List<Entry<Object, Object>> entries) {
+            for(int i = 0; i < array.length; i += 2) {
+                if(array[i] == null) {
+                    ((Node) array[i + 1]).collect(entries);
+                } else {
+                    entries.add(Maps.immutableEntry(array[i], array[i + 1]));
+                }
+            }
+        }
+
+        @Nonnull
+        private static Node createNode(@Nonnull Object owner, int shift, @Nonnull Object key1, @Nullable Object value1,
+                                       int hash2, @Nonnull Object key2, @Nullable Object value2, @Nonnull PutResult result) {
+            //Both keys are new to the node, so the only outcome is that key2 was added.
+            result.added = true;
+            int hash1 = hash(key1);
+            if(hash1 == hash2) {
+                return new CollisionNode(owner, hash1, new Object[]{key1, value1, key2, value2});
+            }
+            return EMPTY_NODE
+                    .put(owner, shift, hash1, key1, value1, result)
+                    .put(owner, shift, hash2, key2, value2, result);
+        }
+    }
+
+    /**
+     * A node which holds key-value pairs for keys which all have the same hash.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+
+        @Nonnull
+        private final Object[] array;
+
+        private CollisionNode(@Nullable Object owner, int hash, @Nonnull Object[] array) {
+            super(owner);
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        @Nullable
+        Object find(int shift, int hash, @Nonnull Object key, @Nullable Object notFound) {
+            for(int i = 0; i < array.length; i += 2) {
+                if(Objects.equal(key, array[i])) {
+                    return array[i + 1];
+                }
+            }
+            return notFound;
+        }
+
+        @Override
+        @Nonnull
+        Node put(@Nonnull Object owner, int shift, int hash, @Nonnull Object key, @Nullable Object value, @Nonnull PutResult result) {
+            if(hash != this.hash) {
+                //Nest this node under a bitmap node at this level, alongside the new key.
+                BitmapNode parent = new BitmapNode(owner, 1 << ((this.hash >>> shift) & MASK), new Object[]{null, this});
+                return parent.put(owner, shift, hash, key, value, result);
+            }
+            for(int i = 0; i < array.length; i += 2) {
+                if(Objects.equal(key, array[i])) {
+                    result.previous = array[i + 1];
+                    CollisionNode node = (this.owner == owner) ? this : new CollisionNode(owner, hash, array.clone());
+                    node.array[i + 1] = value;
+                    return node;
+                }
+            }
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            result.added = true;
+            return new CollisionNode(owner, hash, newArray);
+        }
+
+        @Override
+        void collect(@Nonnull List<Entry<Object, Object>> entries) {
+            for(int i = 0; i < array.length; i += 2) {
+                entries.add(Maps.immutableEntry(array[i], array[i + 1]));
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.brianmearns.crafter.collect;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A growable {@link java.util.List} implemented as a bit-partitioned vector trie, which can be {@linkplain #fork() forked}
+ * in constant time.
+ *
+ * <p>
+ * Elements are stored in a tree of 32-way nodes, with the last (up to) 32 elements held in a separate tail node. Each
+ * node records the vector that owns it, and a vector only modifies nodes that it owns in place. Forking gives the
+ * original vector and the fork new ownership, so that the nodes they share are never modified: each vector copies
+ * just the path to the node it is modifying, and the two vectors never affect each other.
+ *
+ * <p>
+ * The list supports {@link #add(Object)}, {@link #set(int, Object)} and {@link #clear()}, but not the removal or
+ * insertion of elements at arbitrary positions. Clearing the vector keeps the nodes that it owns, so it can be refilled
+ * to the same size without allocating. Like the other standard collections, it is not thread safe.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int BITS = 5;
+
+    private static final int WIDTH = 1 << BITS;
+
+    private static final int MASK = WIDTH - 1;
+
+    /**
+     * An empty node which is not owned by any vector, and so is never modified.
+     */
+    private static final Node EMPTY_NODE = new Node(null, new Object[WIDTH]);
+
+    /**
+     * The token that identifies the nodes owned by this vector.
+     */
+    @Nonnull
+    private Object owner;
+
+    private int size;
+
+    private int shift;
+
+    @Nonnull
+    private Node root;
+
+    @Nonnull
+    private Node tail;
+
+    /**
+     * A leaf node owned by this vector which was left over from before the vector was {@linkplain #clear() cleared},
+     * and is ready to be reused as the tail.
+     */
+    @Nullable
+    private Node spareLeaf;
+
+    /**
+     * Create a new, empty vector.
+     */
+    public PersistentVector() {
+        this.owner = new Object();
+        this.shift = BITS;
+        this.root = EMPTY_NODE;
+        this.tail = EMPTY_NODE;
+    }
+
+    private PersistentVector(int size, int shift, @Nonnull Node root, @Nonnull Node tail) {
+        this.owner = new Object();
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Returns a new vector with the same elements as {@code this} one, in constant time. The new vector shares
+     * its structure with {@code this} one, but changes made to either one do not affect the other.
+     */
+    @Nonnull
+    public PersistentVector<E> fork() {
+        //Neither vector can own the nodes that are now shared.
+        this.owner = new Object();
+        return new PersistentVector<>(size, shift, root, tail);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        return (E) arrayFor(index)[index & MASK];
+    }
+
+    @Override
+    public boolean add(@Nullable E element) {
+        int tailOffset = tailOffset();
+        if(size - tailOffset < WIDTH) {
+            tail = editable(tail);
+            tail.array[size - tailOffset] = element;
+        } else {
+            //The tail is full, push it into the tree and start a new one.
+            Node fullTail = tail;
+            if((size >>> BITS) > (1 << shift)) {
+                //The root is full, so grow the tree by a level.
+                Node newRoot = new Node(owner, new Object[WIDTH]);
+                newRoot.array[0] = root;
+                newRoot.array[1] = newPath(shift, fullTail);
+                root = newRoot;
+                shift += BITS;
+            } else {
+                root = pushTail(shift, root, fullTail);
+            }
+            if(spareLeaf != null) {
+                tail = spareLeaf;
+                spareLeaf = null;
+            } else {
+                tail = new Node(owner, new Object[WIDTH]);
+            }
+            tail.array[0] = element;
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int index, @Nullable E element) {
+        checkIndex(index);
+        Object previous;
+        if(index >= tailOffset()) {
+            tail = editable(tail);
+            previous = tail.array[index & MASK];
+            tail.array[index & MASK] = element;
+        } else {
+            previous = arrayFor(index)[index & MASK];
+            root = doSet(shift, root, index, element);
+        }
+        return (E) previous;
+    }
+
+    /**
+     * Removes all elements. If the nodes that held them are owned by this vector (i.e., not shared with a fork), they
+     * are emptied and kept, to be filled again as elements are added. Otherwise they are released.
+     */
+    @Override
+    public void clear() {
+        if(root.owner == owner) {
+            scrub(shift, root);
+        } else {
+            shift = BITS;
+            root = EMPTY_NODE;
+        }
+        if(tail.owner == owner) {
+            Arrays.fill(tail.array, null);
+        } else {
+            tail = EMPTY_NODE;
+        }
+        spareLeaf = null;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Removes the elements from the leaves under the given owned node, keeping the nodes themselves. Any nodes under
+     * it which are not owned by this vector are released.
+     */
+    private void scrub(int level, @Nonnull Node node) {
+        if(level == 0) {
+            Arrays.fill(node.array, null);
+            return;
+        }
+        for(int i = 0; i < WIDTH; i++) {
+            Node child = (Node) node.array[i];
+            if(child == null) {
+                continue;
+            }
+            if(child.owner == owner) {
+                scrub(level - BITS, child);
+            } else {
+                node.array[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first element in the tail.
+     */
+    private int tailOffset() {
+        if(size < WIDTH) {
+            return 0;
+        }
+        return ((size - 1) >>> BITS) << BITS;
+    }
+
+    @Nonnull
+    private Object[] arrayFor(int index) {
+        checkIndex(index);
+        if(index >= tailOffset()) {
+            return tail.array;
+        }
+        Node node = root;
+        for(int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.array[(index >>> level) & MASK];
+        }
+        return node.array;
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Returns the given node if it is owned by this vector, otherwise a copy of it which is.
+     */
+    @Nonnull
+    private Node editable(@Nonnull Node node) {
+        if(node.owner == owner) {
+            return node;
+        }
+        return new Node(owner, node.array.clone());
+    }
+
+    @Nonnull
+    private Node pushTail(int level, @Nonnull Node parent, @Nonnull Node tailNode) {
+        int subIndex = ((size - 1) >>> level) & MASK;
+        Node result = editable(parent);
+        Node toInsert;
+        if(level == BITS) {
+            toInsert = tailNode;
+            //A leaf left here since the vector was cleared can be reused as the next tail.
+            Node leftover = (Node) result.array[subIndex];
+            if(leftover != null && leftover.owner == owner) {
+                spareLeaf = leftover;
+            }
+        } else {
+            Node child = (Node) parent.array[subIndex];
+            toInsert = (child != null) ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+        }
+        result.array[subIndex] = toInsert;
+        return result;
+    }
+
+    @Nonnull
+    private Node newPath(int level, @Nonnull Node node) {
+        if(level == 0) {
+            return node;
+        }
+        Node path = new Node(owner, new Object[WIDTH]);
+        path.array[0] = newPath(level - BITS, node);
+        return path;
+    }
+
+    @Nonnull
+    private Node doSet(int level, @Nonnull Node node, int index, @Nullable Object element) {
+        Node result = editable(node);
+        if(level == 0) {
+            result.array[index & MASK] = element;
+        } else {
+            int subIndex = (index >>> level) & MASK;
+            result.array[subIndex] = doSet(level - BITS, (Node) node.array[subIndex], index, element);
+        }
+        return result;
+    }
+
+    private static final class Node {
+
+        /**
+         * The token of the vector that is allowed to modify this node in place, if any.
+         */
+        @Nullable
+        private final Object owner;
+
+        @Nonnull
+        private final Object[] array;
+
+        private Node(@Nullable Object owner, @Nonnull Object[] array) {
+            this.owner = owner;
+            this.array = array;
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package com.brianmearns.crafter.collect;
+
+import com.brianmearns.crafter.util.ParallelSort;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map with {@link String} keys, stored as a compact radix trie, in which keys that share a prefix share
+ * the storage for it. This suits large sets of hierarchical keys, such as {@code service.db.pool.max}.
+ *
+ * <p>
+ * Each node of the trie is labeled with the characters that lead to it from its parent, and is either the end of a
+ * key, with its value, or a branch between keys, or both. The nodes are numbered breadth first, so the children of
+ * each node are consecutive, and ordered by the first character of their labels. That way the whole trie is held in a
+ * few flat arrays instead of an object per node: the labels of all the nodes concatenated into a single
+ * {@code char[]}, the offsets of each node's label and of its first child, the number of keys under each node, and
+ * the values. The keys themselves are not stored, so each one is built anew as it is iterated.
+ *
+ * <p>
+ * Looking up a key takes time proportional to its length, rather than to its hash code and an {@code equals}
+ * comparison. The keys under a given prefix are found with {@link #subMap(String)}, which returns a view of the
+ * subtree under the prefix in time proportional to the length of the prefix. Entries are iterated in the natural
+ * order of their keys. Keys cannot be {@code null}, but values can.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class RadixTrieMap<V> extends AbstractMap<String, V> {
+
+    private static final Trie EMPTY_TRIE = new Trie(new char[0], new int[]{0}, new int[]{0}, new int[0], new Object[0],
+            new long[0]);
+
+    private static final RadixTrieMap<Object> EMPTY = new RadixTrieMap<>(EMPTY_TRIE, -1, "");
+
+    private static final Comparator<Map.Entry<String, ?>> KEY_ORDER = new Comparator<Map.Entry<String, ?>>() {
+        @Override
+        public int compare(Map.Entry<String, ?> left, Map.Entry<String, ?> right) {
+            return left.getKey().compareTo(right.getKey());
+        }
+    };
+
+    @Nonnull
+    private final Trie trie;
+
+    /**
+     * The root node of this map, or {@code -1} if it is empty.
+     */
+    private final int root;
+
+    /**
+     * The characters leading to the root node, not including its own label, which all the keys start with.
+     */
+    @Nonnull
+    private final String base;
+
+    private RadixTrieMap(@Nonnull Trie trie, int root, @Nonnull String base) {
+        this.trie = trie;
+        this.root = root;
+        this.base = base;
+    }
+
+    /**
+     * Returns the empty map.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public static <V> RadixTrieMap<V> of() {
+        return (RadixTrieMap<V>) EMPTY;
+    }
+
+    /**
+     * Returns a map of the same entries as the given map.
+     *
+     * @throws NullPointerException If any key is {@code null}.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public static <V> RadixTrieMap<V> copyOf(@Nonnull Map<String, ? extends V> map) {
+        if(map instanceof RadixTrieMap) {
+            return (RadixTrieMap<V>) map;
+        }
+        Map.Entry<String, V>[] entries = (Map.Entry<String, V>[]) new Map.Entry<?, ?>[map.size()];
+        int size = 0;
+        for(Map.Entry<String, ? extends V> entry : map.entrySet()) {
+            entries[size++] = Maps.<String, V>immutableEntry(entry.getKey(), entry.getValue());
+        }
+        return copyOf(entries, size);
+    }
+
+    /**
+     * Returns a map of the first {@code size} of the given entries. The entries are sorted in place by key, with a
+     * {@linkplain ParallelSort parallel sort} for large maps.
+     *
+     * @throws NullPointerException If any key is {@code null}.
+     * @throws IllegalArgumentException If any key occurs more than once.
+     */
+    @Nonnull
+    public static <V> RadixTrieMap<V> copyOf(@Nonnull Map.Entry<String, ? extends V>[] entries, int size) {
+        Preconditions.checkPositionIndex(size, entries.length, "size");
+        if(size == 0) {
+            return of();
+        }
+        String[] keys = new String[size];
+        for(int i = 0; i < size; i++) {
+            keys[i] = Preconditions.checkNotNull(entries[i].getKey(), "Keys cannot be null.");
+        }
+        ParallelSort.sort(entries, 0, size, KEY_ORDER);
+        Object[] values = new Object[size];
+        for(int i = 0; i < size; i++) {
+            keys[i] = entries[i].getKey();
+            values[i] = entries[i].getValue();
+            Preconditions.checkArgument(i == 0 || !keys[i].equals(keys[i - 1]), "Duplicate key: %s", keys[i]);
+        }
+        return new RadixTrieMap<>(Trie.build(keys, values), 0, "");
+    }
+
+    @Override
+    public int size() {
+        return root < 0 ? 0 : trie.counts[root];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root < 0;
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+        return find(key) >= 0;
+    }
+
+    @Nullable
+    @Override
+    public V get(@Nullable Object key) {
+        int node = find(key);
+        return node < 0 ? null : trie.<V>value(node);
+    }
+
+    /**
+     * Returns a view of the entries of this map whose keys start with the given prefix. The keys of the view are the
+     * same as in this map, prefix included.
+     */
+    @Nonnull
+    public RadixTrieMap<V> subMap(@Nonnull String prefix) {
+        if(root < 0) {
+            return this;
+        }
+        if(prefix.length() <= base.length()) {
+            return base.startsWith(prefix) ? this : RadixTrieMap.<V>of();
+        }
+        if(!prefix.startsWith(base)) {
+            return of();
+        }
+        int node = root;
+        int position = base.length();
+        while(true) {
+            int start = trie.labelOffsets[node];
+            int length = trie.labelOffsets[node + 1] - start;
+            int remaining = prefix.length() - position;
+            for(int i = 0, n = Math.min(length, remaining); i < n; i++) {
+                if(trie.labels[start + i] != prefix.charAt(position + i)) {
+                    return of();
+                }
+            }
+            if(remaining <= length) {
+                return node == root ? this : new RadixTrieMap<V>(trie, node, prefix.substring(0, position));
+            }
+            position += length;
+            node = trie.child(node, prefix.charAt(position));
+            if(node < 0) {
+                return of();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of nodes in the trie of this map, including any which are outside of this view.
+     */
+    public int nodeCount() {
+        return trie.counts.length;
+    }
+
+    /**
+     * Returns the number of characters in the labels of the trie of this map, including any which are outside of this
+     * view. This is the number of characters it takes to store all the keys.
+     */
+    public int labelLength() {
+        return trie.labels.length;
+    }
+
+    /**
+     * Returns the node of the given key, or {@code -1} if it isn't a key of this map.
+     */
+    private int find(@Nullable Object object) {
+        if(root < 0 || !(object instanceof String)) {
+            return -1;
+        }
+        String key = (String) object;
+        if(!key.startsWith(base)) {
+            return -1;
+        }
+        int node = root;
+        int position = base.length();
+        while(true) {
+            int start = trie.labelOffsets[node];
+            int length = trie.labelOffsets[node + 1] - start;
+            if(key.length() - position < length) {
+                return -1;
+            }
+            for(int i = 0; i < length; i++) {
+                if(trie.labels[start + i] != key.charAt(position + i)) {
+                    return -1;
+                }
+            }
+            position += length;
+            if(position == key.length()) {
+                return trie.hasValue(node) ? node : -1;
+            }
+            node = trie.child(node, key.charAt(position));
+            if(node < 0) {
+                return -1;
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<Entry<String, V>>() {
+            @Nonnull
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return RadixTrieMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the entries in order, by walking the trie depth first, keeping the path to the current node.
+     */
+    private final class EntryIterator implements Iterator<Entry<String, V>> {
+
+        @Nonnull
+        private final StringBuilder path = new StringBuilder(base);
+
+        /**
+         * The nodes on the path to the current node.
+         */
+        @Nonnull
+        private int[] nodes = new int[16];
+
+        /**
+         * For each node on the path, the next of its children to visit.
+         */
+        @Nonnull
+        private int[] nextChildren = new int[16];
+
+        /**
+         * For each node on the path, the length of the path up to and including its label.
+         */
+        @Nonnull
+        private int[] pathLengths = new int[16];
+
+        private int depth;
+
+        @Nullable
+        private Entry<String, V> next;
+
+        private EntryIterator() {
+            if(root >= 0) {
+                next = push(root);
+                if(next == null) {
+                    next = advance();
+                }
+            }
+        }
+
+        /**
+         * Visit the given node, and return its entry if it has a value.
+         */
+        @Nullable
+        private Entry<String, V> push(int node) {
+            if(depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * depth);
+                nextChildren = Arrays.copyOf(nextChildren, 2 * depth);
+                pathLengths = Arrays.copyOf(pathLengths, 2 * depth);
+            }
+            int start = trie.labelOffsets[node];
+            path.append(trie.labels, start, trie.labelOffsets[node + 1] - start);
+            nodes[depth] = node;
+            nextChildren[depth] = trie.childOffsets[node];
+            pathLengths[depth] = path.length();
+            depth++;
+            return trie.hasValue(node) ? new SimpleImmutableEntry<>(path.toString(), trie.<V>value(node)) : null;
+        }
+
+        @Nullable
+        private Entry<String, V> advance() {
+            while(depth > 0) {
+                int top = depth - 1;
+                if(nextChildren[top] < trie.childOffsets[nodes[top] + 1]) {
+                    path.setLength(pathLengths[top]);
+                    Entry<String, V> entry = push(nextChildren[top]++);
+                    if(entry != null) {
+                        return entry;
+                    }
+                } else {
+                    depth--;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<String, V> next() {
+            if(next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, V> entry = next;
+            next = advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * The arrays of a trie, which are shared by a map and all of its {@linkplain #subMap(String) views}.
+     */
+    private static final class Trie {
+
+        /**
+         * The labels of all the nodes, concatenated in order.
+         */
+        @Nonnull
+        private final char[] labels;
+
+        /**
+         * The offset of the label of each node in {@link #labels}, followed by the total length.
+         */
+        @Nonnull
+        private final int[] labelOffsets;
+
+        /**
+         * The index of the first child of each node, followed by the number of nodes. The children of each node end
+         * where those of the next node start.
+         */
+        @Nonnull
+        private final int[] childOffsets;
+
+        /**
+         * The number of keys under each node, including its own.
+         */
+        @Nonnull
+        private final int[] counts;
+
+        /**
+         * The value of each node, or {@code null} if it has none.
+         */
+        @Nonnull
+        private final Object[] values;
+
+        /**
+         * A bit for each node which is the end of a key.
+         */
+        @Nonnull
+        private final long[] hasValues;
+
+        private Trie(@Nonnull char[] labels, @Nonnull int[] labelOffsets, @Nonnull int[] childOffsets,
+                     @Nonnull int[] counts, @Nonnull Object[] values, @Nonnull long[] hasValues) {
+            this.labels = labels;
+            this.labelOffsets = labelOffsets;
+            this.childOffsets = childOffsets;
+            this.counts = counts;
+            this.values = values;
+            this.hasValues = hasValues;
+        }
+
+        /**
+         * Build the trie of the given keys, which must be sorted and distinct, breadth first. The label of each node is
+         * the longest prefix shared by all of the keys under it, following the label of its parent, so the label of a
+         * node is found from just the first and last of its keys.
+         */
+        @Nonnull
+        private static Trie build(@Nonnull String[] keys, @Nonnull Object[] values) {
+            //There are at most two nodes per key: its own, and one where it branches off from the others.
+            int capacity = 2 * keys.length + 1;
+            //The range of keys under each node, and the length of the path up to its label.
+            int[] lows = new int[capacity];
+            int[] highs = new int[capacity];
+            int[] depths = new int[capacity];
+            StringBuilder labels = new StringBuilder();
+            int[] labelOffsets = new int[capacity + 1];
+            int[] childOffsets = new int[capacity + 1];
+            Object[] nodeValues = new Object[capacity];
+            long[] hasValues = new long[(capacity + 63) >>> 6];
+
+            highs[0] = keys.length;
+            int nodeCount = 1;
+            for(int node = 0; node < nodeCount; node++) {
+                int low = lows[node];
+                int high = highs[node];
+                int depth = depths[node];
+                String first = keys[low];
+                int end = commonPrefixLength(first, keys[high - 1]);
+                labelOffsets[node] = labels.length();
+                labels.append(first, depth, end);
+                if(first.length() == end) {
+                    nodeValues[node] = values[low];
+                    hasValues[node >>> 6] |= 1L << node;
+                    low++;
+                }
+                childOffsets[node] = nodeCount;
+                while(low < high) {
+                    char c = keys[low].charAt(end);
+                    int next = low + 1;
+                    while(next < high && keys[next].charAt(end) == c) {
+                        next++;
+                    }
+                    lows[nodeCount] = low;
+                    highs[nodeCount] = next;
+                    depths[nodeCount] = end;
+                    nodeCount++;
+                    low = next;
+                }
+            }
+            labelOffsets[nodeCount] = labels.length();
+            childOffsets[nodeCount] = nodeCount;
+
+            //Children are numbered after their parents, so counting backwards counts them first.
+            int[] counts = new int[nodeCount];
+            for(int node = nodeCount - 1; node >= 0; node--) {
+                int count = (int) (hasValues[node >>> 6] >>> node) & 1;
+                for(int child = childOffsets[node]; child < childOffsets[node + 1]; child++) {
+                    count += counts[child];
+                }
+                counts[node] = count;
+            }
+
+            char[] labelChars = new char[labels.length()];
+            labels.getChars(0, labelChars.length, labelChars, 0);
+            return new Trie(labelChars, Arrays.copyOf(labelOffsets, nodeCount + 1),
+                    Arrays.copyOf(childOffsets, nodeCount + 1), counts, Arrays.copyOf(nodeValues, nodeCount),
+                    Arrays.copyOf(hasValues, (nodeCount + 63) >>> 6));
+        }
+
+        private static int commonPrefixLength(@Nonnull String first, @Nonnull String last) {
+            int length = Math.min(first.length(), last.length());
+            for(int i = 0; i < length; i++) {
+                if(first.charAt(i) != last.charAt(i)) {
+                    return i;
+                }
+            }
+            return length;
+        }
+
+        private boolean hasValue(int node) {
+            return (hasValues[node >>> 6] & (1L << node)) != 0;
+        }
+
+        @Nullable
+        @SuppressWarnings("unchecked")
+        private <V> V value(int node) {
+            return (V) values[node];
+        }
+
+        /**
+         * Returns the child of the given node whose label starts with the given character, or {@code -1} if there is
+         * none, by binary search.
+         */
+        private int child(int node, char c) {
+            int low = childOffsets[node];
+            int high = childOffsets[node + 1] - 1;
+            while(low <= high) {
+                int middle = (low + high) >>> 1;
+                char first = labels[labelOffsets[middle]];
+                if(first < c) {
+                    low = middle + 1;
+                } else if(first > c) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+    }
+}
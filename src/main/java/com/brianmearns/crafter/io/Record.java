@@ -0,0 +1,131 @@
+package com.brianmearns.crafter.io;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only view of a single fixed-width record in a buffer, as described by a {@link RecordLayout}. The view holds
+ * only a reference to the buffer and the position of the record, and reads each field from the buffer when it is
+ * accessed.
+ *
+ * <p>
+ * Two records are equal if they have equal layouts and the same bytes.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class Record {
+
+    @Nonnull
+    private final RecordLayout layout;
+
+    @Nonnull
+    private final ByteBuffer buffer;
+
+    private final int offset;
+
+    /**
+     * Create a view of the record at the given absolute position of the given buffer. The buffer is read with
+     * absolute gets only, so it can be shared.
+     */
+    public Record(@Nonnull RecordLayout layout, @Nonnull ByteBuffer buffer, int offset) {
+        this.layout = layout;
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    @Nonnull
+    public RecordLayout layout() {
+        return layout;
+    }
+
+    public byte getByte(int field) {
+        return buffer.get(offset + layout.checkedOffset(field, RecordLayout.Type.BYTE));
+    }
+
+    public short getShort(int field) {
+        return buffer.getShort(offset + layout.checkedOffset(field, RecordLayout.Type.SHORT));
+    }
+
+    public int getInt(int field) {
+        return buffer.getInt(offset + layout.checkedOffset(field, RecordLayout.Type.INT));
+    }
+
+    public long getLong(int field) {
+        return buffer.getLong(offset + layout.checkedOffset(field, RecordLayout.Type.LONG));
+    }
+
+    public float getFloat(int field) {
+        return buffer.getFloat(offset + layout.checkedOffset(field, RecordLayout.Type.FLOAT));
+    }
+
+    public double getDouble(int field) {
+        return buffer.getDouble(offset + layout.checkedOffset(field, RecordLayout.Type.DOUBLE));
+    }
+
+    /**
+     * Returns the value of the given field, boxed.
+     */
+    @Nonnull
+    public Number get(int field) {
+        switch(layout.type(field)) {
+            case BYTE:
+                return getByte(field);
+            case SHORT:
+                return getShort(field);
+            case INT:
+                return getInt(field);
+            case LONG:
+                return getLong(field);
+            case FLOAT:
+                return getFloat(field);
+            default:
+                return getDouble(field);
+        }
+    }
+
+    /**
+     * Returns the value of the field with the given name, boxed.
+     */
+    @Nonnull
+    public Number get(@Nonnull String name) {
+        return get(layout.indexOf(name));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof Record)) {
+            return false;
+        }
+        Record that = (Record) other;
+        if(!layout.equals(that.layout)) {
+            return false;
+        }
+        for(int i = 0, size = layout.recordSize(); i < size; i++) {
+            if(buffer.get(offset + i) != that.buffer.get(that.offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = layout.hashCode();
+        for(int i = 0, size = layout.recordSize(); i < size; i++) {
+            hash = 31 * hash + buffer.get(offset + i);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Record{");
+        for(int i = 0; i < layout.fieldCount(); i++) {
+            if(i > 0) {
+                builder.append(", ");
+            }
+            builder.append(layout.name(i)).append('=').append(get(i));
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,24 @@
+package com.brianmearns.crafter.io;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes a single record of a {@link RecordFile} into an element.
+ *
+ * @param <T> The type of elements decoded.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public interface RecordDecoder<T> {
+
+    /**
+     * Decode the record of the given length at the given absolute position of the given buffer. The decoder must only
+     * use absolute reads, and must not change the buffer's position or limit.
+     *
+     * @param buffer The buffer holding the whole file.
+     * @param offset The position of the first byte of the record.
+     * @param length The number of bytes in the record, not including any line terminator.
+     */
+    T decode(@Nonnull ByteBuffer buffer, int offset, int length);
+}
@@ -0,0 +1,248 @@
+package com.brianmearns.crafter.io;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable list of the records in a memory-mapped file, each of which is decoded only when it is accessed.
+ *
+ * <p>
+ * The records are either {@linkplain #lines(File, RecordDecoder) lines}, terminated by {@code '\n'} (with an optional
+ * {@code '\r'} before it, which is not part of the record), or {@linkplain #fixedWidth(File, int, RecordDecoder)
+ * fixed-width}. Each record is turned into an element by a {@link RecordDecoder} every time it is accessed, so the
+ * list takes up no heap for its elements.
+ *
+ * <p>
+ * Fixed-width records are located by arithmetic. Lines are located through an index of the offset of each line, which
+ * is built incrementally, only as far into the file as has been accessed by index: {@link #get(int)} for a line near
+ * the start only scans that far, and {@link #size()} scans the whole file. {@linkplain #iterator() Iterating} doesn't
+ * use the index at all, it simply scans the file as it goes. The index is only an array of offsets, so it takes four
+ * bytes per line.
+ *
+ * <p>
+ * The file is mapped once, when the list is created, and must not be modified while the list is in use. Files larger
+ * than {@link Integer#MAX_VALUE} bytes are not supported. The list is thread safe.
+ *
+ * @param <T> The type of the decoded elements.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class RecordFile<T> extends AbstractList<T> implements RandomAccess {
+
+    /**
+     * A decoder of records as UTF-8 strings.
+     */
+    public static final RecordDecoder<String> UTF8 = new RecordDecoder<String>() {
+        @Override
+        public String decode(@Nonnull ByteBuffer buffer, int offset, int length) {
+            byte[] bytes = new byte[length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(offset);
+            source.get(bytes);
+            return new String(bytes, Charsets.UTF_8);
+        }
+    };
+
+    @Nonnull
+    private final MappedByteBuffer buffer;
+
+    @Nonnull
+    private final RecordDecoder<? extends T> decoder;
+
+    /**
+     * The length of each record, or {@code -1} for lines.
+     */
+    private final int recordLength;
+
+    /**
+     * The offset of the start of each line indexed so far, followed by the offset just past the line terminator of
+     * the last one, which is where the next line starts. Past the end of the file, an unterminated last line is
+     * treated as if it were terminated.
+     */
+    @Nonnull
+    private int[] starts = new int[]{0};
+
+    /**
+     * The number of lines indexed in {@link #starts}.
+     */
+    private int indexed;
+
+    /**
+     * Whether all the lines have been indexed.
+     */
+    private boolean complete;
+
+    private RecordFile(@Nonnull MappedByteBuffer buffer, @Nonnull RecordDecoder<? extends T> decoder, int recordLength) {
+        this.buffer = buffer;
+        this.decoder = decoder;
+        this.recordLength = recordLength;
+    }
+
+    /**
+     * Returns a list of the lines in the given file, decoded as UTF-8.
+     */
+    @Nonnull
+    public static RecordFile<String> lines(@Nonnull File path) throws IOException {
+        return lines(path, UTF8);
+    }
+
+    /**
+     * Returns a list of the lines in the given file, each decoded by the given decoder.
+     */
+    @Nonnull
+    public static <T> RecordFile<T> lines(@Nonnull File path, @Nonnull RecordDecoder<? extends T> decoder) throws IOException {
+        return new RecordFile<T>(map(path), decoder, -1);
+    }
+
+    /**
+     * Returns a list of the records of the given length in the given file, each decoded by the given decoder. Any
+     * bytes at the end of the file which don't make up a complete record are ignored.
+     */
+    @Nonnull
+    public static <T> RecordFile<T> fixedWidth(@Nonnull File path, int recordLength, @Nonnull RecordDecoder<? extends T> decoder)
+            throws IOException {
+        Preconditions.checkArgument(recordLength > 0, "Record length must be positive: %s", recordLength);
+        return new RecordFile<T>(map(path), decoder, recordLength);
+    }
+
+    @Nonnull
+    private static MappedByteBuffer map(@Nonnull File path) throws IOException {
+        try(RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            FileChannel channel = file.getChannel();
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + path);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Returns the number of records, if it is known without scanning any more of the file, or otherwise {@code -1}.
+     */
+    public int knownSize() {
+        if(recordLength > 0) {
+            return size();
+        }
+        synchronized(this) {
+            return complete ? indexed : -1;
+        }
+    }
+
+    @Override
+    public int size() {
+        if(recordLength > 0) {
+            return buffer.capacity() / recordLength;
+        }
+        synchronized(this) {
+            while(!complete) {
+                indexNext();
+            }
+            return indexed;
+        }
+    }
+
+    @Override
+    public T get(int index) {
+        if(recordLength > 0) {
+            Preconditions.checkElementIndex(index, size());
+            return decoder.decode(buffer, index * recordLength, recordLength);
+        }
+        long bounds = lineBounds(index);
+        int start = (int) (bounds >>> 32);
+        return decoder.decode(buffer, start, (int) bounds - start);
+    }
+
+    /**
+     * Returns the offset of the start of the given line in the high half, and the offset of its end, not including
+     * the line terminator, in the low half.
+     */
+    private synchronized long lineBounds(int index) {
+        Preconditions.checkArgument(index >= 0, "Index cannot be negative: %s", index);
+        while(indexed <= index && !complete) {
+            indexNext();
+        }
+        Preconditions.checkElementIndex(index, indexed);
+        int start = starts[index];
+        int end = Math.min(starts[index + 1] - 1, buffer.capacity());
+        if(end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        return ((long) start << 32) | end;
+    }
+
+    /**
+     * Scan the next line into the index, or mark the index complete if there isn't one.
+     */
+    private void indexNext() {
+        int start = starts[indexed];
+        int limit = buffer.capacity();
+        if(start >= limit) {
+            complete = true;
+            return;
+        }
+        int position = start;
+        while(position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+        if(indexed + 2 > starts.length) {
+            starts = Arrays.copyOf(starts, 2 * starts.length + 1);
+        }
+        starts[++indexed] = position + 1;
+    }
+
+    /**
+     * Returns an iterator which decodes the records in order, scanning for lines as it goes rather than using the
+     * index.
+     */
+    @Nonnull
+    @Override
+    public Iterator<T> iterator() {
+        if(recordLength > 0) {
+            return super.iterator();
+        }
+        return new Iterator<T>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < buffer.capacity();
+            }
+
+            @Override
+            public T next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int start = position;
+                int limit = buffer.capacity();
+                while(position < limit && buffer.get(position) != '\n') {
+                    position++;
+                }
+                int end = position;
+                position++;
+                if(end > start && buffer.get(end - 1) == '\r') {
+                    end--;
+                }
+                return decoder.decode(buffer, start, end - start);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,234 @@
+package com.brianmearns.crafter.io;
+
+import com.brianmearns.crafter.BuilderInterface;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The layout of a fixed-width binary record: an ordered sequence of named numeric fields, each at a fixed offset from
+ * the start of the record, with no padding between them.
+ *
+ * <p>
+ * Layouts are created with a {@linkplain #builder() builder}, adding the fields in order. Fields are identified
+ * either by their index in the layout, which is fastest, or by their name.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class RecordLayout {
+
+    /**
+     * The types of fields, each with its size in bytes.
+     */
+    public enum Type {
+        BYTE(1), SHORT(2), INT(4), LONG(8), FLOAT(4), DOUBLE(8);
+
+        private final int size;
+
+        Type(int size) {
+            this.size = size;
+        }
+
+        /**
+         * Returns the number of bytes a field of this type takes up.
+         */
+        public int size() {
+            return size;
+        }
+    }
+
+    @Nonnull
+    private final String[] names;
+
+    @Nonnull
+    private final Type[] types;
+
+    @Nonnull
+    private final int[] offsets;
+
+    @Nonnull
+    private final Map<String, Integer> indices;
+
+    private final int recordSize;
+
+    private RecordLayout(@Nonnull List<String> names, @Nonnull List<Type> types) {
+        this.names = names.toArray(new String[names.size()]);
+        this.types = types.toArray(new Type[types.size()]);
+        this.offsets = new int[this.types.length];
+        this.indices = new HashMap<>();
+        int offset = 0;
+        for(int i = 0; i < this.types.length; i++) {
+            offsets[i] = offset;
+            offset += this.types[i].size();
+            indices.put(this.names[i], i);
+        }
+        this.recordSize = offset;
+    }
+
+    /**
+     * Returns a new builder for a layout.
+     */
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the number of bytes in a record.
+     */
+    public int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Returns the number of fields.
+     */
+    public int fieldCount() {
+        return types.length;
+    }
+
+    /**
+     * Returns the index of the field with the given name.
+     *
+     * @throws IllegalArgumentException If there is no such field.
+     */
+    public int indexOf(@Nonnull String name) {
+        Integer index = indices.get(name);
+        Preconditions.checkArgument(index != null, "No such field: %s", name);
+        return index;
+    }
+
+    /**
+     * Returns the name of the field at the given index.
+     */
+    @Nonnull
+    public String name(int field) {
+        return names[field];
+    }
+
+    /**
+     * Returns the type of the field at the given index.
+     */
+    @Nonnull
+    public Type type(int field) {
+        return types[field];
+    }
+
+    /**
+     * Returns the offset of the field at the given index from the start of a record.
+     */
+    public int offset(int field) {
+        return offsets[field];
+    }
+
+    /**
+     * Returns the offset of the field at the given index, after checking that it is of the given type.
+     *
+     * @throws IllegalArgumentException If the field is of a different type.
+     */
+    int checkedOffset(int field, @Nonnull Type type) {
+        Preconditions.checkElementIndex(field, types.length, "field");
+        Preconditions.checkArgument(types[field] == type, "Field %s is of type %s, not %s.", names[field], types[field], type);
+        return offsets[field];
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof RecordLayout)) {
+            return false;
+        }
+        RecordLayout that = (RecordLayout) other;
+        return Arrays.equals(names, that.names) && Arrays.equals(types, that.types);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(names) + Arrays.hashCode(types);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RecordLayout[");
+        for(int i = 0; i < names.length; i++) {
+            if(i > 0) {
+                builder.append(", ");
+            }
+            builder.append(names[i]).append(':').append(types[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * A builder of a {@link RecordLayout}, to which fields are added in order.
+     */
+    public static final class Builder implements BuilderInterface<RecordLayout> {
+
+        @Nonnull
+        private final List<String> names = new ArrayList<>();
+
+        @Nonnull
+        private final List<Type> types = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Add a field of the given name and type after the fields already added.
+         *
+         * @return {@code this} object itself, for chaining convenience.
+         *
+         * @throws IllegalArgumentException If there is already a field with the given name.
+         */
+        @Nonnull
+        public Builder add(@Nonnull String name, @Nonnull Type type) {
+            Preconditions.checkArgument(!names.contains(name), "Duplicate field name: %s", name);
+            names.add(name);
+            types.add(type);
+            return this;
+        }
+
+        @Nonnull
+        public Builder addByte(@Nonnull String name) {
+            return add(name, Type.BYTE);
+        }
+
+        @Nonnull
+        public Builder addShort(@Nonnull String name) {
+            return add(name, Type.SHORT);
+        }
+
+        @Nonnull
+        public Builder addInt(@Nonnull String name) {
+            return add(name, Type.INT);
+        }
+
+        @Nonnull
+        public Builder addLong(@Nonnull String name) {
+            return add(name, Type.LONG);
+        }
+
+        @Nonnull
+        public Builder addFloat(@Nonnull String name) {
+            return add(name, Type.FLOAT);
+        }
+
+        @Nonnull
+        public Builder addDouble(@Nonnull String name) {
+            return add(name, Type.DOUBLE);
+        }
+
+        /**
+         * Returns a layout of the fields added so far.
+         */
+        @Nonnull
+        @Override
+        public RecordLayout get() {
+            return new RecordLayout(names, types);
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.brianmearns.crafter.io;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Encodes built results into a compact binary form, and decodes them as read-only views over the bytes, so that
+ * results stored off-heap, e.g., in a memory-mapped file, can be used without copying them onto the heap.
+ *
+ * <p>
+ * The supported values are {@code null}, strings, the boxed primitive types, and {@linkplain List lists} and
+ * {@linkplain Map maps} of supported values, nested to any depth. Each value starts with a one-byte tag giving its
+ * type. Lists are followed by a table of the offset of each element, so decoded lists have constant time random
+ * access. Maps are followed by a table of the hash code of each key along with the offsets of the key and the value,
+ * sorted by hash code, so decoded maps look up keys by binary search. The hash codes of the supported types are
+ * specified by the platform, so they are the same in every JVM.
+ *
+ * <p>
+ * Decoded lists and maps are unmodifiable views which read their elements from the buffer each time they are
+ * accessed: primitives and strings are decoded into new objects, and nested lists and maps into new views. The
+ * buffer must not be modified while views of it are in use.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class ResultCodec {
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte CHAR = 5;
+    private static final byte INT = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte STRING = 10;
+    private static final byte LIST = 11;
+    private static final byte MAP = 12;
+
+    /**
+     * The size of an entry in the table of a map: the hash code of the key, and the offsets of the key and the value.
+     */
+    private static final int MAP_ENTRY_SIZE = 12;
+
+    private ResultCodec() {
+    }
+
+    /**
+     * Returns whether the given value, including all its elements, is of a supported type.
+     */
+    public static boolean isSupported(@Nullable Object value) {
+        if(value == null || value instanceof String || value instanceof Boolean || value instanceof Byte
+                || value instanceof Short || value instanceof Character || value instanceof Integer
+                || value instanceof Long || value instanceof Float || value instanceof Double) {
+            return true;
+        }
+        if(value instanceof List) {
+            for(Object element : (List<?>) value) {
+                if(!isSupported(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if(value instanceof Map) {
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if(!isSupported(entry.getKey()) || !isSupported(entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the encoded form of the given value.
+     *
+     * @throws IllegalArgumentException If the value, or any of its elements, is not of a supported type.
+     */
+    @Nonnull
+    public static byte[] encode(@Nullable Object value) {
+        Encoder encoder = new Encoder();
+        encoder.write(value);
+        return Arrays.copyOf(encoder.bytes, encoder.size);
+    }
+
+    /**
+     * Decode the value encoded at the given absolute position of the given buffer. The buffer's position and limit
+     * are not used or changed.
+     */
+    @Nullable
+    public static Object decode(@Nonnull ByteBuffer buffer, int offset) {
+        byte tag = buffer.get(offset);
+        switch(tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case BYTE:
+                return buffer.get(offset + 1);
+            case SHORT:
+                return buffer.getShort(offset + 1);
+            case CHAR:
+                return buffer.getChar(offset + 1);
+            case INT:
+                return buffer.getInt(offset + 1);
+            case LONG:
+                return buffer.getLong(offset + 1);
+            case FLOAT:
+                return buffer.getFloat(offset + 1);
+            case DOUBLE:
+                return buffer.getDouble(offset + 1);
+            case STRING:
+                byte[] bytes = new byte[buffer.getInt(offset + 1)];
+                ByteBuffer source = buffer.duplicate();
+                source.position(offset + 5);
+                source.get(bytes);
+                return new String(bytes, Charsets.UTF_8);
+            case LIST:
+                return new EncodedList<>(buffer, offset);
+            case MAP:
+                return new EncodedMap<>(buffer, offset);
+            default:
+                throw new IllegalArgumentException("Not an encoded value, unknown tag " + tag + " at offset " + offset);
+        }
+    }
+
+    /**
+     * A growable array of bytes to encode into.
+     */
+    private static final class Encoder {
+
+        @Nonnull
+        private byte[] bytes = new byte[64];
+
+        private int size;
+
+        private void ensureCapacity(int capacity) {
+            if(capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, 2 * bytes.length));
+            }
+        }
+
+        private void putByte(int b) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) b;
+        }
+
+        private void putShort(int s) {
+            putByte(s >>> 8);
+            putByte(s);
+        }
+
+        private void putInt(int i) {
+            ensureCapacity(size + 4);
+            setInt(size, i);
+            size += 4;
+        }
+
+        private void putLong(long l) {
+            putInt((int) (l >>> 32));
+            putInt((int) l);
+        }
+
+        private void setInt(int position, int i) {
+            bytes[position] = (byte) (i >>> 24);
+            bytes[position + 1] = (byte) (i >>> 16);
+            bytes[position + 2] = (byte) (i >>> 8);
+            bytes[position + 3] = (byte) i;
+        }
+
+        /**
+         * Reserve the given number of bytes, to be filled in later, and return the position of the first one.
+         */
+        private int reserve(int length) {
+            ensureCapacity(size + length);
+            int position = size;
+            size += length;
+            return position;
+        }
+
+        private void write(@Nullable Object value) {
+            if(value == null) {
+                putByte(NULL);
+            } else if(value instanceof Boolean) {
+                putByte((Boolean) value ? TRUE : FALSE);
+            } else if(value instanceof Byte) {
+                putByte(BYTE);
+                putByte((Byte) value);
+            } else if(value instanceof Short) {
+                putByte(SHORT);
+                putShort((Short) value);
+            } else if(value instanceof Character) {
+                putByte(CHAR);
+                putShort((Character) value);
+            } else if(value instanceof Integer) {
+                putByte(INT);
+                putInt((Integer) value);
+            } else if(value instanceof Long) {
+                putByte(LONG);
+                putLong((Long) value);
+            } else if(value instanceof Float) {
+                putByte(FLOAT);
+                putInt(Float.floatToRawIntBits((Float) value));
+            } else if(value instanceof Double) {
+                putByte(DOUBLE);
+                putLong(Double.doubleToRawLongBits((Double) value));
+            } else if(value instanceof String) {
+                byte[] utf8 = ((String) value).getBytes(Charsets.UTF_8);
+                putByte(STRING);
+                putInt(utf8.length);
+                ensureCapacity(size + utf8.length);
+                System.arraycopy(utf8, 0, bytes, size, utf8.length);
+                size += utf8.length;
+            } else if(value instanceof List) {
+                writeList((List<?>) value);
+            } else if(value instanceof Map) {
+                writeMap((Map<?, ?>) value);
+            } else {
+                throw new IllegalArgumentException("Unsupported type for encoding: " + value.getClass().getName());
+            }
+        }
+
+        private void writeList(@Nonnull List<?> list) {
+            int start = size;
+            putByte(LIST);
+            putInt(list.size());
+            int table = reserve(4 * list.size());
+            int i = 0;
+            for(Object element : list) {
+                setInt(table + 4 * i, size - start);
+                write(element);
+                i++;
+            }
+        }
+
+        private void writeMap(@Nonnull Map<?, ?> map) {
+            int start = size;
+            putByte(MAP);
+            putInt(map.size());
+            int table = reserve(MAP_ENTRY_SIZE * map.size());
+
+            //Sort the entries by the hash codes of their keys, so that they can be found by binary search.
+            Map.Entry<?, ?>[] entries = map.entrySet().toArray(new Map.Entry<?, ?>[map.size()]);
+            long[] order = new long[entries.length];
+            for(int i = 0; i < entries.length; i++) {
+                order[i] = ((long) hash(entries[i].getKey()) << 32) | i;
+            }
+            Arrays.sort(order);
+
+            for(int i = 0; i < order.length; i++) {
+                Map.Entry<?, ?> entry = entries[(int) order[i]];
+                int row = table + MAP_ENTRY_SIZE * i;
+                setInt(row, hash(entry.getKey()));
+                setInt(row + 4, size - start);
+                write(entry.getKey());
+                setInt(row + 8, size - start);
+                write(entry.getValue());
+            }
+        }
+    }
+
+    private static int hash(@Nullable Object key) {
+        return key == null ? 0 : key.hashCode();
+    }
+
+    /**
+     * A read-only view of an encoded list.
+     */
+    private static final class EncodedList<E> extends AbstractList<E> implements RandomAccess {
+
+        @Nonnull
+        private final ByteBuffer buffer;
+
+        private final int offset;
+
+        private final int size;
+
+        private EncodedList(@Nonnull ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.size = buffer.getInt(offset + 1);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            Preconditions.checkElementIndex(index, size);
+            return (E) decode(buffer, offset + buffer.getInt(offset + 5 + 4 * index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * A read-only view of an encoded map.
+     */
+    private static final class EncodedMap<K, V> extends AbstractMap<K, V> {
+
+        @Nonnull
+        private final ByteBuffer buffer;
+
+        private final int offset;
+
+        private final int size;
+
+        private EncodedMap(@Nonnull ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.size = buffer.getInt(offset + 1);
+        }
+
+        /**
+         * Returns the absolute position of the given row of the table.
+         */
+        private int row(int index) {
+            return offset + 5 + MAP_ENTRY_SIZE * index;
+        }
+
+        @Nullable
+        private Object keyAt(int index) {
+            return decode(buffer, offset + buffer.getInt(row(index) + 4));
+        }
+
+        @Nullable
+        private Object valueAt(int index) {
+            return decode(buffer, offset + buffer.getInt(row(index) + 8));
+        }
+
+        /**
+         * Returns the index of the row for the given key, or {@code -1} if it isn't in the map.
+         */
+        private int indexOf(@Nullable Object key) {
+            int hash = hash(key);
+            int low = 0;
+            int high = size - 1;
+            while(low <= high) {
+                int mid = (low + high) >>> 1;
+                int midHash = buffer.getInt(row(mid));
+                if(midHash < hash) {
+                    low = mid + 1;
+                } else if(midHash > hash) {
+                    high = mid - 1;
+                } else {
+                    //Check every row with the same hash, on both sides.
+                    for(int i = mid; i >= 0 && buffer.getInt(row(i)) == hash; i--) {
+                        if(Objects.equal(key, keyAt(i))) {
+                            return i;
+                        }
+                    }
+                    for(int i = mid + 1; i < size && buffer.getInt(row(i)) == hash; i++) {
+                        if(Objects.equal(key, keyAt(i))) {
+                            return i;
+                        }
+                    }
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(@Nullable Object key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        @Nullable
+        @SuppressWarnings("unchecked")
+        public V get(@Nullable Object key) {
+            int index = indexOf(key);
+            return index < 0 ? null : (V) valueAt(index);
+        }
+
+        @Nonnull
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+                @Nonnull
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new Iterator<Entry<K, V>>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < size;
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Entry<K, V> next() {
+                            if(!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<K, V> entry = Maps.immutableEntry((K) keyAt(index), (V) valueAt(index));
+                            index++;
+                            return entry;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
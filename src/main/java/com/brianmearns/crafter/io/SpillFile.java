@@ -0,0 +1,163 @@
+package com.brianmearns.crafter.io;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An append-only sequence of values {@linkplain ResultCodec encoded} into memory-mapped temporary files, for holding
+ * large amounts of data off the heap.
+ *
+ * <p>
+ * Each {@linkplain #append(Object) appended} value is identified by its address, from which any number of consecutive
+ * values can be {@linkplain #read(long, int, Collection) read} back. The values are stored in chunks of a fixed size,
+ * each one a separate mapped file, so that there is no limit on the total size; each value is stored in a single
+ * chunk, preceded by its length. Each file is deleted as soon as it is mapped (where the platform allows it, and
+ * otherwise when the JVM exits), so its space is released once its chunk is garbage collected.
+ *
+ * <p>
+ * Reading is thread safe, but appending must not be done concurrently with anything else.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class SpillFile {
+
+    /**
+     * The default size of each mapped chunk, in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 26;
+
+    /**
+     * The length that marks the end of the values in a chunk, when the next value didn't fit.
+     */
+    private static final int END_OF_CHUNK = -1;
+
+    @Nullable
+    private final File directory;
+
+    private final int chunkSize;
+
+    @Nonnull
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * The number of bytes used by the values appended so far.
+     */
+    private long usedBytes;
+
+    /**
+     * The position in the last chunk at which the next value is appended.
+     */
+    private int position;
+
+    /**
+     * Create an empty sequence in the default temporary directory, with chunks of {@link #DEFAULT_CHUNK_SIZE}. No file
+     * is created until the first value is appended.
+     */
+    public SpillFile() {
+        this(null, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create an empty sequence in the given directory, with chunks of the given size.
+     *
+     * @param directory The directory to create the files in, or {@code null} for the default temporary directory.
+     * @param chunkSize The size of each chunk in bytes. A value larger than this gets a chunk of its own size.
+     */
+    public SpillFile(@Nullable File directory, int chunkSize) {
+        Preconditions.checkArgument(chunkSize >= 16, "Chunk size too small: %s", chunkSize);
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the address at which the next value will be appended, if it fits in the current chunk, or {@code 0} if
+     * nothing was appended yet.
+     */
+    public long end() {
+        return chunks.isEmpty() ? 0 : address(chunks.size() - 1, position);
+    }
+
+    /**
+     * Returns the number of bytes used by the values appended so far.
+     */
+    public long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Append the given value to the end of the sequence.
+     *
+     * @return The address of the value.
+     *
+     * @throws IllegalArgumentException If the value is not of a type supported by {@link ResultCodec}.
+     * @throws IOException If a new chunk is needed, and its file can't be created.
+     */
+    public long append(@Nullable Object value) throws IOException {
+        byte[] encoded = ResultCodec.encode(value);
+        //Always leave room to mark the end of the chunk.
+        int needed = encoded.length + 8;
+        if(chunks.isEmpty() || position + needed > chunks.get(chunks.size() - 1).capacity()) {
+            if(!chunks.isEmpty()) {
+                chunks.get(chunks.size() - 1).putInt(position, END_OF_CHUNK);
+            }
+            mapChunk(Math.max(chunkSize, needed));
+        }
+        MappedByteBuffer chunk = chunks.get(chunks.size() - 1);
+        long address = end();
+        ByteBuffer target = chunk.duplicate();
+        target.position(position);
+        target.putInt(encoded.length).put(encoded);
+        position += 4 + encoded.length;
+        usedBytes += 4 + encoded.length;
+        return address;
+    }
+
+    private void mapChunk(int size) throws IOException {
+        //Each chunk is mapped from a file of its own, which can be deleted straight away.
+        File path = File.createTempFile("crafter-spill", ".bin", directory);
+        try(RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            chunks.add(file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } finally {
+            if(!path.delete()) {
+                path.deleteOnExit();
+            }
+        }
+        position = 0;
+    }
+
+    /**
+     * Read the given number of consecutive values, starting with the one at the given address, and add them to the
+     * given collection, in order. Lists and maps are added as views of the file.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void read(long address, int count, @Nonnull Collection<? super T> target) {
+        int chunkIndex = (int) (address >>> 32);
+        int offset = (int) address;
+        for(int i = 0; i < count; i++) {
+            MappedByteBuffer chunk = chunks.get(chunkIndex);
+            int valueLength = offset + 4 <= chunk.capacity() ? chunk.getInt(offset) : END_OF_CHUNK;
+            if(valueLength == END_OF_CHUNK) {
+                chunk = chunks.get(++chunkIndex);
+                offset = 0;
+                valueLength = chunk.getInt(offset);
+            }
+            target.add((T) ResultCodec.decode(chunk, offset + 4));
+            offset += 4 + valueLength;
+        }
+    }
+
+    private static long address(int chunkIndex, int position) {
+        return ((long) chunkIndex << 32) | (position & 0xFFFFFFFFL);
+    }
+}
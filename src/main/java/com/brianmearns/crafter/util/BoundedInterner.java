@@ -0,0 +1,124 @@
+package com.brianmearns.crafter.util;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lossy interner of immutable values, which canonicalizes equal values to a single shared instance.
+ *
+ * <p>
+ * The interner is a fixed number of slots, each holding a weak reference to the last value interned into it, chosen
+ * by the value's hash code. {@linkplain #intern(Object) Interning} a value that is equal to the one in its slot
+ * returns the instance already there (a hit); otherwise the value takes over the slot (a miss). So the interner never
+ * holds more than its capacity, never keeps a value from being garbage collected, and needs no locking, at the cost
+ * of sometimes missing a value that was evicted by another one with a colliding slot.
+ *
+ * <p>
+ * The hit and miss counts can be used to decide whether interning pays off for a particular workload.
+ *
+ * @param <T> The type of values interned, which should be immutable.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class BoundedInterner<T> {
+
+    /**
+     * The default number of slots.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+
+    @Nonnull
+    private final AtomicReferenceArray<WeakReference<T>> slots;
+
+    private final int mask;
+
+    @Nonnull
+    private final AtomicLong hits = new AtomicLong();
+
+    @Nonnull
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create an interner with {@link #DEFAULT_CAPACITY} slots.
+     */
+    public BoundedInterner() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an interner with the given number of slots, rounded up to a power of two.
+     */
+    public BoundedInterner(int capacity) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= (1 << 30), "Capacity out of range: %s", capacity);
+        int slots = Integer.highestOneBit(capacity);
+        if(slots < capacity) {
+            slots <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(slots);
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Returns the instance in this interner which is equal to the given value, if there is one, or otherwise interns
+     * the given value and returns it.
+     */
+    @Nonnull
+    public T intern(@Nonnull T value) {
+        int h = value.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        WeakReference<T> ref = slots.get(slot);
+        if(ref != null) {
+            T existing = ref.get();
+            if(existing != null && existing.equals(value)) {
+                hits.incrementAndGet();
+                return existing;
+            }
+        }
+        slots.set(slot, new WeakReference<>(value));
+        misses.incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Returns the number of slots.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of times an equal instance was found.
+     */
+    public long hitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of times a value was interned because no equal instance was found.
+     */
+    public long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the fraction of {@linkplain #intern(Object) interned} values for which an equal instance was found, or
+     * {@code 0} if nothing was interned yet.
+     */
+    public double hitRate() {
+        long hits = hitCount();
+        long total = hits + missCount();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Reset the hit and miss counts to zero.
+     */
+    public void resetStats() {
+        hits.set(0);
+        misses.set(0);
+    }
+}
@@ -0,0 +1,119 @@
+package com.brianmearns.crafter.util;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of reusable builders, kept separately for each thread.
+ *
+ * <p>
+ * Instead of creating a new builder each time through a hot loop, {@linkplain #acquire() acquire} one from the pool and
+ * {@linkplain #release(Object) release} it back to the pool once you are done with it. Released builders are
+ * {@linkplain #reset(Object) reset} and kept for the next acquisition on the same thread, so once the pool is warmed
+ * up, no builders are allocated. Builders which can't be reset, e.g., because they have been consumed, are
+ * {@linkplain #isReusable(Object) dropped} instead. Since each thread has its own pool, no synchronization is needed, but a builder must
+ * be released on the same thread that acquired it, and must not be used after it is released.
+ *
+ * <p>
+ * Pools of the standard builders are available from {@link com.brianmearns.crafter.ListBuilder#pool()} and
+ * {@link com.brianmearns.crafter.MapBuilder#pool()}. Other implementations define how to {@linkplain #create() create}
+ * and {@linkplain #reset(Object) reset} builders, e.g.:
+ *
+ * <pre>{@code
+ * private static final BuilderPool<ListBuilder<String>> POOL = new BuilderPool<ListBuilder<String>>() {
+ *     protected ListBuilder<String> create() {
+ *         return ListBuilder.create();
+ *     }
+ *
+ *     protected void reset(ListBuilder<String> builder) {
+ *         builder.reset();
+ *     }
+ * };
+ * }</pre>
+ *
+ * @param <B> The type of builder pooled.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public abstract class BuilderPool<B> {
+
+    /**
+     * The default maximum number of idle builders kept for each thread.
+     */
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    private final int maxIdle;
+
+    @Nonnull
+    private final ThreadLocal<ArrayDeque<B>> idle = new ThreadLocal<ArrayDeque<B>>() {
+        @Override
+        protected ArrayDeque<B> initialValue() {
+            return new ArrayDeque<>(maxIdle);
+        }
+    };
+
+    /**
+     * Create a pool which keeps up to {@link #DEFAULT_MAX_IDLE} idle builders for each thread.
+     */
+    protected BuilderPool() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Create a pool which keeps up to the given number of idle builders for each thread.
+     */
+    protected BuilderPool(int maxIdle) {
+        Preconditions.checkArgument(maxIdle > 0, "Maximum number of idle builders must be positive: %s", maxIdle);
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Create a new builder, when there is no idle builder in the current thread's pool.
+     */
+    @Nonnull
+    protected abstract B create();
+
+    /**
+     * Reset the given builder to its initial state, when it is released to the pool.
+     */
+    protected abstract void reset(@Nonnull B builder);
+
+    /**
+     * Returns whether the given builder, which is being released, can be reset and kept in the pool. The default
+     * implementation returns {@code true}.
+     */
+    protected boolean isReusable(@Nonnull B builder) {
+        return true;
+    }
+
+    /**
+     * Returns an idle builder from the current thread's pool, or a new one if the pool is empty.
+     */
+    @Nonnull
+    public B acquire() {
+        B builder = idle.get().pollFirst();
+        if(builder == null) {
+            return create();
+        }
+        return builder;
+    }
+
+    /**
+     * Reset the given builder and return it to the current thread's pool. If the pool is already full, or the builder
+     * isn't {@linkplain #isReusable(Object) reusable}, the builder is simply dropped.
+     *
+     * @param builder A builder previously {@linkplain #acquire() acquired} from this pool on the current thread.
+     */
+    public void release(@Nonnull B builder) {
+        if(!isReusable(builder)) {
+            return;
+        }
+        reset(builder);
+        ArrayDeque<B> pool = idle.get();
+        if(pool.size() < maxIdle) {
+            pool.addFirst(builder);
+        }
+    }
+}
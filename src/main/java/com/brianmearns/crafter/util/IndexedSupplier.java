@@ -0,0 +1,27 @@
+package com.brianmearns.crafter.util;
+
+import javax.annotation.Nullable;
+
+/**
+ * Supplies a value for each index in a batch of built instances. This is used to give per-instance variations to the
+ * elements of a builder when building many instances at once, e.g., with {@link com.brianmearns.crafter.ListBuilder#buildMany(int)}.
+ *
+ * <p>
+ * When a single instance is built with {@link com.brianmearns.crafter.BuilderInterface#get()}, the supplier is invoked
+ * with index {@code 0}.
+ *
+ * @param <T> The type of value supplied.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public interface IndexedSupplier<T> {
+
+    /**
+     * Returns the value for the instance at the given index.
+     *
+     * @param index The index of the instance being built, from {@code 0} (inclusive) to the number of instances
+     *              being built (exclusive).
+     */
+    @Nullable
+    T get(int index);
+}
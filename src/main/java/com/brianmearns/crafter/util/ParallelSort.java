@@ -0,0 +1,139 @@
+package com.brianmearns.crafter.util;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A stable merge sort of arrays that sorts large arrays on all cores, with a {@link ForkJoinPool}.
+ *
+ * <p>
+ * The array is split in halves recursively until the parts are small enough to be sorted with
+ * {@link Arrays#sort(Object[], int, int, Comparator)}, which is done in parallel, and the sorted parts are then merged
+ * back together, also in parallel as far as they are independent. Arrays of up to {@link #SEQUENTIAL_THRESHOLD}
+ * elements are just sorted on the calling thread. The sort takes a scratch array of the size of the range being
+ * sorted.
+ *
+ * <p>
+ * The sort is done in a pool shared by all callers, with one thread per core, which is created the first time it is
+ * needed. Its threads are daemon threads, so they don't keep the JVM from exiting.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public final class ParallelSort {
+
+    /**
+     * The largest number of elements which are sorted on a single thread.
+     */
+    public static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+    private ParallelSort() {
+    }
+
+    /**
+     * Holds the shared pool, so that it is only created when it is first needed.
+     */
+    private static final class Pool {
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool();
+    }
+
+    /**
+     * Sort the given array by the given comparator.
+     */
+    public static <T> void sort(@Nonnull T[] array, @Nonnull Comparator<? super T> comparator) {
+        sort(array, 0, array.length, comparator);
+    }
+
+    /**
+     * Sort the elements of the given array from {@code from}, inclusive, to {@code to}, exclusive, by the given
+     * comparator. Equal elements keep their order.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void sort(@Nonnull T[] array, int from, int to, @Nonnull Comparator<? super T> comparator) {
+        Preconditions.checkPositionIndexes(from, to, array.length);
+        if(to - from <= SEQUENTIAL_THRESHOLD || Runtime.getRuntime().availableProcessors() == 1) {
+            Arrays.sort(array, from, to, comparator);
+            return;
+        }
+        T[] scratch = (T[]) new Object[to - from];
+        Pool.INSTANCE.invoke(new SortTask<>(array, scratch, from, from, to, comparator));
+    }
+
+    /**
+     * Sorts a range of the array, using the same range of the scratch array to merge, so that tasks running at the same
+     * time never share any of it.
+     */
+    private static final class SortTask<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        @Nonnull
+        private final T[] array;
+
+        @Nonnull
+        private final T[] scratch;
+
+        /**
+         * The index in the array of the start of the scratch array.
+         */
+        private final int base;
+
+        private final int from;
+
+        private final int to;
+
+        @Nonnull
+        private final Comparator<? super T> comparator;
+
+        private SortTask(@Nonnull T[] array, @Nonnull T[] scratch, int base, int from, int to,
+                         @Nonnull Comparator<? super T> comparator) {
+            this.array = array;
+            this.scratch = scratch;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= SEQUENTIAL_THRESHOLD) {
+                Arrays.sort(array, from, to, comparator);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SortTask<>(array, scratch, base, from, middle, comparator),
+                    new SortTask<>(array, scratch, base, middle, to, comparator));
+            merge(middle);
+        }
+
+        /**
+         * Merge the sorted ranges on either side of the given index, by moving the left one into the scratch array and
+         * merging it back with the right one. The left element is taken first when they are equal, to keep the sort
+         * stable.
+         */
+        private void merge(int middle) {
+            if(comparator.compare(array[middle - 1], array[middle]) <= 0) {
+                return;
+            }
+            int start = from - base;
+            int end = middle - base;
+            System.arraycopy(array, from, scratch, start, end - start);
+            int left = start;
+            int right = middle;
+            int target = from;
+            while(left < end && right < to) {
+                if(comparator.compare(scratch[left], array[right]) <= 0) {
+                    array[target++] = scratch[left++];
+                } else {
+                    array[target++] = array[right++];
+                }
+            }
+            System.arraycopy(scratch, left, array, target, end - left);
+        }
+    }
+}
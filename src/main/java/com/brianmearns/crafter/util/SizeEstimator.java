@@ -0,0 +1,66 @@
+package com.brianmearns.crafter.util;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Keeps a running estimate of the sizes of the collections built by a group of builders, so that the collections
+ * they build can be presized to avoid resizing or rehashing as they are filled.
+ *
+ * <p>
+ * Share one estimator between the builders created from the same template or at the same call site, e.g., by keeping
+ * it in a static field and passing it to {@link com.brianmearns.crafter.ListBuilder#create(SizeEstimator)}. Builders
+ * {@linkplain com.brianmearns.crafter.ListBuilder#fork() forked} from a template share the template's estimator.
+ *
+ * <p>
+ * The estimate rises immediately to any larger size that is {@linkplain #record(int) recorded}, and decays slowly
+ * toward smaller sizes, so that it errs on the side of presizing enough. An estimator can be shared between threads;
+ * concurrent updates may occasionally be lost, which only affects the accuracy of the estimate.
+ *
+ * @author Brian Mearns <bmearns@ieee.org>
+ */
+public class SizeEstimator {
+
+    /**
+     * How quickly the estimate decays toward smaller sizes: each smaller size recorded closes
+     * {@code 1/2^DECAY_SHIFT} of the gap.
+     */
+    private static final int DECAY_SHIFT = 3;
+
+    private volatile int estimate;
+
+    /**
+     * Create an estimator with no initial estimate.
+     */
+    public SizeEstimator() {
+        this(0);
+    }
+
+    /**
+     * Create an estimator with the given initial estimate.
+     *
+     * @param expectedSize The number of elements the built collections are initially expected to hold.
+     */
+    public SizeEstimator(int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "Expected size cannot be negative: %s", expectedSize);
+        this.estimate = expectedSize;
+    }
+
+    /**
+     * Returns the current estimate of the number of elements a built collection will hold.
+     */
+    public int estimate() {
+        return estimate;
+    }
+
+    /**
+     * Update the estimate with the size of a collection that was just built.
+     */
+    public void record(int size) {
+        int current = estimate;
+        if(size > current) {
+            estimate = size;
+        } else if(size < current) {
+            estimate = current - (((current - size) >>> DECAY_SHIFT) | 1);
+        }
+    }
+}
@@ -16,6 +16,10 @@ import javax.annotation.Nullable;
 @SuppressWarnings("unused")
 public abstract class SupplierFunctions {
 
+    /**
+     * The (non-public) class of the suppliers returned by {@link Suppliers#ofInstance(Object)}.
+     */
+    private static final Class<?> SUPPLIER_OF_INSTANCE_CLASS = Suppliers.ofInstance(null).getClass();
 
     /**
      * Create and return a new {@link Function} which takes an instance of type {@code T} and returns
@@ -36,6 +40,33 @@ public abstract class SupplierFunctions {
         return new BuilderToSupplierFunction<>();
     }
 
+    /**
+     * Tests whether the given supplier is one returned by {@link Suppliers#ofInstance(Object)}, which means that it
+     * always supplies the same instance and that invoking it has no side effects. Builders use this to recognize
+     * constant elements, which they can evaluate once in advance.
+     *
+     * @param supplier The supplier to test.
+     *
+     * @return {@code true} if and only if the given supplier is a supplier of a single constant instance.
+     */
+    public static boolean isSupplierOfInstance(@Nullable Supplier<?> supplier) {
+        return supplier != null && supplier.getClass() == SUPPLIER_OF_INSTANCE_CLASS;
+    }
+
+    /**
+     * Adapt the given {@link IndexedSupplier} to a {@link Supplier}, so that it can be used as an element of a builder.
+     * The adapter's {@link Supplier#get()} method supplies the value for index {@code 0}, but builders that build
+     * many instances at once recognize the adapter and invoke the indexed supplier with each instance's index.
+     *
+     * @param supplier The indexed supplier to adapt.
+     *
+     * @return A new {@link IndexedSupplierAdapter} of the given supplier.
+     */
+    @Nonnull
+    public static <T> IndexedSupplierAdapter<T> ofIndexed(@Nonnull IndexedSupplier<? extends T> supplier) {
+        return new IndexedSupplierAdapter<>(supplier);
+    }
+
     /**
      * A simple function that maps an instance to a {@link Supplier} of that instance, using
      * {@link Suppliers#ofInstance(Object)}.
@@ -63,4 +94,34 @@ public abstract class SupplierFunctions {
             return input;
         }
     }
+
+    /**
+     * A {@link Supplier} which delegates to an {@link IndexedSupplier}, with index {@code 0} by default.
+     *
+     * @see #ofIndexed(IndexedSupplier)
+     */
+    public static class IndexedSupplierAdapter<T> implements Supplier<T>, IndexedSupplier<T> {
+
+        @Nonnull
+        private final IndexedSupplier<? extends T> supplier;
+
+        protected IndexedSupplierAdapter(@Nonnull IndexedSupplier<? extends T> supplier) {
+            this.supplier = supplier;
+        }
+
+        /**
+         * Returns the value for index {@code 0}.
+         */
+        @Override
+        @Nullable
+        public T get() {
+            return supplier.get(0);
+        }
+
+        @Override
+        @Nullable
+        public T get(int index) {
+            return supplier.get(index);
+        }
+    }
 }
@@ -0,0 +1,136 @@
+package com.brianmearns.crafter;
+
+import org.junit.Test;
+
+import java.beans.ConstructorProperties;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BeanBuilderTest {
+
+    public static class Named {
+        private final String name;
+        private final int count;
+        private final List<String> tags;
+
+        @ConstructorProperties({"name", "count", "tags"})
+        public Named(String name, int count, List<String> tags) {
+            this.name = name;
+            this.count = count;
+            this.tags = tags;
+        }
+
+        private Named(String name) {
+            this(name, 0, null);
+        }
+
+        public static Named of(String name) {
+            return new Named(name);
+        }
+    }
+
+    public static class Unnamed {
+        private final long value;
+
+        public Unnamed(long value) {
+            this.value = value;
+        }
+    }
+
+    public static class StackRecording {
+        private final StackTraceElement[] stack;
+
+        public StackRecording(int ignored) {
+            this.stack = new Throwable().getStackTrace();
+        }
+    }
+
+    @Test
+    public void testGet_noReflection() {
+        BeanBuilder<StackRecording> uut = BeanBuilder.create(StackRecording.class).set(0, 1);
+        for(int i = 0; i < 10000; i++) {
+            uut.get();
+        }
+
+        //Check the frames between the constructor and the builder, since the test itself is invoked reflectively.
+        for(StackTraceElement frame : uut.get().stack) {
+            String cls = frame.getClassName();
+            if(cls.equals(BeanBuilder.class.getName())) {
+                return;
+            }
+            assertFalse("Expected the instance to be built without reflection, but found " + frame,
+                    cls.startsWith("java.lang.reflect.") || cls.startsWith("sun.reflect.") || cls.startsWith("jdk.internal.reflect."));
+        }
+        fail("Expected the builder to be on the stack.");
+    }
+
+    @Test
+    public void testGet_named() {
+        BeanBuilder<Named> uut = BeanBuilder.create(Named.class)
+                .set("name", "foo")
+                .set("count", 3)
+                .set("tags", ListBuilder.create(String.class).add("a").add("b"));
+        Named res = uut.get();
+
+        assertEquals("foo", res.name);
+        assertEquals(3, res.count);
+        assertEquals(Arrays.asList("a", "b"), res.tags);
+        assertEquals(Arrays.asList("name", "count", "tags"), uut.slotNames());
+    }
+
+    @Test
+    public void testGet_indexed() {
+        BeanBuilder<Unnamed> uut = BeanBuilder.create(Unnamed.class).set(0, 42L);
+
+        assertEquals(42L, uut.get().value);
+        assertTrue(uut.slotNames().isEmpty());
+    }
+
+    @Test
+    public void testGet_factory() {
+        Named res = BeanBuilder.create(Named.class, "of").set(0, "bar").get();
+
+        assertEquals("bar", res.name);
+        assertEquals(0, res.count);
+    }
+
+    @Test
+    public void testGet_reuse() {
+        BeanBuilder<Unnamed> uut = BeanBuilder.create(Unnamed.class).set(0, 1L);
+        Unnamed first = uut.get();
+        Unnamed second = uut.set(0, 2L).get();
+
+        assertEquals(1L, first.value);
+        assertEquals(2L, second.value);
+    }
+
+    @Test(expected = IncompleteBuilderException.class)
+    public void testGet_incomplete() {
+        BeanBuilder.create(Named.class).set("name", "foo").set("count", 1).get();
+    }
+
+    @Test(expected = IncompleteBuilderException.class)
+    public void testReset() {
+        BeanBuilder.create(Unnamed.class).set(0, 1L).reset().get();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSet_wrongType() {
+        BeanBuilder.create(Named.class).set("count", "three");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSet_nullPrimitive() {
+        BeanBuilder.create(Named.class).set("count", (Object) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSet_unknownName() {
+        BeanBuilder.create(Unnamed.class).set("value", 1L);
+    }
+}
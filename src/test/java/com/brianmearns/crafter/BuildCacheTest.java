@@ -0,0 +1,126 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Ordering;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BuildCacheTest {
+
+    @Test
+    public void testGet_list() {
+        BuildCache uut = new BuildCache();
+        List<String> first = uut.get(ListBuilder.create(String.class).add("foo").add("bar"));
+        List<String> second = uut.get(ListBuilder.create(String.class).add("foo").add("bar"));
+
+        assertEquals(Arrays.asList("foo", "bar"), first);
+        assertSame("Expected builders with the same constant elements to share the cached list.", first, second);
+        assertEquals(1, uut.hitCount());
+        assertEquals(1, uut.missCount());
+        assertEquals(1, uut.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGet_listUnmodifiable() {
+        new BuildCache().get(ListBuilder.create(String.class).add("foo")).add("bar");
+    }
+
+    @Test
+    public void testGet_listDynamic() {
+        BuildCache uut = new BuildCache();
+        InvokeCountingBuilder<String> builder = new InvokeCountingBuilder<>("bar");
+        ListBuilder<String> listBuilder = ListBuilder.create(String.class).add("foo").add(builder);
+        List<String> first = uut.get(listBuilder);
+        List<String> second = uut.get(listBuilder);
+
+        assertEquals(Arrays.asList("foo", "bar"), first);
+        assertNotSame("Expected a builder with dynamic elements not to be cached.", first, second);
+        assertEquals(2, builder.getCount());
+        assertEquals(0, uut.hitCount() + uut.missCount());
+    }
+
+    @Test
+    public void testGet_listModified() {
+        BuildCache uut = new BuildCache();
+        ListBuilder<String> builder = ListBuilder.create(String.class).add("foo");
+        List<String> first = uut.get(builder);
+
+        assertEquals("Expected a modified builder to get a different result.", Arrays.asList("foo", "bar"), uut.get(builder.add("bar")));
+        assertSame(first, uut.get(ListBuilder.create(String.class).add("foo")));
+    }
+
+    @Test
+    public void testGet_listSorted() {
+        BuildCache uut = new BuildCache();
+        uut.get(ListBuilder.create(Integer.class).add(3).add(1).add(2));
+
+        assertEquals("Expected a sorted builder not to share the list of an unsorted one.", Arrays.asList(1, 2, 3),
+                uut.get(ListBuilder.create(Integer.class).add(3).add(1).add(2).sorted(Ordering.<Integer>natural())));
+        assertEquals(1, uut.size());
+    }
+
+    @Test
+    public void testGet_sortedMap() {
+        BuildCache uut = new BuildCache();
+        uut.get(MapBuilder.<String, Integer>create().put("b", 2).put("a", 1));
+        Map<String, Integer> res = uut.get(SortedMapBuilder.<String, Integer>naturalOrder().put("b", 2).put("a", 1));
+
+        assertTrue("Expected a sorted builder to build its own map.", res instanceof ImmutableSortedMap);
+        assertEquals(Arrays.asList("a", "b"), Arrays.asList(res.keySet().toArray()));
+        assertEquals(1, uut.size());
+    }
+
+    @Test
+    public void testGet_map() {
+        BuildCache uut = new BuildCache();
+        Map<String, Integer> first = uut.get(MapBuilder.create(String.class, Integer.class).put("a", 1).put("b", 2));
+        Map<String, Integer> second = uut.get(MapBuilder.create(String.class, Integer.class).put("a", 1).put("b", 2));
+
+        assertEquals(ImmutableMap.of("a", 1, "b", 2), first);
+        assertSame("Expected builders with the same constant entries to share the cached map.", first, second);
+        assertEquals(0.5, uut.hitRate(), 0.0);
+    }
+
+    @Test
+    public void testGet_kinds() {
+        BuildCache uut = new BuildCache();
+        uut.get(ListBuilder.create().add("foo").add("bar"));
+
+        assertEquals("Expected a map not to hit a list with the same contents.", ImmutableMap.of("foo", "bar"),
+                uut.get(MapBuilder.create().put("foo", "bar")));
+        assertEquals(0, uut.hitCount());
+    }
+
+    @Test
+    public void testGet_value() {
+        BuildCache uut = new BuildCache();
+        String first = uut.get(ValueBuilder.create(new String("foo")));
+
+        assertSame("Expected equal constant values to be canonicalized.", first, uut.get(ValueBuilder.create(new String("foo"))));
+    }
+
+    @Test
+    public void testEviction() {
+        BuildCache uut = new BuildCache(2);
+        List<Integer> first = uut.get(ListBuilder.create(Integer.class).add(1));
+        uut.get(ListBuilder.create(Integer.class).add(2));
+        uut.get(ListBuilder.create(Integer.class).add(1));
+        uut.get(ListBuilder.create(Integer.class).add(3));
+
+        assertEquals(2, uut.size());
+        assertEquals(1, uut.evictionCount());
+        assertSame("Expected the recently used result to be kept.", first, uut.get(ListBuilder.create(Integer.class).add(1)));
+        uut.get(ListBuilder.create(Integer.class).add(2));
+        assertEquals("Expected the least recently used result to be evicted.", 4, uut.missCount());
+    }
+}
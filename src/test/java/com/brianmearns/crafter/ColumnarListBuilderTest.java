@@ -0,0 +1,115 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ColumnarListBuilderTest {
+
+    private static final class Point {
+        private final int x;
+        private final double y;
+        private final String label;
+
+        private Point(int x, double y, String label) {
+            this.x = x;
+            this.y = y;
+            this.label = label;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof Point)) {
+                return false;
+            }
+            Point that = (Point) other;
+            return x == that.x && y == that.y && label.equals(that.label);
+        }
+
+        @Override
+        public int hashCode() {
+            return x;
+        }
+    }
+
+    private static final ColumnarListBuilder.RowFactory<Point> POINTS = new ColumnarListBuilder.RowFactory<Point>() {
+        @Override
+        public Point create(@Nonnull ColumnarListBuilder.ColumnarList<Point> columns, int row) {
+            return new Point(columns.getInt(row, 0), columns.getDouble(row, 1), (String) columns.getObject(row, 2));
+        }
+    };
+
+    private static ColumnarListBuilder<Point> createBuilder() {
+        return ColumnarListBuilder.create(POINTS, 1).intColumn("x").doubleColumn("y").objectColumn("label");
+    }
+
+    @Test
+    public void testGet() {
+        ColumnarListBuilder<Point> uut = createBuilder();
+        for(int i = 0; i < 200; i++) {
+            uut.appendRow().setInt(0, i).setDouble(1, i * 0.5).set(2, "p" + i);
+        }
+        ColumnarListBuilder.ColumnarList<Point> points = uut.get();
+
+        assertEquals(200, points.size());
+        assertEquals(new Point(150, 75.0, "p150"), points.get(150));
+        assertEquals(199, points.getInt(199, points.columnIndex("x")));
+        assertEquals(ColumnarListBuilder.ColumnType.DOUBLE, points.columnType(1));
+    }
+
+    @Test
+    public void testGet_deferred() {
+        InvokeCountingBuilder<String> label = new InvokeCountingBuilder<String>("deferred");
+        ColumnarListBuilder<Point> uut = createBuilder();
+        uut.appendRow().setInt(0, 1).setDouble(1, 2.0).set(2, label);
+        List<Point> first = uut.get();
+        List<Point> second = uut.get();
+
+        assertEquals(Arrays.asList(new Point(1, 2.0, "deferred")), first);
+        assertEquals(first, second);
+        assertEquals("Expected the builder to be invoked for each list built.", 2, label.getCount());
+    }
+
+    @Test
+    public void testGet_notAffectedByLaterRows() {
+        ColumnarListBuilder<Point> uut = createBuilder();
+        uut.appendRow().setInt(0, 1).setDouble(1, 2.0).set(2, "a");
+        List<Point> first = uut.get();
+        uut.reset().appendRow().setInt(0, 3).setDouble(1, 4.0).set(2, "b");
+
+        assertEquals(Arrays.asList(new Point(1, 2.0, "a")), first);
+        assertEquals(Arrays.asList(new Point(3, 4.0, "b")), uut.get());
+    }
+
+    @Test(expected = IncompleteBuilderException.class)
+    public void testGet_incomplete() {
+        createBuilder().appendRow().setInt(0, 1).set(2, "a").get();
+    }
+
+    @Test(expected = IncompleteBuilderException.class)
+    public void testGet_incompleteAfterReset() {
+        ColumnarListBuilder<Point> uut = createBuilder();
+        uut.appendRow().setInt(0, 1).setDouble(1, 2.0).set(2, "a");
+        uut.reset().appendRow().get();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSet_wrongType() {
+        createBuilder().appendRow().setLong(0, 1L);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testColumn_afterRows() {
+        createBuilder().appendRow().longColumn("z");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGet_unmodifiable() {
+        createBuilder().get().add(new Point(0, 0, ""));
+    }
+}
@@ -0,0 +1,118 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.collect.CompressedIntSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntSetBuilderTest {
+
+    private static List<Integer> values(CompressedIntSet set) {
+        List<Integer> values = new ArrayList<>();
+        CompressedIntSet.IntIterator iterator = set.intIterator();
+        while(iterator.hasNext()) {
+            values.add(iterator.nextInt());
+        }
+        return values;
+    }
+
+    @Test
+    public void testGet_sparse() {
+        CompressedIntSet res = IntSetBuilder.create().add(5).add(-3).add(70000).add(5).add(Integer.MIN_VALUE).get();
+
+        assertEquals(4, res.cardinality());
+        assertEquals(Arrays.asList(Integer.MIN_VALUE, -3, 5, 70000), values(res));
+        assertTrue(res.contains(70000));
+        assertTrue(res.contains(Integer.valueOf(-3)));
+        assertFalse(res.contains(6));
+        assertFalse(res.contains("5"));
+    }
+
+    @Test
+    public void testGet_random() {
+        Random random = new Random(42);
+        TreeSet<Integer> expected = new TreeSet<>();
+        IntSetBuilder uut = IntSetBuilder.create();
+        for(int i = 0; i < 20000; i++) {
+            //Dense in the first chunk, so that it becomes a bitmap, and sparse elsewhere.
+            int value = i % 2 == 0 ? random.nextInt(10000) : random.nextInt();
+            expected.add(value);
+            uut.add(value);
+        }
+        CompressedIntSet res = uut.get();
+
+        assertEquals(expected.size(), res.cardinality());
+        assertEquals(new ArrayList<>(expected), values(res));
+        assertEquals(expected, res);
+    }
+
+    @Test
+    public void testAddRange() {
+        IntSetBuilder uut = IntSetBuilder.create().add(3).add(200000).addRange(-10, 150000).addRange(10, 20);
+        CompressedIntSet res = uut.get();
+
+        assertEquals(150011, res.cardinality());
+        assertTrue(res.contains(-10));
+        assertTrue(res.contains(149999));
+        assertFalse(res.contains(150000));
+        assertFalse(res.contains(-11));
+        assertTrue(res.contains(200000));
+        List<Integer> values = values(res);
+        assertEquals(Integer.valueOf(-10), values.get(0));
+        assertEquals(Integer.valueOf(200000), values.get(values.size() - 1));
+        //Dense chunks take about one bit per value.
+        assertTrue(res.containerBytes() < 30000);
+    }
+
+    @Test
+    public void testAddRange_small() {
+        CompressedIntSet res = IntSetBuilder.create().addAll(new int[]{1, 5, 9}).addRange(4, 7).addRange(60, 70).get();
+
+        assertEquals(Arrays.asList(1, 4, 5, 6, 9, 60, 61, 62, 63, 64, 65, 66, 67, 68, 69), values(res));
+    }
+
+    @Test
+    public void testAddRange_bitmapWords() {
+        IntSetBuilder uut = IntSetBuilder.create().addRange(0, 5000);
+        CompressedIntSet res = uut.addRange(6000, 6010).addRange(6100, 6300).addRange(6500, 6520).get();
+
+        assertEquals(5230, res.cardinality());
+        assertTrue(res.contains(6163));
+        assertTrue(res.contains(6164));
+        assertFalse(res.contains(6300));
+        assertFalse(res.contains(5999));
+        assertEquals(5230, values(res).size());
+    }
+
+    @Test
+    public void testGet_reuse() {
+        IntSetBuilder uut = IntSetBuilder.create().addRange(0, 5000);
+        CompressedIntSet first = uut.get();
+        uut.add(10000);
+        CompressedIntSet second = uut.get();
+
+        assertEquals(5000, first.cardinality());
+        assertFalse(first.contains(10000));
+        assertEquals(5001, second.cardinality());
+        assertTrue(uut.reset().get().isEmpty());
+        assertEquals(Arrays.asList(7), values(uut.add(7).get()));
+    }
+
+    @Test
+    public void testAddRange_empty() {
+        assertTrue(IntSetBuilder.create().addRange(5, 5).get().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddRange_backwards() {
+        IntSetBuilder.create().addRange(5, 4);
+    }
+}
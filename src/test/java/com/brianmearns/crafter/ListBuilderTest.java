@@ -1,13 +1,29 @@
 package com.brianmearns.crafter;
 
+import com.brianmearns.crafter.io.RecordFile;
+import com.brianmearns.crafter.util.BuilderPool;
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
 import com.brianmearns.crafter.util.InvokeCountingFunction;
+import com.brianmearns.crafter.util.IndexedSupplier;
+import com.brianmearns.crafter.util.SizeEstimator;
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.io.Files;
 import org.junit.Test;
 
 import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -367,4 +383,507 @@ public class ListBuilderTest {
                 new Integer[]{5, 7}, uut.get().toArray());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testAddAllDeferred_Iterable() {
+        final List<String> source = new ArrayList<>(Arrays.asList("pickle", "pepper"));
+        ListBuilder<String> uut = ListBuilder.create(String.class).add("peter");
+        ListBuilder<String> res = uut.addAllDeferred(source).add("peck");
+        source.add("picked");
+
+        assertSame("Expect value returned by addAllDeferred(Iterable) is the original builder.", uut, res);
+        assertArrayEquals("Expected the deferred source to be read when the list is built.",
+                new String[]{"peter", "pickle", "pepper", "picked", "peck"}, uut.get().toArray());
+    }
+
+    @Test
+    public void testAddAllDeferred_Iterable_notCollection() {
+        final Iterable<Integer> source = Iterables.limit(Iterables.cycle(3, 4), 5);
+        ListBuilder<Integer> uut = ListBuilder.create(Integer.class).add(1).addAllDeferred(source);
+
+        assertArrayEquals("Expected a deferred iterable of unknown size to be read in full.",
+                new Integer[]{1, 3, 4, 3, 4, 3}, uut.get().toArray());
+    }
+
+    @Test
+    public void testAddAllDeferred_Iterator() {
+        final Iterator<String> source = Arrays.asList("red", "green").iterator();
+        ListBuilder<String> uut = ListBuilder.create(String.class).addAllDeferred(source).add("blue");
+
+        assertTrue("Expected the iterator not to be read before the list is built.", source.hasNext());
+        assertArrayEquals(new String[]{"red", "green", "blue"}, uut.get().toArray());
+        assertArrayEquals("Expected the drained iterator to be retained for subsequent builds.",
+                new String[]{"red", "green", "blue"}, uut.get().toArray());
+    }
+
+    @Test
+    public void testAddAllDeferred_array() {
+        final Integer[] source = new Integer[]{1, 2, 3};
+        ListBuilder<Integer> uut = ListBuilder.create(Integer.class).addAllDeferred(source).add(4);
+        source[1] = 20;
+
+        assertArrayEquals("Expected the deferred array to be read when the list is built.",
+                new Integer[]{1, 20, 3, 4}, uut.get().toArray());
+    }
+
+    @Test
+    public void testNeverListBuilder_addAllDeferred() {
+        ListBuilder<Integer> uut = ListBuilder.create(Integer.class).add(6).add(8);
+        uut.maybe(false).addAllDeferred(ImmutableList.of(7, 5)).addAllDeferred(new Integer[]{3, 0});
+        uut.add(9);
+
+        assertArrayEquals("Expected the never builder's addAllDeferred method to not add any elements.",
+                new Integer[]{6, 8, 9}, uut.get().toArray());
+    }
+
+    @Test
+    public void testFreeze() {
+        InvokeCountingBuilder<String> dynamic = new InvokeCountingBuilder<>("two");
+        final List<String> source = new ArrayList<>(Arrays.asList("four"));
+        ListBuilder<String> uut = ListBuilder.create(String.class)
+                .add("zero").add("one").add(dynamic).add("three").addAllDeferred(source).add("five");
+        BuilderInterface<List<String>> frozen = uut.freeze();
+        uut.add("six");
+
+        assertArrayEquals("Expected frozen builder to build the same list as the original.",
+                new String[]{"zero", "one", "two", "three", "four", "five"}, frozen.get().toArray());
+        dynamic.setValue("deux");
+        source.add("quatre");
+        assertArrayEquals("Expected frozen builder to re-evaluate dynamic elements and segments on each build.",
+                new String[]{"zero", "one", "deux", "three", "four", "quatre", "five"}, frozen.get().toArray());
+        assertEquals("Expected frozen builder to invoke the dynamic builder once per build.", 2, dynamic.getCount());
+        assertNotSame("Expected frozen builder to build a new list each time.", frozen.get(), frozen.get());
+    }
+
+    @Test
+    public void testFreeze_empty() {
+        assertTrue("Expected an empty frozen builder to build an empty list.", ListBuilder.create().freeze().get().isEmpty());
+    }
+
+    @Test
+    public void testNeverListBuilder_freeze() {
+        ListBuilder<Integer> uut = ListBuilder.create(Integer.class).add(6).add(8);
+        uut.maybe(false).add(5);
+
+        assertArrayEquals("Expected the never builder to freeze the always builder.",
+                new Integer[]{6, 8}, uut.maybe(false).freeze().get().toArray());
+    }
+
+    @Test
+    public void testImmutable_constant() {
+        ListBuilder<String> uut = ListBuilder.create(String.class).add("foo");
+        ListBuilder<String> res = uut.immutable().add("bar");
+        List<String> list = uut.get();
+
+        assertSame("Expect value returned by immutable() is the original builder.", uut, res);
+        assertArrayEquals(new String[]{"foo", "bar"}, list.toArray());
+        assertSame("Expected the same list to be returned while the builder is unmodified.", list, uut.get());
+
+        uut.add("baz");
+        List<String> modified = uut.get();
+        assertNotSame("Expected a new list to be built once the builder is modified.", list, modified);
+        assertArrayEquals(new String[]{"foo", "bar", "baz"}, modified.toArray());
+        assertArrayEquals("Expected the previously built list not to change.", new String[]{"foo", "bar"}, list.toArray());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable_unmodifiable() {
+        ListBuilder.create(String.class).add("foo").immutable().get().add("bar");
+    }
+
+    @Test
+    public void testImmutable_dynamic() {
+        InvokeCountingBuilder<String> dynamic = new InvokeCountingBuilder<>("bar");
+        ListBuilder<String> uut = ListBuilder.create(String.class).add("foo").add(dynamic).immutable();
+        uut.get();
+        dynamic.setValue("baz");
+
+        assertArrayEquals("Expected a builder with dynamic elements to be rebuilt every time.",
+                new String[]{"foo", "baz"}, uut.get().toArray());
+        assertEquals(2, dynamic.getCount());
+    }
+
+    @Test
+    public void testImmutable_freeze() {
+        BuilderInterface<List<String>> frozen = ListBuilder.create(String.class).add("foo").add("bar").immutable().freeze();
+
+        assertSame("Expected an immutable frozen builder of constants to build one shared list.", frozen.get(), frozen.get());
+    }
+
+    @Test
+    public void testNeverListBuilder_immutable() {
+        ListBuilder<Integer> uut = ListBuilder.create(Integer.class).add(6);
+        uut.maybe(false).immutable();
+
+        assertNotSame("Expected the never builder's immutable method to not change the mode of the builder.", uut.get(), uut.get());
+    }
+
+    @Test
+    public void testFork() {
+        ListBuilder<String> template = ListBuilder.create(String.class).add("foo").add("bar");
+        ListBuilder<String> fork = template.fork().add("baz");
+        template.add("qux");
+
+        assertArrayEquals("Expected elements added to the fork not to affect the original.",
+                new String[]{"foo", "bar", "qux"}, template.get().toArray());
+        assertArrayEquals("Expected elements added to the original not to affect the fork.",
+                new String[]{"foo", "bar", "baz"}, fork.get().toArray());
+    }
+
+    @Test
+    public void testNeverListBuilder_fork() {
+        ListBuilder<Integer> uut = ListBuilder.create(Integer.class).add(6);
+        ListBuilder<Integer> fork = uut.maybe(false).fork().add(8);
+
+        assertArrayEquals("Expected the never builder to fork the always builder.", new Integer[]{6, 8}, fork.get().toArray());
+        assertArrayEquals(new Integer[]{6}, uut.get().toArray());
+    }
+
+    @Test
+    public void testBuildMany() {
+        InvokeCountingBuilder<String> dynamic = new InvokeCountingBuilder<>("dyn");
+        ListBuilder<String> uut = ListBuilder.create(String.class)
+                .add("first").add(dynamic).addIndexed(new IndexedSupplier<String>() {
+                    @Override
+                    public String get(int index) {
+                        return "item-" + index;
+                    }
+                }).add("last");
+        List<List<String>> lists = uut.buildMany(3);
+
+        assertEquals(3, lists.size());
+        for(int i = 0; i < 3; i++) {
+            assertArrayEquals("Expected each list to be built with its own index.",
+                    new String[]{"first", "dyn", "item-" + i, "last"}, lists.get(i).toArray());
+        }
+        assertEquals("Expected the dynamic builder to be invoked once per list.", 3, dynamic.getCount());
+        assertArrayEquals("Expected get() to supply index 0.", new String[]{"first", "dyn", "item-0", "last"}, uut.get().toArray());
+    }
+
+    @Test
+    public void testBuildMany_zero() {
+        assertTrue(ListBuilder.create(String.class).add("foo").buildMany(0).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildMany_negative() {
+        ListBuilder.create(String.class).buildMany(-1);
+    }
+
+    @Test
+    public void testReset() {
+        ListBuilder<String> uut = ListBuilder.create(String.class).immutable().add("foo").add(ValueBuilder.create("bar"));
+        List<String> before = uut.get();
+        ListBuilder<String> res = uut.reset().add("baz");
+
+        assertSame("Expect value returned by reset() is the original builder.", uut, res);
+        assertArrayEquals("Expected reset() to remove all of the elements.", new String[]{"baz"}, uut.get().toArray());
+        assertSame("Expected reset() to keep immutable mode.", uut.get(), uut.get());
+        assertArrayEquals(new String[]{"foo", "bar"}, before.toArray());
+    }
+
+    @Test
+    public void testGetInto() {
+        List<String> target = new ArrayList<>(Arrays.asList("old", "stuff", "here"));
+        ListBuilder<String> uut = ListBuilder.create(String.class).add("foo").add(ValueBuilder.create("bar"));
+        List<String> res = uut.getInto(target);
+
+        assertSame("Expected getInto() to return the given list.", target, res);
+        assertArrayEquals("Expected getInto() to replace the contents of the given list.", new String[]{"foo", "bar"}, target.toArray());
+    }
+
+    @Test
+    public void testAdd_constantSupplier() {
+        final Supplier<String> element = Suppliers.ofInstance("foo");
+        ListBuilder<Supplier<String>> uut = ListBuilder.create();
+        uut.add(element);
+
+        assertSame("Expected a constant element which is itself a supplier to be added as is.", element, uut.get().get(0));
+    }
+
+    @Test
+    public void testPool() {
+        BuilderPool<ListBuilder<String>> pool = ListBuilder.pool();
+        ListBuilder<String> first = pool.acquire();
+        first.add("foo");
+        pool.release(first);
+        ListBuilder<String> second = pool.acquire();
+
+        assertSame("Expected the pool to reuse a released builder.", first, second);
+        assertTrue("Expected the pool to reset a released builder.", second.get().isEmpty());
+        assertNotSame("Expected the pool to create a builder when none are idle.", second, pool.acquire());
+    }
+
+    @Test
+    public void testPool_restoresDefaultMode() {
+        BuilderPool<ListBuilder<String>> pool = ListBuilder.pool();
+        ListBuilder<String> first = pool.acquire();
+        first.immutable().sorted(Ordering.<String>natural()).add("b").add("a");
+        pool.release(first);
+        ListBuilder<String> second = pool.acquire();
+        List<String> res = second.add("d").add("c").get();
+
+        assertSame("Expected the pool to reuse a released builder.", first, second);
+        assertEquals("Expected a pooled builder to not be sorted.", Arrays.asList("d", "c"), res);
+        res.add("e");
+        assertEquals("Expected a pooled builder to build mutable lists.", 3, res.size());
+    }
+
+    @Test
+    public void testPool_consumed() {
+        BuilderPool<ListBuilder<String>> pool = ListBuilder.pool();
+        ListBuilder<String> first = pool.acquire();
+        first.add("foo").consume();
+        pool.release(first);
+
+        assertNotSame("Expected the pool to drop a consumed builder.", first, pool.acquire());
+    }
+
+    @Test
+    public void testNeverListBuilder_reset() {
+        ListBuilder<Integer> uut = ListBuilder.create(Integer.class).add(6);
+        uut.maybe(false).reset();
+
+        assertArrayEquals("Expected the never builder's reset method to not change the builder.", new Integer[]{6}, uut.get().toArray());
+    }
+
+    /**
+     * A list builder which records the size it was asked to presize each list for.
+     */
+    private static class SizeRecordingListBuilder extends ListBuilder.DefaultListBuilder<String> {
+        private int requestedSize = -1;
+
+        private SizeRecordingListBuilder(SizeEstimator sizeEstimator) {
+            super(sizeEstimator);
+        }
+
+        @Override
+        protected List<String> createList(int size) {
+            requestedSize = size;
+            return super.createList(size);
+        }
+    }
+
+    @Test
+    public void testCreate_expectedSize() {
+        SizeRecordingListBuilder uut = new SizeRecordingListBuilder(new SizeEstimator(10));
+        uut.add("foo").addAllDeferred(Arrays.asList("bar", "baz").iterator());
+        List<String> res = uut.get();
+
+        assertEquals("Expected the list to be presized for the expected size when a segment size is unknown.", 10, uut.requestedSize);
+        assertEquals(Arrays.asList("foo", "bar", "baz"), res);
+    }
+
+    @Test
+    public void testCreate_sizeEstimator() {
+        SizeEstimator estimator = new SizeEstimator();
+        SizeRecordingListBuilder first = new SizeRecordingListBuilder(estimator);
+        Iterable<String> unsized = Iterables.unmodifiableIterable(Arrays.asList("a", "b", "c", "d", "e"));
+        first.addAllDeferred(unsized).get();
+        SizeRecordingListBuilder second = new SizeRecordingListBuilder(estimator);
+        second.add("foo").addAllDeferred(Iterables.limit(unsized, 2)).get();
+
+        assertEquals("Expected the list to be presized for the size estimated from previous builds.", 5, second.requestedSize);
+
+        second.reset().add("foo").add("bar");
+        second.get();
+        assertEquals("Expected the list to be presized exactly when its size is known.", 2, second.requestedSize);
+    }
+
+    @Test
+    public void testConsume() {
+        ListBuilder<String> uut = ListBuilder.create(String.class).add("foo").add(ValueBuilder.create("bar"))
+                .addAllDeferred(Arrays.asList("baz", "qux").iterator());
+        List<String> res = uut.consume();
+
+        assertEquals(Arrays.asList("foo", "bar", "baz", "qux"), res);
+        try {
+            res.add("quux");
+            fail("Expected the consumed list to be unmodifiable.");
+        } catch(UnsupportedOperationException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testConsume_immutableConstant() {
+        ListBuilder<String> uut = ListBuilder.create(String.class).immutable().add("foo");
+        List<String> built = uut.get();
+
+        assertSame("Expected consume() to return the list already built for a constant builder.", built, uut.consume());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testConsume_get() {
+        ListBuilder<String> uut = ListBuilder.create(String.class).add("foo");
+        uut.consume();
+        uut.get();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testConsume_add() {
+        ListBuilder<String> uut = ListBuilder.create(String.class).add("foo");
+        uut.consume();
+        uut.add("bar");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testConsume_twice() {
+        ListBuilder<String> uut = ListBuilder.create(String.class).add("foo");
+        uut.consume();
+        uut.maybe(false).consume();
+    }
+
+    @Test
+    public void testCompact() {
+        InvokeCountingBuilder<String> builder = new InvokeCountingBuilder<>("bar");
+        ListBuilder<String> uut = ListBuilder.create(String.class).compact().add("foo").add(builder);
+
+        List<String> res = uut.get();
+        assertEquals(Arrays.asList("foo", "bar"), res);
+        assertNotSame("Expected a list with dynamic elements to be built each time.", res, uut.get());
+        assertSame("Expected compact mode to share empty lists.", Collections.emptyList(), ListBuilder.create().compact().get());
+        try {
+            res.add("baz");
+            fail("Expected a compact list to be unmodifiable.");
+        } catch(UnsupportedOperationException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testCompact_freeze() {
+        ListBuilder<String> uut = ListBuilder.create(String.class).compact();
+        for(int i = 0; i < 6; i++) {
+            uut.add("e" + i);
+        }
+        BuilderInterface<List<String>> frozen = uut.addAllDeferred(Arrays.asList("a", "b").iterator()).freeze();
+
+        assertEquals(Arrays.asList("e0", "e1", "e2", "e3", "e4", "e5", "a", "b"), frozen.get());
+    }
+
+    @Test
+    public void testInterned() {
+        List<String> first = ListBuilder.create(String.class).interned().add("interned").add(ValueBuilder.create("list")).get();
+        List<String> second = ListBuilder.create(String.class).compact().interned().add("interned").add("list").get();
+
+        assertSame("Expected equal lists from different builders to be interned.", first, second);
+        assertTrue(ListBuilder.interner().hitCount() > 0);
+    }
+
+
+    @Test
+    public void testSpill() {
+        ListBuilder<Object> uut = ListBuilder.create().spill(2);
+        List<Object> expected = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            expected.add(i % 3 == 0 ? "element" + i : i);
+        }
+        expected.add(Arrays.asList("nested", 1L));
+        uut.addAll(expected);
+
+        assertEquals(expected, uut.get());
+        assertEquals("Expected spilled elements to be read back again.", expected, uut.get());
+    }
+
+    @Test
+    public void testSpill_addAll() {
+        String first = new String("first");
+        String second = new String("second");
+        String third = new String("third");
+        ListBuilder<String> uut = ListBuilder.create(String.class).spill(0)
+                .addAll(Arrays.asList(first)).addAll(new String[]{second}).maybeAdd(third, true);
+        List<String> res = uut.get();
+
+        assertEquals(Arrays.asList("first", "second", "third"), res);
+        assertNotSame("Expected elements added in bulk to be spilled and read back.", first, res.get(0));
+        assertNotSame("Expected elements added in bulk to be spilled and read back.", second, res.get(1));
+        assertNotSame("Expected elements added conditionally to be spilled and read back.", third, res.get(2));
+    }
+
+    @Test
+    public void testSpill_mixed() {
+        Object unsupported = new Object();
+        ListBuilder<Object> uut = ListBuilder.create().spill(1).add("a").add("b").add(unsupported)
+                .add(ValueBuilder.<Object>create("c")).add("d");
+
+        assertEquals(Arrays.asList("a", "b", unsupported, "c", "d"), uut.get());
+    }
+
+    @Test
+    public void testSpill_fork() {
+        ListBuilder<String> uut = ListBuilder.create(String.class).spill(0).add("a").add("b");
+        ListBuilder<String> fork = uut.fork().add("c");
+        uut.add("d");
+
+        assertEquals(Arrays.asList("a", "b", "d"), uut.get());
+        assertEquals(Arrays.asList("a", "b", "c"), fork.get());
+    }
+
+    @Test
+    public void testSpill_freezeAndReset() {
+        ListBuilder<String> uut = ListBuilder.create(String.class).spill(0).add("a").add("b");
+        BuilderInterface<List<String>> frozen = uut.freeze();
+        uut.reset().add("c");
+
+        assertEquals(Arrays.asList("a", "b"), frozen.get());
+        assertEquals(Arrays.asList("c"), uut.get());
+    }
+
+    @Test
+    public void testAddAllDeferred_records() throws IOException {
+        File path = File.createTempFile("records", ".txt");
+        try {
+            Files.write("bar\nbaz\n", path, Charsets.UTF_8);
+            ListBuilder<String> uut = ListBuilder.create(String.class).add("foo").addAllDeferred(RecordFile.lines(path));
+
+            assertEquals(Arrays.asList("foo", "bar", "baz"), uut.get());
+            assertEquals(Arrays.asList("foo", "bar", "baz"), uut.get());
+        } finally {
+            path.delete();
+        }
+    }
+
+    @Test
+    public void testSorted() {
+        ListBuilder<String> uut = ListBuilder.create(String.class)
+                .add("c").add(Suppliers.ofInstance("a")).add(new InvokeCountingBuilder<>("d")).add("b")
+                .sorted(Ordering.<String>natural());
+
+        List<String> res = uut.get();
+        assertEquals(Arrays.asList("a", "b", "c", "d"), res);
+        assertTrue(res instanceof ArrayList);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), uut.getInto(new ArrayList<String>()));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), uut.freeze().get());
+        assertEquals(Arrays.asList("a", "b", "c", "d"), uut.consume());
+    }
+
+    @Test
+    public void testSorted_stableAndImmutable() {
+        ListBuilder<String> uut = ListBuilder.create(String.class)
+                .addAll(new String[]{"bb", "a", "cc", "b", "aa"})
+                .sorted(new Ordering<String>() {
+                    @Override
+                    public int compare(String left, String right) {
+                        return Integer.compare(left.length(), right.length());
+                    }
+                })
+                .immutable();
+
+        List<String> res = uut.get();
+        assertEquals(Arrays.asList("a", "b", "bb", "cc", "aa"), res);
+        assertSame(res, uut.get());
+        assertEquals(Arrays.asList("a", "b", "bb", "cc", "aa"), uut.compact().get());
+    }
+
+    @Test
+    public void testSorted_large() {
+        List<Integer> values = new ArrayList<>();
+        for(int i = 0; i < 100000; i++) {
+            values.add((i * 7919) % 100003);
+        }
+        List<Integer> res = ListBuilder.create(Integer.class).addAll(values).sorted(Ordering.<Integer>natural()).get();
+
+        Collections.sort(values);
+        assertEquals(values, res);
+    }
+}
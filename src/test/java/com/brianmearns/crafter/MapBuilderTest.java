@@ -1,6 +1,9 @@
 package com.brianmearns.crafter;
 
+import com.brianmearns.crafter.util.BuilderPool;
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
 import com.brianmearns.crafter.util.InvokeCountingFunction;
+import com.brianmearns.crafter.util.IndexedSupplier;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -8,11 +11,14 @@ import org.junit.Test;
 
 import javax.annotation.Nullable;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for {@link MapBuilder}
@@ -230,4 +236,213 @@ public class MapBuilderTest {
         assertSame("Expected always() to return the always builder from a nested never builder.", orig, res);
     }
 
+    @Test
+    public void testFreeze() {
+        InvokeCountingBuilder<String> dynamic = new InvokeCountingBuilder<>("two");
+        InvokeCountingBuilder<String> replaced = new InvokeCountingBuilder<>("trois");
+        MapBuilder<Integer, String> uut = MapBuilder.create(Integer.class, String.class)
+                .put(1, "one").put(2, dynamic).put(3, replaced).put(3, "three").put(null, "nothing");
+        BuilderInterface<Map<Integer, String>> frozen = uut.freeze();
+        uut.put(4, "four");
+
+        Map<Integer, String> expected = new HashMap<>();
+        expected.put(1, "one");
+        expected.put(2, "two");
+        expected.put(3, "three");
+        expected.put(null, "nothing");
+        assertEquals("Expected frozen builder to build the same map as the original.", expected, frozen.get());
+
+        dynamic.setValue("deux");
+        expected.put(2, "deux");
+        assertEquals("Expected frozen builder to re-evaluate dynamic values on each build.", expected, frozen.get());
+        assertEquals("Expected frozen builder to invoke the dynamic builder once per build.", 2, dynamic.getCount());
+        assertEquals("Expected frozen builder not to invoke a replaced builder.", 0, replaced.getCount());
+    }
+
+    @Test
+    public void testMaybe_false_freeze() {
+        MapBuilder<Integer, String> orig = MapBuilder.create(Integer.class, String.class).put(4, "four");
+        orig.maybe(false).put(5, "five");
+
+        assertEquals("Expected never builder to freeze the always builder.", ImmutableMap.of(4, "four"), orig.maybe(false).freeze().get());
+    }
+
+    @Test
+    public void testImmutable_constant() {
+        MapBuilder<Integer, String> uut = MapBuilder.create(Integer.class, String.class).put(1, "one");
+        MapBuilder<Integer, String> res = uut.immutable();
+        Map<Integer, String> map = uut.get();
+
+        assertSame("Expected return value of immutable() to be the same as the original object.", uut, res);
+        assertEquals(ImmutableMap.of(1, "one"), map);
+        assertSame("Expected the same map to be returned while the builder is unmodified.", map, uut.get());
+
+        uut.put(2, "two");
+        assertEquals("Expected a new map to be built once the builder is modified.", ImmutableMap.of(1, "one", 2, "two"), uut.get());
+        assertEquals("Expected the previously built map not to change.", ImmutableMap.of(1, "one"), map);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable_unmodifiable() {
+        MapBuilder.create(Integer.class, String.class).put(1, "one").immutable().get().put(2, "two");
+    }
+
+    @Test
+    public void testImmutable_dynamic() {
+        InvokeCountingBuilder<String> dynamic = new InvokeCountingBuilder<>("two");
+        MapBuilder<Integer, String> uut = MapBuilder.create(Integer.class, String.class).put(1, "one").put(2, dynamic).immutable();
+        uut.get();
+        dynamic.setValue("deux");
+
+        assertEquals("Expected a builder with dynamic values to be rebuilt every time.", ImmutableMap.of(1, "one", 2, "deux"), uut.get());
+        assertEquals(2, dynamic.getCount());
+    }
+
+    @Test
+    public void testFork() {
+        MapBuilder<Integer, String> template = MapBuilder.create(Integer.class, String.class).put(1, "one").put(2, "two");
+        MapBuilder<Integer, String> fork = template.fork().put(2, "deux").put(3, "trois");
+        template.put(4, "four");
+
+        assertEquals("Expected entries put in the fork not to affect the original.",
+                ImmutableMap.of(1, "one", 2, "two", 4, "four"), template.get());
+        assertEquals("Expected entries put in the original not to affect the fork.",
+                ImmutableMap.of(1, "one", 2, "deux", 3, "trois"), fork.get());
+    }
+
+    @Test
+    public void testPut_replacedBuilderNotInvoked() {
+        InvokeCountingBuilder<String> replaced = new InvokeCountingBuilder<>("uno");
+        MapBuilder<Integer, String> uut = MapBuilder.create(Integer.class, String.class).put(1, replaced).put(1, "one");
+
+        assertEquals(ImmutableMap.of(1, "one"), uut.get());
+        assertEquals("Expected a replaced builder not to be invoked.", 0, replaced.getCount());
+    }
+
+    @Test
+    public void testMaybe_false_fork() {
+        MapBuilder<Integer, String> orig = MapBuilder.create(Integer.class, String.class).put(4, "four");
+        MapBuilder<Integer, String> fork = orig.maybe(false).fork().put(5, "five");
+
+        assertEquals("Expected never builder to fork the always builder.", ImmutableMap.of(4, "four", 5, "five"), fork.get());
+        assertEquals(ImmutableMap.of(4, "four"), orig.get());
+    }
+
+    @Test
+    public void testBuildMany() {
+        MapBuilder<String, Integer> uut = MapBuilder.create(String.class, Integer.class)
+                .put("constant", 7).putIndexed("index", new IndexedSupplier<Integer>() {
+                    @Override
+                    public Integer get(int index) {
+                        return index * 10;
+                    }
+                });
+        List<Map<String, Integer>> maps = uut.buildMany(3);
+
+        assertEquals(3, maps.size());
+        for(int i = 0; i < 3; i++) {
+            assertEquals("Expected each map to be built with its own index.", ImmutableMap.of("constant", 7, "index", i * 10), maps.get(i));
+        }
+        assertEquals("Expected get() to supply index 0.", ImmutableMap.of("constant", 7, "index", 0), uut.get());
+    }
+
+    @Test
+    public void testReset() {
+        MapBuilder<Integer, String> uut = MapBuilder.create(Integer.class, String.class).put(1, "one").put(2, "two");
+        MapBuilder<Integer, String> res = uut.reset().put(2, "deux");
+
+        assertSame("Expected return value of reset() to be the same as the original object.", uut, res);
+        assertEquals("Expected reset() to remove all of the entries.", ImmutableMap.of(2, "deux"), uut.get());
+    }
+
+    @Test
+    public void testGetInto() {
+        Map<Integer, String> target = new HashMap<>();
+        target.put(7, "seven");
+        Map<Integer, String> res = MapBuilder.create(Integer.class, String.class).put(1, "one").getInto(target);
+
+        assertSame("Expected getInto() to return the given map.", target, res);
+        assertEquals("Expected getInto() to replace the contents of the given map.", ImmutableMap.of(1, "one"), target);
+    }
+
+    @Test
+    public void testPool() {
+        BuilderPool<MapBuilder<Integer, String>> pool = MapBuilder.pool();
+        MapBuilder<Integer, String> first = pool.acquire().put(1, "one");
+        pool.release(first);
+        MapBuilder<Integer, String> second = pool.acquire();
+
+        assertSame("Expected the pool to reuse a released builder.", first, second);
+        assertTrue("Expected the pool to reset a released builder.", second.get().isEmpty());
+    }
+
+    @Test
+    public void testPool_restoresDefaultMode() {
+        BuilderPool<MapBuilder<Integer, String>> pool = MapBuilder.pool();
+        MapBuilder<Integer, String> first = pool.acquire().compact().put(1, "one");
+        pool.release(first);
+        MapBuilder<Integer, String> second = pool.acquire();
+        Map<Integer, String> res = second.put(2, "two").get();
+
+        assertSame("Expected the pool to reuse a released builder.", first, second);
+        res.put(3, "three");
+        assertEquals("Expected a pooled builder to build mutable maps.", ImmutableMap.of(2, "two", 3, "three"), res);
+    }
+
+    @Test
+    public void testCreate_expectedSize() {
+        Map<Integer, String> res = MapBuilder.<Integer, String>create(100).put(1, "one").put(2, "two").get();
+
+        assertEquals(ImmutableMap.of(1, "one", 2, "two"), res);
+        res.put(3, "three");
+        assertEquals("Expected a presized map to be mutable.", 3, res.size());
+    }
+
+    @Test
+    public void testCompact() {
+        MapBuilder<Integer, String> uut = MapBuilder.create(Integer.class, String.class).compact()
+                .put(1, "one").put(2, new InvokeCountingBuilder<>("two"));
+
+        assertEquals(ImmutableMap.of(1, "one", 2, "two"), uut.get());
+        assertSame("Expected compact mode to share empty maps.", Collections.emptyMap(), MapBuilder.create().compact().get());
+        for(int i = 3; i < 20; i++) {
+            uut.put(i, "n" + i);
+        }
+        Map<Integer, String> res = uut.freeze().get();
+        assertEquals(19, res.size());
+        assertEquals("n12", res.get(12));
+        assertEquals("two", res.get(2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCompact_unmodifiable() {
+        MapBuilder.create(Integer.class, String.class).compact().put(1, "one").get().put(2, "two");
+    }
+
+    @Test
+    public void testShaped() {
+        MapBuilder<String, Integer> template = MapBuilder.create(String.class, Integer.class).shaped().put("a", 1).put("b", 2);
+        Map<String, Integer> first = template.fork().put("b", 20).get();
+        Map<String, Integer> second = template.fork().put("a", 10).freeze().get();
+
+        assertEquals(ImmutableMap.of("a", 1, "b", 20), first);
+        assertEquals(ImmutableMap.of("a", 10, "b", 2), second);
+        assertEquals(ImmutableMap.of("a", 1, "b", 2, "c", 3), template.put("c", 3).get());
+        assertSame("Expected a constant shaped map to be reused.", template.get(), template.get());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testShaped_unmodifiable() {
+        MapBuilder.create(Integer.class, String.class).shaped().put(1, "one").get().put(2, "two");
+    }
+
+    @Test
+    public void testInterned() {
+        Map<String, Integer> first = MapBuilder.create(String.class, Integer.class).interned().put("interned", 1).get();
+        Map<String, Integer> second = MapBuilder.create(String.class, Integer.class).interned().put("interned", new InvokeCountingBuilder<>(1)).freeze().get();
+
+        assertSame("Expected equal maps from different builders to be interned.", first, second);
+        assertTrue(MapBuilder.interner().hitCount() > 0);
+    }
+
 }
@@ -0,0 +1,128 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MappedResultStoreTest {
+
+    private File path;
+
+    @Before
+    public void setUp() throws IOException {
+        path = File.createTempFile("results", ".store");
+        path.delete();
+    }
+
+    @After
+    public void tearDown() {
+        path.delete();
+    }
+
+    @Test
+    public void testGetList() throws IOException {
+        try(MappedResultStore uut = MappedResultStore.open(path, 1 << 16)) {
+            List<String> first = uut.get(ListBuilder.create(String.class).add("foo").add("bar"));
+            List<String> second = uut.get(ListBuilder.create(String.class).add("foo").add("bar"));
+
+            assertEquals(Arrays.asList("foo", "bar"), first);
+            assertEquals(first, second);
+            assertEquals(1, uut.size());
+        }
+    }
+
+    @Test
+    public void testGetMap() throws IOException {
+        try(MappedResultStore uut = MappedResultStore.open(path, 1 << 16)) {
+            Map<String, Integer> first = uut.get(MapBuilder.<String, Integer>create().put("a", 1).put("b", 2));
+
+            assertEquals(ImmutableMap.of("a", 1, "b", 2), first);
+            assertEquals(Integer.valueOf(2), first.get("b"));
+            assertEquals(1, uut.size());
+        }
+    }
+
+    @Test
+    public void testGetList_templateKey() throws IOException {
+        InvokeCountingBuilder<List<Integer>> builder = new InvokeCountingBuilder<>(Arrays.asList(1, 2, 3));
+        try(MappedResultStore uut = MappedResultStore.open(path, 1 << 16)) {
+            assertEquals(Arrays.asList(1, 2, 3), uut.getList("numbers", builder));
+            assertEquals(Arrays.asList(1, 2, 3), uut.getList("numbers", builder));
+        }
+        assertEquals("Expected the stored result to be reused.", 1, builder.getCount());
+    }
+
+    @Test
+    public void testSharedBetweenStores() throws IOException {
+        InvokeCountingBuilder<List<String>> builder = new InvokeCountingBuilder<>(Arrays.asList("x", "y"));
+        try(MappedResultStore writer = MappedResultStore.open(path, 1 << 16)) {
+            writer.getList("letters", builder);
+        }
+        try(MappedResultStore reader = MappedResultStore.openReadOnly(path)) {
+            assertEquals(Arrays.asList("x", "y"), reader.getList("letters", builder));
+            assertEquals(1, reader.size());
+        }
+        assertEquals("Expected the result stored by another store to be reused.", 1, builder.getCount());
+    }
+
+    @Test
+    public void testGetMap_keyHoldsList() throws IOException {
+        InvokeCountingBuilder<Map<String, Integer>> builder = new InvokeCountingBuilder<Map<String, Integer>>(ImmutableMap.of("a", 1));
+        try(MappedResultStore uut = MappedResultStore.open(path, 1 << 16)) {
+            uut.getList("results", new InvokeCountingBuilder<>(Arrays.asList(1, 2)));
+
+            assertEquals("Expected a map to be built when its key holds a list.", ImmutableMap.of("a", 1), uut.getMap("results", builder));
+            assertEquals(Arrays.asList(1, 2), uut.getList("results", new InvokeCountingBuilder<>(Arrays.asList(3))));
+            assertEquals(1, uut.size());
+        }
+        assertEquals(1, builder.getCount());
+    }
+
+    @Test
+    public void testUsedBytes() throws IOException {
+        int used;
+        try(MappedResultStore uut = MappedResultStore.open(path, 1 << 16)) {
+            int empty = uut.usedBytes();
+            uut.getList("letters", new InvokeCountingBuilder<>(Arrays.asList("x", "y")));
+            used = uut.usedBytes();
+
+            assertTrue(used > empty);
+        }
+        try(MappedResultStore reader = MappedResultStore.openReadOnly(path)) {
+            assertEquals(used, reader.usedBytes());
+        }
+    }
+
+    @Test
+    public void testUnsupported() throws IOException {
+        Object element = new Object();
+        try(MappedResultStore uut = MappedResultStore.open(path, 1 << 16)) {
+            List<Object> result = uut.get(ListBuilder.create().add(element));
+
+            assertSame(element, result.get(0));
+            assertEquals(0, uut.size());
+        }
+    }
+
+    @Test
+    public void testFull() throws IOException {
+        try(MappedResultStore uut = MappedResultStore.open(path, 64)) {
+            List<Integer> big = Arrays.asList(new Integer[100]);
+
+            assertEquals(big, uut.getList("big", new InvokeCountingBuilder<>(big)));
+            assertEquals(0, uut.size());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.collect.FlatListMultimap;
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
+import com.google.common.collect.ImmutableListMultimap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MultimapBuilderTest {
+
+    @Test
+    public void testGet() {
+        FlatListMultimap<String, Integer> res = MultimapBuilder.create(String.class, Integer.class)
+                .put("b", 1).put("a", 2).put("b", 3).putAll("c", Arrays.asList(4, 5)).put("a", 6)
+                .get();
+
+        assertEquals(6, res.size());
+        assertEquals(3, res.keyCount());
+        assertEquals(Arrays.asList("b", "a", "c"), Arrays.asList(res.keySet().toArray()));
+        assertEquals(Arrays.asList(1, 3), res.get("b"));
+        assertEquals(Arrays.asList(2, 6), res.get("a"));
+        assertEquals(Arrays.asList(4, 5), res.get("c"));
+        assertEquals(Collections.emptyList(), res.get("d"));
+        assertEquals(Arrays.asList(1, 3, 2, 6, 4, 5), res.values());
+        assertEquals(2, res.count("a"));
+        assertTrue(res.containsKey("c"));
+        assertFalse(res.containsKey("d"));
+        assertNull(res.asMap().get("d"));
+    }
+
+    @Test
+    public void testGet_manyKeys() {
+        MultimapBuilder<Integer, Integer> uut = MultimapBuilder.create(Integer.class, Integer.class);
+        for(int i = 0; i < 3000; i++) {
+            uut.put(i % 1000, i);
+        }
+        FlatListMultimap<Integer, Integer> res = uut.get();
+
+        assertEquals(1000, res.keyCount());
+        assertEquals(Arrays.asList(7, 1007, 2007), res.get(7));
+        assertEquals(Collections.emptyList(), res.get(1000));
+    }
+
+    @Test
+    public void testGet_builders() {
+        InvokeCountingBuilder<Integer> value = new InvokeCountingBuilder<>(7);
+        MultimapBuilder<String, Integer> uut = MultimapBuilder.<String, Integer>create().put("a", 1).put("a", value);
+
+        assertEquals(Arrays.asList(1, 7), uut.get().get("a"));
+        value.setValue(8);
+        assertEquals(Arrays.asList(1, 8), uut.get().get("a"));
+        assertEquals(2, value.getCount());
+        assertNotSame(uut.get(), uut.get());
+    }
+
+    @Test
+    public void testGet_constantReused() {
+        MultimapBuilder<String, Integer> uut = MultimapBuilder.<String, Integer>create().put("a", 1).put(null, (Integer) null);
+        FlatListMultimap<String, Integer> res = uut.get();
+
+        assertSame(res, uut.get());
+        assertEquals(Collections.singletonList(null), res.get(null));
+        uut.put("a", 2);
+        assertEquals(Arrays.asList(1, 2), uut.get().get("a"));
+    }
+
+    @Test
+    public void testMaybe() {
+        FlatListMultimap<String, Integer> res = MultimapBuilder.<String, Integer>create()
+                .put("a", 1)
+                .maybe(false)
+                    .put("a", 2)
+                    .maybe(true)
+                        .put("b", 3)
+                    .endMaybe()
+                .endMaybe()
+                .maybe(true)
+                    .put("c", 4)
+                    .maybePut("c", 5, false)
+                    .maybePut("c", new InvokeCountingBuilder<>(6), true)
+                .endMaybe()
+                .get();
+
+        assertEquals(ImmutableListMultimap.of("a", 1, "c", 4, "c", 6), res.toListMultimap());
+    }
+
+    @Test
+    public void testReset() {
+        MultimapBuilder<String, Integer> uut = MultimapBuilder.<String, Integer>create().put("a", 1);
+        uut.get();
+        FlatListMultimap<String, Integer> res = uut.reset().put("b", 2).get();
+
+        assertEquals(Collections.singletonMap("b", Arrays.asList(2)), res.asMap());
+        assertTrue(uut.reset().get().isEmpty());
+    }
+
+    @Test
+    public void testEquals() {
+        FlatListMultimap<String, Integer> first = MultimapBuilder.<String, Integer>create().put("a", 1).put("b", 2).get();
+        FlatListMultimap<String, Integer> second = MultimapBuilder.<String, Integer>create().put("a", 1).put("b", 2).get();
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals("{a=[1], b=[2]}", first.toString());
+    }
+}
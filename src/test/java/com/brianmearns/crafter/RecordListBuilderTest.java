@@ -0,0 +1,106 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.io.Record;
+import com.brianmearns.crafter.io.RecordLayout;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RecordListBuilderTest {
+
+    private static final RecordLayout LAYOUT = RecordLayout.builder().addInt("id").addLong("time").addDouble("value").get();
+
+    @Test
+    public void testLayout() {
+        assertEquals(20, LAYOUT.recordSize());
+        assertEquals(2, LAYOUT.indexOf("value"));
+        assertEquals(12, LAYOUT.offset(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLayout_duplicate() {
+        RecordLayout.builder().addInt("id").addLong("id");
+    }
+
+    @Test
+    public void testGet() {
+        RecordListBuilder uut = RecordListBuilder.create(LAYOUT, 1);
+        for(int i = 0; i < 100; i++) {
+            uut.append().putInt(0, i).putLong(1, 1000L * i).putDouble(2, i / 2.0);
+        }
+        uut.append().put("id", 7);
+        List<Record> records = uut.get();
+
+        assertEquals(101, records.size());
+        assertEquals(42, records.get(42).getInt(0));
+        assertEquals(42000L, records.get(42).getLong(1));
+        assertEquals(21.0, records.get(42).getDouble(2), 0.0);
+        assertEquals(7, records.get(100).get("id"));
+        assertEquals("Expected unwritten fields to be zero.", 0L, records.get(100).get("time"));
+        assertEquals(records.get(3), uut.get().get(3));
+    }
+
+    @Test
+    public void testGet_notAffectedByLaterRecords() {
+        RecordListBuilder uut = RecordListBuilder.create(LAYOUT).append().putInt(0, 1);
+        List<Record> first = uut.get();
+        uut.append().putInt(0, 2);
+        uut.reset().append().putInt(0, 3);
+
+        assertEquals(1, first.size());
+        assertEquals(1, first.get(0).getInt(0));
+        assertEquals(3, uut.get().get(0).getInt(0));
+    }
+
+    @Test
+    public void testGet_notAffectedByLaterWrites() {
+        RecordListBuilder uut = RecordListBuilder.create(LAYOUT).append().putInt(0, 1);
+        List<Record> first = uut.get();
+        uut.putInt(0, 2).putLong(1, 5L);
+
+        assertEquals(1, first.get(0).getInt(0));
+        assertEquals(0L, first.get(0).getLong(1));
+        assertEquals(2, uut.get().get(0).getInt(0));
+        assertEquals(5L, uut.get().get(0).getLong(1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGet_unmodifiable() {
+        RecordListBuilder.create(LAYOUT).append().get().remove(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPut_wrongType() {
+        RecordListBuilder.create(LAYOUT).append().putInt(1, 5);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPut_noRecord() {
+        RecordListBuilder.create(LAYOUT).putInt(0, 5);
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        RecordListBuilder uut = RecordListBuilder.create(LAYOUT).append().putInt(0, 9).putDouble(2, 1.5).append().putInt(0, 10);
+        File path = File.createTempFile("records", ".bin");
+        try {
+            try(RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+                assertEquals(40, uut.writeTo(file.getChannel()));
+            }
+            try(RandomAccessFile file = new RandomAccessFile(path, "r")) {
+                ByteBuffer read = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                assertEquals(uut.get().get(1), new Record(LAYOUT, read, 20));
+                assertEquals(1.5, new Record(LAYOUT, read, 0).getDouble(2), 0.0);
+            }
+        } finally {
+            path.delete();
+        }
+    }
+}
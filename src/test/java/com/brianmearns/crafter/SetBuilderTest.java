@@ -0,0 +1,126 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SetBuilderTest {
+
+    @Test
+    public void testGet_dedup() {
+        Set<String> res = SetBuilder.create(String.class)
+                .add("a").add("b").add("a")
+                .addAll(Arrays.asList("b", "c"))
+                .addAll(new String[]{"c", "d"})
+                .get();
+
+        assertTrue(res instanceof HashSet);
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d")), res);
+    }
+
+    @Test
+    public void testGet_linkedOrder() {
+        InvokeCountingBuilder<String> dynamic = new InvokeCountingBuilder<>("x");
+        Set<String> res = SetBuilder.create(String.class).linkedHashSet()
+                .add("a").add(dynamic).add("b").add("a").add("x")
+                .get();
+
+        assertTrue(res instanceof LinkedHashSet);
+        assertEquals(Arrays.asList("a", "x", "b"), Arrays.asList(res.toArray()));
+        assertEquals(1, dynamic.getCount());
+    }
+
+    @Test
+    public void testGet_dynamicEveryTime() {
+        InvokeCountingBuilder<String> dynamic = new InvokeCountingBuilder<>("x");
+        SetBuilder<String> uut = SetBuilder.create(String.class).add(dynamic);
+        uut.get();
+        uut.get();
+
+        assertEquals(2, dynamic.getCount());
+    }
+
+    @Test
+    public void testGet_immutableCached() {
+        SetBuilder<String> uut = SetBuilder.create(String.class).immutable().add("b").add("a");
+        Set<String> first = uut.get();
+
+        assertTrue(first instanceof ImmutableSet);
+        assertEquals(Arrays.asList("b", "a"), Arrays.asList(first.toArray()));
+        assertSame(first, uut.get());
+
+        Set<String> second = uut.add("c").get();
+        assertNotSame(first, second);
+        assertEquals(ImmutableSet.of("b", "a", "c"), second);
+    }
+
+    @Test
+    public void testGet_immutableDynamic() {
+        SetBuilder<String> uut = SetBuilder.create(String.class).immutable().add("a").add(new InvokeCountingBuilder<>("a"));
+
+        assertEquals(ImmutableSet.of("a"), uut.get());
+        assertNotSame(uut.get(), uut.get());
+    }
+
+    @Test
+    public void testGet_enumSet() {
+        Set<TimeUnit> res = SetBuilder.createEnumSet(TimeUnit.class)
+                .add(TimeUnit.SECONDS).add(TimeUnit.DAYS).add(TimeUnit.SECONDS)
+                .get();
+
+        assertTrue(res instanceof EnumSet);
+        assertEquals(EnumSet.of(TimeUnit.SECONDS, TimeUnit.DAYS), res);
+    }
+
+    @Test
+    public void testGet_ofInstanceUnwrapped() {
+        SetBuilder<String> uut = SetBuilder.create(String.class);
+        Supplier<String> constant = Suppliers.ofInstance("a");
+        uut.add("a").addSuppliers(Arrays.asList(constant, constant));
+
+        assertEquals(ImmutableSet.of("a"), uut.get());
+    }
+
+    @Test
+    public void testMaybe() {
+        Set<String> res = SetBuilder.create(String.class)
+                .add("a")
+                .maybe(false)
+                    .add("b")
+                    .maybe(true)
+                        .add("c")
+                    .endMaybe()
+                .endMaybe()
+                .maybe(true)
+                    .add("d")
+                    .maybeAdd("e", false)
+                .endMaybe()
+                .get();
+
+        assertEquals(ImmutableSet.of("a", "d"), res);
+    }
+
+    @Test
+    public void testReset() {
+        SetBuilder<String> uut = SetBuilder.create(String.class).linkedHashSet().add("a").add(new InvokeCountingBuilder<>("b"));
+        uut.get();
+        Set<String> res = uut.reset().add("c").get();
+
+        assertTrue(res instanceof LinkedHashSet);
+        assertEquals(ImmutableSet.of("c"), res);
+    }
+}
@@ -0,0 +1,111 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Ordering;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SortedMapBuilderTest {
+
+    @Test
+    public void testGet() {
+        SortedMapBuilder<String, Integer> uut = SortedMapBuilder.naturalOrder();
+        uut.put("c", 3).put("a", 1).put("b", new InvokeCountingBuilder<>(2)).put("c", 4);
+        ImmutableSortedMap<String, Integer> res = uut.get();
+
+        assertEquals(Arrays.asList("a", "b", "c"), res.keySet().asList());
+        assertEquals(Arrays.asList(1, 2, 4), res.values().asList());
+        assertEquals("b", res.floorKey("bb"));
+        assertEquals(Integer.valueOf(1), res.headMap("b").get("a"));
+        assertNotSame(res, uut.get());
+    }
+
+    @Test
+    public void testGet_constantReused() {
+        SortedMapBuilder<Integer, String> uut = SortedMapBuilder.orderedBy(Ordering.<Integer>natural().reverse());
+        uut.put(1, "one").put(3, "three").put(2, "two");
+        ImmutableSortedMap<Integer, String> res = uut.get();
+
+        assertEquals(Arrays.asList(3, 2, 1), res.keySet().asList());
+        assertSame(res, uut.get());
+        uut.put(0, "zero");
+        assertEquals(Arrays.asList(3, 2, 1, 0), uut.get().keySet().asList());
+    }
+
+    @Test
+    public void testGet_large() {
+        SortedMapBuilder<Integer, Integer> uut = SortedMapBuilder.naturalOrder();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for(int i = 0; i < 50000; i++) {
+            int key = (i * 7919) % 50021;
+            uut.put(key, i);
+            expected.put(key, i);
+        }
+
+        assertEquals(expected, uut.get());
+        assertEquals(Arrays.asList(expected.keySet().toArray()), uut.get().keySet().asList());
+    }
+
+    @Test
+    public void testGet_keysEqualByComparator() {
+        SortedMapBuilder<String, Integer> uut = SortedMapBuilder.orderedBy(String.CASE_INSENSITIVE_ORDER);
+        uut.put("b", 1).put("A", 2).put("a", 3).put("B", 4);
+        TreeMap<String, Integer> expected = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        expected.put("b", 1);
+        expected.put("A", 2);
+        expected.put("a", 3);
+        expected.put("B", 4);
+        ImmutableSortedMap<String, Integer> res = uut.get();
+
+        assertEquals(Arrays.asList("A", "b"), res.keySet().asList());
+        assertEquals(Arrays.asList(3, 4), res.values().asList());
+        assertEquals(Arrays.asList(expected.keySet().toArray()), res.keySet().asList());
+        assertEquals(Arrays.asList(expected.values().toArray()), res.values().asList());
+    }
+
+    @Test
+    public void testForkAndFreeze() {
+        SortedMapBuilder<String, Integer> uut = SortedMapBuilder.naturalOrder();
+        uut.put("b", 2).put("a", 1);
+        SortedMapBuilder<String, Integer> fork = uut.fork();
+        fork.put("0", 0);
+        Map<String, Integer> frozen = uut.freeze().get();
+
+        assertEquals(Arrays.asList("0", "a", "b"), fork.get().keySet().asList());
+        assertEquals(Arrays.asList("a", "b"), uut.get().keySet().asList());
+        assertEquals(Arrays.asList("a", "b"), Arrays.asList(frozen.keySet().toArray()));
+        assertTrue(uut.compact().get() instanceof NavigableMap);
+        assertTrue("Expected a frozen builder to build sorted maps.", frozen instanceof ImmutableSortedMap);
+    }
+
+    @Test
+    public void testBuildMany() {
+        SortedMapBuilder<String, Integer> uut = SortedMapBuilder.orderedBy(String.CASE_INSENSITIVE_ORDER);
+        uut.put("b", 2).put("A", 1).put("a", new InvokeCountingBuilder<>(3));
+        List<Map<String, Integer>> res = uut.buildMany(2);
+
+        assertEquals(2, res.size());
+        for(Map<String, Integer> map : res) {
+            assertTrue("Expected buildMany() to build sorted maps.", map instanceof ImmutableSortedMap);
+            assertEquals(uut.get(), map);
+            assertEquals(Arrays.asList("A", "b"), ((ImmutableSortedMap<String, Integer>) map).keySet().asList());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    @SuppressWarnings("deprecation")
+    public void testCreate_unsupported() {
+        SortedMapBuilder.create();
+    }
+}
@@ -0,0 +1,104 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
+import com.google.common.collect.Ordering;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TopKListBuilderTest {
+
+    /**
+     * Orders strings by length only, so that strings of the same length are equal.
+     */
+    private static final Comparator<String> BY_LENGTH = new Comparator<String>() {
+        @Override
+        public int compare(String left, String right) {
+            return Integer.compare(left.length(), right.length());
+        }
+    };
+
+    @Test
+    public void testGet() {
+        List<Integer> res = TopKListBuilder.create(3, Ordering.<Integer>natural().reverse())
+                .addAll(Arrays.asList(5, 1, 9, 7, 3, 8))
+                .get();
+
+        assertEquals(Arrays.asList(9, 8, 7), res);
+    }
+
+    @Test
+    public void testGet_fewerThanK() {
+        List<Integer> res = TopKListBuilder.create(10, Ordering.<Integer>natural()).addAll(new Integer[]{3, 1, 2}).get();
+
+        assertEquals(Arrays.asList(1, 2, 3), res);
+    }
+
+    @Test
+    public void testGet_stable() {
+        List<String> res = TopKListBuilder.create(3, BY_LENGTH)
+                .add("bb").add("a1").add("ccc").add("a2").add("b").add("a3")
+                .get();
+
+        assertEquals(Arrays.asList("b", "bb", "a1"), res);
+    }
+
+    @Test
+    public void testGet_builders() {
+        InvokeCountingBuilder<String> early = new InvokeCountingBuilder<>("xx");
+        InvokeCountingBuilder<String> late = new InvokeCountingBuilder<>("y");
+        TopKListBuilder<String> uut = TopKListBuilder.create(2, BY_LENGTH)
+                .add("aa").add(early).add("bb").add("cc").add(late);
+
+        assertEquals(Arrays.asList("y", "aa"), uut.get());
+        uut.add("z");
+        assertEquals(Arrays.asList("y", "z"), uut.get());
+        assertEquals(2, early.getCount());
+
+        late.setValue("yyy");
+        assertEquals(Arrays.asList("z", "aa"), uut.get());
+    }
+
+    @Test
+    public void testGet_equalBuilderBeforeConstants() {
+        List<String> res = TopKListBuilder.create(2, BY_LENGTH)
+                .add(new InvokeCountingBuilder<>("x")).add("a").add("b")
+                .get();
+
+        assertEquals(Arrays.asList("x", "a"), res);
+    }
+
+    @Test
+    public void testGet_random() {
+        Random random = new Random(3);
+        List<Integer> all = new ArrayList<>();
+        TopKListBuilder<Integer> uut = TopKListBuilder.create(100, Ordering.<Integer>natural());
+        for(int i = 0; i < 100000; i++) {
+            int value = random.nextInt();
+            all.add(value);
+            uut.add(value);
+        }
+        Collections.sort(all);
+
+        assertEquals(all.subList(0, 100), uut.get());
+        assertEquals(100000, uut.addedCount());
+    }
+
+    @Test
+    public void testMaybeAddAndReset() {
+        TopKListBuilder<Integer> uut = TopKListBuilder.create(2, Ordering.<Integer>natural())
+                .maybeAdd(1, false).maybeAdd(2, true).maybeAdd(new InvokeCountingBuilder<>(0), false);
+
+        assertEquals(Arrays.asList(2), uut.get());
+        assertTrue(uut.reset().get().isEmpty());
+        assertTrue(TopKListBuilder.create(0, Ordering.<Integer>natural()).add(1).get().isEmpty());
+    }
+}
@@ -0,0 +1,87 @@
+package com.brianmearns.crafter;
+
+import com.brianmearns.crafter.collect.RadixTrieMap;
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TrieMapBuilderTest {
+
+    @Test
+    public void testGet() {
+        TrieMapBuilder<Integer> uut = TrieMapBuilder.create(Integer.class);
+        uut.put("service.db.pool.max", 10).put("service.db.pool.min", 1)
+                .put("service.db.url", new InvokeCountingBuilder<>(5)).put("service.name", 3).put("service.db.pool.max", 20);
+        RadixTrieMap<Integer> res = uut.get();
+
+        assertEquals(4, res.size());
+        assertEquals(Integer.valueOf(20), res.get("service.db.pool.max"));
+        assertEquals(Integer.valueOf(5), res.get("service.db.url"));
+        assertEquals(Arrays.asList("service.db.pool.max", "service.db.pool.min"),
+                Arrays.asList(res.subMap("service.db.pool.").keySet().toArray()));
+        assertNotSame(res, uut.get());
+    }
+
+    @Test
+    public void testGet_constantReused() {
+        TrieMapBuilder<String> uut = TrieMapBuilder.create(String.class);
+        uut.put("a.b", "x").put("a.c", "y");
+        RadixTrieMap<String> res = uut.get();
+
+        assertSame(res, uut.get());
+        uut.put("a", "z");
+        assertEquals(Arrays.asList("a", "a.b", "a.c"), Arrays.asList(uut.get().keySet().toArray()));
+    }
+
+    @Test
+    public void testBuildCache() {
+        BuildCache uut = new BuildCache();
+        uut.get(MapBuilder.<String, Integer>create().put("a.b", 1).put("a.c", 2));
+        Map<String, Integer> res = uut.get(TrieMapBuilder.create(Integer.class).put("a.b", 1).put("a.c", 2));
+
+        assertTrue("Expected a trie builder to build its own map.", res instanceof RadixTrieMap);
+        assertEquals(2, ((RadixTrieMap<Integer>) res).subMap("a.").size());
+        assertEquals(1, uut.size());
+    }
+
+    @Test
+    public void testForkAndFreeze() {
+        TrieMapBuilder<Integer> uut = TrieMapBuilder.create(Integer.class);
+        uut.put("b", 2).put("a", 1);
+        TrieMapBuilder<Integer> fork = uut.fork();
+        fork.put("c", 3);
+        Map<String, Integer> frozen = uut.freeze().get();
+
+        assertEquals(3, fork.get().size());
+        assertEquals(2, uut.compact().get().size());
+        assertEquals(uut.get(), frozen);
+        assertTrue("Expected a frozen builder to build tries.", frozen instanceof RadixTrieMap);
+    }
+
+    @Test
+    public void testBuildMany() {
+        TrieMapBuilder<Integer> uut = TrieMapBuilder.create(Integer.class);
+        uut.put("a.b", 1).put("a.c", new InvokeCountingBuilder<>(2));
+        List<Map<String, Integer>> res = uut.buildMany(2);
+
+        assertEquals(2, res.size());
+        for(Map<String, Integer> map : res) {
+            assertTrue("Expected buildMany() to build tries.", map instanceof RadixTrieMap);
+            assertEquals(uut.get(), map);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    @SuppressWarnings("deprecation")
+    public void testCreate_unsupported() {
+        TrieMapBuilder.create(16);
+    }
+}
@@ -1,10 +1,14 @@
 package com.brianmearns.crafter;
 
+import com.brianmearns.crafter.util.IndexedSupplier;
+import com.brianmearns.crafter.util.InvokeCountingBuilder;
 import com.brianmearns.crafter.util.InvokeCountingFunction;
 import com.google.common.base.Function;
 import org.junit.Test;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -234,4 +238,36 @@ public class ValueBuilderTest {
         new ValueBuilder.ValueBuilderOfBuilderFunction<String>().apply(null);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void test_buildMany_constant() {
+        assertEquals(Arrays.asList(5, 5, 5), ValueBuilder.create(5).buildMany(3));
+    }
+
+    @Test
+    public void test_buildMany_indexed() {
+        ValueBuilder<Integer> uut = ValueBuilder.create(Integer.class).setIndexed(new IndexedSupplier<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return index * index;
+            }
+        });
+
+        assertEquals("Expected each value to be built with its own index.", Arrays.asList(0, 1, 4, 9), uut.buildMany(4));
+        assertEquals("Expected get() to supply index 0.", Integer.valueOf(0), uut.get());
+    }
+
+    @Test
+    public void test_buildMany_builder() {
+        InvokeCountingBuilder<String> builder = new InvokeCountingBuilder<>("foo");
+        List<String> res = ValueBuilder.create(String.class).set(builder).maybe(false).buildMany(2);
+
+        assertEquals(Arrays.asList("foo", "foo"), res);
+        assertEquals("Expected the builder to be invoked once per value.", 2, builder.getCount());
+    }
+
+    @Test(expected = IncompleteBuilderException.class)
+    public void test_buildMany_incomplete() {
+        ValueBuilder.create().buildMany(1);
+    }
+
+}
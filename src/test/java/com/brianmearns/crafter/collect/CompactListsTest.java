@@ -0,0 +1,46 @@
+package com.brianmearns.crafter.collect;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CompactListsTest {
+
+    @Test
+    public void testWrap_eachSize() {
+        for(int size = 0; size <= 10; size++) {
+            List<Integer> expected = new ArrayList<>();
+            Object[] array = new Object[size + 2];
+            for(int i = 0; i < size; i++) {
+                expected.add(i == 1 ? null : i);
+                array[i] = expected.get(i);
+            }
+            List<Integer> uut = CompactLists.wrap(array, size);
+
+            assertEquals("Expected a list of size " + size + " to hold the elements.", expected, uut);
+            assertEquals(expected.hashCode(), uut.hashCode());
+            assertEquals(size, uut.size());
+        }
+    }
+
+    @Test
+    public void testWrap_empty() {
+        assertSame("Expected empty lists to be shared.", CompactLists.wrap(new Object[3], 0), CompactLists.copyOf(Collections.emptyList()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGet_beyondSize() {
+        CompactLists.copyOf(Arrays.asList("foo", "bar")).get(2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSet() {
+        CompactLists.copyOf(Arrays.asList("foo", "bar")).set(0, "baz");
+    }
+}
@@ -0,0 +1,59 @@
+package com.brianmearns.crafter.collect;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactMapsTest {
+
+    @Test
+    public void testCopyOf_eachSize() {
+        for(int size = 0; size <= 40; size++) {
+            Map<String, Integer> expected = new HashMap<>();
+            for(int i = 0; i < size; i++) {
+                expected.put(i == 2 ? null : "key" + i, i == 3 ? null : i);
+            }
+            Map<String, Integer> uut = CompactMaps.copyOf(expected);
+
+            assertEquals("Expected a map of size " + size + " to hold the entries.", expected, uut);
+            assertEquals(expected.hashCode(), uut.hashCode());
+            assertEquals(size, uut.size());
+            for(Map.Entry<String, Integer> entry : expected.entrySet()) {
+                assertTrue(uut.containsKey(entry.getKey()));
+                assertEquals(entry.getValue(), uut.get(entry.getKey()));
+            }
+            assertFalse(uut.containsKey("missing"));
+            assertNull(uut.get("missing"));
+        }
+    }
+
+    @Test
+    public void testCopyOf_order() {
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        expected.put("d", 4);
+        expected.put("a", 1);
+        expected.put("c", 3);
+        expected.put("b", 2);
+
+        assertEquals("Expected a small map to iterate in the given order.", expected.keySet().toString(), CompactMaps.copyOf(expected).keySet().toString());
+    }
+
+    @Test
+    public void testCopyOf_empty() {
+        assertSame("Expected empty maps to be shared.", CompactMaps.copyOf(new Object[2], new Object[2], 0), CompactMaps.copyOf(Collections.emptyMap()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPut() {
+        CompactMaps.copyOf(Collections.singletonMap("foo", 1)).put("bar", 2);
+    }
+}
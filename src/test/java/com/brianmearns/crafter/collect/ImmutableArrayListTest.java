@@ -0,0 +1,36 @@
+package com.brianmearns.crafter.collect;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ImmutableArrayListTest {
+
+    @Test
+    public void testWrap() {
+        List<String> uut = ImmutableArrayList.wrap(new Object[]{"foo", null, "bar", "unused"}, 3);
+
+        assertEquals(3, uut.size());
+        assertEquals(Arrays.asList("foo", null, "bar"), uut);
+        assertArrayEquals(new Object[]{"foo", null, "bar"}, uut.toArray());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGet_beyondSize() {
+        ImmutableArrayList.wrap(new Object[]{"foo", "unused"}, 1).get(1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testWrap_sizeTooLarge() {
+        ImmutableArrayList.wrap(new Object[]{"foo"}, 2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAdd() {
+        ImmutableArrayList.<String>wrap(new Object[0], 0).add("foo");
+    }
+}
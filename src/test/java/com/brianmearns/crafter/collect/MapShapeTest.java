@@ -0,0 +1,114 @@
+package com.brianmearns.crafter.collect;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MapShapeTest {
+
+    /**
+     * A key whose hash code is the same for every instance, so that no perfect hash can separate them.
+     */
+    private static class CollidingKey {
+        private final int id;
+
+        private CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CollidingKey && ((CollidingKey) other).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 7;
+        }
+    }
+
+    @Test
+    public void testOf_interned() {
+        MapShape first = MapShape.of(new Object[]{"foo", "bar", "unused"}, 2);
+        MapShape second = MapShape.of(new Object[]{new String("foo"), new String("bar")}, 2);
+
+        assertSame("Expected shapes of the same keys to be interned.", first, second);
+        assertEquals(2, first.size());
+        assertEquals("bar", first.keyAt(1));
+    }
+
+    @Test
+    public void testIndexOf() {
+        for(int size = 0; size <= 70; size++) {
+            Object[] keys = new Object[size];
+            for(int i = 0; i < size; i++) {
+                keys[i] = i == 3 ? null : "key" + i;
+            }
+            MapShape uut = MapShape.of(keys, size);
+            for(int i = 0; i < size; i++) {
+                assertEquals("Expected each key to be found at its position.", i, uut.indexOf(keys[i]));
+            }
+            assertEquals(-1, uut.indexOf("missing"));
+        }
+    }
+
+    @Test
+    public void testIndexOf_colliding() {
+        Object[] keys = new Object[10];
+        for(int i = 0; i < keys.length; i++) {
+            keys[i] = new CollidingKey(i);
+        }
+        MapShape uut = MapShape.of(keys, keys.length);
+
+        for(int i = 0; i < keys.length; i++) {
+            assertEquals("Expected colliding keys to be found by probing.", i, uut.indexOf(new CollidingKey(i)));
+        }
+        assertEquals(-1, uut.indexOf(new CollidingKey(99)));
+    }
+
+    @Test
+    public void testUnshared() {
+        Object[] keys = new Object[1000];
+        for(int i = 0; i < keys.length; i++) {
+            keys[i] = i == 3 ? null : "key" + i;
+        }
+        MapShape uut = MapShape.unshared(keys, keys.length);
+
+        assertNotSame("Expected an unshared shape not to be interned.", uut, MapShape.unshared(keys, keys.length));
+        assertEquals(MapShape.of(keys, keys.length), uut);
+        for(int i = 0; i < keys.length; i++) {
+            assertEquals("Expected each key to be found at its position.", i, uut.indexOf(keys[i]));
+        }
+        assertEquals(-1, uut.indexOf("missing"));
+    }
+
+    @Test
+    public void testWrap() {
+        Map<String, Integer> uut = MapShape.of(new Object[]{"b", "a", "c"}, 3).wrap(new Object[]{2, 1, null});
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("a", 1);
+        expected.put("b", 2);
+        expected.put("c", null);
+
+        assertEquals(expected, uut);
+        assertEquals("Expected a shaped map to iterate in key order.", Arrays.asList("b", "a", "c"), Arrays.asList(uut.keySet().toArray()));
+        assertNull(uut.get("d"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrap_wrongSize() {
+        MapShape.of(new Object[]{"a", "b"}, 2).wrap(new Object[1]);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testWrap_put() {
+        MapShape.of(new Object[]{"a"}, 1).<String, Integer>wrap(new Object[]{1}).put("b", 2);
+    }
+}
@@ -0,0 +1,151 @@
+package com.brianmearns.crafter.collect;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PersistentHashMap}
+ */
+public class PersistentHashMapTest {
+
+    /**
+     * A key with a controllable hash code, for testing collisions.
+     */
+    private static class Key {
+        private final String name;
+        private final int hash;
+
+        private Key(String name, int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @Test
+    public void testPut_get() {
+        PersistentHashMap<Integer, String> uut = new PersistentHashMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        for(int i = 0; i < 5000; i++) {
+            uut.put(i * 31, "v" + i);
+            expected.put(i * 31, "v" + i);
+        }
+
+        assertEquals(5000, uut.size());
+        assertEquals("v7", uut.get(7 * 31));
+        assertNull(uut.get(-1));
+        assertFalse(uut.containsKey(-1));
+        assertEquals("Expected the map to hold the entries that were put.", expected, uut);
+    }
+
+    @Test
+    public void testPut_replace() {
+        PersistentHashMap<String, Integer> uut = new PersistentHashMap<>();
+        assertNull(uut.put("foo", 1));
+        assertEquals("Expected put() to return the previous value.", Integer.valueOf(1), uut.put("foo", 2));
+
+        assertEquals(1, uut.size());
+        assertEquals(Integer.valueOf(2), uut.get("foo"));
+    }
+
+    @Test
+    public void testPut_nullKey() {
+        PersistentHashMap<String, Integer> uut = new PersistentHashMap<>();
+        uut.put(null, 1);
+        uut.put(null, 2);
+
+        assertEquals(1, uut.size());
+        assertTrue(uut.containsKey(null));
+        assertEquals(Integer.valueOf(2), uut.get(null));
+    }
+
+    @Test
+    public void testPut_collisions() {
+        PersistentHashMap<Key, String> uut = new PersistentHashMap<>();
+        uut.put(new Key("a", 42), "A");
+        uut.put(new Key("b", 42), "B");
+        uut.put(new Key("c", 42 + (1 << 20)), "C");
+        assertEquals("Expected put() to return the previous value from a collision node.", "B", uut.put(new Key("b", 42), "B2"));
+        assertNull(uut.put(new Key("d", 43), "D"));
+        assertEquals("D", uut.put(new Key("d", 43), "D2"));
+
+        assertEquals(4, uut.size());
+        assertEquals("A", uut.get(new Key("a", 42)));
+        assertEquals("B2", uut.get(new Key("b", 42)));
+        assertEquals("C", uut.get(new Key("c", 42 + (1 << 20))));
+        assertNull(uut.get(new Key("e", 42)));
+    }
+
+    @Test
+    public void testFork() {
+        PersistentHashMap<Integer, String> original = new PersistentHashMap<>();
+        for(int i = 0; i < 1000; i++) {
+            original.put(i, "v" + i);
+        }
+        PersistentHashMap<Integer, String> fork = original.fork();
+        fork.put(5, "five");
+        fork.put(1000, "thousand");
+        original.put(6, "six");
+
+        assertEquals("Expected changes to the fork not to affect the original.", "v5", original.get(5));
+        assertFalse(original.containsKey(1000));
+        assertEquals("Expected changes to the original not to affect the fork.", "v6", fork.get(6));
+        assertEquals("five", fork.get(5));
+        assertEquals(1001, fork.size());
+        assertEquals(1000, original.size());
+    }
+
+    @Test
+    public void testClear() {
+        PersistentHashMap<String, String> uut = new PersistentHashMap<>();
+        uut.put("foo", "bar");
+        uut.put(null, "baz");
+        uut.clear();
+
+        assertTrue(uut.isEmpty());
+        assertNull(uut.get("foo"));
+        assertFalse(uut.containsKey(null));
+    }
+
+    @Test
+    public void testRemove_unsupported() {
+        PersistentHashMap<String, String> uut = new PersistentHashMap<>();
+        uut.put("foo", "bar");
+
+        try {
+            uut.remove("foo");
+            fail();
+        } catch(UnsupportedOperationException e) {
+            //Expected.
+        }
+        try {
+            uut.keySet().remove("foo");
+            fail();
+        } catch(UnsupportedOperationException e) {
+            //Expected.
+        }
+        try {
+            Iterator<Map.Entry<String, String>> iterator = uut.entrySet().iterator();
+            iterator.next();
+            iterator.remove();
+            fail();
+        } catch(UnsupportedOperationException e) {
+            //Expected.
+        }
+        assertEquals("bar", uut.get("foo"));
+    }
+}
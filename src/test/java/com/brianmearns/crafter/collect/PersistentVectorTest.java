@@ -0,0 +1,126 @@
+package com.brianmearns.crafter.collect;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PersistentVector}
+ */
+public class PersistentVectorTest {
+
+    @Test
+    public void testAdd_get() {
+        PersistentVector<Integer> uut = new PersistentVector<>();
+        List<Integer> expected = new ArrayList<>();
+        for(int i = 0; i < 40000; i++) {
+            assertTrue(uut.add(i));
+            expected.add(i);
+        }
+
+        assertEquals(40000, uut.size());
+        assertEquals("Expected the vector to hold the added elements, in order.", expected, uut);
+    }
+
+    @Test
+    public void testSet() {
+        PersistentVector<String> uut = new PersistentVector<>();
+        for(int i = 0; i < 100; i++) {
+            uut.add("x" + i);
+        }
+
+        assertEquals("Expected set() to return the previous element in the tree.", "x3", uut.set(3, "three"));
+        assertEquals("Expected set() to return the previous element in the tail.", "x99", uut.set(99, "ninety-nine"));
+        assertEquals("three", uut.get(3));
+        assertEquals("ninety-nine", uut.get(99));
+        assertEquals(100, uut.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGet_outOfBounds() {
+        PersistentVector<String> uut = new PersistentVector<>();
+        uut.add("foo");
+        uut.get(1);
+    }
+
+    @Test
+    public void testFork() {
+        PersistentVector<Integer> original = new PersistentVector<>();
+        for(int i = 0; i < 1100; i++) {
+            original.add(i);
+        }
+        PersistentVector<Integer> fork = original.fork();
+        fork.set(5, -5);
+        fork.set(1099, -1099);
+        fork.add(1100);
+        original.set(6, -6);
+        original.add(-1100);
+
+        assertEquals("Expected changes to the fork not to affect the original.", Integer.valueOf(5), original.get(5));
+        assertEquals("Expected changes to the fork not to affect the original.", Integer.valueOf(1099), original.get(1099));
+        assertEquals("Expected changes to the original not to affect the fork.", Integer.valueOf(6), fork.get(6));
+        assertEquals(Integer.valueOf(-5), fork.get(5));
+        assertEquals(Integer.valueOf(-6), original.get(6));
+        assertEquals(Integer.valueOf(1100), fork.get(1100));
+        assertEquals(Integer.valueOf(-1100), original.get(1100));
+    }
+
+    @Test
+    public void testFork_ofFork() {
+        PersistentVector<Integer> original = new PersistentVector<>();
+        original.add(1);
+        PersistentVector<Integer> first = original.fork();
+        PersistentVector<Integer> second = first.fork();
+        first.add(2);
+        second.add(3);
+
+        assertEquals(1, original.size());
+        assertEquals(Integer.valueOf(2), first.get(1));
+        assertEquals(Integer.valueOf(3), second.get(1));
+    }
+
+    @Test
+    public void testClear() {
+        PersistentVector<String> uut = new PersistentVector<>();
+        uut.add("foo");
+        PersistentVector<String> fork = uut.fork();
+        uut.clear();
+        uut.add("bar");
+
+        assertEquals(1, uut.size());
+        assertEquals("bar", uut.get(0));
+        assertEquals("Expected clearing the original not to affect the fork.", "foo", fork.get(0));
+    }
+    @Test
+    public void testClear_refill() {
+        PersistentVector<Integer> uut = new PersistentVector<>();
+        for(int round = 0; round < 3; round++) {
+            uut.clear();
+            List<Integer> expected = new ArrayList<>();
+            for(int i = 0; i < 2000 - round * 700; i++) {
+                uut.add(round * 10000 + i);
+                expected.add(round * 10000 + i);
+            }
+            assertEquals("Expected a cleared vector to be refilled correctly.", expected, uut);
+        }
+    }
+
+    @Test
+    public void testClear_shared() {
+        PersistentVector<Integer> uut = new PersistentVector<>();
+        for(int i = 0; i < 100; i++) {
+            uut.add(i);
+        }
+        PersistentVector<Integer> fork = uut.fork();
+        uut.clear();
+        for(int i = 0; i < 100; i++) {
+            uut.add(-i);
+        }
+
+        assertEquals("Expected clearing and refilling a vector not to affect its fork.", Integer.valueOf(50), fork.get(50));
+        assertEquals(Integer.valueOf(-50), uut.get(50));
+    }
+}
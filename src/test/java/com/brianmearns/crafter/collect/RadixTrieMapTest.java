@@ -0,0 +1,119 @@
+package com.brianmearns.crafter.collect;
+
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RadixTrieMapTest {
+
+    @Test
+    public void testGet() {
+        Map<String, Integer> map = new HashMap<>();
+        map.put("", 0);
+        map.put("ab", 1);
+        map.put("abc", 2);
+        map.put("abd", 3);
+        map.put("b", null);
+        RadixTrieMap<Integer> uut = RadixTrieMap.copyOf(map);
+
+        assertEquals(map, uut);
+        assertEquals(map.hashCode(), uut.hashCode());
+        assertEquals(Integer.valueOf(0), uut.get(""));
+        assertEquals(Integer.valueOf(2), uut.get("abc"));
+        assertTrue(uut.containsKey("b"));
+        assertNull(uut.get("b"));
+        assertFalse(uut.containsKey("a"));
+        assertFalse(uut.containsKey("abcd"));
+        assertFalse(uut.containsKey("c"));
+        assertFalse(uut.containsKey(1));
+    }
+
+    @Test
+    public void testIterationOrder() {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for(String key : Arrays.asList("z", "a.b", "a", "a.a", "b.c.d", "b", "ab")) {
+            map.put(key, key.length());
+        }
+        RadixTrieMap<Integer> uut = RadixTrieMap.copyOf(map);
+
+        assertEquals(new ArrayList<>(new TreeMap<>(map).keySet()), new ArrayList<>(uut.keySet()));
+        assertEquals(7, uut.size());
+    }
+
+    @Test
+    public void testSubMap() {
+        Map<String, Integer> map = new HashMap<>();
+        map.put("service.db.pool.max", 1);
+        map.put("service.db.pool.min", 2);
+        map.put("service.db.url", 3);
+        map.put("service.name", 4);
+        map.put("other", 5);
+        RadixTrieMap<Integer> uut = RadixTrieMap.copyOf(map);
+
+        RadixTrieMap<Integer> db = uut.subMap("service.d");
+        assertEquals(Arrays.asList("service.db.pool.max", "service.db.pool.min", "service.db.url"),
+                new ArrayList<>(db.keySet()));
+        assertEquals(Integer.valueOf(3), db.get("service.db.url"));
+        assertNull(db.get("service.name"));
+        assertFalse(db.containsKey("service.db"));
+
+        RadixTrieMap<Integer> pool = db.subMap("service.db.pool.");
+        assertEquals(2, pool.size());
+        assertEquals(Integer.valueOf(2), pool.get("service.db.pool.min"));
+        assertSame(pool, pool.subMap("serv"));
+        assertSame(pool, pool.subMap("service.db.po"));
+        assertEquals(Collections.singletonMap("service.db.pool.max", 1), pool.subMap("service.db.pool.max"));
+        assertTrue(pool.subMap("service.db.pool.maxx").isEmpty());
+        assertTrue(pool.subMap("other").isEmpty());
+        assertTrue(uut.subMap("service.x").isEmpty());
+        assertSame(uut, uut.subMap(""));
+    }
+
+    @Test
+    public void testSharedPrefixes() {
+        Map<String, Integer> map = new HashMap<>();
+        int keyLength = 0;
+        for(int i = 0; i < 1000; i++) {
+            String key = "service.node" + (i / 100) + ".setting" + (i % 100);
+            map.put(key, i);
+            keyLength += key.length();
+        }
+        RadixTrieMap<Integer> uut = RadixTrieMap.copyOf(map);
+
+        assertEquals(map, uut);
+        assertEquals(new TreeMap<>(map).subMap("service.node3", "service.node4"), uut.subMap("service.node3"));
+        assertTrue(uut.labelLength() * 5 < keyLength);
+        assertTrue(uut.nodeCount() < 2 * map.size());
+    }
+
+    @Test
+    public void testEmpty() {
+        RadixTrieMap<Integer> uut = RadixTrieMap.copyOf(new HashMap<String, Integer>());
+
+        assertTrue(uut.isEmpty());
+        assertNull(uut.get(""));
+        assertFalse(uut.entrySet().iterator().hasNext());
+        assertTrue(uut.subMap("a").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCopyOf_duplicateKey() {
+        @SuppressWarnings("unchecked")
+        Map.Entry<String, Integer>[] entries = (Map.Entry<String, Integer>[]) new Map.Entry<?, ?>[]{
+                Maps.immutableEntry("a", 1), Maps.immutableEntry("a", 2)};
+        RadixTrieMap.copyOf(entries, 2);
+    }
+}
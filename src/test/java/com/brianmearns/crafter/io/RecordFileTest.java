@@ -0,0 +1,87 @@
+package com.brianmearns.crafter.io;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecordFileTest {
+
+    private File path;
+
+    @Before
+    public void setUp() throws IOException {
+        path = File.createTempFile("records", ".txt");
+    }
+
+    @After
+    public void tearDown() {
+        path.delete();
+    }
+
+    @Test
+    public void testLines() throws IOException {
+        Files.write("foo\nbar\r\n\nbaz", path, Charsets.UTF_8);
+        RecordFile<String> uut = RecordFile.lines(path);
+
+        assertEquals(-1, uut.knownSize());
+        assertEquals("bar", uut.get(1));
+        assertEquals("Expected the size not to be known until every line is indexed.", -1, uut.knownSize());
+        assertEquals(Arrays.asList("foo", "bar", "", "baz"), uut);
+        assertEquals(4, uut.size());
+        assertEquals(4, uut.knownSize());
+        assertEquals("baz", uut.get(3));
+    }
+
+    @Test
+    public void testLines_iterator() throws IOException {
+        Files.write("foo\nbar\n", path, Charsets.UTF_8);
+        RecordFile<String> uut = RecordFile.lines(path);
+
+        assertEquals(Arrays.asList("foo", "bar"), Lists.newArrayList(uut.iterator()));
+        assertEquals(-1, uut.knownSize());
+    }
+
+    @Test
+    public void testLines_empty() throws IOException {
+        RecordFile<String> uut = RecordFile.lines(path);
+
+        assertTrue(uut.isEmpty());
+        assertFalse(uut.iterator().hasNext());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testLines_outOfBounds() throws IOException {
+        Files.write("foo\n", path, Charsets.UTF_8);
+        RecordFile.lines(path).get(1);
+    }
+
+    @Test
+    public void testFixedWidth() throws IOException {
+        Files.write(new byte[]{0, 0, 0, 1, 0, 0, 0, 2, 0, 0, 0, 3, 9}, path);
+        RecordFile<Integer> uut = RecordFile.fixedWidth(path, 4, new RecordDecoder<Integer>() {
+            @Override
+            public Integer decode(@Nonnull ByteBuffer buffer, int offset, int length) {
+                return buffer.getInt(offset);
+            }
+        });
+
+        assertEquals(3, uut.knownSize());
+        assertEquals(Integer.valueOf(2), uut.get(1));
+        List<Integer> expected = Arrays.asList(1, 2, 3);
+        assertEquals(expected, uut);
+    }
+}
@@ -0,0 +1,91 @@
+package com.brianmearns.crafter.io;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultCodecTest {
+
+    private static Object roundTrip(Object value) {
+        return ResultCodec.decode(ByteBuffer.wrap(ResultCodec.encode(value)), 0);
+    }
+
+    @Test
+    public void testScalars() {
+        for(Object value : Arrays.<Object>asList(null, true, false, (byte) -3, (short) 1234, 'x', -42, 1L << 40,
+                1.5f, -2.25, "", "h\u00e9llo w\u00f6rld")) {
+            assertEquals(value, roundTrip(value));
+        }
+    }
+
+    @Test
+    public void testNested() {
+        Map<String, Object> inner = new HashMap<>();
+        inner.put("a", Arrays.asList(1, 2, 3));
+        inner.put(null, "null key");
+        inner.put("b", Collections.emptyMap());
+        List<Object> value = Arrays.<Object>asList("foo", inner, Collections.emptyList(), null, 7L);
+
+        assertEquals(value, roundTrip(value));
+    }
+
+    @Test
+    public void testMapLookup() {
+        Map<Object, Object> map = new HashMap<>();
+        for(int i = 0; i < 100; i++) {
+            map.put("key" + i, i);
+        }
+        //Keys with the same hash code.
+        map.put("Aa", "first");
+        map.put("BB", "second");
+
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> decoded = (Map<Object, Object>) roundTrip(map);
+        assertEquals(map, decoded);
+        assertEquals(map.size(), decoded.size());
+        for(Map.Entry<Object, Object> entry : map.entrySet()) {
+            assertEquals(entry.getValue(), decoded.get(entry.getKey()));
+        }
+        assertNull(decoded.get("missing"));
+        assertFalse(decoded.containsKey(17));
+    }
+
+    @Test
+    public void testDecodeAtOffset() {
+        byte[] encoded = ResultCodec.encode(ImmutableMap.of("x", 1));
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.length + 10);
+        buffer.position(10);
+        buffer.put(encoded);
+
+        assertEquals(ImmutableMap.of("x", 1), ResultCodec.decode(buffer, 10));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDecodedUnmodifiable() {
+        @SuppressWarnings("unchecked")
+        List<Object> decoded = (List<Object>) roundTrip(Arrays.asList(1, 2));
+        decoded.add(3);
+    }
+
+    @Test
+    public void testIsSupported() {
+        assertTrue(ResultCodec.isSupported(Arrays.asList("a", ImmutableMap.of(1, 2.0))));
+        assertFalse(ResultCodec.isSupported(Arrays.asList("a", new Object())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeUnsupported() {
+        ResultCodec.encode(Collections.singletonMap("a", new Object()));
+    }
+}
@@ -0,0 +1,60 @@
+package com.brianmearns.crafter.io;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SpillFileTest {
+
+    @Test
+    public void testAppendAndRead() throws IOException {
+        SpillFile uut = new SpillFile();
+        long first = uut.append("foo");
+        uut.append(42);
+        long third = uut.append(ImmutableMap.of("a", Arrays.asList(1, 2)));
+
+        List<Object> all = new ArrayList<>();
+        uut.read(first, 3, all);
+        assertEquals(Arrays.<Object>asList("foo", 42, ImmutableMap.of("a", Arrays.asList(1, 2))), all);
+
+        List<Object> last = new ArrayList<>();
+        uut.read(third, 1, last);
+        assertEquals(Arrays.<Object>asList(ImmutableMap.of("a", Arrays.asList(1, 2))), last);
+    }
+
+    @Test
+    public void testAcrossChunks() throws IOException {
+        SpillFile uut = new SpillFile(null, 64);
+        List<Object> expected = new ArrayList<>();
+        long start = 0;
+        for(int i = 0; i < 100; i++) {
+            String value = i % 10 == 0 ? "a much longer value than fits in a single chunk of sixty-four bytes " + i : "v" + i;
+            expected.add(value);
+            long address = uut.append(value);
+            if(i == 0) {
+                start = address;
+            }
+        }
+
+        List<Object> read = new ArrayList<>();
+        uut.read(start, expected.size(), read);
+        assertEquals(expected, read);
+    }
+
+    @Test
+    public void testEnd() throws IOException {
+        SpillFile uut = new SpillFile();
+        assertEquals(0, uut.end());
+        uut.append("foo");
+        long end = uut.end();
+
+        assertEquals("Expected the next value to be appended at the end.", end, uut.append("bar"));
+        assertEquals(2 * (4 + 1 + 4 + 3), uut.usedBytes());
+    }
+}
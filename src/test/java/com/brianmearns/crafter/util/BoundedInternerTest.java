@@ -0,0 +1,57 @@
+package com.brianmearns.crafter.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class BoundedInternerTest {
+
+    @Test
+    public void testIntern() {
+        BoundedInterner<String> uut = new BoundedInterner<>();
+        String first = new String("foo");
+        String second = new String("foo");
+
+        assertSame("Expected the first instance to be interned.", first, uut.intern(first));
+        assertSame("Expected an equal instance to be canonicalized to the interned one.", first, uut.intern(second));
+        assertEquals(1, uut.hitCount());
+        assertEquals(1, uut.missCount());
+        assertEquals(0.5, uut.hitRate(), 0.0);
+    }
+
+    @Test
+    public void testIntern_evicted() {
+        BoundedInterner<String> uut = new BoundedInterner<>(1);
+        String first = new String("foo");
+        uut.intern(first);
+        uut.intern(new String("bar"));
+
+        assertNotSame("Expected an evicted instance to no longer be returned.", first, uut.intern(new String("foo")));
+        assertEquals(3, uut.missCount());
+    }
+
+    @Test
+    public void testCapacity() {
+        assertEquals("Expected the capacity to be rounded up to a power of two.", 8, new BoundedInterner<>(5).capacity());
+        assertEquals(BoundedInterner.DEFAULT_CAPACITY, new BoundedInterner<>().capacity());
+    }
+
+    @Test
+    public void testResetStats() {
+        BoundedInterner<String> uut = new BoundedInterner<>();
+        uut.intern("foo");
+        uut.intern("foo");
+        uut.resetStats();
+
+        assertEquals(0, uut.hitCount());
+        assertEquals(0, uut.missCount());
+        assertEquals(0.0, uut.hitRate(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_zero() {
+        new BoundedInterner<>(0);
+    }
+}
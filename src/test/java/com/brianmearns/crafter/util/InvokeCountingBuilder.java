@@ -0,0 +1,36 @@
+package com.brianmearns.crafter.util;
+
+import com.brianmearns.crafter.BuilderInterface;
+import com.brianmearns.crafter.IncompleteBuilderException;
+
+import javax.annotation.Nullable;
+
+/**
+ * A builder that always builds the same value, and counts how many times it is invoked.
+ */
+public class InvokeCountingBuilder<T> implements BuilderInterface<T> {
+
+    @Nullable
+    private T value;
+
+    private int count = 0;
+
+    public InvokeCountingBuilder(@Nullable T value) {
+        this.value = value;
+    }
+
+    public void setValue(@Nullable T value) {
+        this.value = value;
+    }
+
+    @Nullable
+    @Override
+    public T get() throws IncompleteBuilderException {
+        this.count += 1;
+        return value;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,64 @@
+package com.brianmearns.crafter.util;
+
+import com.google.common.collect.Ordering;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ParallelSortTest {
+
+    @Test
+    public void testSort_small() {
+        Integer[] array = {5, 3, 9, 1};
+        ParallelSort.sort(array, Ordering.<Integer>natural());
+
+        assertArrayEquals(new Integer[]{1, 3, 5, 9}, array);
+    }
+
+    @Test
+    public void testSort_range() {
+        Integer[] array = {5, 3, 9, 1, 0};
+        ParallelSort.sort(array, 1, 4, Ordering.<Integer>natural());
+
+        assertArrayEquals(new Integer[]{5, 1, 3, 9, 0}, array);
+    }
+
+    @Test
+    public void testSort_large() {
+        Random random = new Random(7);
+        Integer[] array = new Integer[100000];
+        for(int i = 0; i < array.length; i++) {
+            array[i] = random.nextInt(1000);
+        }
+        Integer[] expected = array.clone();
+        Arrays.sort(expected);
+        ParallelSort.sort(array, Ordering.<Integer>natural());
+
+        assertArrayEquals(expected, array);
+    }
+
+    @Test
+    public void testSort_stable() {
+        //Sort by the upper half only, so that equal elements are told apart by their position in the lower half.
+        Random random = new Random(11);
+        Long[] array = new Long[50000];
+        for(int i = 0; i < array.length; i++) {
+            array[i] = ((long) random.nextInt(100) << 32) | i;
+        }
+        Comparator<Long> byUpper = new Comparator<Long>() {
+            @Override
+            public int compare(Long left, Long right) {
+                return Long.compare(left >>> 32, right >>> 32);
+            }
+        };
+        Long[] expected = array.clone();
+        Arrays.sort(expected, byUpper);
+        ParallelSort.sort(array, byUpper);
+
+        assertArrayEquals(expected, array);
+    }
+}
@@ -0,0 +1,42 @@
+package com.brianmearns.crafter.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SizeEstimatorTest {
+
+    @Test
+    public void testEstimate_initial() {
+        assertEquals("Expected a new estimator to have no estimate.", 0, new SizeEstimator().estimate());
+        assertEquals("Expected the estimate to start at the expected size.", 12, new SizeEstimator(12).estimate());
+    }
+
+    @Test
+    public void testRecord_larger() {
+        SizeEstimator uut = new SizeEstimator(12);
+        uut.record(100);
+
+        assertEquals("Expected the estimate to rise immediately to a larger size.", 100, uut.estimate());
+    }
+
+    @Test
+    public void testRecord_smaller() {
+        SizeEstimator uut = new SizeEstimator(100);
+        uut.record(20);
+
+        assertTrue("Expected the estimate to decay toward a smaller size.", uut.estimate() < 100);
+        assertTrue("Expected the estimate to decay slowly toward a smaller size.", uut.estimate() > 80);
+
+        for(int i = 0; i < 1000; i++) {
+            uut.record(20);
+        }
+        assertEquals("Expected the estimate to settle at a repeated size.", 20, uut.estimate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_negative() {
+        new SizeEstimator(-1);
+    }
+}
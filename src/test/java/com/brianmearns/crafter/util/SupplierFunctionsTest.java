@@ -1,8 +1,13 @@
 package com.brianmearns.crafter.util;
 
+import com.brianmearns.crafter.ValueBuilder;
+import com.google.common.base.Suppliers;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  *
@@ -21,6 +26,29 @@ public class SupplierFunctionsTest {
         assertNotNull("Method should return a Function, not null.", SupplierFunctions.builderToSupplierFunction());
     }
 
+    @Test
+    public void testIsSupplierOfInstance() {
+        assertTrue("Expected a supplier from Suppliers.ofInstance to be recognized.", SupplierFunctions.isSupplierOfInstance(Suppliers.ofInstance("foo")));
+        assertTrue("Expected a supplier of null to be recognized.", SupplierFunctions.isSupplierOfInstance(Suppliers.ofInstance(null)));
+        assertTrue("Expected a supplier from the supplierOfInstanceFunction to be recognized.",
+                SupplierFunctions.isSupplierOfInstance(SupplierFunctions.<String>supplierOfInstanceFunction().apply("bar")));
+        assertFalse("Expected a builder not to be recognized.", SupplierFunctions.isSupplierOfInstance(ValueBuilder.create("foo")));
+        assertFalse("Expected null not to be recognized.", SupplierFunctions.isSupplierOfInstance(null));
+    }
+
+    @Test
+    public void testOfIndexed() {
+        SupplierFunctions.IndexedSupplierAdapter<String> uut = SupplierFunctions.ofIndexed(new IndexedSupplier<String>() {
+            @Override
+            public String get(int index) {
+                return "#" + index;
+            }
+        });
+
+        assertEquals("Expected the adapter to supply index 0 by default.", "#0", uut.get());
+        assertEquals("#7", uut.get(7));
+    }
+
     @Test
     public void testSupplierFunctions() {
         //This is stupid, but I so desperately want to get 100% code coverage. =(